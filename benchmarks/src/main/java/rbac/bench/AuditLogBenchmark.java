@@ -0,0 +1,88 @@
+package rbac.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import rbac.audit.AuditLog;
+import rbac.audit.AuditWriter;
+import rbac.audit.Backpressure;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Audit events per second through {@link AuditLog#log} with an {@link AuditWriter} attached, for
+ * each backpressure policy, from one and four logging threads. The writer's written and dropped
+ * counts are printed after each iteration, since DROP and SAMPLE trade entries for throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class AuditLogBenchmark {
+
+    @Param({"BLOCK", "DROP", "SAMPLE"})
+    public Backpressure backpressure;
+
+    private Path directory;
+    private AuditLog auditLog;
+    private AuditWriter writer;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("rbac-audit-bench");
+        auditLog = new AuditLog();
+        writer = AuditWriter.open(directory.resolve("audit.log"), 1 << 16, backpressure, 256L << 20, 0);
+        auditLog.setWriter(writer);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        writer.close();
+        System.out.printf("%nwritten=%d dropped=%d rotations=%d%n", writer.written(), writer.dropped(), writer.rotations());
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @State(Scope.Thread)
+    public static class Counter {
+        private long next;
+    }
+
+    private void log(Counter counter) {
+        long n = counter.next++;
+        auditLog.log("CHECK_PERMISSION", "user_" + (n & 1023), "RES_" + (n & 63), "granted");
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void log_1(Counter counter) {
+        log(counter);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void log_4(Counter counter) {
+        log(counter);
+    }
+}
@@ -0,0 +1,146 @@
+package rbac.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rbac.audit.AuditLog.AuditEntry;
+import rbac.audit.AuditQuery;
+import rbac.audit.AuditStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compliance-style audit queries over {@code entries} entries spread evenly across 90 days:
+ * the indexed {@link AuditStore} against the stream filter over a flat list that
+ * {@code AuditLog.getByPerformer} used to run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class AuditStoreBenchmark {
+
+    private static final String[] ACTIONS = {
+            "LOGIN", "LOGOUT", "CHECK_PERMISSION", "ASSIGN_ROLE", "REVOKE_ROLE", "CREATE_USER", "DELETE_USER",
+            "UPDATE_USER", "CREATE_ROLE", "DELETE_ROLE", "GRANT_PERMISSION", "EXPORT", "ASSIGNMENT_EXPIRED",
+            "ASSIGNMENT_RENEWED", "EXTEND_ASSIGNMENT", "REPORT"};
+    private static final int PERFORMERS = 10_000;
+    private static final int TARGETS = 50_000;
+    private static final long START = 1_700_000_000_000L;
+    private static final long SPAN = TimeUnit.DAYS.toMillis(90);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final int PROBES = 256;
+
+    @Param({"10000000"})
+    public int entries;
+
+    private final List<AuditEntry> list = new ArrayList<>();
+    private AuditStore store;
+    private final String[] probePerformers = new String[PROBES];
+    private final String[] probeActions = new String[PROBES];
+    private final String[] probeTargets = new String[PROBES];
+    private final long[] probeDays = new long[PROBES];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        String[] performers = new String[PERFORMERS];
+        for (int i = 0; i < PERFORMERS; i++) {
+            performers[i] = "user_" + i;
+        }
+        String[] targets = new String[TARGETS];
+        for (int i = 0; i < TARGETS; i++) {
+            targets[i] = "RES_" + i;
+        }
+        store = new AuditStore(AuditStore.DEFAULT_SEGMENT_SIZE, entries / AuditStore.DEFAULT_SEGMENT_SIZE + 1);
+        for (int i = 0; i < entries; i++) {
+            AuditEntry entry = new AuditEntry(START + SPAN * i / entries, ACTIONS[random.nextInt(ACTIONS.length)],
+                    performers[random.nextInt(PERFORMERS)], targets[random.nextInt(TARGETS)], "details");
+            list.add(entry);
+            store.append(entry);
+        }
+        // probes are taken from real entries, so every query has at least one match
+        for (int i = 0; i < PROBES; i++) {
+            AuditEntry e = list.get(random.nextInt(entries));
+            probePerformers[i] = e.performer();
+            probeActions[i] = e.action();
+            probeTargets[i] = e.target();
+            probeDays[i] = e.timeMillis() - e.timeMillis() % DAY;
+        }
+    }
+
+    private int probe() {
+        return next++ & (PROBES - 1);
+    }
+
+    private static List<AuditEntry> scan(List<AuditEntry> entries, AuditQuery query) {
+        return entries.stream()
+                .filter(e -> e.timeMillis() >= query.fromMillis() && e.timeMillis() < query.toMillis())
+                .filter(e -> query.performer() == null || e.performer().equalsIgnoreCase(query.performer()))
+                .filter(e -> query.action() == null || e.action().equalsIgnoreCase(query.action()))
+                .filter(e -> query.target() == null || e.target().equalsIgnoreCase(query.target()))
+                .collect(Collectors.toList());
+    }
+
+    /** All actions by X against Y on one day. */
+    private AuditQuery performerTargetDay(int i) {
+        return AuditQuery.any().byPerformer(probePerformers[i]).byTarget(probeTargets[i])
+                .between(probeDays[i], probeDays[i] + DAY);
+    }
+
+    /** One action type on one day. */
+    private AuditQuery actionDay(int i) {
+        return AuditQuery.any().byAction(probeActions[i]).between(probeDays[i], probeDays[i] + DAY);
+    }
+
+    /** Everything one performer did, i.e. getByPerformer. */
+    private AuditQuery performer(int i) {
+        return AuditQuery.any().byPerformer(probePerformers[i]);
+    }
+
+    @Benchmark
+    public List<AuditEntry> performerTargetDay_store() {
+        return store.query(performerTargetDay(probe()));
+    }
+
+    @Benchmark
+    public List<AuditEntry> performerTargetDay_scan() {
+        return scan(list, performerTargetDay(probe()));
+    }
+
+    @Benchmark
+    public List<AuditEntry> actionDay_store() {
+        return store.query(actionDay(probe()));
+    }
+
+    @Benchmark
+    public List<AuditEntry> actionDay_scan() {
+        return scan(list, actionDay(probe()));
+    }
+
+    @Benchmark
+    public List<AuditEntry> performer_store() {
+        return store.query(performer(probe()));
+    }
+
+    @Benchmark
+    public List<AuditEntry> performer_scan() {
+        return scan(list, performer(probe()));
+    }
+}
@@ -0,0 +1,87 @@
+package rbac.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rbac.assignment.AssignmentManager;
+import rbac.permission.Permission;
+import rbac.role.Role;
+import rbac.role.RoleManager;
+import rbac.user.User;
+import rbac.user.UserManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authorization hot paths of the managers over synthetic datasets of varying size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class AuthorizationBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int users;
+
+    @Param({"100", "1000", "10000"})
+    public int roles;
+
+    private BenchmarkData data;
+    private AssignmentManager assignmentManager;
+    private RoleManager roleManager;
+    private UserManager userManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = BenchmarkData.generate(users, roles, 42);
+        assignmentManager = data.system.getAssignmentManager();
+        roleManager = data.system.getRoleManager();
+        userManager = data.system.getUserManager();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        int next() {
+            return next++ & (BenchmarkData.PROBES - 1);
+        }
+    }
+
+    @Benchmark
+    public boolean userHasPermission(Cursor cursor) {
+        int i = cursor.next();
+        return assignmentManager.userHasPermission(data.probeUsers[i], data.probeNames[i], data.probeResources[i]);
+    }
+
+    @Benchmark
+    public Set<Permission> getUserPermissions(Cursor cursor) {
+        return assignmentManager.getUserPermissions(data.probeUsers[cursor.next()]);
+    }
+
+    @Benchmark
+    public List<Role> findRolesWithPermission(Cursor cursor) {
+        int i = cursor.next();
+        return roleManager.findRolesWithPermission(data.probeNames[i], data.probeResources[i]);
+    }
+
+    @Benchmark
+    public Optional<User> findByEmail(Cursor cursor) {
+        return userManager.findByEmail(data.probeEmails[cursor.next()]);
+    }
+}
@@ -0,0 +1,104 @@
+package rbac.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rbac.assignment.AssignmentManager;
+import rbac.assignment.PermissionCheck;
+import rbac.permission.PermissionRegistry;
+import rbac.user.User;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A gateway request's worth of permission checks ({@code checks}, spread over {@code users}
+ * users, grouped by user) answered one call at a time against the batch API, in its list form
+ * and its array form.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BatchCheckBenchmark {
+
+    private static final int BATCHES = 256;
+
+    @Param({"32"})
+    public int checks;
+
+    @Param({"1", "8"})
+    public int users;
+
+    private AssignmentManager assignmentManager;
+    private final List<List<PermissionCheck>> lists = new ArrayList<>();
+    private User[][] batchUsers;
+    private int[][] userIndexes;
+    private int[][] permissionIds;
+    private long[] granted;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData data = BenchmarkData.generate(100_000, 1000, 42);
+        assignmentManager = data.system.getAssignmentManager();
+        Random random = new Random(7);
+        batchUsers = new User[BATCHES][];
+        userIndexes = new int[BATCHES][checks];
+        permissionIds = new int[BATCHES][checks];
+        granted = new long[(checks + 63) / 64];
+        for (int b = 0; b < BATCHES; b++) {
+            batchUsers[b] = new User[users];
+            for (int u = 0; u < users; u++) {
+                batchUsers[b][u] = data.probeUsers[random.nextInt(BenchmarkData.PROBES)];
+            }
+            List<PermissionCheck> list = new ArrayList<>(checks);
+            for (int i = 0; i < checks; i++) {
+                int user = i * users / checks;
+                int probe = random.nextInt(BenchmarkData.PROBES);
+                userIndexes[b][i] = user;
+                permissionIds[b][i] = PermissionRegistry.idOf(data.probeNames[probe], data.probeResources[probe]);
+                list.add(new PermissionCheck(batchUsers[b][user], data.probeNames[probe], data.probeResources[probe]));
+            }
+            lists.add(list);
+        }
+    }
+
+    @Benchmark
+    public int single() {
+        List<PermissionCheck> batch = lists.get(next++ & (BATCHES - 1));
+        int granted = 0;
+        for (PermissionCheck check : batch) {
+            if (assignmentManager.userHasPermission(check.user(), check.permissionName(), check.resource())) {
+                granted++;
+            }
+        }
+        return granted;
+    }
+
+    @Benchmark
+    public BitSet batchList() {
+        return assignmentManager.checkAll(lists.get(next++ & (BATCHES - 1)));
+    }
+
+    @Benchmark
+    public long batchArrays() {
+        int b = next++ & (BATCHES - 1);
+        assignmentManager.checkAll(batchUsers[b], userIndexes[b], permissionIds[b], checks, granted);
+        return granted[0];
+    }
+}
@@ -0,0 +1,153 @@
+package rbac.bench;
+
+import rbac.assignment.AssignmentManager;
+import rbac.assignment.AssignmentMetadata;
+import rbac.assignment.PermanentAssignment;
+import rbac.permission.Permission;
+import rbac.role.Role;
+import rbac.role.RoleManager;
+import rbac.system.RBACSystem;
+import rbac.user.User;
+import rbac.user.UserManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Synthetic RBAC dataset shared by the benchmarks. Generation is deterministic for a given seed.
+ * <p>
+ * Role popularity follows a Zipf distribution (a few roles hold most members), users get one to
+ * eight roles, and each role holds 5-20 permissions drawn from {@link #ACTIONS} x resources.
+ */
+public final class BenchmarkData {
+
+    public static final String[] ACTIONS = {"READ", "WRITE", "DELETE", "APPROVE", "EXPORT"};
+    public static final int PROBES = 1 << 12;
+
+    // Role names are globally unique per JVM, so every dataset gets its own prefix
+    private static final AtomicInteger DATASETS = new AtomicInteger();
+
+    public final RBACSystem system;
+    public final User[] users;
+    public final Role[] roles;
+    public final String[] resources;
+
+    // pre-generated check arguments, about half of them granted
+    public final User[] probeUsers = new User[PROBES];
+    public final String[] probeNames = new String[PROBES];
+    public final String[] probeResources = new String[PROBES];
+    public final String[] probeEmails = new String[PROBES];
+
+    private BenchmarkData(RBACSystem system, User[] users, Role[] roles, String[] resources) {
+        this.system = system;
+        this.users = users;
+        this.roles = roles;
+        this.resources = resources;
+    }
+
+    public static BenchmarkData generate(int userCount, int roleCount, long seed) {
+        Random random = new Random(seed);
+        String prefix = "d" + DATASETS.incrementAndGet() + "_";
+        RBACSystem system = new RBACSystem();
+        UserManager userManager = system.getUserManager();
+        RoleManager roleManager = system.getRoleManager();
+        AssignmentManager assignmentManager = system.getAssignmentManager();
+
+        String[] resources = new String[Math.max(50, roleCount / 2)];
+        for (int i = 0; i < resources.length; i++) {
+            resources[i] = "RES_" + i;
+        }
+        User[] users = new User[userCount];
+        Role[] roles = new Role[roleCount];
+        BenchmarkData data = new BenchmarkData(system, users, roles, resources);
+
+        system.runBatch(() -> {
+            for (int i = 0; i < roleCount; i++) {
+                Role role = new Role(prefix + "role_" + i, "Synthetic role " + i);
+                int permissions = 5 + random.nextInt(16);
+                for (int p = 0; p < permissions; p++) {
+                    role.addPermission(new Permission(ACTIONS[random.nextInt(ACTIONS.length)],
+                            resources[random.nextInt(resources.length)], "Synthetic permission"));
+                }
+                roleManager.add(role);
+                roles[i] = role;
+            }
+            for (int i = 0; i < userCount; i++) {
+                User user = new User("user_" + i, "User " + i, "user_" + i + "@tenant" + (i % 100) + ".example.com");
+                userManager.add(user);
+                users[i] = user;
+            }
+            ZipfSampler sampler = new ZipfSampler(roleCount, 1.1, random);
+            AssignmentMetadata metadata = AssignmentMetadata.now("bench", "synthetic");
+            for (User user : users) {
+                int count = 1 + Math.min(7, (int) (-Math.log(1 - random.nextDouble()) * 1.5));
+                Set<Integer> chosen = new HashSet<>();
+                for (int k = 0; k < count; k++) {
+                    int role = sampler.next();
+                    if (chosen.add(role)) {
+                        assignmentManager.add(new PermanentAssignment(user, roles[role], metadata));
+                    }
+                }
+            }
+        });
+        data.generateProbes(random);
+        return data;
+    }
+
+    private void generateProbes(Random random) {
+        AssignmentManager assignmentManager = system.getAssignmentManager();
+        for (int i = 0; i < PROBES; i++) {
+            User user = users[random.nextInt(users.length)];
+            probeUsers[i] = user;
+            probeEmails[i] = user.getEmail();
+            List<Permission> granted = new ArrayList<>(assignmentManager.getUserPermissions(user));
+            if (!granted.isEmpty() && random.nextBoolean()) {
+                Permission p = granted.get(random.nextInt(granted.size()));
+                probeNames[i] = p.getName();
+                probeResources[i] = p.getResource();
+            } else {
+                probeNames[i] = ACTIONS[random.nextInt(ACTIONS.length)];
+                probeResources[i] = resources[random.nextInt(resources.length)];
+            }
+        }
+    }
+
+    /** Samples ranks 0..n-1 with probability proportional to 1 / (rank + 1)^s. */
+    static final class ZipfSampler {
+
+        private final double[] cumulative;
+        private final Random random;
+
+        ZipfSampler(int n, double s, Random random) {
+            this.cumulative = new double[n];
+            this.random = random;
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += 1.0 / Math.pow(i + 1, s);
+                cumulative[i] = sum;
+            }
+            for (int i = 0; i < n; i++) {
+                cumulative[i] /= sum;
+            }
+        }
+
+        int next() {
+            double u = random.nextDouble();
+            int lo = 0;
+            int hi = cumulative.length - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (cumulative[mid] < u) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+}
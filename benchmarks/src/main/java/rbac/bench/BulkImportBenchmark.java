@@ -0,0 +1,100 @@
+package rbac.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import rbac.importer.BulkImporter;
+import rbac.importer.ImportFormat;
+import rbac.system.RBACSystem;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to import roles, then {@code users} users, then five assignments per user from CSV held
+ * in memory into an empty {@link RBACSystem}, parsing on the calling thread or on the common pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class BulkImportBenchmark {
+
+    private static final int ROLES = 1000;
+    private static final int ASSIGNMENTS_PER_USER = 5;
+
+    @Param({"200000"})
+    public int users;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private String rolesCsv;
+    private String usersCsv;
+    private String assignmentsCsv;
+    private RBACSystem system;
+
+    @Setup(Level.Trial)
+    public void writeInput() {
+        Random random = new Random(42);
+        StringBuilder roles = new StringBuilder("name,description,permissions\n");
+        for (int i = 0; i < ROLES; i++) {
+            roles.append("import_role_").append(i).append(",Synthetic role ").append(i).append(',');
+            for (int p = 0; p < 10; p++) {
+                roles.append(p == 0 ? "" : ";")
+                        .append(BenchmarkData.ACTIONS[random.nextInt(BenchmarkData.ACTIONS.length)])
+                        .append(":RES_").append(random.nextInt(500));
+            }
+            roles.append('\n');
+        }
+        StringBuilder userRows = new StringBuilder("username,full_name,email\n");
+        StringBuilder assignments = new StringBuilder("username,role\n");
+        for (int i = 0; i < users; i++) {
+            userRows.append("user_").append(i).append(",User ").append(i)
+                    .append(",user_").append(i).append("@example.com\n");
+            int base = random.nextInt(ROLES);
+            for (int k = 0; k < ASSIGNMENTS_PER_USER; k++) {
+                // 97 is coprime with ROLES, so the five roles are distinct
+                assignments.append("user_").append(i).append(",import_role_")
+                        .append((base + k * 97) % ROLES).append('\n');
+            }
+        }
+        rolesCsv = roles.toString();
+        usersCsv = userRows.toString();
+        assignmentsCsv = assignments.toString();
+    }
+
+    @TearDown(Level.Invocation)
+    public void clear() {
+        // role names are unique per JVM; free them for the next import
+        system.getRoleManager().clear();
+        system = null;
+    }
+
+    @Benchmark
+    public RBACSystem importAll() throws IOException {
+        system = new RBACSystem();
+        BulkImporter importer = parallel
+                ? new BulkImporter(system, ForkJoinPool.commonPool())
+                : new BulkImporter(system);
+        importer.importRoles(new StringReader(rolesCsv), ImportFormat.CSV);
+        importer.importUsers(new StringReader(usersCsv), ImportFormat.CSV);
+        importer.importAssignments(new StringReader(assignmentsCsv), ImportFormat.CSV);
+        return system;
+    }
+}
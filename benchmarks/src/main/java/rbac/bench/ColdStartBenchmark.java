@@ -0,0 +1,105 @@
+package rbac.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import rbac.assignment.AssignmentMetadata;
+import rbac.assignment.PermanentAssignment;
+import rbac.permission.Permission;
+import rbac.persistence.Durability;
+import rbac.role.Role;
+import rbac.system.RBACSystem;
+import rbac.user.User;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to bring an {@link RBACSystem} up from a checkpointed directory: load the state snapshot,
+ * replay the (empty) log tail and publish the first authorization snapshot. The trial setup writes
+ * {@code users} users with five assignments each, so the default is 1M users / 5M assignments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ColdStartBenchmark {
+
+    private static final int ROLES = 1000;
+    private static final int ASSIGNMENTS_PER_USER = 5;
+
+    @Param({"1000000"})
+    public int users;
+
+    private Path directory;
+    private RBACSystem system;
+
+    @Setup(Level.Trial)
+    public void writeState() throws IOException {
+        directory = Files.createTempDirectory("rbac-cold-start");
+        RBACSystem source = new RBACSystem();
+        source.enablePersistence(directory, Durability.INTERVAL, 1000);
+        Random random = new Random(42);
+        source.runBatch(() -> {
+            Role[] roles = new Role[ROLES];
+            for (int i = 0; i < ROLES; i++) {
+                roles[i] = new Role("cold_role_" + i, "Synthetic role " + i);
+                for (int p = 0; p < 10; p++) {
+                    roles[i].addPermission(new Permission(BenchmarkData.ACTIONS[random.nextInt(BenchmarkData.ACTIONS.length)],
+                            "RES_" + random.nextInt(500), "Synthetic permission"));
+                }
+                source.getRoleManager().add(roles[i]);
+            }
+            AssignmentMetadata metadata = AssignmentMetadata.now("bench", "synthetic");
+            for (int i = 0; i < users; i++) {
+                User user = new User("user_" + i, "User " + i, "user_" + i + "@example.com");
+                source.getUserManager().add(user);
+                int base = random.nextInt(ROLES);
+                for (int k = 0; k < ASSIGNMENTS_PER_USER; k++) {
+                    // 97 is coprime with ROLES, so the five roles are distinct
+                    source.getAssignmentManager().add(new PermanentAssignment(user, roles[(base + k * 97) % ROLES], metadata));
+                }
+            }
+        });
+        source.getMutationLog().checkpoint();
+        source.closePersistence();
+        // role names are unique per JVM; free them for the loads below
+        source.getRoleManager().clear();
+    }
+
+    @TearDown(Level.Invocation)
+    public void close() throws IOException {
+        system.closePersistence();
+        system.getRoleManager().clear();
+        system = null;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteState() throws IOException {
+        Files.deleteIfExists(directory.resolve("mutations.log"));
+        Files.deleteIfExists(directory.resolve("state.snapshot"));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public RBACSystem load() throws IOException {
+        system = new RBACSystem();
+        system.enablePersistence(directory, Durability.PER_BATCH, 0);
+        return system;
+    }
+}
@@ -0,0 +1,111 @@
+package rbac.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rbac.assignment.AssignmentFilter;
+import rbac.assignment.AssignmentFilters;
+import rbac.assignment.AssignmentManager;
+import rbac.assignment.AssignmentMetadata;
+import rbac.assignment.RoleAssignment;
+import rbac.assignment.TemporaryAssignment;
+import rbac.role.Role;
+import rbac.role.RoleManager;
+import rbac.user.User;
+import rbac.user.UserManager;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * "Assigned in this week" and "expiring in this week" over 100k temporary assignments spread over
+ * three years: answered from the range indexes of {@link AssignmentManager}, and as lambdas over
+ * the same epoch milliseconds, which can only be scanned.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DateRangeBenchmark {
+
+    private static final int USERS = 50_000;
+    private static final int ROLES = 2;
+    private static final int WEEKS = 128;
+    private static final LocalDate START = LocalDate.of(2022, 1, 1);
+
+    private AssignmentManager assignmentManager;
+    private final AssignmentFilter[] assignedIndexed = new AssignmentFilter[WEEKS];
+    private final AssignmentFilter[] assignedScanned = new AssignmentFilter[WEEKS];
+    private final AssignmentFilter[] expiringIndexed = new AssignmentFilter[WEEKS];
+    private final AssignmentFilter[] expiringScanned = new AssignmentFilter[WEEKS];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        UserManager userManager = new UserManager();
+        RoleManager roleManager = new RoleManager();
+        assignmentManager = new AssignmentManager(userManager, roleManager);
+        Role[] roles = new Role[ROLES];
+        for (int r = 0; r < ROLES; r++) {
+            roles[r] = new Role("date-bench-" + r + "-" + System.nanoTime(), "date ranges");
+            roleManager.add(roles[r]);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < USERS; i++) {
+            User user = new User("date" + i, "Date User " + i, "date" + i + "@bench.local");
+            userManager.add(user);
+            for (Role role : roles) {
+                LocalDate assigned = START.plusDays(random.nextInt(3 * 365));
+                String at = assigned + " 1" + random.nextInt(10) + ":00";
+                String expires = assigned.plusDays(30 + random.nextInt(365)) + " 08:00";
+                assignmentManager.add(new TemporaryAssignment(user, role,
+                        new AssignmentMetadata("bench", at, "dates"), expires, false));
+            }
+        }
+        for (int w = 0; w < WEEKS; w++) {
+            LocalDate from = START.plusDays(random.nextInt(3 * 365));
+            LocalDate to = from.plusDays(6);
+            assignedIndexed[w] = AssignmentFilters.assignedBetween(from.toString(), to.toString());
+            expiringIndexed[w] = AssignmentFilters.expiringBetween(from.toString(), to.toString());
+            long fromMillis = from.atStartOfDay().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            long toMillis = fromMillis + TimeUnit.DAYS.toMillis(7);
+            assignedScanned[w] = assignment -> assignment.getAssignedAtMillis() >= fromMillis
+                    && assignment.getAssignedAtMillis() < toMillis;
+            expiringScanned[w] = assignment -> assignment.getExpiresAtMillis() >= fromMillis
+                    && assignment.getExpiresAtMillis() < toMillis;
+        }
+    }
+
+    @Benchmark
+    public List<RoleAssignment> assignedIndexed() {
+        return assignmentManager.findByFilter(assignedIndexed[next++ & (WEEKS - 1)]);
+    }
+
+    @Benchmark
+    public List<RoleAssignment> assignedScanned() {
+        return assignmentManager.findByFilter(assignedScanned[next++ & (WEEKS - 1)]);
+    }
+
+    @Benchmark
+    public List<RoleAssignment> expiringIndexed() {
+        return assignmentManager.findByFilter(expiringIndexed[next++ & (WEEKS - 1)]);
+    }
+
+    @Benchmark
+    public List<RoleAssignment> expiringScanned() {
+        return assignmentManager.findByFilter(expiringScanned[next++ & (WEEKS - 1)]);
+    }
+}
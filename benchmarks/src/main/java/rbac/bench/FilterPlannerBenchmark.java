@@ -0,0 +1,80 @@
+package rbac.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rbac.assignment.AssignmentFilter;
+import rbac.assignment.AssignmentFilters;
+import rbac.assignment.AssignmentManager;
+import rbac.assignment.RoleAssignment;
+import rbac.user.User;
+import rbac.user.UserFilter;
+import rbac.user.UserFilters;
+import rbac.user.UserManager;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code findByFilter} over 100k users with the same conditions built two ways: from
+ * {@link UserFilters}/{@link AssignmentFilters}, which the planner answers from an index, and as
+ * lambdas, which can only be scanned.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FilterPlannerBenchmark {
+
+    private UserManager userManager;
+    private AssignmentManager assignmentManager;
+    private User[] probes;
+    private int next;
+
+    // one tenant of the hundred, narrowed by a substring of the name
+    private final UserFilter domainIndexed = UserFilters.byEmailDomain("@tenant42.example.com")
+            .and(UserFilters.byFullNameContains("7"));
+    private final UserFilter domainScanned = ((UserFilter) user -> user.getEmail().endsWith("@tenant42.example.com"))
+            .and(user -> user.getFullName().toLowerCase().contains("7"));
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData data = BenchmarkData.generate(100_000, 1000, 42);
+        userManager = data.system.getUserManager();
+        assignmentManager = data.system.getAssignmentManager();
+        probes = data.probeUsers;
+    }
+
+    @Benchmark
+    public List<User> emailDomainIndexed() {
+        return userManager.findByFilter(domainIndexed);
+    }
+
+    @Benchmark
+    public List<User> emailDomainScanned() {
+        return userManager.findByFilter(domainScanned);
+    }
+
+    @Benchmark
+    public List<RoleAssignment> userAssignmentsIndexed() {
+        User user = probes[next++ & (BenchmarkData.PROBES - 1)];
+        return assignmentManager.findByFilter(AssignmentFilters.byUser(user).and(AssignmentFilters.activeOnly()));
+    }
+
+    @Benchmark
+    public List<RoleAssignment> userAssignmentsScanned() {
+        User user = probes[next++ & (BenchmarkData.PROBES - 1)];
+        AssignmentFilter filter = assignment -> user.equals(assignment.getUser()) && assignment.isActive();
+        return assignmentManager.findByFilter(filter);
+    }
+}
@@ -0,0 +1,56 @@
+package rbac.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rbac.system.Decision;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of timing permission checks: the same checks with metrics off (one volatile read per
+ * call) and on (two nanoTime calls and a histogram update per call).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MetricsOverheadBenchmark {
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    private BenchmarkData data;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = BenchmarkData.generate(100_000, 1000, 42);
+        if (metrics) {
+            data.system.enableMetrics();
+        }
+    }
+
+    @Benchmark
+    public boolean userHasPermission(AuthorizationBenchmark.Cursor cursor) {
+        int i = cursor.next();
+        return data.system.getAssignmentManager()
+                .userHasPermission(data.probeUsers[i], data.probeNames[i], data.probeResources[i]);
+    }
+
+    @Benchmark
+    public Decision checkPermission(AuthorizationBenchmark.Cursor cursor) {
+        int i = cursor.next();
+        return data.system.checkPermission(data.probeUsers[i].getUsername(), data.probeNames[i], data.probeResources[i]);
+    }
+}
@@ -0,0 +1,94 @@
+package rbac.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import rbac.persistence.Durability;
+import rbac.system.RBACSystem;
+import rbac.user.User;
+import rbac.user.UserManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logged mutations per second for each {@link Durability} mode. Every operation is one user
+ * update (one log record) over a fixed pool of users, so the in-memory state does not grow.
+ * {@code batch} runs {@link #BATCH} updates inside one {@code runBatch}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class MutationLogBenchmark {
+
+    static final int BATCH = 100;
+    private static final int POOL = 256;
+
+    @Param({"PER_OPERATION", "PER_BATCH", "INTERVAL"})
+    public Durability durability;
+
+    private Path directory;
+    private RBACSystem system;
+    private UserManager userManager;
+    private String[] usernames;
+    private long counter;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("rbac-wal-bench");
+        system = new RBACSystem();
+        system.enablePersistence(directory, durability, 100);
+        userManager = system.getUserManager();
+        usernames = new String[POOL];
+        system.runBatch(() -> {
+            for (int i = 0; i < POOL; i++) {
+                usernames[i] = "user_" + i;
+                userManager.add(new User(usernames[i], "User " + i, "user_" + i + "@example.com"));
+            }
+        });
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        system.closePersistence();
+        Files.deleteIfExists(directory.resolve("mutations.log"));
+        Files.deleteIfExists(directory.resolve("state.snapshot"));
+        Files.deleteIfExists(directory);
+    }
+
+    private void update() {
+        long n = counter++;
+        userManager.update(usernames[(int) (n & (POOL - 1))], "User " + n, "user_" + n + "@example.com");
+    }
+
+    @Benchmark
+    public void single() {
+        update();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void batch() {
+        system.runBatch(() -> {
+            for (int i = 0; i < BATCH; i++) {
+                update();
+            }
+        });
+    }
+}
@@ -0,0 +1,27 @@
+package rbac.bench;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/** Channel that counts and discards what is written, so report benchmarks measure no I/O. */
+final class NullChannel implements WritableByteChannel {
+
+    long written;
+
+    @Override
+    public int write(ByteBuffer src) {
+        int n = src.remaining();
+        src.position(src.limit());
+        written += n;
+        return n;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+    }
+}
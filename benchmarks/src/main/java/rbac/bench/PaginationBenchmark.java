@@ -0,0 +1,74 @@
+package rbac.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rbac.sort.Page;
+import rbac.sort.UserSorters;
+import rbac.user.User;
+import rbac.user.UserManager;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One 20-user page from the middle of a 100k-user listing sorted by e-mail: sorting everything and
+ * slicing, as the list command used to, against {@link UserManager#page} on the
+ * e-mail sorted index, and against the bounded-heap selection used for orders without an index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PaginationBenchmark {
+
+    private static final int PAGE = 20;
+
+    private UserManager userManager;
+    // cursors spread over the whole listing
+    private User[] cursors;
+    private int next;
+    // same order as UserSorters.byEmail(), but not recognised as indexable
+    private final Comparator<User> unindexedByEmail = Comparator.comparing(User::getEmail);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData data = BenchmarkData.generate(100_000, 1000, 42);
+        userManager = data.system.getUserManager();
+        cursors = data.probeUsers;
+    }
+
+    @Benchmark
+    public List<User> sortAndSlice() {
+        User after = cursors[next++ & (BenchmarkData.PROBES - 1)];
+        List<User> all = userManager.findAll();
+        all.sort(UserSorters.byEmail());
+        // e-mails are unique in the generated data
+        int from = Collections.binarySearch(all, after, UserSorters.byEmail()) + 1;
+        return all.subList(from, Math.min(all.size(), from + PAGE));
+    }
+
+    @Benchmark
+    public Page<User> sortedIndexPage() {
+        User after = cursors[next++ & (BenchmarkData.PROBES - 1)];
+        return userManager.page(null, UserSorters.byEmail(), after, PAGE);
+    }
+
+    @Benchmark
+    public Page<User> boundedHeapPage() {
+        User after = cursors[next++ & (BenchmarkData.PROBES - 1)];
+        return userManager.page(null, unindexedByEmail, after, PAGE);
+    }
+}
@@ -0,0 +1,58 @@
+package rbac.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rbac.report.ReportFormat;
+import rbac.report.ReportGenerator;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Users x permissions matrix streamed into a discarding channel, so the score is building and
+ * rendering the matrix rather than disk speed. The output grows with users x permission columns,
+ * which is why TEXT, with its fixed-width cells, is left out at 100k users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PermissionMatrixBenchmark {
+
+    @Param({"100000"})
+    public int users;
+
+    @Param({"1000"})
+    public int roles;
+
+    @Param({"CSV", "JSONL"})
+    public ReportFormat format;
+
+    private BenchmarkData data;
+    private final ReportGenerator reports = new ReportGenerator();
+    private final NullChannel sink = new NullChannel();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = BenchmarkData.generate(users, roles, 42);
+    }
+
+    @Benchmark
+    public long writePermissionMatrix() throws IOException {
+        sink.written = 0;
+        reports.writePermissionMatrix(data.system.getUserManager(), data.system.getAssignmentManager(), format, sink);
+        return sink.written;
+    }
+}
@@ -0,0 +1,86 @@
+package rbac.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rbac.report.ReportFormat;
+import rbac.report.ReportGenerator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User report export: building the whole report as a string and encoding it, as exportToFile
+ * did, against streaming it to a channel. Both write into a channel that discards the bytes, so
+ * the gc.alloc.rate.norm column shows the memory each approach needs per report.
+ * {@code streamParallel} formats the same report in chunks on a pool with one thread per core.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ReportStreamBenchmark {
+
+    @Param({"100000"})
+    public int users;
+
+    @Param({"TEXT", "CSV", "JSONL"})
+    public ReportFormat format;
+
+    private BenchmarkData data;
+    private final ReportGenerator reports = new ReportGenerator();
+    private final NullChannel sink = new NullChannel();
+    private ForkJoinPool pool;
+    private ReportGenerator parallelReports;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = BenchmarkData.generate(users, 1000, 42);
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        parallelReports = new ReportGenerator(pool);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public long buildString() throws IOException {
+        // only TEXT has a string form; the other formats are measured through the streaming path
+        if (format != ReportFormat.TEXT) {
+            return stream();
+        }
+        String report = reports.generateUserReport(data.system.getUserManager(), data.system.getAssignmentManager());
+        return sink.write(ByteBuffer.wrap(report.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public long stream() throws IOException {
+        sink.written = 0;
+        reports.writeUserReport(data.system.getUserManager(), data.system.getAssignmentManager(), format, sink);
+        return sink.written;
+    }
+
+    @Benchmark
+    public long streamParallel() throws IOException {
+        sink.written = 0;
+        parallelReports.writeUserReport(data.system.getUserManager(), data.system.getAssignmentManager(), format, sink);
+        return sink.written;
+    }
+}
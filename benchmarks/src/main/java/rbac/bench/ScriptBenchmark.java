@@ -0,0 +1,100 @@
+package rbac.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import rbac.core.CommandParser;
+import rbac.core.CommandRegistry;
+import rbac.system.RBACSystem;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A provisioning script run through {@link CommandParser#runScript}: 50 roles, then {@code users}
+ * {@code user-create} lines, three {@code assign-role} lines per user (every other one temporary)
+ * and one {@code permissions-check} per two users, into a fresh system each time. Output goes to
+ * a buffered null stream, so this is parsing plus the commands' own work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ScriptBenchmark {
+
+    private static final int ROLES = 50;
+    private static final int ASSIGNMENTS_PER_USER = 3;
+
+    @Param({"10000"})
+    public int users;
+
+    private String script;
+    private CommandParser parser;
+    private RBACSystem system;
+
+    @Setup(Level.Trial)
+    public void writeScript() {
+        parser = new CommandParser();
+        CommandRegistry.registerAll(parser);
+        Random random = new Random(42);
+        StringBuilder lines = new StringBuilder();
+        for (int r = 0; r < ROLES; r++) {
+            lines.append("role-create script_role_").append(r).append(" \"Role ").append(r)
+                    .append("\" READ:res").append(r).append(" WRITE:res").append(r).append("/*\n");
+        }
+        for (int i = 0; i < users; i++) {
+            lines.append("user-create u").append(i).append(" \"User ").append(i)
+                    .append("\" u").append(i).append("@example.com\n");
+        }
+        for (int i = 0; i < users; i++) {
+            int base = random.nextInt(ROLES);
+            for (int k = 0; k < ASSIGNMENTS_PER_USER; k++) {
+                // 7 is coprime with ROLES, so the roles are distinct
+                int role = (base + k * 7) % ROLES;
+                lines.append("assign-role u").append(i).append(" script_role_").append(role)
+                        .append(" --reason provisioning")
+                        .append(role % 2 == 0 ? "\n" : " --temporary 2099-01-31\n");
+            }
+        }
+        for (int i = 0; i < users; i += 2) {
+            lines.append("permissions-check u").append(i).append(" READ RES").append(i % ROLES).append('\n');
+        }
+        script = lines.toString();
+    }
+
+    @Setup(Level.Invocation)
+    public void freshSystem() {
+        system = new RBACSystem();
+    }
+
+    @TearDown(Level.Invocation)
+    public void clear() {
+        // role names are unique per JVM; free them for the next run
+        system.getRoleManager().clear();
+        system = null;
+    }
+
+    @Benchmark
+    public CommandParser.ScriptResult run() throws IOException {
+        PrintStream out = new PrintStream(new BufferedOutputStream(OutputStream.nullOutputStream(), 1 << 16), false);
+        return parser.runScript(new BufferedReader(new StringReader(script)), system, out);
+    }
+}
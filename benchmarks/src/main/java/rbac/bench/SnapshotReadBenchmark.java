@@ -0,0 +1,105 @@
+package rbac.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import rbac.assignment.AssignmentManager;
+import rbac.system.RBACSystem;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read throughput of permission checks against the published AuthorizationSnapshot versus the
+ * live managers (concurrent maps plus the per-user permission cache), at 1, 8 and 32 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class SnapshotReadBenchmark {
+
+    @Param({"100000"})
+    public int users;
+
+    @Param({"1000"})
+    public int roles;
+
+    private BenchmarkData data;
+    private RBACSystem system;
+    private AssignmentManager assignmentManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = BenchmarkData.generate(users, roles, 42);
+        system = data.system;
+        assignmentManager = system.getAssignmentManager();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        int next() {
+            return next++ & (BenchmarkData.PROBES - 1);
+        }
+    }
+
+    private boolean snapshotCheck(Cursor cursor) {
+        int i = cursor.next();
+        return system.checkPermission(data.probeUsers[i].getUsername(), data.probeNames[i], data.probeResources[i])
+                .granted();
+    }
+
+    private boolean managerCheck(Cursor cursor) {
+        int i = cursor.next();
+        return assignmentManager.userHasPermission(data.probeUsers[i], data.probeNames[i], data.probeResources[i]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean snapshot_1(Cursor cursor) {
+        return snapshotCheck(cursor);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean snapshot_8(Cursor cursor) {
+        return snapshotCheck(cursor);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public boolean snapshot_32(Cursor cursor) {
+        return snapshotCheck(cursor);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean managers_1(Cursor cursor) {
+        return managerCheck(cursor);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean managers_8(Cursor cursor) {
+        return managerCheck(cursor);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public boolean managers_32(Cursor cursor) {
+        return managerCheck(cursor);
+    }
+}
@@ -0,0 +1,90 @@
+package rbac.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rbac.assignment.AssignmentMetadata;
+import rbac.assignment.PermanentAssignment;
+import rbac.assignment.RoleAssignment;
+import rbac.sort.AssignmentSorters;
+import rbac.sort.SortKey;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorting 100k assignments, spread over three years, by date and by username: the old
+ * comparators, which build a {@link LocalDate} (or walk to the username through the default
+ * getters) on every comparison, against {@link SortKey#sort}, which reads the epoch milliseconds
+ * once per assignment and compares usernames in place. Both copy the list first.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SortKeyBenchmark {
+
+    private static final int ASSIGNMENTS = 100_000;
+
+    private static final Comparator<RoleAssignment> PARSING_BY_DATE = Comparator.comparing(
+            RoleAssignment::getAssignmentDate, Comparator.nullsFirst(Comparator.naturalOrder()));
+    private static final Comparator<RoleAssignment> PARSING_BY_USERNAME = Comparator.comparing(
+            assignment -> assignment.getUser() != null ? assignment.getUser().getUsername() : null,
+            Comparator.nullsFirst(String::compareTo));
+
+    private final List<RoleAssignment> assignments = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData data = BenchmarkData.generate(10_000, 100, 42);
+        Random random = new Random(42);
+        LocalDate start = LocalDate.of(2022, 1, 1);
+        for (int i = 0; i < ASSIGNMENTS; i++) {
+            String at = start.plusDays(random.nextInt(3 * 365)) + " 1" + random.nextInt(10) + ":00";
+            assignments.add(new PermanentAssignment(data.users[random.nextInt(data.users.length)],
+                    data.roles[random.nextInt(data.roles.length)], new AssignmentMetadata("bench", at, "sort")));
+        }
+    }
+
+    @Benchmark
+    public List<RoleAssignment> dateComparator() {
+        List<RoleAssignment> copy = new ArrayList<>(assignments);
+        copy.sort(PARSING_BY_DATE);
+        return copy;
+    }
+
+    @Benchmark
+    public List<RoleAssignment> dateSortKey() {
+        List<RoleAssignment> copy = new ArrayList<>(assignments);
+        SortKey.sort(copy, AssignmentSorters.byAssignmentDate());
+        return copy;
+    }
+
+    @Benchmark
+    public List<RoleAssignment> usernameComparator() {
+        List<RoleAssignment> copy = new ArrayList<>(assignments);
+        copy.sort(PARSING_BY_USERNAME);
+        return copy;
+    }
+
+    @Benchmark
+    public List<RoleAssignment> usernameSortKey() {
+        List<RoleAssignment> copy = new ArrayList<>(assignments);
+        SortKey.sort(copy, AssignmentSorters.byUsername());
+        return copy;
+    }
+}
@@ -0,0 +1,124 @@
+package rbac.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rbac.assignment.AssignmentManager;
+import rbac.assignment.AssignmentMetadata;
+import rbac.assignment.PermanentAssignment;
+import rbac.permission.Permission;
+import rbac.permission.ResourceTrie;
+import rbac.role.Role;
+import rbac.role.RoleManager;
+import rbac.user.User;
+import rbac.user.UserManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One user holding {@code grants} scoped permissions, a mix of exact paths and wildcards, asked
+ * about resources of which about half are covered. Compares testing every grant in turn with
+ * {@link Permission#covers} against the compiled {@link ResourceTrie}, and the full check through
+ * {@link AssignmentManager#userHasPermission}, which uses the trie from its permission cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class WildcardMatchBenchmark {
+
+    private static final int QUERIES = 4096;
+    private static final int ROLES = 10;
+
+    @Param({"10000"})
+    public int grants;
+
+    private final List<Permission> flat = new ArrayList<>();
+    private ResourceTrie trie;
+    private AssignmentManager assignmentManager;
+    private User user;
+    private final String[] names = new String[QUERIES];
+    private final String[] resources = new String[QUERIES];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < grants; i++) {
+            int project = random.nextInt(1000);
+            flat.add(switch (i % 10) {
+                case 0, 1, 2, 3 -> new Permission(i % 2 == 0 ? "READ" : "WRITE",
+                        "PROJECTS/" + project + "/ISSUES/" + i, "issue");
+                case 4, 5, 6, 7 -> new Permission("READ", "PROJECTS/" + project + "/DOCS/" + i + "/*", "docs");
+                case 8 -> new Permission("VIEW", "PROJECTS/" + project + "/*/" + i, "any section");
+                default -> new Permission("*", "TEAMS/" + i + "/*", "team");
+            });
+        }
+        trie = new ResourceTrie();
+        flat.forEach(trie::add);
+
+        UserManager userManager = new UserManager();
+        RoleManager roleManager = new RoleManager();
+        assignmentManager = new AssignmentManager(userManager, roleManager);
+        user = new User("wildcard", "Wildcard User", "wildcard@bench.local");
+        userManager.add(user);
+        for (int r = 0; r < ROLES; r++) {
+            Role role = new Role("wildcard-bench-" + r + "-" + System.nanoTime(), "scoped grants");
+            for (int i = r; i < flat.size(); i += ROLES) {
+                role.addPermission(flat.get(i));
+            }
+            roleManager.add(role);
+            assignmentManager.add(new PermanentAssignment(user, role, AssignmentMetadata.now("bench", "wildcards")));
+        }
+
+        for (int q = 0; q < QUERIES; q++) {
+            Permission grant = flat.get(random.nextInt(flat.size()));
+            boolean covered = random.nextBoolean();
+            String resource = grant.resource().replace("*", "SECTION");
+            if (grant.resource().endsWith("/*")) {
+                resource = resource + "/PAGES/" + random.nextInt(100);
+            }
+            names[q] = grant.name().equals(Permission.WILDCARD) ? "DELETE" : grant.name();
+            // a sibling resource nobody was granted
+            resources[q] = covered ? resource : resource.replaceFirst("/\\d+", "/" + (1000 + random.nextInt(1000)));
+        }
+        assignmentManager.userHasPermission(user, names[0], resources[0]);
+    }
+
+    @Benchmark
+    public boolean flatList() {
+        int q = next++ & (QUERIES - 1);
+        for (Permission p : flat) {
+            if (p.covers(names[q], resources[q])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean trie() {
+        int q = next++ & (QUERIES - 1);
+        return trie.matches(names[q], resources[q]);
+    }
+
+    @Benchmark
+    public boolean userHasPermission() {
+        int q = next++ & (QUERIES - 1);
+        return assignmentManager.userHasPermission(user, names[q], resources[q]);
+    }
+}
@@ -1,10 +1,17 @@
 package rbac;
 
 import rbac.assignment.*;
+import rbac.core.CommandParser;
+import rbac.core.CommandRegistry;
 import rbac.permission.Permission;
 import rbac.role.Role;
+import rbac.system.RBACSystem;
 import rbac.user.User;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
 public class Main {
@@ -15,7 +22,16 @@ public class Main {
 
     public static void main(String[] args) {
 
+        if (args.length > 0 && args[0].equals("--batch")) {
+            runScript(args.length > 1 ? args[1] : "-");
+            return;
+        }
+
         Scanner scanner = new Scanner(System.in);
+        CommandParser parser = new CommandParser();
+        CommandRegistry.registerAll(parser);
+        RBACSystem system = new RBACSystem();
+        system.initialize();
         boolean running = true;
 
         while (running) {
@@ -28,6 +44,7 @@ public class Main {
             System.out.println("5 - Показать роли");
             System.out.println("6 - Результат");
             System.out.println("0 - Выход");
+            System.out.println("или команда, например: assign-role alice Manager --temporary 2026-12-31");
             System.out.print("Choose option: ");
 
             String input = scanner.nextLine();
@@ -152,10 +169,36 @@ running = false;
         System.out.println("Выход...");
                 }
 
-default -> System.out.println("Неверное значение");
+                // anything else is a command line: a bare name prompts for its arguments,
+                // otherwise they are taken from the line
+                default -> parser.parseAndExecute(input, scanner, system);
             }
                     }
 
                     scanner.close();
     }
-            }
\ No newline at end of file
+
+    // --batch [file]: runs the commands of a script file, or of stdin with "-" or no file, without
+    // prompts; output is buffered and the summary goes to stderr
+    private static void runScript(String script) {
+        CommandParser parser = new CommandParser();
+        CommandRegistry.registerAll(parser);
+        RBACSystem system = new RBACSystem();
+        system.initialize();
+        PrintStream out = new PrintStream(new BufferedOutputStream(
+                new FileOutputStream(FileDescriptor.out), 1 << 16), false, StandardCharsets.UTF_8);
+        try (BufferedReader in = script.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16)
+                : Files.newBufferedReader(Path.of(script))) {
+            CommandParser.ScriptResult result = parser.runScript(in, system, out);
+            System.err.println(result.summary());
+            if (result.failed() > 0) {
+                System.exit(1);
+            }
+        } catch (IOException e) {
+            out.flush();
+            System.err.println("Ошибка: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
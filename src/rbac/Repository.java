@@ -2,6 +2,7 @@ package rbac;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface Repository<T> {
 
@@ -17,6 +18,11 @@ public interface Repository<T> {
         return findAll();
     }
 
+    /** Visits every item without copying them into a list first. */
+    default void forEach(Consumer<? super T> action) {
+        findAll().forEach(action);
+    }
+
     int count();
 
     void clear();
@@ -9,12 +9,19 @@ import java.util.UUID;
 public abstract class AbstractRoleAssignment implements RoleAssignment {
 
     private final String assignmentId;
-    private final User user;
-    private final Role role;
+    private volatile User user;
+    private volatile Role role;
     private final AssignmentMetadata metadata;
 
     protected AbstractRoleAssignment(User user, Role role, AssignmentMetadata metadata) {
-        this.assignmentId = "assign_" + UUID.randomUUID();
+        this("assign_" + UUID.randomUUID(), user, role, metadata);
+    }
+
+    protected AbstractRoleAssignment(String assignmentId, User user, Role role, AssignmentMetadata metadata) {
+        if (assignmentId == null || assignmentId.isBlank()) {
+            throw new IllegalArgumentException("assignmentId must be non-blank");
+        }
+        this.assignmentId = assignmentId;
         this.user = user;
         this.role = role;
         this.metadata = metadata;
@@ -40,6 +47,15 @@ public abstract class AbstractRoleAssignment implements RoleAssignment {
         return metadata;
     }
 
+    /**
+     * Points this assignment at the replacement records after a user or role update,
+     * so it keeps following the same account and role. Only {@link AssignmentManager} calls this.
+     */
+    void rebind(User user, Role role) {
+        this.user = user;
+        this.role = role;
+    }
+
     public String summary() {
         return "[%s] %s assigned to %s by %s at %s\n%s\nStatus: %s"
                 .formatted(
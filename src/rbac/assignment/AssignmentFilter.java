@@ -1,117 +1,41 @@
 package rbac.assignment;
 
-import rbac.role.Role;
-import rbac.user.User;
-
-import java.time.LocalDate;
-import java.time.format.DateTimeParseException;
+import rbac.filter.FilterNode;
 
+/**
+ * Test applied by {@link AssignmentManager#findByFilter}. Filters from {@link AssignmentFilters}
+ * and their {@code and}/{@code or} combinations expose their structure through {@link #node()};
+ * a lambda is opaque and always means a full scan.
+ */
 @FunctionalInterface
 public interface AssignmentFilter {
 
     boolean test(RoleAssignment assignment);
 
+    /** This filter as a predicate tree; a lambda is a single condition the planner cannot index. */
+    default FilterNode<RoleAssignment> node() {
+        return FilterNode.opaque(this::test);
+    }
+
     default AssignmentFilter and(AssignmentFilter other) {
         if (other == null) {
             throw new IllegalArgumentException("other filter must not be null");
         }
-        return assignment -> this.test(assignment) && other.test(assignment);
+        return of(FilterNode.all(node(), other.node()));
     }
 
     default AssignmentFilter or(AssignmentFilter other) {
         if (other == null) {
             throw new IllegalArgumentException("other filter must not be null");
         }
-        return assignment -> this.test(assignment) || other.test(assignment);
+        return of(FilterNode.any(node(), other.node()));
     }
-}
-
-final class AssignmentFilters {
 
-    private AssignmentFilters() {
-    }
-
-    static AssignmentFilter byUser(User user) {
-        if (user == null) {
-            throw new IllegalArgumentException("user must not be null");
-        }
-        return assignment -> assignment != null && user.equals(assignment.getUser());
-    }
-
-    static AssignmentFilter byUsername(String username) {
-        String expected = nonNullTrim(username);
-        return assignment -> assignment != null
-                && assignment.getUser() != null
-                && expected.equals(assignment.getUser().getUsername());
-    }
-
-    static AssignmentFilter byRole(Role role) {
-        if (role == null) {
-            throw new IllegalArgumentException("role must not be null");
-        }
-        return assignment -> assignment != null && role.equals(assignment.getRole());
-    }
-
-    static AssignmentFilter byRoleName(String roleName) {
-        String expected = nonNullTrim(roleName);
-        return assignment -> assignment != null
-                && assignment.getRole() != null
-                && expected.equals(assignment.getRole().getName());
-    }
-
-    static AssignmentFilter activeOnly() {
-        return assignment -> assignment != null && assignment.isActive();
-    }
-
-    static AssignmentFilter inactiveOnly() {
-        return assignment -> assignment != null && !assignment.isActive();
-    }
-
-    static AssignmentFilter byType(String type) {
-        String expected = nonNullTrim(type).toUpperCase();
-        return assignment -> {
-            if (assignment == null || assignment.getType() == null) {
-                return false;
-            }
-            return assignment.getType().name().equals(expected);
-        };
-    }
-
-    static AssignmentFilter assignedBy(String username) {
-        String expected = nonNullTrim(username);
-        return assignment -> assignment != null && expected.equals(assignment.getAssignedBy());
-    }
-
-    static AssignmentFilter assignedAfter(String date) {
-        LocalDate threshold = parseDate(date);
-        return assignment -> assignment != null
-                && assignment.getAssignmentDate() != null
-                && assignment.getAssignmentDate().isAfter(threshold);
-    }
-
-    static AssignmentFilter expiringBefore(String date) {
-        LocalDate threshold = parseDate(date);
-        return assignment -> {
-            if (assignment == null || assignment.getExpirationDate() == null) {
-                return false;
-            }
-            return assignment.getExpirationDate().isBefore(threshold);
-        };
-    }
-
-    private static String nonNullTrim(String value) {
-        if (value == null) {
-            throw new IllegalArgumentException("value must not be null");
-        }
-        return value.trim();
-    }
-
-    private static LocalDate parseDate(String date) {
-        try {
-            return LocalDate.parse(nonNullTrim(date));
-        } catch (DateTimeParseException e) {
-            throw new IllegalArgumentException("Date must be in ISO-8601 format yyyy-MM-dd", e);
+    /** Wraps a predicate tree as a filter. */
+    static AssignmentFilter of(FilterNode<RoleAssignment> node) {
+        if (node == null) {
+            throw new IllegalArgumentException("node must not be null");
         }
+        return new AssignmentFilters.Tree(node);
     }
 }
-
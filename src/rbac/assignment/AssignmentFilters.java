@@ -0,0 +1,162 @@
+package rbac.assignment;
+
+import rbac.filter.FilterNode;
+import rbac.role.Role;
+import rbac.user.User;
+import rbac.util.DateUtils;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Filters over assignments. User, role, assigner, assignment date and expiry conditions can use
+ * an index; status and type are tested on the candidates. Dates are turned into epoch millisecond
+ * bounds once, when the filter is built, so testing an assignment compares longs.
+ */
+public final class AssignmentFilters {
+
+    // index names understood by AssignmentManager
+    static final String USERNAME = "username";
+    static final String ROLE = "role";
+    static final String ROLE_NAME = "role-name";
+    static final String ASSIGNED_BY = "assigned-by";
+    static final String ASSIGNED_AT = "assigned-at";
+    static final String EXPIRES_AT = "expires-at";
+
+    private AssignmentFilters() {
+    }
+
+    record Tree(FilterNode<RoleAssignment> node) implements AssignmentFilter {
+
+        @Override
+        public boolean test(RoleAssignment assignment) {
+            return node.test(assignment);
+        }
+    }
+
+    public static AssignmentFilter byUser(User user) {
+        if (user == null) {
+            throw new IllegalArgumentException("user must not be null");
+        }
+        return AssignmentFilter.of(FilterNode.indexed(USERNAME, user.getUsername(), "user = " + user.getUsername(),
+                (RoleAssignment assignment) -> assignment != null && user.equals(assignment.getUser())));
+    }
+
+    public static AssignmentFilter byUsername(String username) {
+        String expected = nonNullTrim(username);
+        return AssignmentFilter.of(FilterNode.indexed(USERNAME, expected, "username = " + expected,
+                (RoleAssignment assignment) -> assignment != null
+                        && assignment.getUser() != null
+                        && expected.equals(assignment.getUser().getUsername())));
+    }
+
+    public static AssignmentFilter byRole(Role role) {
+        if (role == null) {
+            throw new IllegalArgumentException("role must not be null");
+        }
+        return AssignmentFilter.of(FilterNode.indexed(ROLE, role.getId(), "role = " + role.getName(),
+                (RoleAssignment assignment) -> assignment != null && role.equals(assignment.getRole())));
+    }
+
+    public static AssignmentFilter byRoleName(String roleName) {
+        String expected = nonNullTrim(roleName);
+        return AssignmentFilter.of(FilterNode.indexed(ROLE_NAME, expected, "role name = " + expected,
+                (RoleAssignment assignment) -> assignment != null
+                        && assignment.getRole() != null
+                        && expected.equals(assignment.getRole().getName())));
+    }
+
+    public static AssignmentFilter activeOnly() {
+        return AssignmentFilter.of(FilterNode.unindexed("active",
+                (RoleAssignment assignment) -> assignment != null && assignment.isActive()));
+    }
+
+    public static AssignmentFilter inactiveOnly() {
+        return AssignmentFilter.of(FilterNode.unindexed("inactive",
+                (RoleAssignment assignment) -> assignment != null && !assignment.isActive()));
+    }
+
+    public static AssignmentFilter byType(String type) {
+        String expected = nonNullTrim(type).toUpperCase();
+        return AssignmentFilter.of(FilterNode.unindexed("type = " + expected, (RoleAssignment assignment) -> {
+            if (assignment == null || assignment.getType() == null) {
+                return false;
+            }
+            return assignment.getType().name().equals(expected);
+        }));
+    }
+
+    public static AssignmentFilter assignedBy(String username) {
+        String expected = nonNullTrim(username);
+        return AssignmentFilter.of(FilterNode.indexed(ASSIGNED_BY, expected, "assigned by " + expected,
+                (RoleAssignment assignment) -> assignment != null && expected.equals(assignment.getAssignedBy())));
+    }
+
+    /** Assigned on a day after {@code date}. */
+    public static AssignmentFilter assignedAfter(String date) {
+        LocalDate threshold = parseDate(date);
+        return assignedIn(DateUtils.startOfDayMillis(threshold.plusDays(1)), Long.MAX_VALUE,
+                "assigned after " + threshold);
+    }
+
+    /** Assigned on a day from {@code from} to {@code to}, both included. */
+    public static AssignmentFilter assignedBetween(String from, String to) {
+        LocalDate first = parseDate(from);
+        LocalDate last = parseDate(to);
+        return assignedIn(DateUtils.startOfDayMillis(first), DateUtils.startOfDayMillis(last.plusDays(1)) - 1,
+                "assigned " + first + ".." + last);
+    }
+
+    /** Temporary assignments whose deadline falls on a day before {@code date}. */
+    public static AssignmentFilter expiringBefore(String date) {
+        LocalDate threshold = parseDate(date);
+        return expiringIn(Long.MIN_VALUE, DateUtils.startOfDayMillis(threshold) - 1, "expiring before " + threshold);
+    }
+
+    /** Temporary assignments whose deadline falls on a day from {@code from} to {@code to}, both included. */
+    public static AssignmentFilter expiringBetween(String from, String to) {
+        LocalDate first = parseDate(from);
+        LocalDate last = parseDate(to);
+        return expiringIn(DateUtils.startOfDayMillis(first), DateUtils.startOfDayMillis(last.plusDays(1)) - 1,
+                "expiring " + first + ".." + last);
+    }
+
+    // assignment time within [from, to], in epoch milliseconds
+    private static AssignmentFilter assignedIn(long from, long to, String description) {
+        return AssignmentFilter.of(FilterNode.indexed(ASSIGNED_AT, new FilterNode.Range(from, to), description,
+                (RoleAssignment assignment) -> {
+                    if (assignment == null) {
+                        return false;
+                    }
+                    long at = assignment.getAssignedAtMillis();
+                    return at != AssignmentMetadata.NO_TIME && at >= from && at <= to;
+                }));
+    }
+
+    // deadline within [from, to]; assignments that never expire have none
+    private static AssignmentFilter expiringIn(long from, long to, String description) {
+        return AssignmentFilter.of(FilterNode.indexed(EXPIRES_AT, new FilterNode.Range(from, to), description,
+                (RoleAssignment assignment) -> {
+                    if (assignment == null || assignment.getType() != AssignmentType.TEMPORARY) {
+                        return false;
+                    }
+                    long at = assignment.getExpiresAtMillis();
+                    return at >= from && at <= to;
+                }));
+    }
+
+    private static String nonNullTrim(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value must not be null");
+        }
+        return value.trim();
+    }
+
+    private static LocalDate parseDate(String date) {
+        try {
+            return LocalDate.parse(nonNullTrim(date));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Date must be in ISO-8601 format yyyy-MM-dd", e);
+        }
+    }
+}
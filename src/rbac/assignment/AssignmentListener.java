@@ -0,0 +1,31 @@
+package rbac.assignment;
+
+/**
+ * Callback for changes made through {@link AssignmentManager}. All methods are no-ops by default,
+ * so implementations only override the events they care about.
+ */
+public interface AssignmentListener {
+
+    default void assignmentAdded(RoleAssignment assignment) {
+    }
+
+    default void assignmentRemoved(RoleAssignment assignment) {
+    }
+
+    default void assignmentRevoked(RoleAssignment assignment) {
+    }
+
+    default void assignmentExtended(RoleAssignment assignment) {
+    }
+
+    /** A temporary assignment reached its deadline and no longer grants its role. */
+    default void assignmentExpired(RoleAssignment assignment) {
+    }
+
+    /** An auto-renewed temporary assignment reached its deadline and was extended by one term. */
+    default void assignmentRenewed(RoleAssignment assignment) {
+    }
+
+    default void assignmentsCleared() {
+    }
+}
@@ -1,27 +1,80 @@
 package rbac.assignment;
 
 import rbac.Repository;
+import rbac.filter.FilterNode;
+import rbac.filter.IndexSource;
+import rbac.filter.QueryPlan;
+import rbac.filter.QueryPlanner;
+import rbac.metrics.Histogram;
+import rbac.metrics.MetricsRegistry;
 import rbac.permission.Permission;
+import rbac.permission.ResourceTrie;
 import rbac.role.Role;
+import rbac.role.RoleListener;
 import rbac.role.RoleManager;
+import rbac.sort.AssignmentSorters;
+import rbac.sort.Page;
+import rbac.sort.SortKey;
+import rbac.sort.SortedIndex;
+import rbac.sort.TopK;
 import rbac.user.User;
+import rbac.user.UserListener;
 import rbac.user.UserManager;
+import rbac.util.DateUtils;
 
-import java.time.LocalDate;
-import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
 import java.util.Set;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Thread-safe: lookups and permission checks are lock-free, writes are serialized on the manager.
+ * Per-user index buckets are immutable lists replaced on write; per-role buckets are concurrent
+ * sets because popular roles can have very many members. Assignments are also kept sorted in
+ * each {@link AssignmentSorters} order for {@link #page}.
+ */
 public final class AssignmentManager implements Repository<RoleAssignment> {
 
-    private final Map<String, RoleAssignment> assignments = new HashMap<>();
+    private final Map<String, RoleAssignment> assignments = new ConcurrentHashMap<>();
+    // secondary indexes: username -> assignments, role id -> assignments
+    private final Map<String, List<RoleAssignment>> byUsername = new ConcurrentHashMap<>();
+    private final Map<String, Set<RoleAssignment>> byRoleId = new ConcurrentHashMap<>();
+    // for the query planner: assigner -> assignments, and range indexes over epoch milliseconds:
+    // assignment time -> assignments, deadline -> temporary assignments
+    private final Map<String, Set<RoleAssignment>> byAssignedBy = new ConcurrentHashMap<>();
+    private final NavigableMap<Long, Set<RoleAssignment>> byAssignedAt = new ConcurrentSkipListMap<>();
+    private final NavigableMap<Long, Set<RoleAssignment>> byExpiresAt = new ConcurrentSkipListMap<>();
+    private final IndexSource<RoleAssignment> indexes = new Indexes();
+    private final List<SortedIndex<RoleAssignment>> sorted = List.of(
+            new SortedIndex<>(AssignmentSorters.byUsername(), RoleAssignment::getAssignmentId),
+            new SortedIndex<>(AssignmentSorters.byRoleName(), RoleAssignment::getAssignmentId),
+            new SortedIndex<>(AssignmentSorters.byAssignmentDate(), RoleAssignment::getAssignmentId));
+    private final PermissionCache permissionCache = new PermissionCache();
+    private final ExpiryScheduler expiryScheduler = new ExpiryScheduler(this);
+    private final AssignmentStats stats = new AssignmentStats();
+    private final List<AssignmentListener> listeners = new CopyOnWriteArrayList<>();
+    // > 0 while runBulkLoad is active; guarded by this
+    private int bulkDepth;
+    private volatile Histogram addLatency;
+    private volatile Histogram checkLatency;
+    private volatile Histogram batchLatency;
+    // bound once so cache lookups do not allocate a method reference per check
+    private final Function<User, PermissionCache.Entry> permissionEntryBuilder = this::buildPermissionEntry;
     private final UserManager userManager;
     private final RoleManager roleManager;
 
@@ -31,10 +84,88 @@ public final class AssignmentManager implements Repository<RoleAssignment> {
         }
         this.userManager = userManager;
         this.roleManager = roleManager;
+        userManager.addListener(new UserListener() {
+            @Override
+            public void userUpdated(User previous, User current) {
+                rebindUser(previous, current);
+                permissionCache.invalidate(previous.getUsername());
+            }
+
+            @Override
+            public void userRemoved(User user) {
+                permissionCache.invalidate(user.getUsername());
+            }
+
+            @Override
+            public void usersCleared() {
+                permissionCache.invalidateAll();
+            }
+        });
+        roleManager.addListener(new RoleListener() {
+            @Override
+            public void roleUpdated(Role previous, Role current) {
+                rebindRole(previous, current);
+                invalidateRoleMembers(current);
+            }
+
+            @Override
+            public void permissionsChanged(Role role) {
+                invalidateRoleMembers(role);
+            }
+
+            @Override
+            public void inheritedPermissionsChanged(Role role) {
+                invalidateRoleMembers(role);
+            }
+
+            // a removed role grants nothing, so its assignments go with it, as the snapshot's do
+            @Override
+            public void roleRemoved(Role role) {
+                for (RoleAssignment assignment : findByRole(role)) {
+                    remove(assignment);
+                }
+            }
+
+            @Override
+            public void rolesCleared() {
+                clear();
+            }
+        });
+    }
+
+    public void addListener(AssignmentListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener must not be null");
+        }
+        listeners.add(listener);
+    }
+
+    public void removeListener(AssignmentListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Times {@link #add}, {@link #userHasPermission} and the batch checks into {@code metrics};
+     * {@code null} turns the timing off.
+     */
+    public void setMetrics(MetricsRegistry metrics) {
+        if (metrics == null) {
+            addLatency = null;
+            checkLatency = null;
+            batchLatency = null;
+            return;
+        }
+        addLatency = metrics.histogram("rbac_repository_add_seconds", "Time to add one item to a repository",
+                "repository", "assignments");
+        checkLatency = metrics.histogram("rbac_permission_check_seconds", "Time to answer one permission check",
+                "path", "manager");
+        batchLatency = metrics.histogram("rbac_permission_batch_seconds", "Time to answer one batch of permission checks");
     }
 
     @Override
-    public void add(RoleAssignment item) {
+    public synchronized void add(RoleAssignment item) {
+        Histogram latency = addLatency;
+        long start = latency != null ? System.nanoTime() : 0L;
         if (item == null) {
             throw new IllegalArgumentException("assignment must not be null");
         }
@@ -53,23 +184,152 @@ public final class AssignmentManager implements Repository<RoleAssignment> {
             throw new IllegalArgumentException("Role must exist before creating assignment");
         }
 
-        for (RoleAssignment existing : assignments.values()) {
-            if (existing.getUser().equals(user)
-                    && existing.getRole().equals(role)
-                    && existing.isActive()) {
+        if (hasActive(bucket(byUsername, user.getUsername()), user, role)) {
+            throw new IllegalStateException("User already has active assignment for this role");
+        }
+
+        assignments.put(id, item);
+        indexUser(user.getUsername(), item);
+        byRoleId.computeIfAbsent(role.getId(), k -> ConcurrentHashMap.newKeySet()).add(item);
+        indexMetadata(item);
+        refile(item);
+        if (item instanceof TemporaryAssignment temporary) {
+            expiryScheduler.schedule(temporary);
+        }
+        stats.added(item);
+        permissionCache.invalidate(user.getUsername());
+        for (AssignmentListener listener : listeners) {
+            listener.assignmentAdded(item);
+        }
+        if (latency != null) {
+            latency.recordSince(start);
+        }
+    }
+
+    /**
+     * Adds many assignments under one lock, building each user's index bucket once instead of
+     * copying it per item. Everything is validated first, so either all items are added or none.
+     * Listeners still see one {@code assignmentAdded} per item.
+     */
+    public synchronized void addAll(Collection<? extends RoleAssignment> items) {
+        if (items == null) {
+            throw new IllegalArgumentException("assignments must not be null");
+        }
+        Map<String, List<RoleAssignment>> byUser = new HashMap<>();
+        String username = null;
+        Collection<RoleAssignment> existing = null;
+        List<RoleAssignment> pending = null;
+        for (RoleAssignment item : items) {
+            if (item == null) {
+                throw new IllegalArgumentException("assignment must not be null");
+            }
+            requireNonBlank(item.getAssignmentId(), "assignmentId");
+            User user = item.getUser();
+            Role role = item.getRole();
+            if (user == null || !user.getUsername().equals(username) && !userManager.exists(user.getUsername())) {
+                throw new IllegalArgumentException("User must exist before creating assignment");
+            }
+            if (role == null || !roleManager.exists(role.getName())) {
+                throw new IllegalArgumentException("Role must exist before creating assignment");
+            }
+            // callers usually pass each user's assignments together; look the bucket up once per run
+            if (!user.getUsername().equals(username)) {
+                username = user.getUsername();
+                existing = bucket(byUsername, username);
+                pending = byUser.computeIfAbsent(username, k -> new ArrayList<>());
+            }
+            if (hasActive(existing, user, role) || hasActive(pending, user, role)) {
                 throw new IllegalStateException("User already has active assignment for this role");
             }
+            pending.add(item);
+        }
+        // ids are checked by inserting them; on a clash the ones already inserted are taken out again
+        List<RoleAssignment> inserted = new ArrayList<>(items.size());
+        for (RoleAssignment item : items) {
+            if (assignments.putIfAbsent(item.getAssignmentId(), item) != null) {
+                for (RoleAssignment undo : inserted) {
+                    assignments.remove(undo.getAssignmentId(), undo);
+                }
+                throw new IllegalArgumentException("Assignment with id '" + item.getAssignmentId() + "' already exists");
+            }
+            inserted.add(item);
         }
 
-        assignments.put(id, item);
+        for (Map.Entry<String, List<RoleAssignment>> group : byUser.entrySet()) {
+            List<RoleAssignment> added = group.getValue();
+            List<RoleAssignment> current = byUsername.getOrDefault(group.getKey(), List.of());
+            List<RoleAssignment> next = new ArrayList<>(current.size() + added.size());
+            next.addAll(current);
+            next.addAll(added);
+            byUsername.put(group.getKey(), Collections.unmodifiableList(next));
+            for (RoleAssignment item : added) {
+                byRoleId.computeIfAbsent(item.getRole().getId(), k -> ConcurrentHashMap.newKeySet()).add(item);
+                indexMetadata(item);
+                refile(item);
+                if (item instanceof TemporaryAssignment temporary) {
+                    expiryScheduler.schedule(temporary);
+                }
+                stats.added(item);
+            }
+            permissionCache.invalidate(group.getKey());
+        }
+        for (RoleAssignment item : items) {
+            for (AssignmentListener listener : listeners) {
+                listener.assignmentAdded(item);
+            }
+        }
+    }
+
+    /**
+     * Runs a bulk load, typically many {@link #addAll} calls, without keeping the sorted indexes
+     * current, then rebuilds each of them in one pass at the end. Until then sorted pages
+     * ({@link #page}, {@link #top}) may miss assignments changed meanwhile; everything else stays
+     * current. Calls may nest; the outermost one rebuilds.
+     */
+    public void runBulkLoad(Runnable changes) {
+        synchronized (this) {
+            if (bulkDepth++ == 0) {
+                for (SortedIndex<RoleAssignment> index : sorted) {
+                    index.suspend();
+                }
+            }
+        }
+        try {
+            changes.run();
+        } finally {
+            synchronized (this) {
+                if (--bulkDepth == 0) {
+                    for (SortedIndex<RoleAssignment> index : sorted) {
+                        index.rebuild(assignments.values());
+                    }
+                }
+            }
+        }
     }
 
     @Override
-    public boolean remove(RoleAssignment item) {
+    public synchronized boolean remove(RoleAssignment item) {
         if (item == null) {
             return false;
         }
-        return assignments.remove(item.assignmentId(), item);
+        if (!assignments.remove(item.assignmentId(), item)) {
+            return false;
+        }
+        unindexUser(item.getUsername(), item);
+        unindexRole(item.getRole() != null ? item.getRole().getId() : null, item);
+        unindexMetadata(item);
+        for (SortedIndex<RoleAssignment> index : sorted) {
+            index.remove(item);
+        }
+        if (item instanceof TemporaryAssignment) {
+            expiryScheduler.cancelled();
+        }
+        stats.removed(item);
+        permissionCache.invalidate(item.getUsername());
+        for (AssignmentListener listener : listeners) {
+            listener.assignmentRemoved(item);
+        }
+        return true;
     }
 
     @Override
@@ -85,14 +345,46 @@ public final class AssignmentManager implements Repository<RoleAssignment> {
         return new ArrayList<>(assignments.values());
     }
 
+    @Override
+    public void forEach(Consumer<? super RoleAssignment> action) {
+        assignments.values().forEach(action);
+    }
+
     @Override
     public int count() {
         return assignments.size();
     }
 
     @Override
-    public void clear() {
+    public synchronized void clear() {
         assignments.clear();
+        byUsername.clear();
+        byRoleId.clear();
+        byAssignedBy.clear();
+        byAssignedAt.clear();
+        byExpiresAt.clear();
+        for (SortedIndex<RoleAssignment> index : sorted) {
+            index.clear();
+        }
+        expiryScheduler.clear();
+        stats.cleared();
+        permissionCache.invalidateAll();
+        for (AssignmentListener listener : listeners) {
+            listener.assignmentsCleared();
+        }
+    }
+
+    public PermissionCache getPermissionCache() {
+        return permissionCache;
+    }
+
+    public ExpiryScheduler getExpiryScheduler() {
+        return expiryScheduler;
+    }
+
+    /** Live counters; reading them does not scan or copy the assignments. */
+    public AssignmentStats getStats() {
+        return stats;
     }
 
     public List<RoleAssignment> findByUser(User user) {
@@ -100,7 +392,7 @@ public final class AssignmentManager implements Repository<RoleAssignment> {
             return Collections.emptyList();
         }
         List<RoleAssignment> result = new ArrayList<>();
-        for (RoleAssignment assignment : assignments.values()) {
+        for (RoleAssignment assignment : bucket(byUsername, user.getUsername())) {
             if (user.equals(assignment.getUser())) {
                 result.add(assignment);
             }
@@ -113,7 +405,7 @@ public final class AssignmentManager implements Repository<RoleAssignment> {
             return Collections.emptyList();
         }
         List<RoleAssignment> result = new ArrayList<>();
-        for (RoleAssignment assignment : assignments.values()) {
+        for (RoleAssignment assignment : bucket(byRoleId, role.getId())) {
             if (role.equals(assignment.getRole())) {
                 result.add(assignment);
             }
@@ -125,23 +417,70 @@ public final class AssignmentManager implements Repository<RoleAssignment> {
         if (filter == null) {
             return Collections.emptyList();
         }
-        List<RoleAssignment> result = new ArrayList<>();
-        for (RoleAssignment assignment : assignments.values()) {
-            if (filter.test(assignment)) {
-                result.add(assignment);
-            }
+        return plan(filter).execute(assignments.values());
+    }
+
+    /**
+     * How {@link #findByFilter} answers {@code filter}: from the user, role or assigner
+     * index, the assignment time or expiry index, or by scanning all assignments.
+     */
+    public QueryPlan<RoleAssignment> plan(AssignmentFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("filter must not be null");
         }
-        return result;
+        return QueryPlanner.plan(filter.node(), indexes, assignments.size());
     }
 
     public List<RoleAssignment> findAll(AssignmentFilter filter, Comparator<RoleAssignment> sorter) {
         List<RoleAssignment> filtered = findByFilter(filter);
         if (sorter != null) {
-            filtered.sort(sorter);
+            SortKey.sort(filtered, sorter);
         }
         return filtered;
     }
 
+    /**
+     * Up to {@code size} assignments matching {@code filter} (all when {@code null}) that come
+     * after {@code after} in {@code sorter} order, ties broken by id. Pass {@code null} as
+     * {@code after} for the first page and {@link Page#last()} of the previous page after that; a
+     * {@code null} sorter orders by id. {@link AssignmentSorters} orders are walked on a sorted
+     * index unless an index can answer the filter; otherwise the first {@code size} matches are
+     * selected in one pass.
+     */
+    public Page<RoleAssignment> page(AssignmentFilter filter, Comparator<RoleAssignment> sorter,
+                                     RoleAssignment after, int size) {
+        QueryPlan<RoleAssignment> plan = filter != null ? plan(filter) : null;
+        SortedIndex<RoleAssignment> index = sortedIndex(sorter);
+        if (index != null && (plan == null || !plan.usesIndex())) {
+            return index.page(sorter, after, size, filter != null ? filter::test : null);
+        }
+        Comparator<RoleAssignment> order = TopK.totalOrder(sorter, RoleAssignment::getAssignmentId);
+        if (plan != null && plan.usesIndex()) {
+            return TopK.select(plan.execute(List.of()), null, order, after, size);
+        }
+        return TopK.select(assignments.values(), filter != null ? filter::test : null, order, after, size);
+    }
+
+    /** The first {@code k} assignments matching {@code filter} in {@code sorter} order. */
+    public List<RoleAssignment> top(AssignmentFilter filter, Comparator<RoleAssignment> sorter, int k) {
+        return page(filter, sorter, null, k).items();
+    }
+
+    private SortedIndex<RoleAssignment> sortedIndex(Comparator<RoleAssignment> sorter) {
+        for (SortedIndex<RoleAssignment> index : sorted) {
+            if (index.serves(sorter)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    private void refile(RoleAssignment item) {
+        for (SortedIndex<RoleAssignment> index : sorted) {
+            index.add(item);
+        }
+    }
+
     public List<RoleAssignment> getByUser(String username) {
         return findByUser(userManager.findByUsername(username).orElse(null));
     }
@@ -150,10 +489,10 @@ public final class AssignmentManager implements Repository<RoleAssignment> {
         return findByRole(roleManager.findByName(roleName).orElse(null));
     }
 
-    public void deleteAssignmentsForUser(String username) {
+    public synchronized void deleteAssignmentsForUser(String username) {
         User u = userManager.findByUsername(username).orElse(null);
         if (u != null) {
-            for (RoleAssignment a : new ArrayList<>(findByUser(u))) {
+            for (RoleAssignment a : findByUser(u)) {
                 remove(a);
             }
         }
@@ -191,7 +530,7 @@ public final class AssignmentManager implements Repository<RoleAssignment> {
         if (user == null || role == null) {
             return false;
         }
-        for (RoleAssignment assignment : assignments.values()) {
+        for (RoleAssignment assignment : bucket(byUsername, user.getUsername())) {
             if (user.equals(assignment.getUser())
                     && role.equals(assignment.getRole())
                     && assignment.isActive()) {
@@ -201,23 +540,104 @@ public final class AssignmentManager implements Repository<RoleAssignment> {
         return false;
     }
 
+    /** Exact grants and wildcard grants (see {@link Permission}) of the user's active roles both count. */
     public boolean userHasPermission(User user, String permissionName, String resource) {
-        if (user == null) {
-            return false;
+        Histogram latency = checkLatency;
+        if (latency == null) {
+            return checkPermission(user, permissionName, resource);
         }
-        String name = requireNonBlank(permissionName, "permissionName");
-        String res = requireNonBlank(resource, "resource");
-        for (RoleAssignment assignment : assignments.values()) {
-            if (!user.equals(assignment.getUser()) || !assignment.isActive()) {
+        long start = System.nanoTime();
+        boolean granted = checkPermission(user, permissionName, resource);
+        latency.recordSince(start);
+        return granted;
+    }
+
+    /**
+     * Evaluates many checks against one clock reading, resolving each distinct user's effective
+     * permissions once for the whole batch.
+     *
+     * @return bit {@code i} is set if {@code checks.get(i)} is granted
+     */
+    public BitSet checkAll(List<PermissionCheck> checks) {
+        if (checks == null) {
+            throw new IllegalArgumentException("checks must not be null");
+        }
+        Histogram latency = batchLatency;
+        long start = latency != null ? System.nanoTime() : 0L;
+        long now = System.currentTimeMillis();
+        BitSet granted = new BitSet(checks.size());
+        Map<User, PermissionCache.Entry> resolved = new HashMap<>();
+        for (int i = 0; i < checks.size(); i++) {
+            PermissionCheck check = checks.get(i);
+            if (check == null) {
+                throw new IllegalArgumentException("check must not be null");
+            }
+            if (check.user() == null) {
                 continue;
             }
-            for (Permission p : assignment.getRole().getPermissions()) {
-                if (name.equals(p.getName()) && res.equals(p.getResource())) {
-                    return true;
-                }
+            PermissionCache.Entry entry = resolved.computeIfAbsent(check.user(),
+                    u -> permissionCache.get(u, now, permissionEntryBuilder));
+            if (entry.grants(check.permissionName(), check.resource())) {
+                granted.set(i);
             }
         }
-        return false;
+        if (latency != null) {
+            latency.recordSince(start);
+        }
+        return granted;
+    }
+
+    /**
+     * Allocation-free form of {@link #checkAll(List)} for callers that keep their checks in
+     * arrays. Check {@code i} asks whether {@code users[userIndexes[i]]} holds permission
+     * {@code permissionIds[i]}, an id from {@link rbac.permission.PermissionRegistry#idOf}
+     * ({@code -1}, or a {@code null} user, is denied). Consecutive checks for the same user index
+     * share one lookup, so grouping checks by user is cheapest.
+     *
+     * @param granted receives bit {@code i} for check {@code i} ({@code granted[i >>> 6]}); the
+     *                first {@code (count + 63) / 64} words are overwritten
+     */
+    public void checkAll(User[] users, int[] userIndexes, int[] permissionIds, int count, long[] granted) {
+        if (users == null || userIndexes == null || permissionIds == null || granted == null) {
+            throw new IllegalArgumentException("users, userIndexes, permissionIds and granted must not be null");
+        }
+        if (count < 0 || count > userIndexes.length || count > permissionIds.length) {
+            throw new IllegalArgumentException("count must be between 0 and the length of the check arrays");
+        }
+        int words = (count + 63) >>> 6;
+        if (granted.length < words) {
+            throw new IllegalArgumentException("granted must hold at least " + words + " words");
+        }
+        Histogram latency = batchLatency;
+        long start = latency != null ? System.nanoTime() : 0L;
+        long now = System.currentTimeMillis();
+        Arrays.fill(granted, 0, words, 0L);
+        int current = -1;
+        PermissionCache.Entry entry = null;
+        for (int i = 0; i < count; i++) {
+            int index = userIndexes[i];
+            if (index != current) {
+                current = index;
+                User user = users[index];
+                entry = user == null ? null : permissionCache.get(user, now, permissionEntryBuilder);
+            }
+            if (entry != null && entry.grants(permissionIds[i])) {
+                granted[i >>> 6] |= 1L << i;
+            }
+        }
+        if (latency != null) {
+            latency.recordSince(start);
+        }
+    }
+
+    private boolean checkPermission(User user, String permissionName, String resource) {
+        if (user == null) {
+            return false;
+        }
+        String name = requireNonBlank(permissionName, "permissionName");
+        String res = requireNonBlank(resource, "resource");
+        return permissionCache.get(user, System.currentTimeMillis(), permissionEntryBuilder)
+                .grants(name, res);
     }
 
     public Set<Permission> getUserPermissions(User user) {
@@ -225,23 +645,38 @@ public final class AssignmentManager implements Repository<RoleAssignment> {
             return Collections.emptySet();
         }
         Set<Permission> result = new HashSet<>();
-        for (RoleAssignment assignment : assignments.values()) {
+        for (RoleAssignment assignment : bucket(byUsername, user.getUsername())) {
             if (user.equals(assignment.getUser()) && assignment.isActive()) {
-                result.addAll(assignment.getRole().getPermissions());
+                result.addAll(assignment.getRole().getEffectivePermissions());
             }
         }
         return result;
     }
 
-    public void revokeAssignment(String assignmentId) {
+    public synchronized void revokeAssignment(String assignmentId) {
         RoleAssignment assignment = assignments.get(requireNonBlank(assignmentId, "assignmentId"));
         if (assignment == null) {
             throw new IllegalArgumentException("Assignment with id '" + assignmentId + "' not found");
         }
+        boolean wasLive = AssignmentStats.isLive(assignment);
         assignment.revoke();
+        stats.changed(assignment, wasLive);
+        if (assignment instanceof TemporaryAssignment) {
+            expiryScheduler.cancelled();
+        }
+        permissionCache.invalidate(assignment.getUsername());
+        for (AssignmentListener listener : listeners) {
+            listener.assignmentRevoked(assignment);
+        }
     }
 
     public void extendTemporaryAssignment(String assignmentId, String newExpirationDate) {
+        extendTemporaryAssignment(assignmentId,
+                DateUtils.parseMillis(requireNonBlank(newExpirationDate, "newExpirationDate"), "expiresAt"));
+    }
+
+    /** Moves the deadline of a temporary assignment to {@code newExpiresAtMillis}, in epoch milliseconds. */
+    public synchronized void extendTemporaryAssignment(String assignmentId, long newExpiresAtMillis) {
         RoleAssignment assignment = assignments.get(requireNonBlank(assignmentId, "assignmentId"));
         if (assignment == null) {
             throw new IllegalArgumentException("Assignment with id '" + assignmentId + "' not found");
@@ -249,25 +684,289 @@ public final class AssignmentManager implements Repository<RoleAssignment> {
         if (assignment.getType() != AssignmentType.TEMPORARY) {
             throw new IllegalStateException("Only temporary assignments can be extended");
         }
-        assignment.setExpirationDate(parseDate(newExpirationDate));
+        boolean wasLive = AssignmentStats.isLive(assignment);
+        unindexRange(byExpiresAt, assignment.getExpiresAtMillis(), assignment);
+        try {
+            ((TemporaryAssignment) assignment).extend(newExpiresAtMillis);
+        } finally {
+            indexRange(byExpiresAt, assignment.getExpiresAtMillis(), assignment);
+        }
+        stats.changed(assignment, wasLive);
+        expiryScheduler.cancelled();
+        expiryScheduler.schedule((TemporaryAssignment) assignment);
+        permissionCache.invalidate(assignment.getUsername());
+        for (AssignmentListener listener : listeners) {
+            listener.assignmentExtended(assignment);
+        }
     }
 
-    private static String requireNonBlank(String value, String field) {
-        if (value == null || value.trim().isEmpty()) {
-            throw new IllegalArgumentException(field + " must be non-blank");
+    /**
+     * Applies a deadline handed over by the {@link ExpiryScheduler}: renews auto-renewed
+     * assignments by one term, expires the rest. Entries left behind by extend, revoke or
+     * remove are ignored.
+     *
+     * @return whether the assignment changed
+     */
+    synchronized boolean expire(TemporaryAssignment assignment, long deadline, long now) {
+        if (!isPending(assignment, deadline)) {
+            return false;
         }
-        return value.trim();
+        boolean renewed = assignment.isAutoRenew();
+        if (renewed) {
+            unindexRange(byExpiresAt, assignment.getExpiresAtMillis(), assignment);
+            assignment.renew(now);
+            indexRange(byExpiresAt, assignment.getExpiresAtMillis(), assignment);
+            expiryScheduler.schedule(assignment);
+        } else {
+            assignment.markExpired();
+            stats.changed(assignment, true);
+        }
+        permissionCache.invalidate(assignment.getUsername());
+        for (AssignmentListener listener : listeners) {
+            if (renewed) {
+                listener.assignmentRenewed(assignment);
+            } else {
+                listener.assignmentExpired(assignment);
+            }
+        }
+        return true;
+    }
+
+    boolean isPending(TemporaryAssignment assignment, long deadline) {
+        return assignments.get(assignment.assignmentId()) == assignment && assignment.isPending(deadline);
     }
 
-    private static LocalDate parseDate(String date) {
-        if (date == null) {
-            throw new IllegalArgumentException("date must not be null");
+    private PermissionCache.Entry buildPermissionEntry(User user) {
+        BitSet permissionBits = new BitSet();
+        long validUntil = Long.MAX_VALUE;
+        for (RoleAssignment assignment : bucket(byUsername, user.getUsername())) {
+            if (!user.equals(assignment.getUser()) || !assignment.isActive()) {
+                continue;
+            }
+            if (assignment instanceof TemporaryAssignment temporary) {
+                validUntil = Math.min(validUntil, temporary.getActiveUntilMillis());
+            }
+            assignment.getRole().orPermissionsInto(permissionBits);
         }
-        try {
-            return LocalDate.parse(date.trim());
-        } catch (DateTimeParseException e) {
-            throw new IllegalArgumentException("Date must be in ISO-8601 format yyyy-MM-dd", e);
+        return new PermissionCache.Entry(user, permissionBits, ResourceTrie.compile(permissionBits), validUntil);
+    }
+
+    private void invalidateRoleMembers(Role role) {
+        Collection<RoleAssignment> members = bucket(byRoleId, role.getId());
+        if (permissionCache.size() >= members.size()) {
+            for (RoleAssignment assignment : members) {
+                permissionCache.invalidate(assignment.getUsername());
+            }
+            return;
+        }
+        // fewer cached users than role members: walk the cache instead
+        permissionCache.invalidateIf(username -> {
+            for (RoleAssignment assignment : bucket(byUsername, username)) {
+                if (role.equals(assignment.getRole())) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    private synchronized void rebindUser(User previous, User current) {
+        for (RoleAssignment assignment : bucket(byUsername, previous.getUsername())) {
+            if (assignment instanceof AbstractRoleAssignment a && previous.equals(a.user())) {
+                a.rebind(current, a.role());
+            }
+        }
+    }
+
+    private synchronized void rebindRole(Role previous, Role current) {
+        Set<RoleAssignment> moved = byRoleId.get(previous.getId());
+        if (moved == null) {
+            return;
+        }
+        for (RoleAssignment assignment : moved) {
+            if (assignment instanceof AbstractRoleAssignment a) {
+                a.rebind(a.user(), current);
+                // the role may have been renamed
+                refile(a);
+            }
+        }
+        byRoleId.put(current.getId(), moved);
+        byRoleId.remove(previous.getId());
+        stats.roleMoved(previous.getId(), current.getId());
+    }
+
+    private void indexUser(String username, RoleAssignment item) {
+        List<RoleAssignment> current = byUsername.getOrDefault(username, List.of());
+        List<RoleAssignment> next = new ArrayList<>(current.size() + 1);
+        next.addAll(current);
+        next.add(item);
+        byUsername.put(username, Collections.unmodifiableList(next));
+    }
+
+    private void unindexUser(String username, RoleAssignment item) {
+        if (username == null) {
+            return;
+        }
+        List<RoleAssignment> current = byUsername.get(username);
+        if (current == null || !current.contains(item)) {
+            return;
+        }
+        if (current.size() == 1) {
+            byUsername.remove(username);
+            return;
+        }
+        List<RoleAssignment> next = new ArrayList<>(current);
+        next.remove(item);
+        byUsername.put(username, Collections.unmodifiableList(next));
+    }
+
+    private void unindexRole(String roleId, RoleAssignment item) {
+        if (roleId == null) {
+            return;
+        }
+        Set<RoleAssignment> members = byRoleId.get(roleId);
+        if (members != null && members.remove(item) && members.isEmpty()) {
+            byRoleId.remove(roleId);
+        }
+    }
+
+    private void indexMetadata(RoleAssignment item) {
+        String assignedBy = item.getAssignedBy();
+        if (assignedBy != null) {
+            byAssignedBy.computeIfAbsent(assignedBy, k -> ConcurrentHashMap.newKeySet()).add(item);
+        }
+        if (item.getAssignedAtMillis() != AssignmentMetadata.NO_TIME) {
+            indexRange(byAssignedAt, item.getAssignedAtMillis(), item);
+        }
+        if (item.getType() == AssignmentType.TEMPORARY) {
+            indexRange(byExpiresAt, item.getExpiresAtMillis(), item);
+        }
+    }
+
+    private void unindexMetadata(RoleAssignment item) {
+        String assignedBy = item.getAssignedBy();
+        if (assignedBy != null) {
+            Set<RoleAssignment> bucket = byAssignedBy.get(assignedBy);
+            if (bucket != null && bucket.remove(item) && bucket.isEmpty()) {
+                byAssignedBy.remove(assignedBy);
+            }
+        }
+        unindexRange(byAssignedAt, item.getAssignedAtMillis(), item);
+        if (item.getType() == AssignmentType.TEMPORARY) {
+            unindexRange(byExpiresAt, item.getExpiresAtMillis(), item);
+        }
+    }
+
+    private static void indexRange(NavigableMap<Long, Set<RoleAssignment>> index, long key, RoleAssignment item) {
+        index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(item);
+    }
+
+    private static void unindexRange(NavigableMap<Long, Set<RoleAssignment>> index, long key, RoleAssignment item) {
+        Set<RoleAssignment> bucket = index.get(key);
+        if (bucket != null && bucket.remove(item) && bucket.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private final class Indexes implements IndexSource<RoleAssignment> {
+
+        @Override
+        public int estimate(FilterNode.Condition<RoleAssignment> condition, int limit) {
+            return switch (condition.index()) {
+                case AssignmentFilters.USERNAME -> bucket(byUsername, (String) condition.key()).size();
+                case AssignmentFilters.ROLE -> bucket(byRoleId, (String) condition.key()).size();
+                case AssignmentFilters.ASSIGNED_BY -> bucket(byAssignedBy, (String) condition.key()).size();
+                case AssignmentFilters.ROLE_NAME -> sum(roleBuckets((String) condition.key()), limit);
+                case AssignmentFilters.ASSIGNED_AT -> sum(rangeBuckets(byAssignedAt, (FilterNode.Range) condition.key()), limit);
+                case AssignmentFilters.EXPIRES_AT -> sum(rangeBuckets(byExpiresAt, (FilterNode.Range) condition.key()), limit);
+                default -> -1;
+            };
+        }
+
+        @Override
+        public Collection<RoleAssignment> lookup(FilterNode.Condition<RoleAssignment> condition) {
+            return switch (condition.index()) {
+                // user buckets may hold assignments of an earlier user with the same name
+                case AssignmentFilters.USERNAME -> matching(List.of(bucket(byUsername, (String) condition.key())), condition);
+                case AssignmentFilters.ROLE -> matching(List.of(bucket(byRoleId, (String) condition.key())), condition);
+                case AssignmentFilters.ASSIGNED_BY -> bucket(byAssignedBy, (String) condition.key());
+                case AssignmentFilters.ROLE_NAME -> matching(roleBuckets((String) condition.key()), condition);
+                case AssignmentFilters.ASSIGNED_AT -> matching(rangeBuckets(byAssignedAt, (FilterNode.Range) condition.key()), null);
+                case AssignmentFilters.EXPIRES_AT -> matching(rangeBuckets(byExpiresAt, (FilterNode.Range) condition.key()), condition);
+                default -> throw new IllegalArgumentException("Unknown index " + condition.index());
+            };
+        }
+
+        // every member of a role bucket points at the same role, so its first member names it; a
+        // removed role takes its assignments, and with them its bucket, along
+        private List<Collection<RoleAssignment>> roleBuckets(String roleName) {
+            List<Collection<RoleAssignment>> result = new ArrayList<>();
+            for (Set<RoleAssignment> members : byRoleId.values()) {
+                Iterator<RoleAssignment> first = members.iterator();
+                if (first.hasNext() && roleName.equals(first.next().getRoleName())) {
+                    result.add(members);
+                }
+            }
+            return result;
+        }
+
+        private static Collection<? extends Collection<RoleAssignment>> rangeBuckets(
+                NavigableMap<Long, Set<RoleAssignment>> index, FilterNode.Range range) {
+            if (range.from() > range.to()) {
+                return List.of();
+            }
+            return index.subMap(range.from(), true, range.to(), true).values();
+        }
+
+        private static int sum(Collection<? extends Collection<RoleAssignment>> buckets, int limit) {
+            int total = 0;
+            for (Collection<RoleAssignment> bucket : buckets) {
+                total += bucket.size();
+                if (total >= limit) {
+                    break;
+                }
+            }
+            return total;
         }
+
+        private static List<RoleAssignment> matching(Collection<? extends Collection<RoleAssignment>> buckets,
+                                                     FilterNode.Condition<RoleAssignment> condition) {
+            List<RoleAssignment> result = new ArrayList<>();
+            for (Collection<RoleAssignment> bucket : buckets) {
+                for (RoleAssignment assignment : bucket) {
+                    if (condition == null || condition.test(assignment)) {
+                        result.add(assignment);
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    private static boolean hasActive(Collection<RoleAssignment> candidates, User user, Role role) {
+        for (RoleAssignment existing : candidates) {
+            if (existing.getUser().equals(user)
+                    && existing.getRole().equals(role)
+                    && existing.isActive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Collection<RoleAssignment> bucket(Map<String, ? extends Collection<RoleAssignment>> index, String key) {
+        if (key == null) {
+            return Collections.emptyList();
+        }
+        Collection<RoleAssignment> bucket = index.get(key);
+        return bucket != null ? bucket : Collections.emptyList();
+    }
+
+    private static String requireNonBlank(String value, String field) {
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException(field + " must be non-blank");
+        }
+        return value.trim();
     }
 }
 
@@ -1,24 +1,56 @@
 package rbac.assignment;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import rbac.util.DateUtils;
 
+import java.time.LocalDate;
+
+/**
+ * Who made an assignment, when and why. The time is kept as epoch milliseconds, parsed once when
+ * the metadata is created, so date filters, sorts and indexes compare longs; {@link #assignedAt()}
+ * formats it for display.
+ */
 public record AssignmentMetadata(String assignedBy,
-                                 String assignedAt,
+                                 long assignedAtMillis,
                                  String reason) {
 
+    /** {@link #assignedAtMillis()} of metadata that carries no time. */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    /**
+     * @param assignedAt "yyyy-MM-dd HH:mm", or "yyyy-MM-dd" for the start of that day, in the
+     *                   system time zone; {@code null} or blank for no time
+     */
+    public AssignmentMetadata(String assignedBy, String assignedAt, String reason) {
+        this(assignedBy, assignedAt == null || assignedAt.isBlank() ? NO_TIME
+                : DateUtils.parseMillis(assignedAt, "assignedAt"), reason);
+    }
+
+    /** Stamped with the current time, to the minute. */
     public static AssignmentMetadata now(String assignedBy, String reason) {
-        String time = LocalDateTime.now()
-                .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
-        return new AssignmentMetadata(assignedBy, time, reason);
+        long now = System.currentTimeMillis();
+        return new AssignmentMetadata(assignedBy, now - Math.floorMod(now, 60_000L), reason);
+    }
+
+    public boolean hasTime() {
+        return assignedAtMillis != NO_TIME;
+    }
+
+    /** "yyyy-MM-dd HH:mm", or {@code null} without a time. */
+    public String assignedAt() {
+        return hasTime() ? DateUtils.formatMinutes(assignedAtMillis) : null;
+    }
+
+    /** The local day of the assignment, or {@code null} without a time. */
+    public LocalDate assignedDate() {
+        return hasTime() ? DateUtils.toLocalDate(assignedAtMillis) : null;
     }
 
     public String format() {
         return "Assigned by %s at %s%s"
                 .formatted(
                         assignedBy,
-                        assignedAt,
+                        assignedAt(),
                         reason != null ? "\nReason: " + reason : ""
                 );
     }
-}
\ No newline at end of file
+}
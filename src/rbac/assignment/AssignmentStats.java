@@ -0,0 +1,135 @@
+package rbac.assignment;
+
+import rbac.role.Role;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live assignment counters, kept up to date by {@link AssignmentManager} on every add, remove,
+ * revoke, extend and expiry, so reading them is a few field reads. Updates happen under the
+ * manager's lock; reads take no lock and may see the counters of two successive writes mixed.
+ * <p>
+ * "Active" follows the transitions the manager has applied: a temporary assignment whose deadline
+ * has passed stays active here until the {@link ExpiryScheduler} processes the deadline.
+ */
+public final class AssignmentStats {
+
+    // role id -> active assignments of that role
+    private final Map<String, Counter> members = new ConcurrentHashMap<>();
+    private volatile int total;
+    private volatile int active;
+    private volatile int temporary;
+
+    AssignmentStats() {
+    }
+
+    public int total() {
+        return total;
+    }
+
+    public int active() {
+        return active;
+    }
+
+    /** Assignments that no longer grant their role: revoked or expired. */
+    public int inactive() {
+        return total - active;
+    }
+
+    public int temporary() {
+        return temporary;
+    }
+
+    public int permanent() {
+        return total - temporary;
+    }
+
+    /** Users holding {@code role} through an active assignment. */
+    public int members(Role role) {
+        if (role == null) {
+            return 0;
+        }
+        Counter counter = members.get(role.getId());
+        return counter != null ? counter.value : 0;
+    }
+
+    // the methods below are called by AssignmentManager under its lock
+
+    void added(RoleAssignment assignment) {
+        total++;
+        if (assignment instanceof TemporaryAssignment) {
+            temporary++;
+        }
+        if (isLive(assignment)) {
+            activated(assignment);
+        }
+    }
+
+    void removed(RoleAssignment assignment) {
+        total--;
+        if (assignment instanceof TemporaryAssignment) {
+            temporary--;
+        }
+        if (isLive(assignment)) {
+            deactivated(assignment);
+        }
+    }
+
+    /** Records a revoke, extend or expiry of {@code assignment}, which was live if {@code wasLive}. */
+    void changed(RoleAssignment assignment, boolean wasLive) {
+        boolean live = isLive(assignment);
+        if (live && !wasLive) {
+            activated(assignment);
+        } else if (!live && wasLive) {
+            deactivated(assignment);
+        }
+    }
+
+    void roleMoved(String previousId, String currentId) {
+        Counter counter = members.remove(previousId);
+        if (counter != null) {
+            members.put(currentId, counter);
+        }
+    }
+
+    void cleared() {
+        members.clear();
+        total = 0;
+        active = 0;
+        temporary = 0;
+    }
+
+    /**
+     * Whether the manager has not yet revoked or expired {@code assignment}. Unlike
+     * {@link RoleAssignment#isActive()} this ignores the clock until the deadline is processed.
+     */
+    static boolean isLive(RoleAssignment assignment) {
+        if (assignment instanceof TemporaryAssignment temporary) {
+            return temporary.getActiveUntilMillis() != Long.MIN_VALUE;
+        }
+        return assignment.isActive();
+    }
+
+    private void activated(RoleAssignment assignment) {
+        active++;
+        if (assignment.getRole() != null) {
+            members.computeIfAbsent(assignment.getRole().getId(), k -> new Counter()).value++;
+        }
+    }
+
+    private void deactivated(RoleAssignment assignment) {
+        active--;
+        if (assignment.getRole() == null) {
+            return;
+        }
+        Counter counter = members.get(assignment.getRole().getId());
+        if (counter != null && --counter.value == 0) {
+            members.remove(assignment.getRole().getId());
+        }
+    }
+
+    private static final class Counter {
+        volatile int value;
+    }
+}
@@ -0,0 +1,200 @@
+package rbac.assignment;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Deadline queue for the temporary assignments of one {@link AssignmentManager}. Each
+ * {@link #tick(long)} hands every due assignment back to the manager, which expires or renews it.
+ * <p>
+ * Entries are never removed in place: extending, removing or revoking an assignment just leaves
+ * its old entry behind, and the manager ignores entries whose deadline no longer matches. Stale
+ * entries are compacted once they make up half of the queue.
+ * <p>
+ * The queue is a binary min-heap over two parallel arrays, so the entries due at some time form a
+ * subtree at the root and {@link #overdue(long)} visits only those.
+ */
+public final class ExpiryScheduler {
+
+    private record Deadline(long at, TemporaryAssignment assignment) {
+    }
+
+    private final AssignmentManager manager;
+    // heap order on deadlines: deadlines[i] <= deadlines[2i + 1], deadlines[2i + 2]
+    private long[] deadlines = new long[16];
+    private TemporaryAssignment[] entries = new TemporaryAssignment[16];
+    private int size;
+    private int stale;
+    private ScheduledExecutorService executor;
+    private volatile Consumer<Exception> failureHandler = e -> {
+    };
+
+    ExpiryScheduler(AssignmentManager manager) {
+        this.manager = manager;
+    }
+
+    synchronized void schedule(TemporaryAssignment assignment) {
+        if (size == deadlines.length) {
+            deadlines = Arrays.copyOf(deadlines, size * 2);
+            entries = Arrays.copyOf(entries, size * 2);
+        }
+        siftUp(size++, assignment.getExpiresAtMillis(), assignment);
+    }
+
+    synchronized void cancelled() {
+        if (++stale > 64 && stale > size / 2) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (manager.isPending(entries[i], deadlines[i])) {
+                    deadlines[kept] = deadlines[i];
+                    entries[kept++] = entries[i];
+                }
+            }
+            Arrays.fill(entries, kept, size, null);
+            size = kept;
+            for (int i = (size >>> 1) - 1; i >= 0; i--) {
+                siftDown(i, deadlines[i], entries[i]);
+            }
+            stale = 0;
+        }
+    }
+
+    synchronized void clear() {
+        Arrays.fill(entries, 0, size, null);
+        size = 0;
+        stale = 0;
+    }
+
+    /**
+     * Processes every deadline at or before {@code now}.
+     *
+     * @return number of assignments that expired or were renewed
+     */
+    public int tick(long now) {
+        int processed = 0;
+        Deadline due;
+        while ((due = pollDue(now)) != null) {
+            // called without holding the queue lock: the manager may reschedule renewed entries
+            if (manager.expire(due.assignment(), due.at(), now)) {
+                processed++;
+            }
+        }
+        return processed;
+    }
+
+    /** Starts a daemon thread that calls {@link #tick(long)} at a fixed rate. */
+    public synchronized void start(long period, TimeUnit unit) {
+        if (period <= 0 || unit == null) {
+            throw new IllegalArgumentException("period must be positive");
+        }
+        if (executor != null) {
+            throw new IllegalStateException("Expiry scheduler is already running");
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rbac-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(() -> {
+            try {
+                tick(System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                // a failing listener must not cancel the periodic task
+                failureHandler.accept(e);
+            }
+        }, 0, period, unit);
+    }
+
+    /** Receives what a tick of the {@link #start} task threw; until set, failures are dropped. */
+    public void setFailureHandler(Consumer<Exception> handler) {
+        if (handler == null) {
+            throw new IllegalArgumentException("handler must not be null");
+        }
+        failureHandler = handler;
+    }
+
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return executor != null;
+    }
+
+    public synchronized int pending() {
+        return size;
+    }
+
+    /**
+     * Assignments past their deadline at {@code now} that no tick has expired yet, so
+     * {@link AssignmentStats} still counts them active. Auto-renewing ones are not counted: a tick
+     * renews them. Only reads the queue, and only its entries due before {@code now}: with the
+     * scheduler running that is at most one period's worth, nothing when it is caught up.
+     */
+    public synchronized int overdue(long now) {
+        return overdue(0, now);
+    }
+
+    // entries below a deadline at or after now are no earlier, so the walk stops there
+    private int overdue(int i, long now) {
+        if (i >= size || deadlines[i] >= now) {
+            return 0;
+        }
+        TemporaryAssignment assignment = entries[i];
+        int count = !assignment.isAutoRenew() && manager.isPending(assignment, deadlines[i]) ? 1 : 0;
+        return count + overdue(2 * i + 1, now) + overdue(2 * i + 2, now);
+    }
+
+    private synchronized Deadline pollDue(long now) {
+        if (size == 0 || deadlines[0] > now) {
+            return null;
+        }
+        Deadline head = new Deadline(deadlines[0], entries[0]);
+        int last = --size;
+        long at = deadlines[last];
+        TemporaryAssignment assignment = entries[last];
+        entries[last] = null;
+        if (last > 0) {
+            siftDown(0, at, assignment);
+        }
+        return head;
+    }
+
+    private void siftUp(int i, long at, TemporaryAssignment assignment) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (deadlines[parent] <= at) {
+                break;
+            }
+            deadlines[i] = deadlines[parent];
+            entries[i] = entries[parent];
+            i = parent;
+        }
+        deadlines[i] = at;
+        entries[i] = assignment;
+    }
+
+    private void siftDown(int i, long at, TemporaryAssignment assignment) {
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && deadlines[child + 1] < deadlines[child]) {
+                child++;
+            }
+            if (at <= deadlines[child]) {
+                break;
+            }
+            deadlines[i] = deadlines[child];
+            entries[i] = entries[child];
+            i = child;
+        }
+        deadlines[i] = at;
+        entries[i] = assignment;
+    }
+}
@@ -5,12 +5,17 @@ import rbac.user.User;
 
 public class PermanentAssignment extends AbstractRoleAssignment {
 
-    private boolean revoked = false;
+    private volatile boolean revoked = false;
 
     public PermanentAssignment(User user, Role role, AssignmentMetadata metadata) {
         super(user, role, metadata);
     }
 
+    /** Restores an assignment under a known id, e.g. when loading persisted state. */
+    public PermanentAssignment(String assignmentId, User user, Role role, AssignmentMetadata metadata) {
+        super(assignmentId, user, role, metadata);
+    }
+
     @Override
     public void revoke() {
         revoked = true;
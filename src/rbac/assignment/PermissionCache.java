@@ -0,0 +1,124 @@
+package rbac.assignment;
+
+import rbac.permission.PermissionRegistry;
+import rbac.permission.ResourceTrie;
+import rbac.user.User;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Materialized effective permissions per user, built lazily by {@link AssignmentManager}
+ * and dropped whenever something that feeds a user's permissions changes.
+ * <p>
+ * Hits are a lock-free map read. Misses build the entry inside {@code compute}, which holds the
+ * map bin for that user, so an invalidation issued after a concurrent write always waits for an
+ * in-flight build and then removes it; a stale entry can never outlive the write that made it stale.
+ */
+public final class PermissionCache {
+
+    /**
+     * Permissions granted to one user as the union of its active roles' permission bits.
+     * {@code wildcards} holds the wildcard grants among them compiled into a trie, or is
+     * {@code null} when there are none; exact grants never need it. {@code validUntil} is the
+     * earliest expiration among the temporary assignments used to build the entry; once it
+     * passes the entry is rebuilt.
+     */
+    record Entry(User user, BitSet permissionBits, ResourceTrie wildcards, long validUntil) {
+
+        boolean grants(String permissionName, String resource) {
+            int permissionId = PermissionRegistry.idOf(permissionName, resource);
+            if (permissionId >= 0 && permissionBits.get(permissionId)) {
+                return true;
+            }
+            return wildcards != null && wildcards.matches(permissionName, resource);
+        }
+
+        boolean grants(int permissionId) {
+            if (permissionId < 0) {
+                return false;
+            }
+            if (permissionBits.get(permissionId)) {
+                return true;
+            }
+            return wildcards != null && wildcards.matches(PermissionRegistry.nameOf(permissionId),
+                    PermissionRegistry.resourceOf(permissionId));
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final AtomicLong sweeps = new AtomicLong();
+
+    Entry get(User user, long now, Function<User, Entry> builder) {
+        Entry entry = entries.get(user.getUsername());
+        if (isUsable(entry, user, now)) {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        long sweep = sweeps.get();
+        Entry built = entries.compute(user.getUsername(),
+                (username, current) -> current != entry && isUsable(current, user, now) ? current : builder.apply(user));
+        if (sweeps.get() != sweep) {
+            // a sweep does not see entries still being computed, so it may have skipped this one
+            entries.remove(user.getUsername(), built);
+        }
+        return built;
+    }
+
+    private static boolean isUsable(Entry entry, User user, long now) {
+        return entry != null && now <= entry.validUntil() && entry.user().equals(user);
+    }
+
+    void invalidate(String username) {
+        if (username != null && entries.remove(username) != null) {
+            invalidations.increment();
+        }
+    }
+
+    void invalidateAll() {
+        invalidateIf(username -> true);
+    }
+
+    /**
+     * Drops every cached user matching {@code test}. Cheaper than per-user invalidation when
+     * only a few of the affected users are cached.
+     */
+    void invalidateIf(Predicate<String> test) {
+        sweeps.incrementAndGet();
+        for (String username : entries.keySet()) {
+            if (test.test(username)) {
+                invalidate(username);
+            }
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long invalidations() {
+        return invalidations.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public String format() {
+        return "hits=%d, misses=%d, invalidations=%d, entries=%d"
+                .formatted(hits(), misses(), invalidations(), size());
+    }
+}
@@ -0,0 +1,22 @@
+package rbac.assignment;
+
+import rbac.user.User;
+
+/**
+ * One question for {@link AssignmentManager#checkAll(java.util.List)}: does {@code user} hold
+ * {@code permissionName} on {@code resource}. A {@code null} user is simply denied.
+ */
+public record PermissionCheck(User user, String permissionName, String resource) {
+
+    public PermissionCheck {
+        permissionName = requireNonBlank(permissionName, "permissionName");
+        resource = requireNonBlank(resource, "resource");
+    }
+
+    private static String requireNonBlank(String value, String field) {
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException(field + " must be non-blank");
+        }
+        return value.trim();
+    }
+}
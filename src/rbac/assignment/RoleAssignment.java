@@ -17,14 +17,12 @@ public interface RoleAssignment {
     default User getUser() { return user(); }
     default Role getRole() { return role(); }
     default String getAssignedBy() { return metadata() != null ? metadata().assignedBy() : null; }
-    default LocalDate getAssignmentDate() {
-        if (metadata() == null || metadata().assignedAt() == null) return null;
-        try {
-            String s = metadata().assignedAt();
-            return s.length() >= 10 ? LocalDate.parse(s.substring(0, 10)) : null;
-        } catch (Exception e) { return null; }
-    }
+    default LocalDate getAssignmentDate() { return metadata() != null ? metadata().assignedDate() : null; }
+    /** Epoch milliseconds, or {@link AssignmentMetadata#NO_TIME}; compare this rather than formatted dates. */
+    default long getAssignedAtMillis() { return metadata() != null ? metadata().assignedAtMillis() : AssignmentMetadata.NO_TIME; }
     default LocalDate getExpirationDate() { return null; }
+    /** Epoch milliseconds of the deadline; {@code Long.MAX_VALUE} when the assignment does not expire. */
+    default long getExpiresAtMillis() { return Long.MAX_VALUE; }
     default AssignmentType getType() {
         return "TEMPORARY".equals(assignmentType()) ? AssignmentType.TEMPORARY : AssignmentType.PERMANENT;
     }
@@ -36,5 +34,4 @@ public interface RoleAssignment {
     default String getAssignedAt() { return metadata() != null ? metadata().assignedAt() : null; }
     default String getExpiresAt() { return null; }
     default void revoke() {}
-    default void setExpirationDate(java.time.LocalDate date) {}
 }
@@ -2,27 +2,59 @@ package rbac.assignment;
 
 import rbac.role.Role;
 import rbac.user.User;
+import rbac.util.DateUtils;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 
+/**
+ * Role assignment with a deadline. The deadline is kept only as epoch milliseconds, so
+ * {@link #isActive()} is a couple of field reads; {@link #getExpiresAt()} formats it for display.
+ * {@link ExpiryScheduler} marks the assignment expired at the deadline, or rolls it forward by its
+ * original term when auto-renew is set.
+ */
 public class TemporaryAssignment extends AbstractRoleAssignment {
 
-    private String expiresAt;
-    private boolean autoRenew;
+    private static final long MIN_TERM_MILLIS = 24L * 60 * 60 * 1000;
+
+    private volatile long expiresAtMillis;
+    private volatile boolean expired;
+    private volatile boolean revoked;
+    private final boolean autoRenew;
+    // length of one renewal period: from assignment to the original deadline
+    private final long termMillis;
 
     public TemporaryAssignment(User user, Role role,
                                AssignmentMetadata metadata,
                                String expiresAt,
                                boolean autoRenew) {
         super(user, role, metadata);
-        this.expiresAt = expiresAt;
+        this.expiresAtMillis = DateUtils.parseMillis(expiresAt, "expiresAt");
+        this.autoRenew = autoRenew;
+        this.termMillis = termMillis(metadata, expiresAtMillis);
+    }
+
+    /** Restores an assignment under a known id, e.g. when loading persisted state. */
+    public TemporaryAssignment(String assignmentId, User user, Role role,
+                               AssignmentMetadata metadata,
+                               String expiresAt,
+                               boolean autoRenew) {
+        this(assignmentId, user, role, metadata, DateUtils.parseMillis(expiresAt, "expiresAt"), autoRenew);
+    }
+
+    /** Restores an assignment under a known id with its deadline in epoch milliseconds. */
+    public TemporaryAssignment(String assignmentId, User user, Role role,
+                               AssignmentMetadata metadata,
+                               long expiresAtMillis,
+                               boolean autoRenew) {
+        super(assignmentId, user, role, metadata);
+        this.expiresAtMillis = expiresAtMillis;
         this.autoRenew = autoRenew;
+        this.termMillis = termMillis(metadata, expiresAtMillis);
     }
 
     @Override
     public boolean isActive() {
-        return !isExpired();
+        return !revoked && !isExpired();
     }
 
     @Override
@@ -30,37 +62,95 @@ public class TemporaryAssignment extends AbstractRoleAssignment {
         return "TEMPORARY";
     }
 
+    /**
+     * An auto-renewed assignment never counts as expired by the clock alone; it only lapses
+     * when revoked.
+     */
     public boolean isExpired() {
-        LocalDateTime exp = LocalDateTime.parse(expiresAt.replace(" ", "T"));
-        return LocalDateTime.now().isAfter(exp);
+        return expired || (!autoRenew && System.currentTimeMillis() > expiresAtMillis);
+    }
+
+    @Override
+    public void revoke() {
+        revoked = true;
+    }
+
+    public boolean isRevoked() {
+        return revoked;
     }
 
-    public void extend(String newExpirationDate) {
-        this.expiresAt = newExpirationDate;
+    public boolean isAutoRenew() {
+        return autoRenew;
+    }
+
+    /** Expiration moment in epoch milliseconds. */
+    @Override
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    /**
+     * Last moment this assignment grants its role if nothing changes: the deadline, or
+     * {@code Long.MAX_VALUE} while it is auto-renewed.
+     */
+    public long getActiveUntilMillis() {
+        if (revoked || expired) {
+            return Long.MIN_VALUE;
+        }
+        return autoRenew ? Long.MAX_VALUE : expiresAtMillis;
+    }
+
+    /**
+     * Called by {@link AssignmentManager#extendTemporaryAssignment}, which also moves the
+     * assignment's index entry, scheduler entry, counters and cached permissions with it.
+     */
+    void extend(long newExpiresAtMillis) {
+        this.expiresAtMillis = newExpiresAtMillis;
+        this.expired = false;
+    }
+
+    /** Whether the scheduler entry for {@code deadline} still applies to this assignment. */
+    boolean isPending(long deadline) {
+        return !revoked && !expired && expiresAtMillis == deadline;
+    }
+
+    /** Called by {@link ExpiryScheduler} once the deadline has passed. */
+    void markExpired() {
+        expired = true;
+    }
+
+    /** Moves the deadline forward by whole terms until it lies after {@code now}. */
+    void renew(long now) {
+        long next = expiresAtMillis;
+        if (next <= now) {
+            next += ((now - next) / termMillis + 1) * termMillis;
+        }
+        this.expiresAtMillis = next;
     }
 
     public String getTimeRemaining() {
-        return "Expires at " + expiresAt;
+        return "Expires at " + getExpiresAt();
     }
 
     @Override
     public String summary() {
-        return super.summary() + "\nExpiration: " + expiresAt;
+        return super.summary() + "\nExpiration: " + getExpiresAt() + (autoRenew ? " (auto-renew)" : "");
     }
 
     @Override
     public LocalDate getExpirationDate() {
-        if (expiresAt == null) return null;
-        try {
-            return LocalDate.parse(expiresAt.substring(0, Math.min(10, expiresAt.length())));
-        } catch (Exception e) { return null; }
+        return DateUtils.toLocalDate(expiresAtMillis);
     }
 
+    /** The deadline as "yyyy-MM-dd HH:mm". */
     @Override
-    public String getExpiresAt() { return expiresAt; }
+    public String getExpiresAt() {
+        return DateUtils.formatMinutes(expiresAtMillis);
+    }
 
-    @Override
-    public void setExpirationDate(LocalDate date) {
-        this.expiresAt = date != null ? date.toString() : null;
+    // assignedAt -> deadline, so the term is the same every time the assignment is loaded
+    private static long termMillis(AssignmentMetadata metadata, long expiresAtMillis) {
+        long from = metadata != null && metadata.hasTime() ? metadata.assignedAtMillis() : System.currentTimeMillis();
+        return Math.max(MIN_TERM_MILLIS, expiresAtMillis - from);
     }
-}
\ No newline at end of file
+}
@@ -2,52 +2,138 @@ package rbac.audit;
 
 import rbac.util.DateUtils;
 
-import java.io.FileWriter;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * Audit trail. {@link #log} stamps the entry, hands it to the attached {@link AuditWriter} (if
+ * any) and stores it in a fixed-size window of recent entries. With an {@link AuditStore}
+ * attached the entry is also indexed there, and the query methods use the store's indexes
+ * instead of scanning the window.
+ */
 public class AuditLog {
 
     public record AuditEntry(
-            String timestamp,
+            long timeMillis,
             String action,
             String performer,
             String target,
             String details
     ) {
+
+        /** Local time as {@code yyyy-MM-dd HH:mm:ss}. */
+        public String timestamp() {
+            return formatTime(timeMillis);
+        }
+    }
+
+    public static final int DEFAULT_RETAINED = 1 << 14;
+
+    private record Slot(long sequence, AuditEntry entry) {
+    }
+
+    private record Stamp(long second, String text) {
+    }
+
+    // consecutive entries mostly fall in the same second, so the last formatted second is reused
+    private static volatile Stamp stamp = new Stamp(Long.MIN_VALUE, "");
+
+    private final AtomicReferenceArray<Slot> recent;
+    private final int mask;
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile AuditWriter writer;
+    private volatile AuditStore store;
+    private long savedThrough; // guarded by this
+
+    public AuditLog() {
+        this(DEFAULT_RETAINED);
     }
 
-    private final List<AuditEntry> entries = new ArrayList<>();
+    /** @param retained how many recent entries the query methods can see; rounded up to a power of two */
+    public AuditLog(int retained) {
+        if (retained <= 0 || retained > 1 << 30) {
+            throw new IllegalArgumentException("retained must be between 1 and 2^30");
+        }
+        int capacity = retained == 1 ? 1 : Integer.highestOneBit(retained - 1) << 1;
+        this.recent = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
 
     public void log(String action, String performer, String target, String details) {
-        entries.add(new AuditEntry(
-                DateUtils.getCurrentDateTime(),
-                action,
-                performer,
-                target,
-                details
-        ));
+        AuditEntry entry = new AuditEntry(System.currentTimeMillis(), action, performer, target, details);
+        AuditWriter w = writer;
+        if (w != null) {
+            w.offer(entry);
+        }
+        AuditStore s = store;
+        if (s != null) {
+            s.append(entry);
+        }
+        long seq = sequence.getAndIncrement();
+        recent.set((int) seq & mask, new Slot(seq, entry));
+    }
+
+    /** Sends every later entry to {@code writer} as well; {@code null} detaches the current one. */
+    public void setWriter(AuditWriter writer) {
+        this.writer = writer;
+    }
+
+    public AuditWriter getWriter() {
+        return writer;
+    }
+
+    /** Indexes every later entry in {@code store}; {@code null} detaches the current one. */
+    public void setStore(AuditStore store) {
+        this.store = store;
+    }
+
+    public AuditStore getStore() {
+        return store;
+    }
+
+    /** Number of entries logged so far, including those no longer retained. */
+    public long count() {
+        return sequence.get();
     }
 
+    /** The retained entries, oldest first. */
     public List<AuditEntry> getAll() {
-        return List.copyOf(entries);
+        return List.copyOf(since(0));
     }
 
     public List<AuditEntry> getByPerformer(String performer) {
-        return entries.stream()
-                .filter(e -> e.performer().equalsIgnoreCase(performer))
-                .collect(Collectors.toList());
+        return performer == null ? List.of() : query(AuditQuery.any().byPerformer(performer));
     }
 
     public List<AuditEntry> getByAction(String action) {
-        return entries.stream()
-                .filter(e -> e.action().equalsIgnoreCase(action))
-                .collect(Collectors.toList());
+        return action == null ? List.of() : query(AuditQuery.any().byAction(action));
+    }
+
+    /** Matching entries, oldest first: from the store if one is attached, else from the window. */
+    public List<AuditEntry> query(AuditQuery query) {
+        AuditStore s = store;
+        if (s != null) {
+            return s.query(query);
+        }
+        List<AuditEntry> result = new ArrayList<>();
+        for (AuditEntry e : since(0)) {
+            if (query.matches(e)) {
+                result.add(e);
+            }
+        }
+        return result;
     }
 
     public void printLog() {
+        List<AuditEntry> entries = since(0);
         if (entries.isEmpty()) {
             System.out.println("Audit log is empty.");
             return;
@@ -58,15 +144,84 @@ public class AuditLog {
         }
     }
 
-    public void saveToFile(String filename) {
-        try (FileWriter fw = new FileWriter(filename, true)) {
+    /**
+     * Appends the entries logged since the previous save to {@code filename}, so saving
+     * repeatedly never writes an entry twice. Only the retained window is kept in memory: entries
+     * that fell out of it before this save are not written, and an {@code AUDIT_GAP} line with
+     * their number takes their place. Attach an {@link AuditWriter} to keep every entry.
+     *
+     * @return how many entries were lost that way, 0 if none
+     */
+    public synchronized long saveToFile(String filename) {
+        long end = sequence.get();
+        long start = Math.max(savedThrough, end - recent.length());
+        List<AuditEntry> entries = new ArrayList<>((int) Math.max(0, end - start));
+        long skipped = start - savedThrough;
+        for (long seq = start; seq < end; seq++) {
+            Slot slot = recent.get((int) seq & mask);
+            if (slot == null || slot.sequence() < seq) {
+                // claimed by a log call still in progress; the next save starts here
+                end = seq;
+                break;
+            }
+            if (slot.sequence() == seq) {
+                entries.add(slot.entry());
+            } else {
+                skipped++;
+            }
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(Path.of(filename), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            StringBuilder line = new StringBuilder(128);
+            if (skipped > 0) {
+                appendLine(line, new AuditEntry(System.currentTimeMillis(), "AUDIT_GAP", "system", filename,
+                        skipped + " entries were no longer retained and are missing here"));
+                out.append(line);
+            }
             for (AuditEntry e : entries) {
-                fw.write(String.format("%s;%s;%s;%s;%s%n",
-                        e.timestamp(), e.action(), e.performer(), e.target(), e.details()));
+                line.setLength(0);
+                appendLine(line, e);
+                out.append(line);
             }
+            savedThrough = end;
         } catch (IOException ex) {
             System.out.println("Failed to save audit log: " + ex.getMessage());
+            return 0;
         }
+        return skipped;
+    }
+
+    /** Formats one entry as {@code timestamp;action;performer;target;details} plus a line separator. */
+    static void appendLine(StringBuilder out, AuditEntry e) {
+        out.append(e.timestamp()).append(';')
+                .append(e.action()).append(';')
+                .append(e.performer()).append(';')
+                .append(e.target()).append(';')
+                .append(e.details()).append(System.lineSeparator());
     }
-}
 
+    // retained entries with sequence from {@code from} on; slots a concurrent log has claimed but
+    // not yet filled, or already overwritten, are skipped
+    private List<AuditEntry> since(long from) {
+        long end = sequence.get();
+        long start = Math.max(from, end - recent.length());
+        List<AuditEntry> result = new ArrayList<>((int) Math.max(0, end - start));
+        for (long seq = start; seq < end; seq++) {
+            Slot slot = recent.get((int) seq & mask);
+            if (slot != null && slot.sequence() == seq) {
+                result.add(slot.entry());
+            }
+        }
+        return result;
+    }
+
+    static String formatTime(long millis) {
+        long second = Math.floorDiv(millis, 1000);
+        Stamp s = stamp;
+        if (s.second() != second) {
+            s = new Stamp(second, DateUtils.formatDateTime(millis));
+            stamp = s;
+        }
+        return s.text();
+    }
+}
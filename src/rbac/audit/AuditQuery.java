@@ -0,0 +1,42 @@
+package rbac.audit;
+
+/**
+ * Conditions for {@link AuditStore#query}. {@code null} fields match anything; names are compared
+ * ignoring case. The time range is {@code [fromMillis, toMillis)}.
+ */
+public record AuditQuery(String performer, String action, String target, long fromMillis, long toMillis) {
+
+    public AuditQuery {
+        if (fromMillis > toMillis) {
+            throw new IllegalArgumentException("fromMillis must not be after toMillis");
+        }
+    }
+
+    /** Matches every entry. */
+    public static AuditQuery any() {
+        return new AuditQuery(null, null, null, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    public AuditQuery byPerformer(String performer) {
+        return new AuditQuery(performer, action, target, fromMillis, toMillis);
+    }
+
+    public AuditQuery byAction(String action) {
+        return new AuditQuery(performer, action, target, fromMillis, toMillis);
+    }
+
+    public AuditQuery byTarget(String target) {
+        return new AuditQuery(performer, action, target, fromMillis, toMillis);
+    }
+
+    public AuditQuery between(long fromMillis, long toMillis) {
+        return new AuditQuery(performer, action, target, fromMillis, toMillis);
+    }
+
+    boolean matches(AuditLog.AuditEntry e) {
+        return e.timeMillis() >= fromMillis && e.timeMillis() < toMillis
+                && (performer == null || performer.equalsIgnoreCase(e.performer()))
+                && (action == null || action.equalsIgnoreCase(e.action()))
+                && (target == null || target.equalsIgnoreCase(e.target()));
+    }
+}
@@ -0,0 +1,87 @@
+package rbac.audit;
+
+import rbac.audit.AuditLog.AuditEntry;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for many producers and one consumer. Each slot carries a sequence
+ * number telling producers and the consumer whose turn it is, so a producer only contends on
+ * the CAS that claims a position.
+ */
+final class AuditRing {
+
+    private final int mask;
+    private final AtomicReferenceArray<AuditEntry> slots;
+    // slot i is free for position p when sequence == p, and holds position p when sequence == p + 1
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head; // written by the consumer only
+
+    AuditRing(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /** Approximate number of queued entries. */
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    /** Position the next offered entry will get; everything before it has been offered. */
+    long tail() {
+        return tail.get();
+    }
+
+    /** @return {@code false} when the ring is full */
+    boolean offer(AuditEntry entry) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long lag = sequences.get(index) - position;
+            if (lag == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.lazySet(index, entry);
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (lag < 0) {
+                return false; // the slot still holds the entry from one lap earlier
+            } else {
+                position = tail.get(); // another producer claimed it first
+            }
+        }
+    }
+
+    /** Moves up to {@code max} queued entries into {@code out}, in order. Consumer only. */
+    int drain(AuditEntry[] out, int max) {
+        long position = head;
+        int count = 0;
+        while (count < max) {
+            int index = (int) position & mask;
+            if (sequences.get(index) != position + 1) {
+                break; // empty, or the producer has claimed the slot but not filled it yet
+            }
+            out[count++] = slots.get(index);
+            slots.lazySet(index, null);
+            sequences.lazySet(index, position + mask + 1);
+            position++;
+        }
+        head = position;
+        return count;
+    }
+}
@@ -0,0 +1,279 @@
+package rbac.audit;
+
+import rbac.audit.AuditLog.AuditEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Queryable audit history. Entries are kept in append order in fixed-size segments; each
+ * segment records its time range and indexes its entries by performer, action and target. A
+ * query skips every segment whose time range misses the query's or whose index lacks one of the
+ * requested names, and within a segment only walks the shortest matching index list.
+ * <p>
+ * Full segments are sealed and never change again, so queries read them without locking; only
+ * appends and the still-open segment share the store's lock. Once {@code maxSegments} sealed
+ * segments exist the oldest is dropped.
+ */
+public final class AuditStore {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 18;
+    public static final int DEFAULT_MAX_SEGMENTS = 16;
+
+    // lower-cased names are shared across segments; cleared if it grows past this
+    private static final int KEY_CACHE_LIMIT = 1 << 16;
+
+    private final int segmentSize;
+    private final int maxSegments;
+    private volatile Segment[] sealed = new Segment[0];
+    private Segment active; // guarded by this
+    private final Map<String, String> keys = new HashMap<>(); // guarded by this
+    private long appended; // guarded by this
+
+    public AuditStore() {
+        this(DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS);
+    }
+
+    public AuditStore(int segmentSize, int maxSegments) {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("segmentSize must be positive");
+        }
+        if (maxSegments <= 0) {
+            throw new IllegalArgumentException("maxSegments must be positive");
+        }
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.active = new Segment(segmentSize);
+    }
+
+    public synchronized void append(AuditEntry entry) {
+        if (entry == null) {
+            throw new IllegalArgumentException("entry must not be null");
+        }
+        active.add(entry, key(entry.performer()), key(entry.action()), key(entry.target()));
+        appended++;
+        if (active.size == segmentSize) {
+            seal();
+        }
+    }
+
+    /** Entries currently held, i.e. not yet dropped with an old segment. */
+    public synchronized long size() {
+        long size = active.size;
+        for (Segment segment : sealed) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    /** Entries appended since the store was created, including dropped ones. */
+    public synchronized long appended() {
+        return appended;
+    }
+
+    public synchronized int segmentCount() {
+        return sealed.length + 1;
+    }
+
+    /** Matching entries in append order. */
+    public List<AuditEntry> query(AuditQuery query) {
+        List<AuditEntry> result = new ArrayList<>();
+        forEach(query, result::add);
+        return result;
+    }
+
+    public long count(AuditQuery query) {
+        long[] count = new long[1];
+        forEach(query, e -> count[0]++);
+        return count[0];
+    }
+
+    /** Passes the matching entries to {@code action} in append order, without holding the lock. */
+    public void forEach(AuditQuery query, Consumer<AuditEntry> action) {
+        if (query == null || action == null) {
+            throw new IllegalArgumentException("query and action must not be null");
+        }
+        String[] keys = {queryKey(query.performer()), queryKey(query.action()), queryKey(query.target())};
+        Segment[] segments;
+        List<AuditEntry> open = new ArrayList<>();
+        // take the sealed list and the open segment's matches together, so a segment sealed
+        // between the two steps is neither missed nor visited twice
+        synchronized (this) {
+            segments = sealed;
+            active.scan(query, keys, open::add);
+        }
+        for (Segment segment : segments) {
+            segment.scan(query, keys, action);
+        }
+        open.forEach(action);
+    }
+
+    private void seal() {
+        Segment[] current = sealed;
+        int keep = Math.min(current.length, maxSegments - 1);
+        Segment[] next = Arrays.copyOfRange(current, current.length - keep, current.length + 1);
+        active.seal();
+        next[keep] = active;
+        sealed = next;
+        active = new Segment(segmentSize);
+    }
+
+    private String key(String name) {
+        if (name == null) {
+            return null;
+        }
+        String key = keys.get(name);
+        if (key == null) {
+            if (keys.size() >= KEY_CACHE_LIMIT) {
+                keys.clear();
+            }
+            key = name.toLowerCase(Locale.ROOT);
+            keys.put(name, key);
+        }
+        return key;
+    }
+
+    private static String queryKey(String name) {
+        return name == null ? null : name.toLowerCase(Locale.ROOT);
+    }
+
+    /** Positions of one name's entries within a segment, ascending. */
+    private static final class Postings {
+        int[] positions = new int[4];
+        int size;
+
+        void add(int position) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(4, size * 2));
+            }
+            positions[size++] = position;
+        }
+    }
+
+    private static final class Segment {
+        AuditEntry[] entries;
+        long[] times;
+        final Map<String, Postings> performers = new HashMap<>();
+        final Map<String, Postings> actions = new HashMap<>();
+        final Map<String, Postings> targets = new HashMap<>();
+        // size and bounds are only written before the segment is sealed, under the store's lock
+        int size;
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        // whether times never decrease, which allows binary search; false if the clock went back
+        boolean ordered = true;
+
+        Segment(int capacity) {
+            int initial = Math.min(capacity, 1024);
+            this.entries = new AuditEntry[initial];
+            this.times = new long[initial];
+        }
+
+        /** Trims the arrays to their contents; called once the segment is full. */
+        void seal() {
+            for (Map<String, Postings> index : List.of(performers, actions, targets)) {
+                for (Postings postings : index.values()) {
+                    postings.positions = Arrays.copyOf(postings.positions, postings.size);
+                }
+            }
+        }
+
+        void add(AuditEntry entry, String performer, String action, String target) {
+            long time = entry.timeMillis();
+            if (size > 0 && time < times[size - 1]) {
+                ordered = false;
+            }
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+                times = Arrays.copyOf(times, size * 2);
+            }
+            entries[size] = entry;
+            times[size] = time;
+            index(performers, performer, size);
+            index(actions, action, size);
+            index(targets, target, size);
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+            size++;
+        }
+
+        private static void index(Map<String, Postings> index, String key, int position) {
+            if (key != null) {
+                index.computeIfAbsent(key, k -> new Postings()).add(position);
+            }
+        }
+
+        /** @param keys lower-cased performer, action and target of the query, {@code null} for any */
+        void scan(AuditQuery query, String[] keys, Consumer<AuditEntry> action) {
+            if (size == 0 || maxTime < query.fromMillis() || minTime >= query.toMillis()) {
+                return;
+            }
+            Postings shortest = null;
+            List<Map<String, Postings>> indexes = List.of(performers, actions, targets);
+            for (int k = 0; k < keys.length; k++) {
+                if (keys[k] == null) {
+                    continue;
+                }
+                Postings postings = indexes.get(k).get(keys[k]);
+                if (postings == null) {
+                    return; // the name never occurs in this segment
+                }
+                if (shortest == null || postings.size < shortest.size) {
+                    shortest = postings;
+                }
+            }
+
+            int from = 0;
+            int to = size;
+            if (ordered) {
+                from = lowerBound(query.fromMillis());
+                to = lowerBound(query.toMillis());
+            }
+            if (shortest == null) {
+                boolean whole = minTime >= query.fromMillis() && maxTime < query.toMillis();
+                for (int i = from; i < to; i++) {
+                    if (whole || query.matches(entries[i])) {
+                        action.accept(entries[i]);
+                    }
+                }
+                return;
+            }
+            int[] positions = shortest.positions;
+            int start = ordered ? lowerBound(positions, shortest.size, from) : 0;
+            for (int i = start; i < shortest.size; i++) {
+                int position = positions[i];
+                if (position >= to) {
+                    break;
+                }
+                if (query.matches(entries[position])) {
+                    action.accept(entries[position]);
+                }
+            }
+        }
+
+        // first position whose time is >= millis
+        private int lowerBound(long millis) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (times[mid] < millis) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        private static int lowerBound(int[] values, int length, int value) {
+            int index = Arrays.binarySearch(values, 0, length, value);
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package rbac.audit;
+
+import rbac.audit.AuditLog.AuditEntry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Appends audit entries to a file from a background thread. {@link #offer} only puts the entry
+ * into a bounded lock-free ring; the writer thread drains it in batches, formats each batch
+ * into one buffer and writes it with a single channel call.
+ * <p>
+ * The file is rotated once it reaches {@code maxFileBytes} or is older than
+ * {@code maxFileAgeMillis}: it is renamed to {@code <name>.<yyyyMMdd-HHmmss>} and a new one is
+ * started. Lines use the same {@code timestamp;action;performer;target;details} format as
+ * {@link AuditLog#saveToFile}.
+ */
+public final class AuditWriter implements Closeable {
+
+    /** Under {@link Backpressure#SAMPLE}, one in this many entries is kept while the ring is busy. */
+    public static final int SAMPLE_EVERY = 16;
+
+    private static final int BATCH = 1024;
+    private static final long IDLE_PARK_NANOS = 10_000_000L;
+    private static final DateTimeFormatter ROTATED_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final Path file;
+    private final Backpressure backpressure;
+    private final long maxFileBytes;
+    private final long maxFileAgeMillis;
+    private final AuditRing ring;
+    private final Thread thread;
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong sampled = new AtomicLong();
+
+    // writer thread only
+    private FileChannel channel;
+    private long fileBytes;
+    private long fileOpenedAt;
+    private final StringBuilder text = new StringBuilder(BATCH * 128);
+
+    private volatile long written; // also the ring position written up to
+    private volatile long rotations;
+    private volatile boolean sleeping;
+    private volatile boolean closed;
+    private volatile IOException failure;
+    private volatile Consumer<Exception> failureHandler = e -> {
+    };
+
+    private AuditWriter(Path file, FileChannel channel, int capacity, Backpressure backpressure,
+                        long maxFileBytes, long maxFileAgeMillis) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.fileBytes = channel.size();
+        this.fileOpenedAt = System.currentTimeMillis();
+        this.backpressure = backpressure;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFileAgeMillis = maxFileAgeMillis;
+        this.ring = new AuditRing(capacity);
+        this.thread = new Thread(this::run, "rbac-audit-writer");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Opens {@code file} for appending and starts the writer thread.
+     *
+     * @param capacity         entries buffered between loggers and the writer; a power of two
+     * @param maxFileBytes     rotate once the file reaches this size
+     * @param maxFileAgeMillis rotate once the file is this old; {@code 0} disables time rotation
+     */
+    public static AuditWriter open(Path file, int capacity, Backpressure backpressure,
+                                   long maxFileBytes, long maxFileAgeMillis) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("file must not be null");
+        }
+        if (backpressure == null) {
+            throw new IllegalArgumentException("backpressure must not be null");
+        }
+        if (maxFileBytes <= 0) {
+            throw new IllegalArgumentException("maxFileBytes must be positive");
+        }
+        if (maxFileAgeMillis < 0) {
+            throw new IllegalArgumentException("maxFileAgeMillis must not be negative");
+        }
+        AuditWriter writer = new AuditWriter(file, openChannel(file), capacity, backpressure,
+                maxFileBytes, maxFileAgeMillis);
+        writer.thread.start();
+        return writer;
+    }
+
+    /**
+     * Queues an entry for writing, applying the backpressure policy when the ring is full.
+     *
+     * @return {@code false} if the entry was dropped
+     */
+    public boolean offer(AuditEntry entry) {
+        if (closed) {
+            dropped.increment();
+            return false;
+        }
+        if (backpressure == Backpressure.SAMPLE && ring.size() >= ring.capacity() - (ring.capacity() >> 2)
+                && sampled.getAndIncrement() % SAMPLE_EVERY != 0) {
+            dropped.increment();
+            return false;
+        }
+        while (!ring.offer(entry)) {
+            if (backpressure != Backpressure.BLOCK || closed) {
+                dropped.increment();
+                return false;
+            }
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(50_000);
+        }
+        if (sleeping) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    /** Waits until every entry offered before this call has been written to the file. */
+    public void flush() throws IOException {
+        long target = ring.tail();
+        while (written < target && thread.isAlive()) {
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(100_000);
+        }
+        IOException e = failure;
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    /**
+     * Receives the error that stopped the writer thread; until set, it is only thrown from
+     * {@link #flush()} and {@link #close()}.
+     */
+    public void setFailureHandler(Consumer<Exception> handler) {
+        if (handler == null) {
+            throw new IllegalArgumentException("handler must not be null");
+        }
+        failureHandler = handler;
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    public Backpressure backpressure() {
+        return backpressure;
+    }
+
+    /** Entries written to disk so far. */
+    public long written() {
+        return written;
+    }
+
+    /** Entries rejected by the backpressure policy or offered after {@link #close()}. */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    public long rotations() {
+        return rotations;
+    }
+
+    /** Writes out everything still queued, then stops the writer thread and closes the file. */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        IOException e = failure;
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    private void run() {
+        AuditEntry[] batch = new AuditEntry[BATCH];
+        try {
+            while (true) {
+                int count = ring.drain(batch, BATCH);
+                if (count > 0) {
+                    write(batch, count);
+                    continue;
+                }
+                if (closed && ring.size() == 0) {
+                    break;
+                }
+                maybeRotate();
+                sleeping = true;
+                // re-check after announcing the sleep so a concurrent offer cannot be missed
+                if (ring.size() == 0 && !closed) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                sleeping = false;
+            }
+        } catch (IOException e) {
+            failure = e;
+            closed = true;
+            // nothing will consume the ring any more; count what is left as dropped
+            int count;
+            while ((count = ring.drain(batch, BATCH)) > 0) {
+                dropped.add(count);
+            }
+            failureHandler.accept(e);
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    private void write(AuditEntry[] batch, int count) throws IOException {
+        text.setLength(0);
+        for (int i = 0; i < count; i++) {
+            AuditLog.appendLine(text, batch[i]);
+            batch[i] = null;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+        fileBytes += bytes.remaining();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        written += count;
+        maybeRotate();
+    }
+
+    private void maybeRotate() throws IOException {
+        boolean full = fileBytes >= maxFileBytes;
+        boolean old = maxFileAgeMillis > 0 && fileBytes > 0
+                && System.currentTimeMillis() - fileOpenedAt >= maxFileAgeMillis;
+        if (!full && !old) {
+            return;
+        }
+        channel.close();
+        String base = file.getFileName() + "." + LocalDateTime.now().format(ROTATED_SUFFIX);
+        Path rotated = file.resolveSibling(base);
+        for (int n = 1; Files.exists(rotated); n++) {
+            rotated = file.resolveSibling(base + "." + n);
+        }
+        Files.move(file, rotated, StandardCopyOption.ATOMIC_MOVE);
+        channel = openChannel(file);
+        fileBytes = 0;
+        fileOpenedAt = System.currentTimeMillis();
+        rotations++;
+    }
+
+    private static FileChannel openChannel(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+}
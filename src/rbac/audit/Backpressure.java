@@ -0,0 +1,20 @@
+package rbac.audit;
+
+/**
+ * What {@link AuditWriter#offer} does when the background writer falls behind and its buffer
+ * fills up.
+ */
+public enum Backpressure {
+
+    /** The logging thread waits for free space; no entry is lost. */
+    BLOCK,
+
+    /** Entries that do not fit are dropped and counted. The logging thread never waits. */
+    DROP,
+
+    /**
+     * Once the buffer is three quarters full only every {@link AuditWriter#SAMPLE_EVERY}-th entry
+     * is kept; the rest, and anything that still does not fit, are dropped and counted.
+     */
+    SAMPLE
+}
@@ -2,10 +2,7 @@ package rbac.core;
 
 import rbac.system.RBACSystem;
 
-import java.util.Scanner;
-
 @FunctionalInterface
 public interface Command {
-    void execute(Scanner scanner, RBACSystem system);
+    void execute(CommandIO io, RBACSystem system);
 }
-
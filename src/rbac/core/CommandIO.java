@@ -0,0 +1,142 @@
+package rbac.core;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Scanner;
+
+/**
+ * Where a command gets its arguments and writes its output. A bare command typed at the prompt
+ * asks for each argument; a command given with arguments, or run from a script, takes them from
+ * its line and never prompts.
+ * <p>
+ * On a line, required arguments come in the order the command would ask for them, or as
+ * {@code --name value}; optional ones only as {@code --name value}.
+ */
+public final class CommandIO {
+
+    private final Scanner scanner;
+    private final PrintStream out;
+    private final CommandLine line;
+    // line of the script, so failures can be traced in the buffered output; 0 outside scripts
+    private final long lineNumber;
+    private int next;
+    private boolean failed;
+
+    private CommandIO(Scanner scanner, PrintStream out, CommandLine line, long lineNumber) {
+        this.scanner = scanner;
+        this.out = out;
+        this.line = line;
+        this.lineNumber = lineNumber;
+    }
+
+    static CommandIO prompting(Scanner scanner, PrintStream out) {
+        return new CommandIO(scanner, out, null, 0);
+    }
+
+    static CommandIO inline(CommandLine line, PrintStream out, long lineNumber) {
+        return new CommandIO(null, out, line, lineNumber);
+    }
+
+    /** True when arguments are asked for one by one. */
+    public boolean prompting() {
+        return line == null;
+    }
+
+    /**
+     * A required argument: prompted for, or the {@code --name} option, or else the next
+     * positional argument of the line.
+     *
+     * @throws IllegalArgumentException if the line has no value for it
+     */
+    public String ask(String name, String prompt) {
+        if (line == null) {
+            return read(prompt);
+        }
+        String value = line.options().get(name);
+        if (value == null) {
+            if (next >= line.arguments().size()) {
+                throw new IllegalArgumentException(name + " must be given");
+            }
+            value = line.arguments().get(next++);
+        }
+        return value.trim();
+    }
+
+    /** An optional argument: prompted for, or the {@code --name} option, or else {@code fallback}. */
+    public String ask(String name, String prompt, String fallback) {
+        if (line == null) {
+            return read(prompt);
+        }
+        String value = line.options().get(name);
+        return value != null ? value.trim() : fallback;
+    }
+
+    /** The {@code --name} option of the line; {@code null} if absent or when prompting. */
+    public String option(String name) {
+        return line != null ? line.options().get(name) : null;
+    }
+
+    /** The positional arguments not yet taken by {@link #ask}; empty when prompting. */
+    public List<String> remaining() {
+        if (line == null) {
+            return List.of();
+        }
+        List<String> arguments = line.arguments();
+        List<String> rest = arguments.subList(next, arguments.size());
+        next = arguments.size();
+        return rest;
+    }
+
+    /** Asks to type {@code yes} when prompting; on a line, true only with {@code --yes}. */
+    public boolean confirm(String prompt, String yes) {
+        if (line == null) {
+            return yes.equalsIgnoreCase(read(prompt));
+        }
+        return line.options().containsKey("yes");
+    }
+
+    public void print(String text) {
+        out.print(text);
+    }
+
+    public void println(String text) {
+        out.println(text);
+    }
+
+    public void println() {
+        out.println();
+    }
+
+    public void printf(String format, Object... args) {
+        out.printf(format, args);
+    }
+
+    /** Reports that the command did not do what was asked, e.g. "User not found.". */
+    public void fail(String message) {
+        failed = true;
+        out.println(lineNumber > 0 ? "line " + lineNumber + ": " + message : message);
+    }
+
+    /** True once the command has called {@link #fail}. */
+    public boolean failed() {
+        return failed;
+    }
+
+    /** Prompts and reads one line; {@code null} at the end of the input or when not prompting. */
+    public String readLine(String prompt) {
+        if (line != null) {
+            return null;
+        }
+        out.print(prompt);
+        return scanner.hasNextLine() ? scanner.nextLine().trim() : null;
+    }
+
+    public void flush() {
+        out.flush();
+    }
+
+    private String read(String prompt) {
+        out.print(prompt);
+        return scanner.nextLine().trim();
+    }
+}
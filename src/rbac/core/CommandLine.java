@@ -0,0 +1,94 @@
+package rbac.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One command line split into the command name, its positional arguments and its
+ * {@code --name value} options, e.g. {@code assign-role alice Manager --temporary 2026-12-31}.
+ * <p>
+ * Arguments are separated by blanks; single or double quotes keep blanks in one argument, and
+ * inside double quotes {@code \"} and {@code \\} stand for a quote and a backslash. An option
+ * takes the next argument as its value unless that is another option or there is none, so a
+ * bare flag such as {@code --yes} goes last or is written {@code --yes=true}. A quoted argument
+ * is never an option.
+ */
+record CommandLine(String name, List<String> arguments, Map<String, String> options) {
+
+    /** True when the line gave neither arguments nor options, only the command name. */
+    boolean bare() {
+        return arguments.isEmpty() && options.isEmpty();
+    }
+
+    /**
+     * @return the parsed line, or {@code null} if it is blank
+     * @throws IllegalArgumentException if a quote is not closed
+     */
+    static CommandLine parse(String line) {
+        List<String> tokens = new ArrayList<>();
+        List<Boolean> quoted = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        int i = 0;
+        int length = line.length();
+        while (true) {
+            while (i < length && Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            if (i >= length) {
+                break;
+            }
+            token.setLength(0);
+            boolean wasQuoted = false;
+            while (i < length && !Character.isWhitespace(line.charAt(i))) {
+                char c = line.charAt(i++);
+                if (c != '"' && c != '\'') {
+                    token.append(c);
+                    continue;
+                }
+                wasQuoted = true;
+                while (true) {
+                    if (i >= length) {
+                        throw new IllegalArgumentException("unterminated quoted argument");
+                    }
+                    char q = line.charAt(i++);
+                    if (q == c) {
+                        break;
+                    }
+                    if (c == '"' && q == '\\' && i < length && (line.charAt(i) == '"' || line.charAt(i) == '\\')) {
+                        q = line.charAt(i++);
+                    }
+                    token.append(q);
+                }
+            }
+            tokens.add(token.toString());
+            quoted.add(wasQuoted);
+        }
+        if (tokens.isEmpty()) {
+            return null;
+        }
+        List<String> arguments = new ArrayList<>();
+        Map<String, String> options = new HashMap<>();
+        for (int t = 1; t < tokens.size(); t++) {
+            String text = tokens.get(t);
+            if (quoted.get(t) || !isOption(text)) {
+                arguments.add(text);
+                continue;
+            }
+            int eq = text.indexOf('=');
+            if (eq > 2) {
+                options.put(text.substring(2, eq), text.substring(eq + 1));
+            } else if (t + 1 < tokens.size() && (quoted.get(t + 1) || !isOption(tokens.get(t + 1)))) {
+                options.put(text.substring(2), tokens.get(++t));
+            } else {
+                options.put(text.substring(2), "true");
+            }
+        }
+        return new CommandLine(tokens.get(0), arguments, options);
+    }
+
+    private static boolean isOption(String text) {
+        return text.length() > 2 && text.startsWith("--");
+    }
+}
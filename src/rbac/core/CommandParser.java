@@ -1,42 +1,147 @@
 package rbac.core;
 
+import rbac.metrics.Histogram;
+import rbac.metrics.MetricsRegistry;
 import rbac.system.RBACSystem;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 public class CommandParser {
     private final Map<String, Command> commands = new LinkedHashMap<>();
     private final Map<String, String> commandDescriptions = new LinkedHashMap<>();
+    private volatile MetricsRegistry metrics;
+    // command name -> latency histogram, looked up once per command; null while metrics are off
+    private volatile Map<String, Histogram> latencies;
 
     public void registerCommand(String name, String description, Command command) {
         commands.put(name, command);
         commandDescriptions.put(name, description);
+        setMetrics(metrics);
     }
 
-    public void executeCommand(String commandName, Scanner scanner, RBACSystem system) {
-        Command cmd = commands.get(commandName);
-        if (cmd == null) {
-            System.out.println("Unknown command: " + commandName);
+    /**
+     * Times every command into {@code metrics}, including the time spent reading its prompts;
+     * {@code null} turns the timing off.
+     */
+    public void setMetrics(MetricsRegistry metrics) {
+        this.metrics = metrics;
+        if (metrics == null) {
+            latencies = null;
             return;
         }
-        cmd.execute(scanner, system);
+        Map<String, Histogram> byCommand = new HashMap<>();
+        for (String name : commands.keySet()) {
+            byCommand.put(name, metrics.histogram("rbac_command_seconds", "Time to execute one command", "command", name));
+        }
+        latencies = byCommand;
+    }
+
+    public void executeCommand(String commandName, Scanner scanner, RBACSystem system) {
+        run(commandName, CommandIO.prompting(scanner, System.out), system);
     }
 
     public void printHelp() {
-        System.out.println("Available commands:");
+        printHelp(CommandIO.prompting(null, System.out));
+    }
+
+    public void printHelp(CommandIO io) {
+        io.println("Available commands:");
         commandDescriptions.forEach((name, desc) ->
-                System.out.printf("  %-20s - %s%n", name, desc));
+                io.printf("  %-20s - %s%n", name, desc));
     }
 
+    /**
+     * Runs one line. A bare command name prompts on {@code scanner} for each argument; with
+     * arguments on the line, e.g. {@code assign-role alice Manager --temporary 2026-12-31}, the
+     * command takes them from there instead. Whatever the command throws is reported and the
+     * caller's prompt goes on, as a failed line of {@link #runScript} does.
+     */
     public void parseAndExecute(String input, Scanner scanner, RBACSystem system) {
         if (input == null || input.isBlank()) {
             return;
         }
-        String[] parts = input.trim().split("\\s+");
-        String commandName = parts[0];
-        executeCommand(commandName, scanner, system);
+        try {
+            CommandLine line = CommandLine.parse(input);
+            run(line.name(), line.bare() ? CommandIO.prompting(scanner, System.out) : CommandIO.inline(line, System.out, 0),
+                    system);
+        } catch (RuntimeException e) {
+            System.out.println("Error: " + (e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()));
+        }
     }
-}
 
+    /**
+     * Runs every line of {@code script} as a command with its arguments inline, without
+     * prompting. Blank lines and lines starting with {@code #} are skipped. A command that fails
+     * is reported on {@code out} with its line number and the script goes on. Everything is
+     * written to {@code out} and flushed only at the end, so pass a buffered stream.
+     */
+    public ScriptResult runScript(BufferedReader script, RBACSystem system, PrintStream out) throws IOException {
+        long start = System.nanoTime();
+        long lineNumber = 0;
+        long commands = 0;
+        long failed = 0;
+        try {
+            String text;
+            while ((text = script.readLine()) != null) {
+                lineNumber++;
+                String trimmed = text.strip();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+                commands++;
+                try {
+                    CommandLine line = CommandLine.parse(trimmed);
+                    if (!run(line.name(), CommandIO.inline(line, out, lineNumber), system)) {
+                        failed++;
+                    }
+                } catch (RuntimeException e) {
+                    // whatever one command throws, e.g. an UncheckedIOException from the log,
+                    // fails that line only
+                    failed++;
+                    out.println("line " + lineNumber + ": Error: "
+                            + (e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()));
+                }
+            }
+        } finally {
+            out.flush();
+        }
+        return new ScriptResult(commands, failed, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /** Outcome of {@link #runScript}: commands run, how many of them failed, and the time taken. */
+    public record ScriptResult(long commands, long failed, long elapsedMillis) {
+
+        /** e.g. "20000 commands, 2 failed in 412 ms". */
+        public String summary() {
+            return "%d commands, %d failed in %d ms".formatted(commands, failed, elapsedMillis);
+        }
+    }
+
+    // false if the command is unknown or reported a failure
+    private boolean run(String commandName, CommandIO io, RBACSystem system) {
+        Command cmd = commands.get(commandName);
+        if (cmd == null) {
+            io.fail("Unknown command: " + commandName);
+            return false;
+        }
+        Map<String, Histogram> timed = latencies;
+        if (timed == null) {
+            cmd.execute(io, system);
+            return !io.failed();
+        }
+        long start = System.nanoTime();
+        try {
+            cmd.execute(io, system);
+        } finally {
+            timed.get(commandName).recordSince(start);
+        }
+        return !io.failed();
+    }
+}
@@ -2,13 +2,32 @@ package rbac.core;
 
 import rbac.assignment.AssignmentManager;
 import rbac.assignment.RoleAssignment;
+import rbac.importer.BulkImporter;
+import rbac.importer.ImportFormat;
+import rbac.importer.ImportReport;
+import rbac.metrics.PrometheusFormat;
 import rbac.permission.Permission;
+import rbac.report.ReportFormat;
+import rbac.report.ReportGenerator;
 import rbac.role.Role;
 import rbac.role.RoleManager;
+import rbac.sort.AssignmentSorters;
+import rbac.sort.Page;
+import rbac.sort.RoleSorters;
+import rbac.sort.SortKey;
+import rbac.sort.UserSorters;
+import rbac.system.Decision;
 import rbac.system.RBACSystem;
 import rbac.user.User;
 import rbac.user.UserManager;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -16,483 +35,546 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Scanner;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import rbac.assignment.AssignmentMetadata;
-import rbac.assignment.AssignmentType;
 import rbac.assignment.PermanentAssignment;
 import rbac.assignment.TemporaryAssignment;
 
 public class CommandRegistry {
 
+    // items per screen in the list commands
+    private static final int PAGE_SIZE = 20;
+
     public static void registerAll(CommandParser parser) {
         registerUserCommands(parser);
         registerRoleCommands(parser);
         registerAssignmentCommands(parser);
         registerPermissionCommands(parser);
+        registerReportCommands(parser);
+        registerMetricsCommands(parser);
         registerServiceCommands(parser);
     }
 
     private static void registerUserCommands(CommandParser parser) {
-        parser.registerCommand("user-list", "List users", (scanner, system) -> {
+        parser.registerCommand("user-list", "List users", (io, system) -> {
             UserManager um = system.getUserManager();
-            System.out.println("Users:");
-            um.getAll().stream()
-                    .sorted(Comparator.comparing(User::getUsername))
-                    .forEach(u -> System.out.printf("- %s (%s, %s)%n",
-                            u.getUsername(), u.getFullName(), u.getEmail()));
+            String sort = io.ask("sort", "Sort by (username/name/email, - prefix for descending) [username]: ", "");
+            Comparator<User> sorter = sortOrder(io, sort, Map.of(
+                    "username", UserSorters.byUsername(),
+                    "name", UserSorters.byFullName(),
+                    "email", UserSorters.byEmail()), UserSorters.byUsername());
+            if (sorter == null) {
+                return;
+            }
+            io.println("Users:");
+            printPages(io, (User after) -> um.page(null, sorter, after, PAGE_SIZE),
+                    u -> io.printf("- %s (%s, %s)%n", u.getUsername(), u.getFullName(), u.getEmail()));
         });
 
-        parser.registerCommand("user-create", "Create user", (scanner, system) -> {
+        parser.registerCommand("user-create", "Create user", (io, system) -> {
             UserManager um = system.getUserManager();
-            System.out.print("Username: ");
-            String username = scanner.nextLine().trim();
-            System.out.print("Full name: ");
-            String fullName = scanner.nextLine().trim();
-            System.out.print("Email: ");
-            String email = scanner.nextLine().trim();
+            String username = io.ask("username", "Username: ");
+            String fullName = io.ask("full-name", "Full name: ");
+            String email = io.ask("email", "Email: ");
             if (username.isEmpty() || fullName.isEmpty() || email.isEmpty()) {
-                System.out.println("All fields are required.");
+                io.fail("All fields are required.");
                 return;
             }
             try {
                 um.add(new User(username, fullName, email));
-                System.out.println("User created.");
+                io.println("User created.");
             } catch (IllegalArgumentException ex) {
-                System.out.println("Error: " + ex.getMessage());
+                io.fail("Error: " + ex.getMessage());
             }
         });
 
-        parser.registerCommand("user-view", "View user", (scanner, system) -> {
+        parser.registerCommand("user-view", "View user", (io, system) -> {
             UserManager um = system.getUserManager();
-            System.out.print("Username: ");
-            String username = scanner.nextLine().trim();
+            String username = io.ask("username", "Username: ");
             Optional<User> userOpt = um.findByUsername(username);
             if (userOpt.isEmpty()) {
-                System.out.println("User not found.");
+                io.fail("User not found.");
                 return;
             }
             User user = userOpt.get();
-            System.out.printf("Username: %s%nFull name: %s%nEmail: %s%n",
+            io.printf("Username: %s%nFull name: %s%nEmail: %s%n",
                     user.getUsername(), user.getFullName(), user.getEmail());
 
             AssignmentManager am = system.getAssignmentManager();
             RoleManager rm = system.getRoleManager();
             List<RoleAssignment> assignments = am.getByUser(username);
-            System.out.println("Roles:");
-            assignments.forEach(a -> System.out.printf("- %s (%s)%n", a.getRoleName(), a.getStatus()));
-            System.out.println("Permissions:");
+            io.println("Roles:");
+            assignments.forEach(a -> io.printf("- %s (%s)%n", a.getRoleName(), a.getStatus()));
+            io.println("Permissions:");
             Set<Permission> perms = am.getUserPermissions(user);
             Map<String, Set<Permission>> byResource = new HashMap<>();
             for (Permission p : perms) {
                 byResource.computeIfAbsent(p.getResource(), k -> new HashSet<>()).add(p);
             }
             byResource.forEach((resource, plist) -> {
-                System.out.println("  " + resource + ":");
-                plist.forEach(p -> System.out.println("    - " + p.getName()));
+                io.println("  " + resource + ":");
+                plist.forEach(p -> io.println("    - " + p.getName()));
             });
         });
 
-        parser.registerCommand("user-update", "Update user", (scanner, system) -> {
+        parser.registerCommand("user-update", "Update user", (io, system) -> {
             UserManager um = system.getUserManager();
-            System.out.print("Username: ");
-            String username = scanner.nextLine().trim();
-            System.out.print("New full name: ");
-            String fullName = scanner.nextLine().trim();
-            System.out.print("New email: ");
-            String email = scanner.nextLine().trim();
+            String username = io.ask("username", "Username: ");
+            String fullName = io.ask("full-name", "New full name: ");
+            String email = io.ask("email", "New email: ");
             try {
                 um.update(username, fullName, email);
-                System.out.println("User updated.");
+                io.println("User updated.");
             } catch (Exception ex) {
-                System.out.println("Error: " + ex.getMessage());
+                io.fail("Error: " + ex.getMessage());
             }
         });
 
-        parser.registerCommand("user-delete", "Delete user", (scanner, system) -> {
+        parser.registerCommand("user-delete", "Delete user", (io, system) -> {
             UserManager um = system.getUserManager();
             AssignmentManager am = system.getAssignmentManager();
-            System.out.print("Username: ");
-            String username = scanner.nextLine().trim();
-            System.out.print("Type 'да' to confirm: ");
-            String confirm = scanner.nextLine().trim();
-            if (!"да".equalsIgnoreCase(confirm)) {
-                System.out.println("Cancelled.");
+            String username = io.ask("username", "Username: ");
+            if (!io.confirm("Type 'да' to confirm: ", "да")) {
+                io.fail("Cancelled.");
                 return;
             }
             am.deleteAssignmentsForUser(username);
             um.delete(username);
-            System.out.println("User and assignments deleted.");
+            io.println("User and assignments deleted.");
         });
 
-        parser.registerCommand("user-search", "Search users", (scanner, system) -> {
+        parser.registerCommand("user-search", "Search users", (io, system) -> {
             UserManager um = system.getUserManager();
-            System.out.println("Choose filter:");
-            System.out.println("1 - username contains");
-            System.out.println("2 - email contains");
-            System.out.println("3 - email domain");
-            System.out.println("4 - full name contains");
-            String choice = scanner.nextLine().trim();
+            if (io.prompting()) {
+                io.println("Choose filter:");
+                io.println("1 - username contains");
+                io.println("2 - email contains");
+                io.println("3 - email domain");
+                io.println("4 - full name contains");
+            }
+            String choice = io.ask("filter", "");
             List<User> result = new ArrayList<>();
             switch (choice) {
                 case "1" -> {
-                    System.out.print("Part of username: ");
-                    String part = scanner.nextLine().trim();
+                    String part = io.ask("part", "Part of username: ");
                     result = um.searchByUsernameContains(part);
                 }
                 case "2" -> {
-                    System.out.print("Part of email: ");
-                    String part = scanner.nextLine().trim();
+                    String part = io.ask("part", "Part of email: ");
                     result = um.searchByEmailContains(part);
                 }
                 case "3" -> {
-                    System.out.print("Email domain (example.com): ");
-                    String domain = scanner.nextLine().trim();
+                    String domain = io.ask("domain", "Email domain (example.com): ");
                     result = um.searchByEmailDomain(domain);
                 }
                 case "4" -> {
-                    System.out.print("Part of full name: ");
-                    String part = scanner.nextLine().trim();
+                    String part = io.ask("part", "Part of full name: ");
                     result = um.searchByFullNameContains(part);
                 }
-                default -> System.out.println("Unknown option");
+                default -> io.fail("Unknown option");
             }
             if (!result.isEmpty()) {
-                result.forEach(u -> System.out.printf("- %s (%s, %s)%n",
+                result.forEach(u -> io.printf("- %s (%s, %s)%n",
                         u.getUsername(), u.getFullName(), u.getEmail()));
             }
         });
     }
 
     private static void registerRoleCommands(CommandParser parser) {
-        parser.registerCommand("role-list", "List roles", (scanner, system) -> {
+        parser.registerCommand("role-list", "List roles", (io, system) -> {
             RoleManager rm = system.getRoleManager();
-            System.out.println("Roles:");
-            rm.getAll().forEach(r -> System.out.printf("- %s (id=%s, permissions=%d)%n",
-                    r.getName(), r.getId(), r.getPermissions().size()));
+            String sort = io.ask("sort", "Sort by (name/permissions, - prefix for descending) [name]: ", "");
+            Comparator<Role> sorter = sortOrder(io, sort, Map.of(
+                    "name", RoleSorters.byName(),
+                    "permissions", RoleSorters.byPermissionCount()), RoleSorters.byName());
+            if (sorter == null) {
+                return;
+            }
+            io.println("Roles:");
+            printPages(io, (Role after) -> rm.page(null, sorter, after, PAGE_SIZE),
+                    r -> io.printf("- %s (id=%s, permissions=%d)%n",
+                            r.getName(), r.getId(), r.getEffectivePermissions().size()));
         });
 
-        parser.registerCommand("role-create", "Create role", (scanner, system) -> {
+        parser.registerCommand("role-create", "Create role", (io, system) -> {
             RoleManager rm = system.getRoleManager();
-            System.out.print("Role name: ");
-            String name = scanner.nextLine().trim();
-            System.out.print("Description: ");
-            String description = scanner.nextLine().trim();
+            String name = io.ask("role", "Role name: ");
+            String description = io.ask("description", "Description: ");
+            if (!io.prompting()) {
+                // the rest of the line: ACTION:RESOURCE or ACTION:RESOURCE:description
+                List<Permission> permissions = new ArrayList<>();
+                for (String spec : io.remaining()) {
+                    String[] parts = spec.split(":", 3);
+                    if (parts.length < 2) {
+                        io.fail("Error: permission must be ACTION:RESOURCE[:description], got '" + spec + "'");
+                        return;
+                    }
+                    permissions.add(new Permission(parts[0], parts[1], parts.length == 3 ? parts[2] : description));
+                }
+                Role role = new Role(name, description);
+                role.addPermissions(permissions);
+                rm.add(role);
+                io.println("Role created.");
+                return;
+            }
             Role role = new Role(name, description);
             rm.add(role);
-            System.out.println("Role created. Add permissions (empty name to stop).");
+            io.println("Role created. Add permissions (empty name to stop).");
             while (true) {
-                System.out.print("Permission name (empty to finish): ");
-                String permName = scanner.nextLine().trim();
+                String permName = io.ask("permission", "Permission name (empty to finish): ");
                 if (permName.isEmpty()) {
                     break;
                 }
-                System.out.print("Resource: ");
-                String resource = scanner.nextLine().trim();
-                System.out.print("Description: ");
-                String permDesc = scanner.nextLine().trim();
+                String resource = io.ask("resource", "Resource: ");
+                String permDesc = io.ask("description", "Description: ");
                 rm.addPermissionToRole(role, new Permission(permName, resource, permDesc));
             }
         });
 
-        parser.registerCommand("role-view", "View role", (scanner, system) -> {
+        parser.registerCommand("role-view", "View role", (io, system) -> {
             RoleManager rm = system.getRoleManager();
-            System.out.print("Role name: ");
-            String name = scanner.nextLine().trim();
+            String name = io.ask("role", "Role name: ");
             Optional<Role> role = rm.findByName(name);
             if (role.isEmpty()) {
-                System.out.println("Role not found.");
+                io.fail("Role not found.");
                 return;
             }
-            System.out.println(role.get().format());
+            io.println(role.get().format());
         });
 
-        parser.registerCommand("role-update", "Update role", (scanner, system) -> {
+        parser.registerCommand("role-update", "Update role", (io, system) -> {
             RoleManager rm = system.getRoleManager();
-            System.out.print("Role name: ");
-            String name = scanner.nextLine().trim();
-            System.out.print("New name (blank to keep): ");
-            String newName = scanner.nextLine().trim();
-            System.out.print("New description (blank to keep): ");
-            String newDesc = scanner.nextLine().trim();
+            String name = io.ask("role", "Role name: ");
+            String newName = io.ask("new-name", "New name (blank to keep): ", "");
+            String newDesc = io.ask("new-description", "New description (blank to keep): ", "");
             try {
                 rm.update(name, newName.isEmpty() ? null : newName, newDesc.isEmpty() ? null : newDesc);
-                System.out.println("Role updated.");
+                io.println("Role updated.");
             } catch (IllegalArgumentException e) {
-                System.out.println("Error: " + e.getMessage());
+                io.fail("Error: " + e.getMessage());
             }
         });
 
-        parser.registerCommand("role-delete", "Delete role", (scanner, system) -> {
+        parser.registerCommand("role-delete", "Delete role", (io, system) -> {
             RoleManager rm = system.getRoleManager();
             AssignmentManager am = system.getAssignmentManager();
-            System.out.print("Role name: ");
-            String name = scanner.nextLine().trim();
+            String name = io.ask("role", "Role name: ");
             Optional<Role> roleOpt = rm.findByName(name);
             if (roleOpt.isEmpty()) {
-                System.out.println("Role not found.");
+                io.fail("Role not found.");
                 return;
             }
             Role role = roleOpt.get();
             List<RoleAssignment> assignments = am.getByRole(role.getName());
             if (!assignments.isEmpty()) {
-                System.out.println("Role is assigned to users:");
-                assignments.forEach(a -> System.out.println(" - " + a.getUsername()));
-                System.out.print("Delete anyway? (yes/no): ");
-                String ans = scanner.nextLine().trim();
-                if (!"yes".equalsIgnoreCase(ans)) {
-                    System.out.println("Cancelled.");
+                io.println("Role is assigned to users:");
+                assignments.forEach(a -> io.println(" - " + a.getUsername()));
+                if (!io.confirm("Delete anyway? (yes/no): ", "yes")) {
+                    io.fail("Cancelled.");
                     return;
                 }
             }
             rm.remove(role);
-            System.out.println("Role deleted.");
+            io.println("Role deleted.");
         });
 
-        parser.registerCommand("role-add-permission", "Add permission to role", (scanner, system) -> {
+        parser.registerCommand("role-add-permission", "Add permission to role", (io, system) -> {
             RoleManager rm = system.getRoleManager();
-            System.out.print("Role name: ");
-            String name = scanner.nextLine().trim();
+            String name = io.ask("role", "Role name: ");
             Optional<Role> roleOpt = rm.findByName(name);
             if (roleOpt.isEmpty()) {
-                System.out.println("Role not found.");
+                io.fail("Role not found.");
                 return;
             }
             Role role = roleOpt.get();
-            System.out.print("Permission name: ");
-            String permName = scanner.nextLine().trim();
-            System.out.print("Resource: ");
-            String resource = scanner.nextLine().trim();
-            System.out.print("Description: ");
-            String permDesc = scanner.nextLine().trim();
+            String permName = io.ask("permission", "Permission name: ");
+            String resource = io.ask("resource", "Resource: ");
+            String permDesc = io.ask("description", "Description: ", role.getDescription());
             rm.addPermissionToRole(role, new Permission(permName, resource, permDesc));
-            System.out.println("Permission added.");
+            io.println("Permission added.");
         });
 
-        parser.registerCommand("role-remove-permission", "Remove permission from role", (scanner, system) -> {
+        parser.registerCommand("role-remove-permission", "Remove permission from role", (io, system) -> {
             RoleManager rm = system.getRoleManager();
-            System.out.print("Role name: ");
-            String name = scanner.nextLine().trim();
+            String name = io.ask("role", "Role name: ");
             Optional<Role> roleOpt = rm.findByName(name);
             if (roleOpt.isEmpty()) {
-                System.out.println("Role not found.");
+                io.fail("Role not found.");
                 return;
             }
             Role role = roleOpt.get();
             List<Permission> perms = new ArrayList<>(role.getPermissions());
+            if (!io.prompting()) {
+                String permName = io.ask("permission", "Permission name: ");
+                String resource = io.ask("resource", "Resource: ");
+                Optional<Permission> found = perms.stream()
+                        .filter(p -> p.getName().equalsIgnoreCase(permName) && p.getResource().equalsIgnoreCase(resource))
+                        .findFirst();
+                if (found.isEmpty()) {
+                    io.fail("Permission not found.");
+                    return;
+                }
+                role.removePermission(found.get());
+                io.println("Permission removed.");
+                return;
+            }
             for (int i = 0; i < perms.size(); i++) {
-                System.out.printf("%d) %s on %s%n", i + 1, perms.get(i).getName(), perms.get(i).getResource());
+                io.printf("%d) %s on %s%n", i + 1, perms.get(i).getName(), perms.get(i).getResource());
             }
-            System.out.print("Number to remove: ");
-            String idxStr = scanner.nextLine().trim();
+            String idxStr = io.ask("number", "Number to remove: ");
             int idx = Integer.parseInt(idxStr) - 1;
             if (idx < 0 || idx >= perms.size()) {
-                System.out.println("Invalid index.");
+                io.fail("Invalid index.");
                 return;
             }
             List<Permission> plist = new ArrayList<>(role.getPermissions());
             if (idx >= 0 && idx < plist.size()) role.removePermission(plist.get(idx));
-            System.out.println("Permission removed.");
+            io.println("Permission removed.");
+        });
+
+        parser.registerCommand("role-add-parent", "Make a role inherit another role's permissions", (io, system) -> {
+            RoleManager rm = system.getRoleManager();
+            String name = io.ask("role", "Role name: ");
+            String parent = io.ask("parent", "Inherit from: ");
+            try {
+                rm.addParent(name, parent);
+                io.println("Role '" + name + "' now inherits from '" + parent + "'.");
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                io.fail("Error: " + e.getMessage());
+            }
         });
 
-        parser.registerCommand("role-search", "Search roles", (scanner, system) -> {
+        parser.registerCommand("role-remove-parent", "Stop a role inheriting from another role", (io, system) -> {
             RoleManager rm = system.getRoleManager();
-            System.out.println("Choose filter:");
-            System.out.println("1 - name contains");
-            System.out.println("2 - has permission");
-            System.out.println("3 - min permissions count");
-            String choice = scanner.nextLine().trim();
+            String name = io.ask("role", "Role name: ");
+            String parent = io.ask("parent", "Parent role: ");
+            try {
+                io.println(rm.removeParent(name, parent)
+                        ? "Role '" + name + "' no longer inherits from '" + parent + "'."
+                        : "Role '" + name + "' does not inherit from '" + parent + "'.");
+            } catch (IllegalArgumentException e) {
+                io.fail("Error: " + e.getMessage());
+            }
+        });
+
+        parser.registerCommand("role-search", "Search roles", (io, system) -> {
+            RoleManager rm = system.getRoleManager();
+            if (io.prompting()) {
+                io.println("Choose filter:");
+                io.println("1 - name contains");
+                io.println("2 - has permission");
+                io.println("3 - min permissions count");
+            }
+            String choice = io.ask("filter", "");
             List<Role> result = new ArrayList<>();
             switch (choice) {
                 case "1" -> {
-                    System.out.print("Part of name: ");
-                    String part = scanner.nextLine().trim();
+                    String part = io.ask("part", "Part of name: ");
                     result = rm.searchByNameContains(part);
                 }
                 case "2" -> {
-                    System.out.print("Permission name: ");
-                    String permName = scanner.nextLine().trim();
+                    String permName = io.ask("permission", "Permission name: ");
                     result = rm.searchByPermission(permName);
                 }
                 case "3" -> {
-                    System.out.print("Min permissions: ");
-                    int min = Integer.parseInt(scanner.nextLine().trim());
+                    int min = Integer.parseInt(io.ask("min", "Min permissions: "));
                     result = rm.searchByMinPermissions(min);
                 }
-                default -> System.out.println("Unknown option");
+                default -> io.fail("Unknown option");
             }
-            result.forEach(r -> System.out.printf("- %s (perms=%d)%n",
-                    r.getName(), r.getPermissions().size()));
+            result.forEach(r -> io.printf("- %s (perms=%d)%n",
+                    r.getName(), r.getEffectivePermissions().size()));
         });
     }
 
     private static void registerAssignmentCommands(CommandParser parser) {
-        parser.registerCommand("assign-role", "Assign role to user", (scanner, system) -> {
+        parser.registerCommand("assign-role", "Assign role to user", (io, system) -> {
             UserManager um = system.getUserManager();
             RoleManager rm = system.getRoleManager();
             AssignmentManager am = system.getAssignmentManager();
 
-            System.out.print("Username: ");
-            String username = scanner.nextLine().trim();
+            String username = io.ask("username", "Username: ");
             Optional<User> userOpt = um.findByUsername(username);
             if (userOpt.isEmpty()) {
-                System.out.println("User not found.");
+                io.fail("User not found.");
                 return;
             }
             User user = userOpt.get();
 
-            List<Role> roles = new ArrayList<>(rm.getAll());
-            for (int i = 0; i < roles.size(); i++) {
-                System.out.printf("%d) %s%n", i + 1, roles.get(i).getName());
-            }
-            System.out.print("Choose role number: ");
-            int idx = Integer.parseInt(scanner.nextLine().trim()) - 1;
-            if (idx < 0 || idx >= roles.size()) {
-                System.out.println("Invalid index.");
-                return;
+            Role role;
+            if (io.prompting()) {
+                List<Role> roles = new ArrayList<>(rm.getAll());
+                for (int i = 0; i < roles.size(); i++) {
+                    io.printf("%d) %s%n", i + 1, roles.get(i).getName());
+                }
+                int idx = Integer.parseInt(io.ask("role", "Choose role number: ")) - 1;
+                if (idx < 0 || idx >= roles.size()) {
+                    io.fail("Invalid index.");
+                    return;
+                }
+                role = roles.get(idx);
+            } else {
+                Optional<Role> roleOpt = rm.findByName(io.ask("role", "Role name: "));
+                if (roleOpt.isEmpty()) {
+                    io.fail("Role not found.");
+                    return;
+                }
+                role = roleOpt.get();
             }
-            Role role = roles.get(idx);
 
-            System.out.print("Type (1-permanent, 2-temporary): ");
-            String typeStr = scanner.nextLine().trim();
-            AssignmentType type = "2".equals(typeStr) ? AssignmentType.TEMPORARY : AssignmentType.PERMANENT;
-            String expiresAt = null;
-            if (type == AssignmentType.TEMPORARY) {
-                System.out.print("Expires at (YYYY-MM-DD): ");
-                expiresAt = scanner.nextLine().trim();
+            // on a line, --temporary <date> makes the assignment temporary
+            String expiresAt = io.option("temporary");
+            if (io.prompting() && "2".equals(io.ask("type", "Type (1-permanent, 2-temporary): "))) {
+                expiresAt = io.ask("expires", "Expires at (YYYY-MM-DD): ");
             }
-            System.out.print("Reason: ");
-            String reason = scanner.nextLine().trim();
+            String reason = io.ask("reason", "Reason: ", "");
 
             AssignmentMetadata meta = AssignmentMetadata.now(username, reason);
-            if (type == AssignmentType.TEMPORARY) {
-                am.add(new TemporaryAssignment(user, role, meta, expiresAt != null ? expiresAt : "2099-12-31", false));
+            if (expiresAt != null) {
+                am.add(new TemporaryAssignment(user, role, meta, expiresAt, false));
             } else {
                 am.add(new PermanentAssignment(user, role, meta));
             }
-            System.out.println("Role assigned.");
+            io.println("Role assigned.");
         });
 
-        parser.registerCommand("revoke-role", "Revoke role", (scanner, system) -> {
+        parser.registerCommand("revoke-role", "Revoke role", (io, system) -> {
             AssignmentManager am = system.getAssignmentManager();
-            System.out.print("Username: ");
-            String username = scanner.nextLine().trim();
+            String username = io.ask("username", "Username: ");
             List<RoleAssignment> list = am.getByUser(username);
-            for (int i = 0; i < list.size(); i++) {
-                RoleAssignment a = list.get(i);
-                System.out.printf("%d) %s (%s)%n", i + 1, a.getRoleName(), a.getStatus());
-            }
-            System.out.print("Choose assignment number: ");
-            int idx = Integer.parseInt(scanner.nextLine().trim()) - 1;
-            if (idx < 0 || idx >= list.size()) {
-                System.out.println("Invalid index.");
-                return;
+            RoleAssignment a;
+            if (io.prompting()) {
+                for (int i = 0; i < list.size(); i++) {
+                    RoleAssignment shown = list.get(i);
+                    io.printf("%d) %s (%s)%n", i + 1, shown.getRoleName(), shown.getStatus());
+                }
+                int idx = Integer.parseInt(io.ask("number", "Choose assignment number: ")) - 1;
+                if (idx < 0 || idx >= list.size()) {
+                    io.fail("Invalid index.");
+                    return;
+                }
+                a = list.get(idx);
+            } else {
+                // on a line the role is named; its active assignment is the one revoked
+                String role = io.ask("role", "Role name: ");
+                a = list.stream()
+                        .filter(candidate -> candidate.getRoleName().equals(role) && candidate.isActive())
+                        .findFirst().orElse(null);
+                if (a == null) {
+                    io.fail("Assignment not found.");
+                    return;
+                }
             }
-            RoleAssignment a = list.get(idx);
             am.revoke(a);
-            System.out.println("Assignment revoked.");
+            io.println("Assignment revoked.");
         });
 
-        parser.registerCommand("assignment-list", "List assignments", (scanner, system) -> {
+        parser.registerCommand("assignment-list", "List assignments", (io, system) -> {
             AssignmentManager am = system.getAssignmentManager();
-            System.out.println("Assignments:");
-            am.getAll().forEach(a -> System.out.printf(
+            String sort = io.ask("sort", "Sort by (date/user/role, - prefix for descending) [date]: ", "");
+            Comparator<RoleAssignment> sorter = sortOrder(io, sort, Map.of(
+                    "date", AssignmentSorters.byAssignmentDate(),
+                    "user", AssignmentSorters.byUsername(),
+                    "role", AssignmentSorters.byRoleName()), AssignmentSorters.byAssignmentDate());
+            if (sorter == null) {
+                return;
+            }
+            io.println("Assignments:");
+            printPages(io, (RoleAssignment after) -> am.page(null, sorter, after, PAGE_SIZE), a -> io.printf(
                     "%s: user=%s, role=%s, type=%s, status=%s, at=%s, expires=%s%n",
                     a.getId(), a.getUsername(), a.getRoleName(),
                     a.getType(), a.getStatus(), a.getAssignedAt(), a.getExpiresAt()));
         });
 
-        parser.registerCommand("assignment-list-user", "Assignments of user", (scanner, system) -> {
+        parser.registerCommand("assignment-list-user", "Assignments of user", (io, system) -> {
             AssignmentManager am = system.getAssignmentManager();
-            System.out.print("Username: ");
-            String username = scanner.nextLine().trim();
-            am.getByUser(username).forEach(a -> System.out.printf(
+            String username = io.ask("username", "Username: ");
+            am.getByUser(username).forEach(a -> io.printf(
                     "%s: role=%s, type=%s, status=%s, at=%s, expires=%s%n",
                     a.getId(), a.getRoleName(), a.getType(),
                     a.getStatus(), a.getAssignedAt(), a.getExpiresAt()));
         });
 
-        parser.registerCommand("assignment-list-role", "Assignments for role", (scanner, system) -> {
+        parser.registerCommand("assignment-list-role", "Assignments for role", (io, system) -> {
             AssignmentManager am = system.getAssignmentManager();
-            System.out.print("Role name: ");
-            String role = scanner.nextLine().trim();
-            am.getByRole(role).forEach(a -> System.out.printf(
+            String role = io.ask("role", "Role name: ");
+            am.getByRole(role).forEach(a -> io.printf(
                     "%s: user=%s, type=%s, status=%s, at=%s, expires=%s%n",
                     a.getId(), a.getUsername(), a.getType(),
                     a.getStatus(), a.getAssignedAt(), a.getExpiresAt()));
         });
 
-        parser.registerCommand("assignment-active", "Active assignments", (scanner, system) -> {
+        parser.registerCommand("assignment-active", "Active assignments", (io, system) -> {
             AssignmentManager am = system.getAssignmentManager();
-            am.getActive().forEach(a -> System.out.printf(
+            am.getActive().forEach(a -> io.printf(
                     "%s: user=%s, role=%s, type=%s, at=%s, expires=%s%n",
                     a.getId(), a.getUsername(), a.getRoleName(),
                     a.getType(), a.getAssignedAt(), a.getExpiresAt()));
         });
 
-        parser.registerCommand("assignment-expired", "Expired assignments", (scanner, system) -> {
+        parser.registerCommand("assignment-expired", "Expired assignments", (io, system) -> {
             AssignmentManager am = system.getAssignmentManager();
-            am.getExpiredAssignments().forEach(a -> System.out.printf(
+            am.getExpiredAssignments().forEach(a -> io.printf(
                     "%s: user=%s, role=%s, at=%s, expired=%s%n",
                     a.getId(), a.getUsername(), a.getRoleName(),
                     a.getAssignedAt(), a.getExpiresAt()));
         });
 
-        parser.registerCommand("assignment-extend", "Extend temporary assignment", (scanner, system) -> {
+        parser.registerCommand("assignment-extend", "Extend temporary assignment", (io, system) -> {
             AssignmentManager am = system.getAssignmentManager();
-            System.out.print("Assignment ID: ");
-            String id = scanner.nextLine().trim();
+            String id = io.ask("id", "Assignment ID: ");
             Optional<RoleAssignment> opt = am.findById(id);
             if (opt.isEmpty()) {
-                System.out.println("Assignment not found.");
+                io.fail("Assignment not found.");
                 return;
             }
             RoleAssignment a = opt.get();
-            System.out.print("New expires at (YYYY-MM-DD): ");
-            String date = scanner.nextLine().trim();
+            String date = io.ask("expires", "New expires at (YYYY-MM-DD): ");
             am.extendTemporaryAssignment(a.assignmentId(), date);
-            System.out.println("Extended.");
+            io.println("Extended.");
         });
 
-        parser.registerCommand("assignment-search", "Search assignments", (scanner, system) -> {
+        parser.registerCommand("assignment-search", "Search assignments", (io, system) -> {
             AssignmentManager am = system.getAssignmentManager();
-            System.out.println("Choose filter:");
-            System.out.println("1 - by user");
-            System.out.println("2 - by role");
-            System.out.println("3 - by type");
-            System.out.println("4 - by status");
-            String choice = scanner.nextLine().trim();
+            if (io.prompting()) {
+                io.println("Choose filter:");
+                io.println("1 - by user");
+                io.println("2 - by role");
+                io.println("3 - by type");
+                io.println("4 - by status");
+            }
+            String choice = io.ask("filter", "");
             List<RoleAssignment> result = new ArrayList<>();
             switch (choice) {
                 case "1" -> {
-                    System.out.print("Username: ");
-                    String username = scanner.nextLine().trim();
+                    String username = io.ask("username", "Username: ");
                     result = am.getByUser(username);
                 }
                 case "2" -> {
-                    System.out.print("Role name: ");
-                    String role = scanner.nextLine().trim();
+                    String role = io.ask("role", "Role name: ");
                     result = am.getByRole(role);
                 }
                 case "3" -> {
-                    System.out.print("Type (PERMANENT/TEMPORARY): ");
-                    String t = scanner.nextLine().trim().toUpperCase();
+                    String t = io.ask("type", "Type (PERMANENT/TEMPORARY): ").toUpperCase();
                     result = am.getAll().stream()
                             .filter(a -> a.getType().name().equals(t))
                             .toList();
                 }
                 case "4" -> {
-                    System.out.print("Status (ACTIVE/INACTIVE): ");
-                    String s = scanner.nextLine().trim().toUpperCase();
+                    String s = io.ask("status", "Status (ACTIVE/INACTIVE): ").toUpperCase();
                     result = am.getAll().stream()
                             .filter(a -> a.getStatus().equals(s))
                             .toList();
                 }
-                default -> System.out.println("Unknown option");
+                default -> io.fail("Unknown option");
             }
-            result.forEach(a -> System.out.printf(
+            result.forEach(a -> io.printf(
                     "%s: user=%s, role=%s, type=%s, status=%s, at=%s, expires=%s%n",
                     a.getId(), a.getUsername(), a.getRoleName(), a.getType(),
                     a.getStatus(), a.getAssignedAt(), a.getExpiresAt()));
@@ -500,19 +582,18 @@ public class CommandRegistry {
     }
 
     private static void registerPermissionCommands(CommandParser parser) {
-        parser.registerCommand("permissions-user", "List user's permissions", (scanner, system) -> {
+        parser.registerCommand("permissions-user", "List user's permissions", (io, system) -> {
             AssignmentManager am = system.getAssignmentManager();
             UserManager um = system.getUserManager();
-            System.out.print("Username: ");
-            String username = scanner.nextLine().trim();
+            String username = io.ask("username", "Username: ");
             User user = um.findByUsername(username).orElse(null);
             if (user == null) {
-                System.out.println("User not found.");
+                io.fail("User not found.");
                 return;
             }
             Set<Permission> perms = am.getUserPermissions(user);
             if (perms.isEmpty()) {
-                System.out.println("No permissions.");
+                io.println("No permissions.");
                 return;
             }
             Map<String, Set<Permission>> byResource = new HashMap<>();
@@ -520,50 +601,192 @@ public class CommandRegistry {
                 byResource.computeIfAbsent(p.getResource(), k -> new HashSet<>()).add(p);
             }
             byResource.forEach((resource, plist) -> {
-                System.out.println(resource + ":");
-                plist.forEach(p -> System.out.println("  - " + p.getName()));
+                io.println(resource + ":");
+                plist.forEach(p -> io.println("  - " + p.getName()));
             });
         });
 
-        parser.registerCommand("permissions-check", "Check user's permission", (scanner, system) -> {
-            AssignmentManager am = system.getAssignmentManager();
+        parser.registerCommand("permissions-check", "Check user's permission", (io, system) -> {
             UserManager um = system.getUserManager();
-            System.out.print("Username: ");
-            String username = scanner.nextLine().trim();
+            String username = io.ask("username", "Username: ");
             User user = um.findByUsername(username).orElse(null);
             if (user == null) {
-                System.out.println("User not found.");
+                io.fail("User not found.");
                 return;
             }
-            System.out.print("Permission name: ");
-            String permName = scanner.nextLine().trim();
-            System.out.print("Resource: ");
-            String resource = scanner.nextLine().trim();
-            boolean has = am.userHasPermission(user, permName, resource);
-            System.out.println(has ? "Permission granted." : "Permission denied.");
+            String permName = io.ask("permission", "Permission name: ");
+            String resource = io.ask("resource", "Resource: ");
+            Decision decision = system.checkPermission(username, permName, resource);
+            io.printf("%s (snapshot v%d)%n",
+                    decision.granted() ? "Permission granted." : "Permission denied.", decision.version());
+        });
+    }
+
+    private static void registerReportCommands(CommandParser parser) {
+        parser.registerCommand("report-export", "Stream a report to a file", (io, system) -> {
+            String report = io.ask("report", "Report (users/roles/matrix): ").toLowerCase();
+            ReportFormat format;
+            try {
+                format = ReportFormat.parse(io.ask("format", "Format (text/csv/jsonl): "));
+            } catch (IllegalArgumentException e) {
+                io.fail("Error: " + e.getMessage());
+                return;
+            }
+            String file = io.ask("file", "File: ");
+            if (file.isEmpty() || !List.of("users", "roles", "matrix").contains(report)) {
+                io.fail("Report must be users, roles or matrix, and a file is required.");
+                return;
+            }
+            ReportGenerator reports = new ReportGenerator();
+            try (FileChannel channel = FileChannel.open(Path.of(file), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                switch (report) {
+                    case "users" -> reports.writeUserReport(system.getUserManager(),
+                            system.getAssignmentManager(), format, channel);
+                    case "roles" -> reports.writeRoleReport(system.getRoleManager(),
+                            system.getAssignmentManager(), format, channel);
+                    default -> reports.writePermissionMatrix(system.getUserManager(),
+                            system.getAssignmentManager(), format, channel);
+                }
+                io.println("Report written to " + file);
+            } catch (IOException e) {
+                io.fail("Failed to write report: " + e.getMessage());
+            }
+        });
+
+        parser.registerCommand("bulk-import", "Import users, roles or assignments from a file", (io, system) -> {
+            String kind = io.ask("import", "Import (users/roles/assignments): ").toLowerCase();
+            ImportFormat format;
+            try {
+                format = ImportFormat.parse(io.ask("format", "Format (csv/jsonl): "));
+            } catch (IllegalArgumentException e) {
+                io.fail("Error: " + e.getMessage());
+                return;
+            }
+            String file = io.ask("file", "File: ");
+            if (file.isEmpty() || !List.of("users", "roles", "assignments").contains(kind)) {
+                io.fail("Import must be users, roles or assignments, and a file is required.");
+                return;
+            }
+            String errors = io.ask("errors", "Error report file (empty to print the first errors): ", "");
+            BulkImporter importer = new BulkImporter(system, ForkJoinPool.commonPool());
+            ImportReport report;
+            try (Reader in = Files.newBufferedReader(Path.of(file))) {
+                report = switch (kind) {
+                    case "users" -> importer.importUsers(in, format);
+                    case "roles" -> importer.importRoles(in, format);
+                    default -> importer.importAssignments(in, format);
+                };
+            } catch (IOException | IllegalArgumentException e) {
+                io.fail("Import failed: " + e.getMessage());
+                return;
+            }
+            io.println(report.summary());
+            if (!errors.isEmpty()) {
+                try (Writer out = Files.newBufferedWriter(Path.of(errors))) {
+                    report.writeErrors(out);
+                    io.println("Errors written to " + errors);
+                } catch (IOException e) {
+                    io.fail("Failed to write errors: " + e.getMessage());
+                }
+                return;
+            }
+            report.errors().stream().limit(PAGE_SIZE).forEach(error ->
+                    io.println("  line " + error.line() + ": " + error.message()));
+            if (report.rejected() > PAGE_SIZE) {
+                io.println("  ... " + (report.rejected() - PAGE_SIZE) + " more");
+            }
+        });
+    }
+
+    private static void registerMetricsCommands(CommandParser parser) {
+        parser.registerCommand("metrics", "Show, toggle or dump metrics", (io, system) -> {
+            String action = io.ask("action", "Action (show/on/off/dump): ").toLowerCase();
+            switch (action) {
+                case "show", "" -> {
+                    io.println("Timing " + (system.isMetricsEnabled() ? "on" : "off"));
+                    io.print(system.getMetrics().format());
+                }
+                case "on" -> {
+                    system.enableMetrics();
+                    parser.setMetrics(system.getMetrics());
+                    io.println("Timing on.");
+                }
+                case "off" -> {
+                    system.disableMetrics();
+                    parser.setMetrics(null);
+                    io.println("Timing off.");
+                }
+                case "dump" -> {
+                    String file = io.ask("file", "File (Prometheus text format): ");
+                    if (file.isEmpty()) {
+                        io.fail("Error: file must be non-blank");
+                        return;
+                    }
+                    try {
+                        PrometheusFormat.writeFile(system.getMetrics(), Path.of(file));
+                        io.println("Metrics written to " + file);
+                    } catch (IOException e) {
+                        io.fail("Failed to write metrics: " + e.getMessage());
+                    }
+                }
+                default -> io.fail("Error: action must be show, on, off or dump");
+            }
         });
     }
 
     private static void registerServiceCommands(CommandParser parser) {
-        parser.registerCommand("help", "Show help", (scanner, system) -> parser.printHelp());
+        parser.registerCommand("help", "Show help", (io, system) -> parser.printHelp(io));
 
-        parser.registerCommand("stats", "Show statistics", (scanner, system) ->
-                System.out.println(system.generateStatistics()));
+        parser.registerCommand("stats", "Show statistics", (io, system) ->
+                io.println(system.generateStatistics()));
 
-        parser.registerCommand("clear", "Clear screen", (scanner, system) -> {
+        parser.registerCommand("clear", "Clear screen", (io, system) -> {
             for (int i = 0; i < 30; i++) {
-                System.out.println();
+                io.println();
             }
         });
 
-        parser.registerCommand("exit", "Exit program", (scanner, system) -> {
-            System.out.print("Exit? (yes/no): ");
-            String ans = scanner.nextLine().trim();
-            if ("yes".equalsIgnoreCase(ans)) {
-                System.out.println("Bye.");
+        parser.registerCommand("exit", "Exit program", (io, system) -> {
+            if (io.confirm("Exit? (yes/no): ", "yes")) {
+                io.println("Bye.");
+                io.flush();
                 System.exit(0);
             }
         });
     }
-}
 
+    // "name" or "-name" from orders; the default when blank, null (after saying so) when unknown
+    private static <T> Comparator<T> sortOrder(CommandIO io, String input, Map<String, SortKey<T, ?>> orders, SortKey<T, ?> byDefault) {
+        String name = input.trim().toLowerCase();
+        if (name.isEmpty()) {
+            return byDefault;
+        }
+        boolean descending = name.startsWith("-");
+        SortKey<T, ?> order = orders.get(descending ? name.substring(1) : name);
+        if (order == null) {
+            io.fail("Error: sort must be one of " + new TreeSet<>(orders.keySet()));
+            return null;
+        }
+        return descending ? order.reversed() : order;
+    }
+
+    // prints a listing PAGE_SIZE items at a time, asking before each further page when prompting
+    private static <T> void printPages(CommandIO io, Function<T, Page<T>> next, Consumer<T> print) {
+        T after = null;
+        while (true) {
+            Page<T> page = next.apply(after);
+            page.items().forEach(print);
+            if (!page.hasMore()) {
+                return;
+            }
+            if (io.prompting()) {
+                String answer = io.readLine("-- more (Enter for the next page, q to stop) -- ");
+                if (answer == null || answer.equalsIgnoreCase("q")) {
+                    return;
+                }
+            }
+            after = page.last();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package rbac.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A filter as a predicate tree the {@link QueryPlanner} can look into: conditions combined with
+ * {@link All} and {@link Any}. A condition names the index that can answer it, if any, so the
+ * planner can fetch candidates from that index instead of scanning everything.
+ */
+public sealed interface FilterNode<T> permits FilterNode.Condition, FilterNode.All, FilterNode.Any {
+
+    boolean test(T item);
+
+    /**
+     * One condition. {@code index} names the index that can find its matches ({@code null} when
+     * none can, e.g. for a substring search or a lambda) and {@code key} is what to look up there:
+     * a value, or a {@link Range}. {@code description} is shown by {@link QueryPlan#explain()}.
+     */
+    record Condition<T>(String index, Object key, String description, Predicate<? super T> predicate)
+            implements FilterNode<T> {
+
+        public Condition {
+            if (predicate == null) {
+                throw new IllegalArgumentException("predicate must not be null");
+            }
+        }
+
+        @Override
+        public boolean test(T item) {
+            return predicate.test(item);
+        }
+
+        public boolean isIndexed() {
+            return index != null;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    /** Matches when every part matches. */
+    record All<T>(List<FilterNode<T>> parts) implements FilterNode<T> {
+
+        public All {
+            parts = List.copyOf(parts);
+        }
+
+        @Override
+        public boolean test(T item) {
+            for (FilterNode<T> part : parts) {
+                if (!part.test(item)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return join(parts, " and ");
+        }
+    }
+
+    /** Matches when any part matches. */
+    record Any<T>(List<FilterNode<T>> parts) implements FilterNode<T> {
+
+        public Any {
+            parts = List.copyOf(parts);
+        }
+
+        @Override
+        public boolean test(T item) {
+            for (FilterNode<T> part : parts) {
+                if (part.test(item)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return join(parts, " or ");
+        }
+    }
+
+    /** Inclusive range of longs, e.g. epoch milliseconds, used as the key of a range condition. */
+    record Range(long from, long to) {
+
+        @Override
+        public String toString() {
+            return "[" + (from == Long.MIN_VALUE ? "" : from) + ".." + (to == Long.MAX_VALUE ? "" : to) + "]";
+        }
+    }
+
+    static <T> Condition<T> indexed(String index, Object key, String description, Predicate<? super T> predicate) {
+        if (index == null || key == null) {
+            throw new IllegalArgumentException("index and key must not be null");
+        }
+        return new Condition<>(index, key, description, predicate);
+    }
+
+    static <T> Condition<T> unindexed(String description, Predicate<? super T> predicate) {
+        return new Condition<>(null, null, description, predicate);
+    }
+
+    /** A predicate the planner knows nothing about, such as a lambda. */
+    static <T> Condition<T> opaque(Predicate<? super T> predicate) {
+        return unindexed("<custom>", predicate);
+    }
+
+    /** {@code a and b}, flattening nested conjunctions. */
+    static <T> FilterNode<T> all(FilterNode<T> a, FilterNode<T> b) {
+        List<FilterNode<T>> parts = new ArrayList<>();
+        for (FilterNode<T> node : List.of(a, b)) {
+            if (node instanceof All<T> all) {
+                parts.addAll(all.parts());
+            } else {
+                parts.add(node);
+            }
+        }
+        return new All<>(parts);
+    }
+
+    /** {@code a or b}, flattening nested disjunctions. */
+    static <T> FilterNode<T> any(FilterNode<T> a, FilterNode<T> b) {
+        List<FilterNode<T>> parts = new ArrayList<>();
+        for (FilterNode<T> node : List.of(a, b)) {
+            if (node instanceof Any<T> any) {
+                parts.addAll(any.parts());
+            } else {
+                parts.add(node);
+            }
+        }
+        return new Any<>(parts);
+    }
+
+    private static String join(List<? extends FilterNode<?>> parts, String separator) {
+        StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < parts.size(); i++) {
+            sb.append(i > 0 ? separator : "").append(parts.get(i));
+        }
+        return sb.append(')').toString();
+    }
+}
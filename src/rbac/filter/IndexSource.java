@@ -0,0 +1,19 @@
+package rbac.filter;
+
+import java.util.Collection;
+
+/** The indexes a repository offers to the {@link QueryPlanner}. */
+public interface IndexSource<T> {
+
+    /**
+     * How many items match {@code condition}, counting no further than {@code limit}, or
+     * {@code -1} if no index can answer it.
+     */
+    int estimate(FilterNode.Condition<T> condition, int limit);
+
+    /**
+     * Items matching {@code condition}, exactly: the planner does not test the condition again.
+     * Only called for conditions {@link #estimate} accepted.
+     */
+    Collection<T> lookup(FilterNode.Condition<T> condition);
+}
@@ -0,0 +1,49 @@
+package rbac.filter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/** How a filter will be answered, from {@link QueryPlanner#plan}. */
+public final class QueryPlan<T> {
+
+    private final FilterNode<T> filter;
+    // null for a full scan
+    private final Supplier<Collection<T>> rows;
+    private final String description;
+
+    QueryPlan(FilterNode<T> filter, Supplier<Collection<T>> rows, String description) {
+        this.filter = filter;
+        this.rows = rows;
+        this.description = description;
+    }
+
+    /** Runs the plan; {@code all} is only iterated for a full scan. */
+    public List<T> execute(Iterable<? extends T> all) {
+        if (rows != null) {
+            return new ArrayList<>(rows.get());
+        }
+        List<T> result = new ArrayList<>();
+        for (T item : all) {
+            if (filter.test(item)) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    public boolean usesIndex() {
+        return rows != null;
+    }
+
+    /** E.g. {@code index (email ends with @acme.com), then test [(name contains ann)]}. */
+    public String explain() {
+        return description;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
@@ -0,0 +1,113 @@
+package rbac.filter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Picks how to answer a filter. For a conjunction it drives the lookup from the indexed
+ * condition with the fewest matches and tests the other parts on those candidates only; a
+ * disjunction is answered by index only when every branch can be, as the union of the branches.
+ * Anything else is a full scan.
+ */
+public final class QueryPlanner {
+
+    private QueryPlanner() {
+    }
+
+    /**
+     * @param total number of items a full scan would visit; plans expected to touch as many are
+     *              not worth an index
+     */
+    public static <T> QueryPlan<T> plan(FilterNode<T> filter, IndexSource<T> indexes, int total) {
+        if (filter == null || indexes == null) {
+            throw new IllegalArgumentException("filter and indexes must not be null");
+        }
+        Access<T> access = access(filter, indexes, total);
+        return new QueryPlan<>(filter, access != null && access.estimate < total ? access.rows : null,
+                access != null && access.estimate < total ? access.description : "scan " + filter);
+    }
+
+    // a way to produce exactly the items matching a node, with an upper bound on how many there are
+    private record Access<T>(int estimate, String description, Supplier<Collection<T>> rows) {
+    }
+
+    private static <T> Access<T> access(FilterNode<T> node, IndexSource<T> indexes, int limit) {
+        if (node instanceof FilterNode.Condition<T> condition) {
+            if (!condition.isIndexed()) {
+                return null;
+            }
+            int estimate = indexes.estimate(condition, limit);
+            return estimate < 0 ? null
+                    : new Access<>(estimate, "index " + condition, () -> indexes.lookup(condition));
+        }
+        if (node instanceof FilterNode.All<T> all) {
+            return conjunction(all.parts(), indexes, limit);
+        }
+        return disjunction(((FilterNode.Any<T>) node).parts(), indexes, limit);
+    }
+
+    private static <T> Access<T> conjunction(List<FilterNode<T>> parts, IndexSource<T> indexes, int limit) {
+        Access<T> best = null;
+        int driver = -1;
+        for (int i = 0; i < parts.size(); i++) {
+            Access<T> access = access(parts.get(i), indexes, best != null ? best.estimate : limit);
+            if (access != null && (best == null || access.estimate < best.estimate)) {
+                best = access;
+                driver = i;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        List<FilterNode<T>> residual = new ArrayList<>(parts);
+        residual.remove(driver);
+        if (residual.isEmpty()) {
+            return best;
+        }
+        Supplier<Collection<T>> rows = best.rows;
+        return new Access<>(best.estimate, best.description + ", then test " + residual, () -> {
+            List<T> result = new ArrayList<>();
+            outer:
+            for (T item : rows.get()) {
+                for (FilterNode<T> part : residual) {
+                    if (!part.test(item)) {
+                        continue outer;
+                    }
+                }
+                result.add(item);
+            }
+            return result;
+        });
+    }
+
+    private static <T> Access<T> disjunction(List<FilterNode<T>> parts, IndexSource<T> indexes, int limit) {
+        List<Access<T>> branches = new ArrayList<>(parts.size());
+        long estimate = 0;
+        for (FilterNode<T> part : parts) {
+            Access<T> access = access(part, indexes, limit);
+            if (access == null) {
+                return null;
+            }
+            estimate += access.estimate;
+            if (estimate >= limit) {
+                return null;
+            }
+            branches.add(access);
+        }
+        StringBuilder description = new StringBuilder("union of");
+        for (Access<T> branch : branches) {
+            description.append(" {").append(branch.description).append('}');
+        }
+        return new Access<>((int) estimate, description.toString(), () -> {
+            Set<T> result = new LinkedHashSet<>();
+            for (Access<T> branch : branches) {
+                result.addAll(branch.rows.get());
+            }
+            return result;
+        });
+    }
+}
@@ -0,0 +1,371 @@
+package rbac.importer;
+
+import rbac.assignment.AssignmentManager;
+import rbac.assignment.AssignmentMetadata;
+import rbac.assignment.PermanentAssignment;
+import rbac.assignment.RoleAssignment;
+import rbac.assignment.TemporaryAssignment;
+import rbac.permission.Permission;
+import rbac.role.Role;
+import rbac.role.RoleManager;
+import rbac.system.RBACSystem;
+import rbac.user.User;
+import rbac.user.UserManager;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Loads users, roles and assignments in bulk from CSV or JSON Lines. The input is streamed in
+ * chunks of {@value #CHUNK} records; each chunk is parsed and validated with the rules of
+ * {@link User#validate}, {@link Permission} and {@link AssignmentManager#add}, on the pool when
+ * the importer has one, while the calling thread applies the chunks already validated, in input
+ * order, with one {@code addAll} per chunk. The whole import is one {@link RBACSystem#runBatch},
+ * so the authorization snapshot is rebuilt, and a {@code PER_BATCH} mutation log synced, once at
+ * the end rather than per row.
+ * <p>
+ * A row that fails is skipped and reported with its line number in the {@link ImportReport};
+ * the other rows are imported.
+ */
+public class BulkImporter {
+
+    private static final int CHUNK = 4096;
+    private static final String DEFAULT_ASSIGNER = "import";
+
+    private final RBACSystem system;
+    private final ForkJoinPool pool;
+
+    /** Parses and validates every chunk on the calling thread. */
+    public BulkImporter(RBACSystem system) {
+        this(system, null, false);
+    }
+
+    /**
+     * Parses and validates chunks on {@code pool}, a few chunks ahead of the one being applied.
+     * The pool is not shut down by the importer.
+     */
+    public BulkImporter(RBACSystem system, ForkJoinPool pool) {
+        this(system, pool, true);
+    }
+
+    private BulkImporter(RBACSystem system, ForkJoinPool pool, boolean parallel) {
+        if (system == null) {
+            throw new IllegalArgumentException("system must not be null");
+        }
+        if (parallel && pool == null) {
+            throw new IllegalArgumentException("pool must not be null");
+        }
+        this.system = system;
+        this.pool = pool;
+    }
+
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    /** Columns {@code username}, {@code full_name} and {@code email}, as in the user report. */
+    public ImportReport importUsers(Reader reader, ImportFormat format) throws IOException {
+        UserManager users = system.getUserManager();
+        return run("users", reader, format, List.of("username", "full_name", "email"), 3, users::runBulkLoad,
+                values -> User.validate(values[0], values[1], values[2]),
+                (rows, report) -> {
+                    Set<String> seen = new HashSet<>(rows.size() * 2);
+                    List<Row<User>> batch = new ArrayList<>(rows.size());
+                    for (Row<User> row : rows) {
+                        String username = row.value().getUsername();
+                        if (users.exists(username) || !seen.add(username)) {
+                            report.reject(row.line(), "User with username '" + username + "' already exists");
+                        } else {
+                            batch.add(row);
+                        }
+                    }
+                    addAll(batch, report, users::addAll, users::add);
+                },
+                report -> {
+                });
+    }
+
+    /**
+     * Columns {@code name}, and optionally {@code description}, {@code permissions} and
+     * {@code parents}. Permissions are {@code ACTION:RESOURCE} or
+     * {@code ACTION:RESOURCE:description} separated by {@code ;} (in JSON also an array of such
+     * strings); without a description they take the role's. Parents are role names separated by
+     * {@code ;}, linked once every role of the input has been added; a role whose parent cannot
+     * be linked stays imported, and the failed link is reported on its line.
+     */
+    public ImportReport importRoles(Reader reader, ImportFormat format) throws IOException {
+        RoleManager roles = system.getRoleManager();
+        List<Row<RoleRow>> linked = new ArrayList<>();
+        ImportReport report = run("roles", reader, format, List.of("name", "description", "permissions", "parents"), 1,
+                Runnable::run,
+                values -> new RoleRow(values[0], values[1], permissions(values[2], values[0], values[1]),
+                        split(values[3])),
+                (rows, chunkReport) -> {
+                    for (Row<RoleRow> row : rows) {
+                        RoleRow spec = row.value();
+                        if (roles.exists(spec.name())) {
+                            chunkReport.reject(row.line(), "Role with name '" + spec.name() + "' already exists");
+                            continue;
+                        }
+                        Role role;
+                        try {
+                            role = new Role(spec.name(), spec.description());
+                        } catch (IllegalArgumentException e) {
+                            chunkReport.reject(row.line(), e.getMessage());
+                            continue;
+                        }
+                        role.addPermissions(spec.permissions());
+                        try {
+                            roles.add(role);
+                        } catch (IllegalArgumentException | IllegalStateException e) {
+                            role.releaseName();
+                            chunkReport.reject(row.line(), e.getMessage());
+                            continue;
+                        }
+                        chunkReport.countImported(1);
+                        if (!spec.parents().isEmpty()) {
+                            linked.add(row);
+                        }
+                    }
+                },
+                finished -> {
+                    for (Row<RoleRow> row : linked) {
+                        for (String parent : row.value().parents()) {
+                            try {
+                                roles.addParent(row.value().name(), parent);
+                            } catch (IllegalArgumentException | IllegalStateException e) {
+                                finished.reject(row.line(), e.getMessage());
+                            }
+                        }
+                    }
+                });
+        return report;
+    }
+
+    /**
+     * Columns {@code username} and {@code role}, and optionally {@code expires_at} (which makes
+     * the assignment temporary), {@code auto_renew}, {@code assigned_by} (default
+     * {@value #DEFAULT_ASSIGNER}), {@code assigned_at} (default now) and {@code reason}. The
+     * users and roles must exist already, e.g. from an earlier import.
+     */
+    public ImportReport importAssignments(Reader reader, ImportFormat format) throws IOException {
+        UserManager users = system.getUserManager();
+        RoleManager roles = system.getRoleManager();
+        AssignmentManager assignments = system.getAssignmentManager();
+        return this.<RoleAssignment>run("assignments", reader, format,
+                List.of("username", "role", "expires_at", "auto_renew", "assigned_by", "assigned_at", "reason"), 2,
+                assignments::runBulkLoad,
+                values -> {
+                    User user = users.findByUsername(values[0]).orElseThrow(() ->
+                            new IllegalArgumentException("User with username '" + values[0] + "' not found"));
+                    Role role = roles.findByName(values[1]).orElseThrow(() ->
+                            new IllegalArgumentException("Role with name '" + values[1] + "' not found"));
+                    String assignedBy = values[4] != null ? values[4] : DEFAULT_ASSIGNER;
+                    AssignmentMetadata metadata = values[5] != null
+                            ? new AssignmentMetadata(assignedBy, values[5], values[6])
+                            : AssignmentMetadata.now(assignedBy, values[6]);
+                    boolean autoRenew = flag(values[3], "auto_renew");
+                    if (values[2] == null) {
+                        if (autoRenew) {
+                            throw new IllegalArgumentException("auto_renew needs expires_at");
+                        }
+                        return new PermanentAssignment(user, role, metadata);
+                    }
+                    return new TemporaryAssignment(user, role, metadata, values[2], autoRenew);
+                },
+                (rows, report) -> {
+                    // the manager refuses a second active assignment of a role, also within one addAll
+                    Set<String> seen = new HashSet<>(rows.size() * 2);
+                    List<Row<RoleAssignment>> batch = new ArrayList<>(rows.size());
+                    for (Row<RoleAssignment> row : rows) {
+                        RoleAssignment assignment = row.value();
+                        if (assignment.isActive() && (assignments.userHasRole(assignment.getUser(), assignment.getRole())
+                                || !seen.add(assignment.getUsername() + '\0' + assignment.getRole().getId()))) {
+                            report.reject(row.line(), "User already has active assignment for this role");
+                        } else {
+                            batch.add(row);
+                        }
+                    }
+                    addAll(batch, report, assignments::addAll, assignments::add);
+                },
+                report -> {
+                });
+    }
+
+    private record Row<T>(long line, T value) {
+    }
+
+    private record RoleRow(String name, String description, List<Permission> permissions, List<String> parents) {
+    }
+
+    // what a chunk became: the rows that passed validation and the errors of the others
+    private record Parsed<T>(List<Row<T>> rows, List<ImportReport.RowError> errors) {
+    }
+
+    /** Builds the value of one row; throws IllegalArgumentException or IllegalStateException to reject it. */
+    @FunctionalInterface
+    private interface RowParser<T> {
+        T parse(String[] values);
+    }
+
+    /** Applies one chunk of valid rows, counting the ones imported and rejecting the others. */
+    @FunctionalInterface
+    private interface ChunkApplier<T> {
+        void apply(List<Row<T>> rows, ImportReport report);
+    }
+
+    /**
+     * @param bulk runs the import inside the manager's bulk load, so its sorted indexes are
+     *             rebuilt once at the end
+     * @param last runs after the last chunk, still inside the batch
+     */
+    private <T> ImportReport run(String kind, Reader reader, ImportFormat format, List<String> columns, int required,
+                                 Consumer<Runnable> bulk, RowParser<T> parser, ChunkApplier<T> applier,
+                                 Consumer<ImportReport> last) throws IOException {
+        if (reader == null || format == null) {
+            throw new IllegalArgumentException("reader and format must not be null");
+        }
+        BufferedReader in = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader, 1 << 16);
+        RecordReader records = new RecordReader(in, format, columns, required);
+        ImportReport report = new ImportReport(kind);
+        try {
+            system.runBatch(() -> bulk.accept(() -> {
+                try {
+                    stream(records, parser, applier, report);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                last.accept(report);
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        report.finish();
+        return report;
+    }
+
+    // reads chunk after chunk, keeping up to two per pool thread in validation ahead of the one applied
+    private <T> void stream(RecordReader records, RowParser<T> parser, ChunkApplier<T> applier,
+                            ImportReport report) throws IOException {
+        Queue<ForkJoinTask<Parsed<T>>> ahead = new ArrayDeque<>();
+        int maxAhead = pool != null ? Math.max(2, pool.getParallelism() * 2) : 0;
+        List<RecordReader.Raw> chunk;
+        while (!(chunk = records.next(CHUNK)).isEmpty()) {
+            report.countRead(chunk.size());
+            if (pool == null) {
+                apply(parse(records, chunk, parser), applier, report);
+                continue;
+            }
+            List<RecordReader.Raw> raw = chunk;
+            ahead.add(pool.submit(() -> parse(records, raw, parser)));
+            if (ahead.size() > maxAhead) {
+                apply(ahead.remove().join(), applier, report);
+            }
+        }
+        while (!ahead.isEmpty()) {
+            apply(ahead.remove().join(), applier, report);
+        }
+    }
+
+    private static <T> Parsed<T> parse(RecordReader records, List<RecordReader.Raw> chunk, RowParser<T> parser) {
+        List<Row<T>> rows = new ArrayList<>(chunk.size());
+        List<ImportReport.RowError> errors = new ArrayList<>();
+        for (RecordReader.Raw record : chunk) {
+            try {
+                rows.add(new Row<>(record.line(), parser.parse(records.values(record))));
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                errors.add(new ImportReport.RowError(record.line(), e.getMessage()));
+            }
+        }
+        return new Parsed<>(rows, errors);
+    }
+
+    private static <T> void apply(Parsed<T> parsed, ChunkApplier<T> applier, ImportReport report) {
+        for (ImportReport.RowError error : parsed.errors()) {
+            report.reject(error.line(), error.message());
+        }
+        if (!parsed.rows().isEmpty()) {
+            applier.apply(parsed.rows(), report);
+        }
+    }
+
+    /**
+     * Adds the rows with one {@code addAll}. If that fails, because something changed since the
+     * rows were checked, they are added one by one so only the offending rows are rejected.
+     */
+    private static <T> void addAll(List<Row<T>> rows, ImportReport report,
+                                   Consumer<List<T>> addAll, Consumer<T> add) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<T> values = new ArrayList<>(rows.size());
+        for (Row<T> row : rows) {
+            values.add(row.value());
+        }
+        try {
+            addAll.accept(values);
+            report.countImported(values.size());
+            return;
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            // fall through to one by one
+        }
+        for (Row<T> row : rows) {
+            try {
+                add.accept(row.value());
+                report.countImported(1);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                report.reject(row.line(), e.getMessage());
+            }
+        }
+    }
+
+    // "ACTION:RESOURCE[:description];..." into permissions, validated by Permission
+    private static List<Permission> permissions(String list, String role, String roleDescription) {
+        String fallback = roleDescription != null ? roleDescription : role;
+        List<Permission> permissions = new ArrayList<>();
+        for (String spec : split(list)) {
+            String[] parts = spec.split(":", 3);
+            if (parts.length < 2) {
+                throw new IllegalArgumentException("permission '" + spec + "' must be ACTION:RESOURCE[:description]");
+            }
+            permissions.add(new Permission(parts[0].trim(), parts[1].trim(),
+                    parts.length == 3 && !parts[2].isBlank() ? parts[2].trim() : fallback));
+        }
+        return permissions;
+    }
+
+    private static List<String> split(String list) {
+        if (list == null) {
+            return List.of();
+        }
+        List<String> items = new ArrayList<>();
+        for (String item : list.split(";")) {
+            if (!item.isBlank()) {
+                items.add(item.trim());
+            }
+        }
+        return items;
+    }
+
+    private static boolean flag(String value, String column) {
+        if (value == null) {
+            return false;
+        }
+        return switch (value.toLowerCase()) {
+            case "true", "yes", "1" -> true;
+            case "false", "no", "0" -> false;
+            default -> throw new IllegalArgumentException(column + " must be true or false");
+        };
+    }
+}
@@ -0,0 +1,23 @@
+package rbac.importer;
+
+/** Input formats of {@link BulkImporter}. */
+public enum ImportFormat {
+
+    /** RFC 4180 CSV; the header row names the columns. */
+    CSV,
+
+    /** One flat JSON object per line. */
+    JSONL;
+
+    /** Parses a format name ignoring case, e.g. {@code "csv"}. */
+    public static ImportFormat parse(String name) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("format must be non-blank");
+        }
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("format must be one of csv, jsonl");
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package rbac.importer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of one {@link BulkImporter} run: how many records were read and imported, and why each
+ * rejected row was rejected. Only the first {@value #MAX_ERRORS} errors are kept;
+ * {@link #rejected()} counts all of them.
+ */
+public final class ImportReport {
+
+    public static final int MAX_ERRORS = 10_000;
+
+    /** A rejected row: the line it starts on and the reason. */
+    public record RowError(long line, String message) {
+    }
+
+    private final String kind;
+    private final long startNanos = System.nanoTime();
+    private long read;
+    private long imported;
+    private long rejected;
+    private long elapsedNanos;
+    private final List<RowError> errors = new ArrayList<>();
+
+    ImportReport(String kind) {
+        this.kind = kind;
+    }
+
+    void countRead(int records) {
+        read += records;
+    }
+
+    void countImported(int records) {
+        imported += records;
+    }
+
+    void reject(long line, String message) {
+        rejected++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(new RowError(line, message));
+        }
+    }
+
+    void finish() {
+        elapsedNanos = System.nanoTime() - startNanos;
+        errors.sort(Comparator.comparingLong(RowError::line));
+    }
+
+    /** What was imported: "users", "roles" or "assignments". */
+    public String kind() {
+        return kind;
+    }
+
+    public long read() {
+        return read;
+    }
+
+    public long imported() {
+        return imported;
+    }
+
+    public long rejected() {
+        return rejected;
+    }
+
+    /** The kept errors in line order. */
+    public List<RowError> errors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    public long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /** e.g. "users: 999998 of 1000000 imported, 2 rejected in 8412 ms". */
+    public String summary() {
+        return "%s: %d of %d imported, %d rejected in %d ms".formatted(kind, imported, read, rejected, elapsedMillis());
+    }
+
+    /** The kept errors as CSV with a {@code line,error} header. */
+    public void writeErrors(Writer writer) throws IOException {
+        if (writer == null) {
+            throw new IllegalArgumentException("writer must not be null");
+        }
+        writer.write("line,error\r\n");
+        for (RowError error : errors) {
+            writer.write(Long.toString(error.line()));
+            writer.write(',');
+            writer.write(quoted(error.message()));
+            writer.write("\r\n");
+        }
+        writer.flush();
+    }
+
+    private static String quoted(String value) {
+        if (value == null) {
+            return "";
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return '"' + value.replace("\"", "\"\"") + '"';
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,329 @@
+package rbac.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits an input into records, and records into the values of the columns an import asks for.
+ * Splitting is sequential and only looks for line ends and quotes; {@link #values} does the
+ * parsing and can be called from any thread.
+ * <p>
+ * Column names are matched ignoring case and underscores, so a CSV {@code full_name} column and
+ * a JSON {@code fullName} key are the same column. Blank values read as {@code null}.
+ */
+final class RecordReader {
+
+    /** One record as read, with the line it starts on. */
+    record Raw(long line, String text) {
+    }
+
+    private final BufferedReader in;
+    private final ImportFormat format;
+    private final String[] columns;
+    private final String[] keys;
+    private final int required;
+    // CSV only: cell of each requested column, -1 when the header has no such column
+    private final int[] cells;
+    private long line;
+
+    /**
+     * @param columns  the columns to read, the first {@code required} of them mandatory
+     * @throws IllegalArgumentException if a CSV header lacks a mandatory column
+     */
+    RecordReader(BufferedReader in, ImportFormat format, List<String> columns, int required) throws IOException {
+        this.in = in;
+        this.format = format;
+        this.columns = columns.toArray(String[]::new);
+        this.keys = new String[this.columns.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = key(this.columns[i]);
+        }
+        this.required = required;
+        this.cells = new int[keys.length];
+        if (format == ImportFormat.CSV) {
+            Raw header = next();
+            List<String> names = header != null ? splitCsv(header.text().replace("\uFEFF", "")) : List.of();
+            for (int i = 0; i < keys.length; i++) {
+                cells[i] = -1;
+                for (int c = 0; c < names.size(); c++) {
+                    if (keys[i].equals(key(names.get(c)))) {
+                        cells[i] = c;
+                        break;
+                    }
+                }
+                if (i < required && cells[i] < 0 && header != null) {
+                    throw new IllegalArgumentException("CSV header must name the columns "
+                            + String.join(", ", columns.subList(0, required)));
+                }
+            }
+        }
+    }
+
+    /** The next non-blank record, or {@code null} at the end of the input. */
+    Raw next() throws IOException {
+        String text;
+        do {
+            text = in.readLine();
+            line++;
+            if (text == null) {
+                return null;
+            }
+        } while (text.isBlank());
+        long start = line;
+        if (format == ImportFormat.CSV && quotes(text) % 2 != 0) {
+            // a quoted value spans lines; keep reading until its quote is closed
+            StringBuilder record = new StringBuilder(text);
+            int open = quotes(text);
+            String more;
+            while (open % 2 != 0 && (more = in.readLine()) != null) {
+                line++;
+                record.append('\n').append(more);
+                open += quotes(more);
+            }
+            text = record.toString();
+        }
+        return new Raw(start, text);
+    }
+
+    /** Up to {@code max} records; empty at the end of the input. */
+    List<Raw> next(int max) throws IOException {
+        List<Raw> records = new ArrayList<>(max);
+        Raw record;
+        while (records.size() < max && (record = next()) != null) {
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * The values of the requested columns in {@code record}, in the order they were requested.
+     *
+     * @throws IllegalArgumentException if the record is malformed or a mandatory value is blank
+     */
+    String[] values(Raw record) {
+        String[] values = new String[keys.length];
+        if (format == ImportFormat.CSV) {
+            List<String> row = splitCsv(record.text());
+            for (int i = 0; i < keys.length; i++) {
+                int cell = cells[i];
+                values[i] = cell >= 0 && cell < row.size() ? blankToNull(row.get(cell)) : null;
+            }
+        } else {
+            new JsonObject(record.text(), keys, values).parse();
+        }
+        for (int i = 0; i < required; i++) {
+            if (values[i] == null) {
+                throw new IllegalArgumentException(columns[i] + " must be non-blank");
+            }
+        }
+        return values;
+    }
+
+    private static String key(String column) {
+        return column.replace("_", "").trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String blankToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static int quotes(String text) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '"') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // RFC 4180: fields separated by commas, quoted fields may hold commas, line ends and "" for a quote
+    private static List<String> splitCsv(String text) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        int i = 0;
+        int length = text.length();
+        while (true) {
+            field.setLength(0);
+            if (i < length && text.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= length) {
+                        throw new IllegalArgumentException("unterminated quoted value");
+                    }
+                    char c = text.charAt(i++);
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i < length && text.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                if (i < length && text.charAt(i) != ',') {
+                    throw new IllegalArgumentException("unexpected text after a quoted value");
+                }
+            } else {
+                int end = text.indexOf(',', i);
+                end = end < 0 ? length : end;
+                field.append(text, i, end);
+                i = end;
+            }
+            fields.add(field.toString());
+            if (i >= length) {
+                return fields;
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Reads one flat JSON object, keeping the values of the wanted keys. Strings, numbers,
+     * booleans and {@code null} are taken as text; an array of them is joined with {@code ;}.
+     */
+    private static final class JsonObject {
+
+        private final String text;
+        private final String[] keys;
+        private final String[] values;
+        private int pos;
+
+        JsonObject(String text, String[] keys, String[] values) {
+            this.text = text;
+            this.keys = keys;
+            this.values = values;
+        }
+
+        void parse() {
+            expect('{');
+            if (peek() == '}') {
+                pos++;
+            } else {
+                do {
+                    String name = string();
+                    expect(':');
+                    String value = peek() == '[' ? array() : scalar();
+                    String wanted = key(name);
+                    for (int i = 0; i < keys.length; i++) {
+                        if (keys[i].equals(wanted)) {
+                            values[i] = blankToNull(value);
+                        }
+                    }
+                } while (consume(','));
+                expect('}');
+            }
+            if (peek() != 0) {
+                throw new IllegalArgumentException("unexpected text after the JSON object");
+            }
+        }
+
+        private String array() {
+            expect('[');
+            StringBuilder joined = new StringBuilder();
+            if (peek() == ']') {
+                pos++;
+                return null;
+            }
+            do {
+                String element = scalar();
+                if (element != null) {
+                    joined.append(joined.isEmpty() ? "" : ";").append(element);
+                }
+            } while (consume(','));
+            expect(']');
+            return joined.toString();
+        }
+
+        private String scalar() {
+            char c = peek();
+            if (c == '"') {
+                return string();
+            }
+            if (c == '{' || c == '[') {
+                throw new IllegalArgumentException("nested JSON values are not supported");
+            }
+            int start = pos;
+            while (pos < text.length() && ",}] \t".indexOf(text.charAt(pos)) < 0) {
+                pos++;
+            }
+            String literal = text.substring(start, pos);
+            if (literal.isEmpty()) {
+                throw new IllegalArgumentException("JSON value expected at column " + (start + 1));
+            }
+            return literal.equals("null") ? null : literal;
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                if (pos >= text.length()) {
+                    throw new IllegalArgumentException("unterminated JSON string");
+                }
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (pos >= text.length()) {
+                    throw new IllegalArgumentException("unterminated JSON string");
+                }
+                char escaped = text.charAt(pos++);
+                switch (escaped) {
+                    case '"', '\\', '/' -> value.append(escaped);
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case 'u' -> {
+                        if (pos + 4 > text.length()) {
+                            throw new IllegalArgumentException("bad \\u escape in JSON string");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("bad \\u escape in JSON string");
+                        }
+                        pos += 4;
+                    }
+                    default -> throw new IllegalArgumentException("bad escape \\" + escaped + " in JSON string");
+                }
+            }
+        }
+
+        private boolean consume(char c) {
+            if (peek() == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw new IllegalArgumentException("'" + c + "' expected at column " + (pos + 1));
+            }
+            pos++;
+        }
+
+        // next non-blank character, 0 at the end
+        private char peek() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+            return pos < text.length() ? text.charAt(pos) : 0;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package rbac.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Monotonic count; increments from many threads do not contend. */
+public final class Counter {
+
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("amount must not be negative");
+        }
+        value.add(amount);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+}
@@ -0,0 +1,178 @@
+package rbac.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Named counters, latency histograms and gauges. A metric is identified by its name and label
+ * pairs; asking for the same one again returns the existing instance, so instrumented code looks
+ * its metrics up once and keeps the references. Gauges and function counters are read only when
+ * the registry is dumped.
+ * <p>
+ * Names follow the Prometheus conventions: {@code snake_case}, counters ending in
+ * {@code _total}, histograms in {@code _seconds} (they record nanoseconds and are exported in
+ * seconds).
+ */
+public final class MetricsRegistry {
+
+    enum Type {
+        COUNTER("counter"), GAUGE("gauge"), SUMMARY("summary");
+
+        final String prometheusName;
+
+        Type(String prometheusName) {
+            this.prometheusName = prometheusName;
+        }
+    }
+
+    /** All series sharing a name. */
+    static final class Family {
+        final String name;
+        final String help;
+        final Type type;
+        // rendered label text, e.g. {repository="users"} -> metric
+        final Map<String, Object> series = new ConcurrentSkipListMap<>();
+
+        Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private final Map<String, Family> families = new ConcurrentHashMap<>();
+
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, Type.COUNTER).series
+                .computeIfAbsent(labelText(labels), k -> new Counter());
+    }
+
+    /** A counter whose value is read from {@code value}, e.g. a hit count kept elsewhere. */
+    public void counter(String name, String help, LongSupplier value, String... labels) {
+        if (value == null) {
+            throw new IllegalArgumentException("value must not be null");
+        }
+        family(name, help, Type.COUNTER).series.put(labelText(labels), value);
+    }
+
+    public Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) family(name, help, Type.SUMMARY).series
+                .computeIfAbsent(labelText(labels), k -> new Histogram());
+    }
+
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        if (value == null) {
+            throw new IllegalArgumentException("value must not be null");
+        }
+        family(name, help, Type.GAUGE).series.put(labelText(labels), value);
+    }
+
+    /** Families sorted by name. */
+    List<Family> families() {
+        List<Family> result = new ArrayList<>(families.values());
+        result.sort((a, b) -> a.name.compareTo(b.name));
+        return result;
+    }
+
+    /**
+     * One line per series, for people: counters and gauges as values, histograms as percentiles.
+     * Histograms that have not recorded anything are left out.
+     */
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        for (Family family : families()) {
+            family.series.forEach((labels, metric) -> {
+                if (metric instanceof Histogram h && h.count() == 0) {
+                    return;
+                }
+                sb.append(family.name).append(labels).append(' ');
+                if (metric instanceof Histogram h) {
+                    long[] p = h.percentiles(0.5, 0.99, 0.999);
+                    sb.append("count=").append(h.count())
+                            .append(" p50=").append(formatNanos(p[0]))
+                            .append(" p99=").append(formatNanos(p[1]))
+                            .append(" p99.9=").append(formatNanos(p[2]))
+                            .append(" max=").append(formatNanos(h.max()));
+                } else {
+                    sb.append(formatValue(value(metric)));
+                }
+                sb.append('\n');
+            });
+        }
+        return sb.toString();
+    }
+
+    static double value(Object metric) {
+        if (metric instanceof Counter c) {
+            return c.get();
+        }
+        if (metric instanceof LongSupplier s) {
+            return s.getAsLong();
+        }
+        return ((DoubleSupplier) metric).getAsDouble();
+    }
+
+    static String formatValue(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15
+                ? Long.toString((long) value)
+                : Double.toString(value);
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos < 10_000) {
+            return nanos + "ns";
+        }
+        if (nanos < 10_000_000) {
+            return nanos / 1_000 + "us";
+        }
+        return nanos / 1_000_000 + "ms";
+    }
+
+    private Family family(String name, String help, Type type) {
+        if (name == null || !name.matches("[a-zA-Z_:][a-zA-Z0-9_:]*")) {
+            throw new IllegalArgumentException("name must be a valid metric name: " + name);
+        }
+        Family family = families.computeIfAbsent(name, n -> new Family(n, help == null ? "" : help, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException("Metric '" + name + "' is already registered as a " + family.type.prometheusName);
+        }
+        return family;
+    }
+
+    // {k1="v1",k2="v2"} with Prometheus escaping; "" without labels
+    private static String labelText(String[] labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("labels must be name/value pairs");
+        }
+        if (labels.length == 0) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (labels[i] == null || !labels[i].matches("[a-zA-Z_][a-zA-Z0-9_]*")) {
+                throw new IllegalArgumentException("label name must be valid: " + labels[i]);
+            }
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(labels[i]).append("=\"");
+            String value = labels[i + 1] == null ? "" : labels[i + 1];
+            for (int c = 0; c < value.length(); c++) {
+                char ch = value.charAt(c);
+                switch (ch) {
+                    case '\\' -> sb.append("\\\\");
+                    case '"' -> sb.append("\\\"");
+                    case '\n' -> sb.append("\\n");
+                    default -> sb.append(ch);
+                }
+            }
+            sb.append('"');
+        }
+        return sb.append('}').toString();
+    }
+}
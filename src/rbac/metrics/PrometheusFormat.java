@@ -0,0 +1,85 @@
+package rbac.metrics;
+
+import rbac.metrics.MetricsRegistry.Family;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes a {@link MetricsRegistry} in the Prometheus text exposition format (version 0.0.4).
+ * Histograms become summaries with the quantiles below plus {@code _sum} and {@code _count}, in
+ * seconds.
+ */
+public final class PrometheusFormat {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] QUANTILE_LABELS = {"0.5", "0.9", "0.99", "0.999"};
+
+    private PrometheusFormat() {
+    }
+
+    public static void write(MetricsRegistry registry, Writer out) throws IOException {
+        if (registry == null || out == null) {
+            throw new IllegalArgumentException("registry and out must not be null");
+        }
+        StringBuilder sb = new StringBuilder(4096);
+        for (Family family : registry.families()) {
+            sb.append("# HELP ").append(family.name).append(' ').append(escapeHelp(family.help)).append('\n');
+            sb.append("# TYPE ").append(family.name).append(' ').append(family.type.prometheusName).append('\n');
+            family.series.forEach((labels, metric) -> {
+                if (metric instanceof Histogram h) {
+                    long[] values = h.percentiles(QUANTILES);
+                    for (int q = 0; q < QUANTILES.length; q++) {
+                        sb.append(family.name).append(withQuantile(labels, QUANTILE_LABELS[q])).append(' ')
+                                .append(seconds(values[q])).append('\n');
+                    }
+                    sb.append(family.name).append("_sum").append(labels).append(' ').append(seconds(h.sum())).append('\n');
+                    sb.append(family.name).append("_count").append(labels).append(' ').append(h.count()).append('\n');
+                } else {
+                    sb.append(family.name).append(labels).append(' ')
+                            .append(MetricsRegistry.formatValue(MetricsRegistry.value(metric))).append('\n');
+                }
+            });
+        }
+        out.write(sb.toString());
+        out.flush();
+    }
+
+    /**
+     * Writes the dump next to {@code file} and renames it into place, so a collector reading the
+     * file (e.g. the node exporter's textfile collector) never sees a partial dump.
+     */
+    public static void writeFile(MetricsRegistry registry, Path file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("file must not be null");
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            write(registry, out);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String withQuantile(String labels, String quantile) {
+        if (labels.isEmpty()) {
+            return "{quantile=\"" + quantile + "\"}";
+        }
+        return labels.substring(0, labels.length() - 1) + ",quantile=\"" + quantile + "\"}";
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    private static String escapeHelp(String help) {
+        return help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+}
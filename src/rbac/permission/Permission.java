@@ -1,7 +1,17 @@
 package rbac.permission;
 
-
+/**
+ * Right to perform action {@code name} on {@code resource}. Resources may be paths such as
+ * {@code PROJECTS/42/DOCS}, and either part may use the wildcard {@value #WILDCARD}: as the action
+ * it stands for any action, as a middle path segment for exactly one segment, and as the last
+ * segment for one or more segments, so {@code PROJECTS/42/DOCS/*} covers every document of
+ * project 42 but not {@code PROJECTS/42/DOCS} itself.
+ */
 public record Permission(String name, String resource, String description) {
+
+    public static final String WILDCARD = "*";
+
+
     public Permission{
         if (name == null || name.isBlank()){
             throw new IllegalArgumentException("Имя разрешения не должно быть пустым!");
@@ -9,12 +19,23 @@ public record Permission(String name, String resource, String description) {
         if (name.contains(" ")){
             throw new IllegalArgumentException("Разрешение не должно содержать проблемы!");
         }
+        if (name.contains(WILDCARD) && !name.equals(WILDCARD)){
+            throw new IllegalArgumentException("Подстановочный знак * заменяет действие целиком!");
+        }
         name = name.toUpperCase();
 
         if (resource == null || resource.isBlank()){
             throw new IllegalArgumentException("Ресурс не должен быть пустым!");
         }
         resource = resource.toUpperCase();
+        for (String segment : resource.split("/", -1)) {
+            if (segment.isEmpty()){
+                throw new IllegalArgumentException("Путь ресурса не должен содержать пустых сегментов!");
+            }
+            if (segment.contains(WILDCARD) && !segment.equals(WILDCARD)){
+                throw new IllegalArgumentException("Подстановочный знак * заменяет сегмент пути целиком!");
+            }
+        }
 
         if (description == null || description.isBlank()){
             throw new IllegalArgumentException("Описание не дожно быть пустым");
@@ -30,9 +51,60 @@ public record Permission(String name, String resource, String description) {
         return "%s on %s: %s".formatted(name, resource, description);
     }
 
+    /** Substring search on the name and resource as written, for listings; not an access check. */
     public boolean matches(String namePattern, String resourcePattera){
         boolean nameOk = namePattern == null || name.contains(namePattern.toUpperCase());
-        boolean resOk = resourcePattera == null || resource.contains(resourcePattera.toLowerCase());
+        boolean resOk = resourcePattera == null || resource.contains(resourcePattera.toUpperCase());
         return  nameOk && resOk;
     }
+
+    public boolean isWildcard() {
+        return isWildcard(name, resource);
+    }
+
+    /**
+     * Whether this permission grants {@code permissionName} on {@code resource}, wildcards
+     * included. Both are compared as given, so callers pass them in upper case. Checking many
+     * permissions this way is linear in their number; {@link ResourceTrie} answers the same
+     * question for a whole set at once.
+     */
+    public boolean covers(String permissionName, String resource) {
+        if (permissionName == null || resource == null) {
+            return false;
+        }
+        if (!name.equals(WILDCARD) && !name.equals(permissionName)) {
+            return false;
+        }
+        int pattern = 0;
+        int path = 0;
+        while (true) {
+            int patternEnd = segmentEnd(this.resource, pattern);
+            int pathEnd = segmentEnd(resource, path);
+            boolean star = patternEnd - pattern == 1 && this.resource.charAt(pattern) == '*';
+            if (star && patternEnd == this.resource.length()) {
+                return true;
+            }
+            if (!star && (patternEnd - pattern != pathEnd - path
+                    || !this.resource.regionMatches(pattern, resource, path, pathEnd - path))) {
+                return false;
+            }
+            boolean patternDone = patternEnd == this.resource.length();
+            boolean pathDone = pathEnd == resource.length();
+            if (patternDone || pathDone) {
+                return patternDone && pathDone;
+            }
+            pattern = patternEnd + 1;
+            path = pathEnd + 1;
+        }
+    }
+
+    static boolean isWildcard(String name, String resource) {
+        return name.equals(WILDCARD) || resource.equals(WILDCARD) || resource.startsWith("*/")
+                || resource.endsWith("/*") || resource.contains("/*/");
+    }
+
+    static int segmentEnd(String path, int from) {
+        int end = path.indexOf('/', from);
+        return end < 0 ? path.length() : end;
+    }
 }
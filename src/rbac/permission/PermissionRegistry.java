@@ -0,0 +1,103 @@
+package rbac.permission;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Global dictionary that interns every (name, resource) pair to a dense int id, so roles can
+ * keep their permissions as bitsets and a permission check becomes a single bit test.
+ * Ids are never reused; lookups do not lock or allocate.
+ * <p>
+ * Wildcard permissions get ids too, and are also listed in a separate set so that a holder's
+ * wildcard grants can be picked out of its bitset and compiled into a {@link ResourceTrie}.
+ */
+public final class PermissionRegistry {
+
+    private static final Map<String, Map<String, Integer>> IDS = new ConcurrentHashMap<>();
+    // (name, resource) by id; grown under the class lock, and size is published after the slot
+    private static volatile String[][] keys = new String[64][];
+    private static volatile int size;
+    // ids of wildcard permissions, replaced on write
+    private static volatile BitSet wildcards = new BitSet();
+
+    private PermissionRegistry() {
+    }
+
+    public static int intern(Permission permission) {
+        return intern(permission.name(), permission.resource());
+    }
+
+    public static synchronized int intern(String name, String resource) {
+        if (name == null || resource == null) {
+            throw new IllegalArgumentException("name and resource must not be null");
+        }
+        Map<String, Integer> byName = IDS.computeIfAbsent(resource, k -> new ConcurrentHashMap<>());
+        Integer id = byName.get(name);
+        if (id == null) {
+            id = size;
+            String[][] table = keys;
+            if (id == table.length) {
+                table = Arrays.copyOf(table, id * 2);
+            }
+            table[id] = new String[]{name, resource};
+            keys = table;
+            if (Permission.isWildcard(name, resource)) {
+                BitSet next = (BitSet) wildcards.clone();
+                next.set(id);
+                wildcards = next;
+            }
+            size = id + 1;
+            byName.put(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the id of an exact (name, resource) pair, or -1 if no role has ever held it.
+     */
+    public static int idOf(String name, String resource) {
+        if (name == null || resource == null) {
+            return -1;
+        }
+        Map<String, Integer> byName = IDS.get(resource);
+        if (byName == null) {
+            return -1;
+        }
+        Integer id = byName.get(name);
+        return id != null ? id : -1;
+    }
+
+    public static int idOf(Permission permission) {
+        return idOf(permission.name(), permission.resource());
+    }
+
+    public static String nameOf(int id) {
+        return key(id)[0];
+    }
+
+    public static String resourceOf(int id) {
+        return key(id)[1];
+    }
+
+    public static int size() {
+        return size;
+    }
+
+    public static boolean isWildcard(int id) {
+        return id >= 0 && wildcards.get(id);
+    }
+
+    // never modified once published; callers must not modify it either
+    static BitSet wildcardIds() {
+        return wildcards;
+    }
+
+    private static String[] key(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Unknown permission id " + id);
+        }
+        return keys[id];
+    }
+}
@@ -0,0 +1,183 @@
+package rbac.permission;
+
+import java.util.BitSet;
+
+/**
+ * A set of grants compiled into a trie over the action and the resource path segments, with the
+ * wildcard rules of {@link Permission}. A check walks one path through the trie, branching only
+ * where a wildcard was granted, so its cost depends on the depth of the resource rather than on
+ * the number of grants. Lookups compare segments in place and do not allocate.
+ * <p>
+ * Not thread-safe while grants are added; publish the trie once it is built and it can then be
+ * read from any number of threads.
+ */
+public final class ResourceTrie {
+
+    private final Node root = new Node();
+    private int size;
+
+    /**
+     * Compiles the wildcard permissions among {@code permissionIds}, ids from
+     * {@link PermissionRegistry}, or returns {@code null} if there are none.
+     */
+    public static ResourceTrie compile(BitSet permissionIds) {
+        BitSet wildcards = PermissionRegistry.wildcardIds();
+        if (!permissionIds.intersects(wildcards)) {
+            return null;
+        }
+        ResourceTrie trie = new ResourceTrie();
+        for (int id = wildcards.nextSetBit(0); id >= 0; id = wildcards.nextSetBit(id + 1)) {
+            if (permissionIds.get(id)) {
+                trie.add(PermissionRegistry.nameOf(id), PermissionRegistry.resourceOf(id));
+            }
+        }
+        return trie;
+    }
+
+    public void add(Permission permission) {
+        add(permission.name(), permission.resource());
+    }
+
+    /** Adds a grant; {@code name} and {@code resource} follow the rules of {@link Permission}. */
+    public void add(String name, String resource) {
+        if (name == null || resource == null) {
+            throw new IllegalArgumentException("name and resource must not be null");
+        }
+        Node node = root.step(name);
+        int from = 0;
+        while (true) {
+            int end = Permission.segmentEnd(resource, from);
+            String segment = resource.substring(from, end);
+            if (end == resource.length()) {
+                if (segment.equals(Permission.WILDCARD)) {
+                    node.rest = true;
+                } else {
+                    node.step(segment).terminal = true;
+                }
+                break;
+            }
+            node = node.step(segment);
+            from = end + 1;
+        }
+        size++;
+    }
+
+    /** Whether any grant covers {@code permissionName} on {@code resource}, compared as given. */
+    public boolean matches(String permissionName, String resource) {
+        if (permissionName == null || resource == null) {
+            return false;
+        }
+        Node byName = root.child(permissionName, 0, permissionName.length());
+        return byName != null && matches(byName, resource, 0)
+                || root.star != null && matches(root.star, resource, 0);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Number of grants added, duplicates included. */
+    public int size() {
+        return size;
+    }
+
+    // from is the start of the next resource segment, -1 once the whole resource was consumed
+    private static boolean matches(Node node, String resource, int from) {
+        if (from < 0) {
+            return node.terminal;
+        }
+        if (node.rest) {
+            return true;
+        }
+        int end = Permission.segmentEnd(resource, from);
+        int next = end == resource.length() ? -1 : end + 1;
+        Node exact = node.child(resource, from, end);
+        if (exact != null && matches(exact, resource, next)) {
+            return true;
+        }
+        return node.star != null && matches(node.star, resource, next);
+    }
+
+    private static final class Node {
+        // open-addressed children keyed by segment; probed with a region of the checked string
+        private String[] keys;
+        private Node[] children;
+        private int count;
+        // child for a single-segment wildcard
+        private Node star;
+        // a grant ends exactly here
+        private boolean terminal;
+        // a grant ending in a wildcard: any one or more further segments match
+        private boolean rest;
+
+        Node step(String segment) {
+            if (segment.equals(Permission.WILDCARD)) {
+                if (star == null) {
+                    star = new Node();
+                }
+                return star;
+            }
+            Node existing = child(segment, 0, segment.length());
+            if (existing != null) {
+                return existing;
+            }
+            if (keys == null || (count + 1) * 2 > keys.length) {
+                grow();
+            }
+            Node created = new Node();
+            insert(segment, created);
+            count++;
+            return created;
+        }
+
+        Node child(String s, int from, int to) {
+            if (keys == null) {
+                return null;
+            }
+            int length = to - from;
+            int mask = keys.length - 1;
+            for (int i = hash(s, from, to) & mask; ; i = (i + 1) & mask) {
+                String key = keys[i];
+                if (key == null) {
+                    return null;
+                }
+                if (key.length() == length && key.regionMatches(0, s, from, length)) {
+                    return children[i];
+                }
+            }
+        }
+
+        private void grow() {
+            String[] oldKeys = keys;
+            Node[] oldChildren = children;
+            int capacity = oldKeys == null ? 4 : oldKeys.length * 2;
+            keys = new String[capacity];
+            children = new Node[capacity];
+            if (oldKeys != null) {
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != null) {
+                        insert(oldKeys[i], oldChildren[i]);
+                    }
+                }
+            }
+        }
+
+        private void insert(String key, Node node) {
+            int mask = keys.length - 1;
+            int i = hash(key, 0, key.length()) & mask;
+            while (keys[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            children[i] = node;
+        }
+
+        private static int hash(String s, int from, int to) {
+            int h = 0;
+            for (int i = from; i < to; i++) {
+                h = 31 * h + s.charAt(i);
+            }
+            return h ^ (h >>> 16);
+        }
+    }
+}
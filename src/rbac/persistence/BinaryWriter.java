@@ -0,0 +1,76 @@
+package rbac.persistence;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/** Growable big-endian byte buffer for log records and snapshot sections. */
+final class BinaryWriter {
+
+    private byte[] bytes;
+    private int size;
+
+    BinaryWriter() {
+        this(256);
+    }
+
+    BinaryWriter(int capacity) {
+        bytes = new byte[capacity];
+    }
+
+    BinaryWriter writeByte(int value) {
+        ensure(1);
+        bytes[size++] = (byte) value;
+        return this;
+    }
+
+    BinaryWriter writeBoolean(boolean value) {
+        return writeByte(value ? 1 : 0);
+    }
+
+    BinaryWriter writeInt(int value) {
+        ensure(4);
+        bytes[size++] = (byte) (value >>> 24);
+        bytes[size++] = (byte) (value >>> 16);
+        bytes[size++] = (byte) (value >>> 8);
+        bytes[size++] = (byte) value;
+        return this;
+    }
+
+    BinaryWriter writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        return writeInt((int) value);
+    }
+
+    /** Length-prefixed UTF-8; {@code null} is written as length -1. */
+    BinaryWriter writeString(String value) {
+        if (value == null) {
+            return writeInt(-1);
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeInt(utf8.length);
+        ensure(utf8.length);
+        System.arraycopy(utf8, 0, bytes, size, utf8.length);
+        size += utf8.length;
+        return this;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void reset() {
+        size = 0;
+    }
+
+    ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(bytes, 0, size);
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > bytes.length) {
+            byte[] next = new byte[Math.max(bytes.length * 2, size + extra)];
+            System.arraycopy(bytes, 0, next, 0, size);
+            bytes = next;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package rbac.persistence;
+
+/**
+ * When a logged mutation is forced to disk. Weaker modes trade the last few mutations on a
+ * crash for throughput.
+ */
+public enum Durability {
+
+    /** Every mutation is fsynced before the call that made it returns. */
+    PER_OPERATION,
+
+    /**
+     * Mutations inside {@code RBACSystem.runBatch} are fsynced once when the batch ends;
+     * mutations outside a batch are fsynced individually.
+     */
+    PER_BATCH,
+
+    /** A background thread fsyncs at a fixed interval; writers never wait for the disk. */
+    INTERVAL
+}
@@ -0,0 +1,480 @@
+package rbac.persistence;
+
+import rbac.assignment.AssignmentListener;
+import rbac.assignment.AssignmentManager;
+import rbac.assignment.AssignmentMetadata;
+import rbac.assignment.PermanentAssignment;
+import rbac.assignment.RoleAssignment;
+import rbac.assignment.TemporaryAssignment;
+import rbac.permission.Permission;
+import rbac.role.Role;
+import rbac.role.RoleListener;
+import rbac.role.RoleManager;
+import rbac.user.User;
+import rbac.user.UserListener;
+import rbac.user.UserManager;
+import rbac.util.DateUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Persists every change made through the three managers to a {@link WriteAheadLog} and
+ * rebuilds them on startup from the latest {@link StateSnapshot} plus the log tail after it.
+ * <p>
+ * Records are appended from the managers' listeners, i.e. inside the write that produced them,
+ * so log order matches the order the writes were applied in. A failed append surfaces as an
+ * {@link UncheckedIOException} from the write call; the in-memory change has been applied by then.
+ */
+public final class MutationLog implements Closeable {
+
+    private final WriteAheadLog wal;
+    private final Path snapshotFile;
+    private final Durability durability;
+    private final UserManager userManager;
+    private final RoleManager roleManager;
+    private final AssignmentManager assignmentManager;
+    private final AtomicInteger batchDepth = new AtomicInteger();
+    private ScheduledExecutorService background;
+    private volatile Consumer<Exception> failureHandler = e -> {
+    };
+    private UserListener userListener;
+    private RoleListener roleListener;
+    private AssignmentListener assignmentListener;
+
+    private MutationLog(WriteAheadLog wal, Path snapshotFile, Durability durability, UserManager userManager,
+                        RoleManager roleManager, AssignmentManager assignmentManager) {
+        this.wal = wal;
+        this.snapshotFile = snapshotFile;
+        this.durability = durability;
+        this.userManager = userManager;
+        this.roleManager = roleManager;
+        this.assignmentManager = assignmentManager;
+    }
+
+    /**
+     * Restores the (empty) managers from the latest snapshot, if any, and the log records
+     * after it, then starts logging their changes.
+     *
+     * @param snapshotFile       where {@link #checkpoint()} writes snapshots; {@code null} disables them
+     * @param syncIntervalMillis fsync period for {@link Durability#INTERVAL}, ignored otherwise
+     */
+    public static MutationLog open(Path logFile, Path snapshotFile, Durability durability, long syncIntervalMillis,
+                                   UserManager userManager, RoleManager roleManager,
+                                   AssignmentManager assignmentManager) throws IOException {
+        if (durability == null) {
+            throw new IllegalArgumentException("durability must not be null");
+        }
+        if (userManager == null || roleManager == null || assignmentManager == null) {
+            throw new IllegalArgumentException("managers must not be null");
+        }
+        if (durability == Durability.INTERVAL && syncIntervalMillis <= 0) {
+            throw new IllegalArgumentException("syncIntervalMillis must be positive");
+        }
+        long snapshotLsn = 0;
+        if (snapshotFile != null && Files.exists(snapshotFile)) {
+            snapshotLsn = StateSnapshot.load(snapshotFile, userManager, roleManager, assignmentManager);
+        }
+        WriteAheadLog wal = WriteAheadLog.open(logFile);
+        try {
+            if (wal.baseLsn() > snapshotLsn) {
+                throw new IOException("Mutation log " + logFile + " starts after LSN " + wal.baseLsn()
+                        + " but the snapshot only covers LSN " + snapshotLsn);
+            }
+            MutationLog log = new MutationLog(wal, snapshotFile, durability, userManager, roleManager, assignmentManager);
+            wal.replay(snapshotLsn, log::apply);
+            log.attach();
+            if (durability == Durability.INTERVAL) {
+                log.background().scheduleWithFixedDelay(log::syncInBackground,
+                        syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+            return log;
+        } catch (IOException | RuntimeException e) {
+            wal.close();
+            throw e;
+        }
+    }
+
+    public Durability durability() {
+        return durability;
+    }
+
+    public long lastLsn() {
+        return wal.lastLsn();
+    }
+
+    public long durableLsn() {
+        return wal.durableLsn();
+    }
+
+    /** Defers fsync until the matching {@link #endBatch()} under {@link Durability#PER_BATCH}. */
+    public void beginBatch() {
+        batchDepth.incrementAndGet();
+    }
+
+    public void endBatch() {
+        if (batchDepth.decrementAndGet() == 0 && durability == Durability.PER_BATCH) {
+            sync();
+        }
+    }
+
+    /** Forces everything logged so far to disk, whatever the durability mode. */
+    public void sync() {
+        try {
+            wal.sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the managers and drops the log records it covers. Writers to all
+     * three managers are blocked while the state is written out.
+     *
+     * @return LSN covered by the snapshot
+     */
+    public synchronized long checkpoint() throws IOException {
+        if (snapshotFile == null) {
+            throw new IllegalStateException("No snapshot file configured");
+        }
+        long lsn;
+        // same monitors the managers' write methods hold, taken in the order their listeners nest
+        synchronized (userManager) {
+            synchronized (roleManager) {
+                synchronized (assignmentManager) {
+                    lsn = wal.lastLsn();
+                    StateSnapshot.write(snapshotFile, lsn, userManager, roleManager, assignmentManager);
+                }
+            }
+        }
+        wal.truncateBefore(lsn);
+        return lsn;
+    }
+
+    /** Calls {@link #checkpoint()} every {@code intervalMillis} on a daemon thread. */
+    public synchronized void scheduleCheckpoints(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("intervalMillis must be positive");
+        }
+        if (snapshotFile == null) {
+            throw new IllegalStateException("No snapshot file configured");
+        }
+        background().scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint();
+            } catch (IOException | RuntimeException e) {
+                failureHandler.accept(e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Receives what a background checkpoint or {@link Durability#INTERVAL} sync threw; until set,
+     * failures are dropped. Failures of calls made directly are thrown to the caller instead.
+     */
+    public void setFailureHandler(Consumer<Exception> handler) {
+        if (handler == null) {
+            throw new IllegalArgumentException("handler must not be null");
+        }
+        failureHandler = handler;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        // later changes to the managers are no longer logged
+        userManager.removeListener(userListener);
+        roleManager.removeListener(roleListener);
+        assignmentManager.removeListener(assignmentListener);
+        if (background != null) {
+            background.shutdownNow();
+            background = null;
+        }
+        wal.close();
+    }
+
+    private synchronized ScheduledExecutorService background() {
+        if (background == null) {
+            background = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "rbac-persistence");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return background;
+    }
+
+    private void syncInBackground() {
+        try {
+            wal.sync();
+        } catch (IOException e) {
+            failureHandler.accept(e);
+        }
+    }
+
+    private void record(BinaryWriter record) {
+        try {
+            long lsn = wal.append(record.toByteBuffer());
+            if (durability == Durability.PER_OPERATION
+                    || (durability == Durability.PER_BATCH && batchDepth.get() == 0)) {
+                wal.sync(lsn);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static BinaryWriter start(MutationType type) {
+        return new BinaryWriter().writeByte(type.code);
+    }
+
+    private void attach() {
+        userListener = new UserListener() {
+            @Override
+            public void userAdded(User user) {
+                record(writeUser(start(MutationType.USER_ADDED), user));
+            }
+
+            @Override
+            public void userRemoved(User user) {
+                record(start(MutationType.USER_REMOVED).writeString(user.getUsername()));
+            }
+
+            @Override
+            public void userUpdated(User previous, User current) {
+                record(writeUser(start(MutationType.USER_UPDATED), current));
+            }
+
+            @Override
+            public void usersCleared() {
+                record(start(MutationType.USERS_CLEARED));
+            }
+        };
+        roleListener = new RoleListener() {
+            @Override
+            public void roleAdded(Role role) {
+                record(writeRole(start(MutationType.ROLE_ADDED), role));
+            }
+
+            @Override
+            public void roleRemoved(Role role) {
+                record(start(MutationType.ROLE_REMOVED).writeString(role.getId()));
+            }
+
+            @Override
+            public void roleUpdated(Role previous, Role current) {
+                record(writeRole(start(MutationType.ROLE_REPLACED).writeString(previous.getName()), current));
+            }
+
+            @Override
+            public void permissionsChanged(Role role) {
+                // notified outside the role's lock; holding it here keeps the last record the latest set
+                synchronized (role) {
+                    record(writePermissions(start(MutationType.ROLE_PERMISSIONS).writeString(role.getId()),
+                            role.getPermissions()));
+                }
+            }
+
+            @Override
+            public void parentAdded(Role child, Role parent) {
+                record(start(MutationType.ROLE_PARENT_ADDED).writeString(child.getId()).writeString(parent.getId()));
+            }
+
+            @Override
+            public void parentRemoved(Role child, Role parent) {
+                record(start(MutationType.ROLE_PARENT_REMOVED).writeString(child.getId()).writeString(parent.getId()));
+            }
+
+            @Override
+            public void rolesCleared() {
+                record(start(MutationType.ROLES_CLEARED));
+            }
+        };
+        assignmentListener = new AssignmentListener() {
+            @Override
+            public void assignmentAdded(RoleAssignment assignment) {
+                record(writeAssignment(start(MutationType.ASSIGNMENT_ADDED), assignment));
+            }
+
+            @Override
+            public void assignmentRemoved(RoleAssignment assignment) {
+                record(start(MutationType.ASSIGNMENT_REMOVED).writeString(assignment.getAssignmentId()));
+            }
+
+            @Override
+            public void assignmentRevoked(RoleAssignment assignment) {
+                record(start(MutationType.ASSIGNMENT_REVOKED).writeString(assignment.getAssignmentId()));
+            }
+
+            @Override
+            public void assignmentExtended(RoleAssignment assignment) {
+                record(start(MutationType.ASSIGNMENT_EXTENDED)
+                        .writeString(assignment.getAssignmentId())
+                        .writeLong(assignment.getExpiresAtMillis()));
+            }
+
+            @Override
+            public void assignmentRenewed(RoleAssignment assignment) {
+                assignmentExtended(assignment);
+            }
+
+            @Override
+            public void assignmentsCleared() {
+                record(start(MutationType.ASSIGNMENTS_CLEARED));
+            }
+        };
+        userManager.addListener(userListener);
+        roleManager.addListener(roleListener);
+        assignmentManager.addListener(assignmentListener);
+    }
+
+    private void apply(long lsn, ByteBuffer payload) throws IOException {
+        BinaryReader in = new BinaryReader(payload);
+        MutationType type;
+        try {
+            type = MutationType.ofCode(in.readByte());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt mutation log record at LSN " + lsn, e);
+        }
+        try {
+            switch (type) {
+                case USER_ADDED -> userManager.add(readUser(in));
+                case USER_REMOVED -> userManager.findByUsername(in.readString()).ifPresent(userManager::remove);
+                case USER_UPDATED -> {
+                    User user = readUser(in);
+                    userManager.update(user.getUsername(), user.getFullName(), user.getEmail());
+                }
+                case USERS_CLEARED -> userManager.clear();
+                case ROLE_ADDED -> roleManager.add(readRole(in));
+                case ROLE_REMOVED -> roleManager.findById(in.readString()).ifPresent(roleManager::remove);
+                case ROLE_REPLACED -> {
+                    String previousName = in.readString();
+                    roleManager.replace(previousName, readRole(in));
+                }
+                case ROLE_PERMISSIONS -> {
+                    Role role = roleManager.findById(in.readString()).orElse(null);
+                    Set<Permission> permissions = readPermissions(in);
+                    // a change racing with the role's removal may be logged after it
+                    if (role != null) {
+                        for (Permission p : role.getPermissions()) {
+                            if (!permissions.contains(p)) {
+                                role.removePermission(p);
+                            }
+                        }
+                        permissions.forEach(role::addPermission);
+                    }
+                }
+                case ROLES_CLEARED -> roleManager.clear();
+                case ROLE_PARENT_ADDED, ROLE_PARENT_REMOVED -> {
+                    Role child = roleManager.findById(in.readString()).orElseThrow();
+                    Role parent = roleManager.findById(in.readString()).orElseThrow();
+                    if (type == MutationType.ROLE_PARENT_ADDED) {
+                        roleManager.addParent(child, parent);
+                    } else {
+                        roleManager.removeParent(child, parent);
+                    }
+                }
+                case ASSIGNMENT_ADDED -> assignmentManager.add(readAssignment(in, userManager, roleManager, false));
+                case ASSIGNMENT_ADDED_TEXT -> assignmentManager.add(readAssignment(in, userManager, roleManager, true));
+                case ASSIGNMENT_REMOVED -> assignmentManager.findById(in.readString()).ifPresent(assignmentManager::remove);
+                // like removals, these may name an assignment the snapshot left out with its role
+                case ASSIGNMENT_REVOKED -> assignmentManager.findById(in.readString()).ifPresent(assignmentManager::revoke);
+                case ASSIGNMENT_EXTENDED, ASSIGNMENT_EXTENDED_TEXT -> {
+                    String id = in.readString();
+                    long expiresAt = type == MutationType.ASSIGNMENT_EXTENDED
+                            ? in.readLong() : DateUtils.parseMillis(in.readString(), "expiresAt");
+                    assignmentManager.findById(id).ifPresent(a -> assignmentManager.extendTemporaryAssignment(id, expiresAt));
+                }
+                case ASSIGNMENTS_CLEARED -> assignmentManager.clear();
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Cannot replay " + type + " at LSN " + lsn + ": " + e.getMessage(), e);
+        }
+    }
+
+    static BinaryWriter writeUser(BinaryWriter out, User user) {
+        return out.writeString(user.getUsername()).writeString(user.getFullName()).writeString(user.getEmail());
+    }
+
+    static User readUser(BinaryReader in) {
+        return new User(in.readString(), in.readString(), in.readString());
+    }
+
+    static BinaryWriter writeRole(BinaryWriter out, Role role) {
+        out.writeString(role.getId()).writeString(role.getName()).writeString(role.getDescription());
+        return writePermissions(out, role.getPermissions());
+    }
+
+    static Role readRole(BinaryReader in) {
+        Role role = new Role(in.readString(), in.readString(), in.readString());
+        readPermissions(in).forEach(role::addPermission);
+        return role;
+    }
+
+    static BinaryWriter writePermissions(BinaryWriter out, Set<Permission> permissions) {
+        out.writeInt(permissions.size());
+        for (Permission p : permissions) {
+            out.writeString(p.name()).writeString(p.resource()).writeString(p.description());
+        }
+        return out;
+    }
+
+    static Set<Permission> readPermissions(BinaryReader in) {
+        int count = in.readInt();
+        Set<Permission> permissions = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            permissions.add(new Permission(in.readString(), in.readString(), in.readString()));
+        }
+        return permissions;
+    }
+
+    static BinaryWriter writeAssignment(BinaryWriter out, RoleAssignment assignment) {
+        out.writeString(assignment.getAssignmentId())
+                .writeString(assignment.getUsername())
+                .writeString(assignment.getRole().getId());
+        AssignmentMetadata metadata = assignment.metadata();
+        out.writeString(metadata != null ? metadata.assignedBy() : null)
+                .writeLong(metadata != null ? metadata.assignedAtMillis() : AssignmentMetadata.NO_TIME)
+                .writeString(metadata != null ? metadata.reason() : null);
+        if (assignment instanceof TemporaryAssignment temporary) {
+            out.writeByte(1).writeLong(temporary.getExpiresAtMillis()).writeBoolean(temporary.isAutoRenew())
+                    .writeBoolean(temporary.isRevoked());
+        } else {
+            out.writeByte(0).writeBoolean(assignment instanceof PermanentAssignment p && p.isRevoked());
+        }
+        return out;
+    }
+
+    /** @param textTimes whether times are strings, as in {@link MutationType#ASSIGNMENT_ADDED_TEXT} */
+    static RoleAssignment readAssignment(BinaryReader in, UserManager userManager, RoleManager roleManager,
+                                         boolean textTimes) {
+        String id = in.readString();
+        String username = in.readString();
+        String roleId = in.readString();
+        AssignmentMetadata metadata = textTimes
+                ? new AssignmentMetadata(in.readString(), in.readString(), in.readString())
+                : new AssignmentMetadata(in.readString(), in.readLong(), in.readString());
+        User user = userManager.findByUsername(username).orElseThrow(
+                () -> new IllegalArgumentException("User with username '" + username + "' not found"));
+        Role role = roleManager.findById(roleId).orElseThrow(
+                () -> new IllegalArgumentException("Role with id '" + roleId + "' not found"));
+        RoleAssignment assignment = in.readByte() == 1
+                ? new TemporaryAssignment(id, user, role, metadata,
+                        textTimes ? DateUtils.parseMillis(in.readString(), "expiresAt") : in.readLong(), in.readBoolean())
+                : new PermanentAssignment(id, user, role, metadata);
+        if (in.readBoolean()) {
+            assignment.revoke();
+        }
+        return assignment;
+    }
+}
@@ -0,0 +1,47 @@
+package rbac.persistence;
+
+/** Record types of the mutation log. Codes are stored on disk and must never be reused. */
+enum MutationType {
+
+    USER_ADDED(1),
+    USER_REMOVED(2),
+    USER_UPDATED(3),
+    USERS_CLEARED(4),
+    ROLE_ADDED(10),
+    ROLE_REMOVED(11),
+    ROLE_REPLACED(12),
+    ROLE_PERMISSIONS(13),
+    ROLES_CLEARED(14),
+    ROLE_PARENT_ADDED(15),
+    ROLE_PARENT_REMOVED(16),
+    // times as local "yyyy-MM-dd HH:mm" strings; only read, from logs written before 25 and 26
+    ASSIGNMENT_ADDED_TEXT(20),
+    ASSIGNMENT_REMOVED(21),
+    ASSIGNMENT_REVOKED(22),
+    ASSIGNMENT_EXTENDED_TEXT(23),
+    ASSIGNMENTS_CLEARED(24),
+    ASSIGNMENT_ADDED(25),
+    ASSIGNMENT_EXTENDED(26);
+
+    private static final MutationType[] BY_CODE = new MutationType[128];
+
+    static {
+        for (MutationType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    final int code;
+
+    MutationType(int code) {
+        this.code = code;
+    }
+
+    static MutationType ofCode(int code) {
+        MutationType type = code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown mutation type " + code);
+        }
+        return type;
+    }
+}
@@ -0,0 +1,366 @@
+package rbac.persistence;
+
+import rbac.assignment.AssignmentManager;
+import rbac.assignment.AssignmentMetadata;
+import rbac.assignment.PermanentAssignment;
+import rbac.assignment.RoleAssignment;
+import rbac.assignment.TemporaryAssignment;
+import rbac.permission.Permission;
+import rbac.role.Role;
+import rbac.role.RoleManager;
+import rbac.user.User;
+import rbac.user.UserManager;
+import rbac.util.DateUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Full state of the three managers in one binary file, tagged with the mutation log LSN it
+ * covers. Loading maps the file read-only and rebuilds the managers in a single pass.
+ * <p>
+ * Layout, all big-endian:
+ * <pre>
+ * header       int magic, int version, long lsn
+ * strings      int n, n x string                       shared by permissions and metadata
+ * permissions  int n, n x (int name, int resource, int description)    string indexes
+ * metadata     int n, n x (int assignedBy, long assignedAt, int reason) -1 for null
+ * roles        int n, n x (id, string name, string description, int words, words x long)
+ * parents      int n, n x (int child, int parent)          role positions; since version 2
+ * users        int n, n x (string username, string fullName, string email, int k,
+ *                           k x assignment (id, int role, int metadata, byte flags[, long expiresAt]))
+ * trailer      int magic
+ * </pre>
+ * Times are epoch milliseconds, {@link AssignmentMetadata#NO_TIME} for none; before version 3
+ * they were local "yyyy-MM-dd HH:mm" strings, assignedAt an index into the string table.
+ * <p>
+ * Role permissions are a bitset over the permission table and hold only the role's own
+ * permissions; inherited ones are recomputed from the parent edges on load. Assignments are stored under their
+ * user, which keeps each user's assignments together when loading, and point at roles and
+ * metadata by position; assignments left behind by a removed user or role are not written.
+ * Generated ids ({@code role_<uuid>}, {@code assign_<uuid>}) are stored as two longs instead of
+ * 40-odd characters.
+ */
+public final class StateSnapshot {
+
+    private static final int MAGIC = 0x5242_534E; // "RBSN"
+    private static final int VERSION = 3;
+    // version 2 stores times as strings
+    private static final int TEXT_TIMES = 2;
+    // version 1 predates role inheritance and has no parents section
+    private static final int FLAT_ROLES = 1;
+
+    private static final int TEMPORARY = 1;
+    private static final int AUTO_RENEW = 2;
+    private static final int REVOKED = 4;
+
+    // assignments are handed to the manager in chunks to bound the temporary validation state
+    private static final int LOAD_CHUNK = 1 << 16;
+
+    private static final int ID_UUID = 0;
+    private static final int ID_STRING = 1;
+
+    private StateSnapshot() {
+    }
+
+    /**
+     * Writes the managers' current state to {@code file}, replacing it atomically. The caller
+     * must keep the managers from changing meanwhile.
+     */
+    static void write(Path file, long lsn, UserManager userManager, RoleManager roleManager,
+                      AssignmentManager assignmentManager) throws IOException {
+        Path partial = file.resolveSibling(file.getFileName() + ".partial");
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Channels.newOutputStream(channel), 1 << 20));
+            encode(out, lsn, userManager, roleManager, assignmentManager);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Loads {@code file} into empty managers and returns the LSN it covers. */
+    static long load(Path file, UserManager userManager, RoleManager roleManager,
+                     AssignmentManager assignmentManager) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + file + " is too large to map");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(new BinaryReader(buffer), userManager, roleManager, assignmentManager);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt snapshot " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static void encode(DataOutputStream out, long lsn, UserManager userManager,
+                               RoleManager roleManager, AssignmentManager assignmentManager) throws IOException {
+        List<User> users = userManager.findAll();
+        List<Role> roles = roleManager.findAll();
+        Map<String, Integer> strings = new HashMap<>();
+        List<String> stringTable = new ArrayList<>();
+        Map<Permission, Integer> permissions = new HashMap<>();
+        List<Permission> permissionTable = new ArrayList<>();
+        for (Role role : roles) {
+            for (Permission p : role.getPermissions()) {
+                if (permissions.putIfAbsent(p, permissionTable.size()) == null) {
+                    permissionTable.add(p);
+                    intern(p.name(), strings, stringTable);
+                    intern(p.resource(), strings, stringTable);
+                    intern(p.description(), strings, stringTable);
+                }
+            }
+        }
+        Map<AssignmentMetadata, Integer> metadata = new HashMap<>();
+        List<AssignmentMetadata> metadataTable = new ArrayList<>();
+        for (User user : users) {
+            for (RoleAssignment assignment : assignmentManager.findByUser(user)) {
+                AssignmentMetadata m = assignment.metadata();
+                if (m != null && metadata.putIfAbsent(m, metadataTable.size()) == null) {
+                    metadataTable.add(m);
+                    intern(m.assignedBy(), strings, stringTable);
+                    intern(m.reason(), strings, stringTable);
+                }
+            }
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(lsn);
+        out.writeInt(stringTable.size());
+        for (String s : stringTable) {
+            writeString(out, s);
+        }
+        out.writeInt(permissionTable.size());
+        for (Permission p : permissionTable) {
+            out.writeInt(strings.get(p.name()));
+            out.writeInt(strings.get(p.resource()));
+            out.writeInt(strings.get(p.description()));
+        }
+        out.writeInt(metadataTable.size());
+        for (AssignmentMetadata m : metadataTable) {
+            out.writeInt(indexOf(m.assignedBy(), strings));
+            out.writeLong(m.assignedAtMillis());
+            out.writeInt(indexOf(m.reason(), strings));
+        }
+
+        Map<String, Integer> roleIndex = new HashMap<>();
+        out.writeInt(roles.size());
+        for (Role role : roles) {
+            roleIndex.put(role.getId(), roleIndex.size());
+            writeId(out, "role_", role.getId());
+            writeString(out, role.getName());
+            writeString(out, role.getDescription());
+            BitSet bits = new BitSet(permissionTable.size());
+            for (Permission p : role.getPermissions()) {
+                bits.set(permissions.get(p));
+            }
+            long[] words = bits.toLongArray();
+            out.writeInt(words.length);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        }
+        List<int[]> edges = new ArrayList<>();
+        for (Role role : roles) {
+            for (Role parent : roleManager.getParents(role)) {
+                edges.add(new int[]{roleIndex.get(role.getId()), roleIndex.get(parent.getId())});
+            }
+        }
+        out.writeInt(edges.size());
+        for (int[] edge : edges) {
+            out.writeInt(edge[0]);
+            out.writeInt(edge[1]);
+        }
+
+        out.writeInt(users.size());
+        List<RoleAssignment> owned = new ArrayList<>();
+        for (User user : users) {
+            writeString(out, user.getUsername());
+            writeString(out, user.getFullName());
+            writeString(out, user.getEmail());
+            owned.clear();
+            for (RoleAssignment assignment : assignmentManager.findByUser(user)) {
+                // the manager drops a removed role's assignments with it; one caught in between
+                // has no role to point at, and replay skips log records naming it
+                if (roleIndex.containsKey(assignment.getRole().getId())) {
+                    owned.add(assignment);
+                }
+            }
+            out.writeInt(owned.size());
+            for (RoleAssignment assignment : owned) {
+                writeAssignment(out, assignment, roleIndex, metadata);
+            }
+        }
+        out.writeInt(MAGIC);
+    }
+
+    private static void writeAssignment(DataOutputStream out, RoleAssignment assignment, Map<String, Integer> roleIndex,
+                                        Map<AssignmentMetadata, Integer> metadata) throws IOException {
+        writeId(out, "assign_", assignment.getAssignmentId());
+        out.writeInt(roleIndex.get(assignment.getRole().getId()));
+        out.writeInt(assignment.metadata() != null ? metadata.get(assignment.metadata()) : -1);
+        if (assignment instanceof TemporaryAssignment temporary) {
+            out.writeByte(TEMPORARY | (temporary.isAutoRenew() ? AUTO_RENEW : 0)
+                    | (temporary.isRevoked() ? REVOKED : 0));
+            out.writeLong(temporary.getExpiresAtMillis());
+        } else {
+            out.writeByte(assignment instanceof PermanentAssignment p && p.isRevoked() ? REVOKED : 0);
+        }
+    }
+
+    private static long decode(BinaryReader in, UserManager userManager, RoleManager roleManager,
+                               AssignmentManager assignmentManager) throws IOException {
+        int version = in.readInt() == MAGIC ? in.readInt() : -1;
+        if (version != VERSION && version != TEXT_TIMES && version != FLAT_ROLES) {
+            throw new IOException("Not a snapshot of a supported version");
+        }
+        long lsn = in.readLong();
+        String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readString();
+        }
+        Permission[] permissions = new Permission[in.readInt()];
+        for (int i = 0; i < permissions.length; i++) {
+            permissions[i] = new Permission(strings[in.readInt()], strings[in.readInt()], strings[in.readInt()]);
+        }
+        AssignmentMetadata[] metadata = new AssignmentMetadata[in.readInt()];
+        boolean textTimes = version < VERSION;
+        for (int i = 0; i < metadata.length; i++) {
+            String assignedBy = string(strings, in.readInt());
+            metadata[i] = textTimes
+                    ? new AssignmentMetadata(assignedBy, string(strings, in.readInt()), string(strings, in.readInt()))
+                    : new AssignmentMetadata(assignedBy, in.readLong(), string(strings, in.readInt()));
+        }
+
+        Role[] roles = new Role[in.readInt()];
+        for (int i = 0; i < roles.length; i++) {
+            Role role = new Role(readId(in, "role_"), in.readString(), in.readString());
+            long[] words = new long[in.readInt()];
+            for (int w = 0; w < words.length; w++) {
+                words[w] = in.readLong();
+            }
+            BitSet bits = BitSet.valueOf(words);
+            for (int p = bits.nextSetBit(0); p >= 0; p = bits.nextSetBit(p + 1)) {
+                role.addPermission(permissions[p]);
+            }
+            roleManager.add(role);
+            roles[i] = role;
+        }
+        int edges = version >= TEXT_TIMES ? in.readInt() : 0;
+        for (int i = 0; i < edges; i++) {
+            roleManager.addParent(roles[in.readInt()], roles[in.readInt()]);
+        }
+
+        int userCount = in.readInt();
+        List<RoleAssignment> chunk = new ArrayList<>(LOAD_CHUNK);
+        for (int i = 0; i < userCount; i++) {
+            User user = new User(in.readString(), in.readString(), in.readString());
+            userManager.add(user);
+            int owned = in.readInt();
+            for (int k = 0; k < owned; k++) {
+                chunk.add(readAssignment(in, user, roles, metadata, textTimes));
+            }
+            if (chunk.size() >= LOAD_CHUNK) {
+                assignmentManager.addAll(chunk);
+                chunk.clear();
+            }
+        }
+        assignmentManager.addAll(chunk);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Snapshot is truncated");
+        }
+        return lsn;
+    }
+
+    private static RoleAssignment readAssignment(BinaryReader in, User user, Role[] roles,
+                                                 AssignmentMetadata[] metadata, boolean textTimes) {
+        String id = readId(in, "assign_");
+        Role role = roles[in.readInt()];
+        int meta = in.readInt();
+        AssignmentMetadata m = meta >= 0 ? metadata[meta] : null;
+        int flags = in.readByte();
+        RoleAssignment assignment = (flags & TEMPORARY) != 0
+                ? new TemporaryAssignment(id, user, role, m,
+                        textTimes ? DateUtils.parseMillis(in.readString(), "expiresAt") : in.readLong(),
+                        (flags & AUTO_RENEW) != 0)
+                : new PermanentAssignment(id, user, role, m);
+        if ((flags & REVOKED) != 0) {
+            assignment.revoke();
+        }
+        return assignment;
+    }
+
+    private static void intern(String value, Map<String, Integer> strings, List<String> table) {
+        if (value != null && strings.putIfAbsent(value, table.size()) == null) {
+            table.add(value);
+        }
+    }
+
+    private static int indexOf(String value, Map<String, Integer> strings) {
+        return value != null ? strings.get(value) : -1;
+    }
+
+    private static String string(String[] strings, int index) {
+        return index >= 0 ? strings[index] : null;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static void writeId(DataOutputStream out, String prefix, String id) throws IOException {
+        UUID uuid = generatedUuid(prefix, id);
+        if (uuid != null) {
+            out.writeByte(ID_UUID);
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        } else {
+            out.writeByte(ID_STRING);
+            writeString(out, id);
+        }
+    }
+
+    private static String readId(BinaryReader in, String prefix) {
+        if (in.readByte() == ID_UUID) {
+            return prefix + new UUID(in.readLong(), in.readLong());
+        }
+        return in.readString();
+    }
+
+    // only ids that round-trip exactly are stored as numbers
+    private static UUID generatedUuid(String prefix, String id) {
+        if (id.length() != prefix.length() + 36 || !id.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(id.substring(prefix.length()));
+            return id.endsWith(uuid.toString()) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
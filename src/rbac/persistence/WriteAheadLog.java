@@ -0,0 +1,329 @@
+package rbac.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only binary log of records numbered by a log sequence number (LSN).
+ * <p>
+ * File layout: {@code int magic, int version, long baseLsn}, then frames of
+ * {@code int payloadLength, int crc32c, long lsn, payload}; the checksum covers the LSN and the
+ * payload. {@code baseLsn} is the last LSN dropped by {@link #truncateBefore}, so numbering
+ * continues across compactions. A torn or corrupt tail left by a crash is cut off on open.
+ * <p>
+ * Appends only copy into an in-memory buffer. {@link #sync(long)} writes and fsyncs everything
+ * appended so far, so concurrent writers waiting for durability share one {@code force} call
+ * (group commit): whoever gets the sync lock first flushes on behalf of the others.
+ */
+public final class WriteAheadLog implements Closeable {
+
+    /** Receives the records of {@link #replay}. The payload buffer is only valid during the call. */
+    @FunctionalInterface
+    public interface RecordHandler {
+        void accept(long lsn, ByteBuffer payload) throws IOException;
+    }
+
+    private static final int MAGIC = 0x5242_4C47; // "RBLG"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int FRAME_BYTES = 16;
+    // appends spill to the file once this much is buffered, even without a sync
+    private static final int SPILL_BYTES = 1 << 20;
+
+    private final Path file;
+    private FileChannel channel; // guarded by syncLock once open
+    private final Object appendLock = new Object();
+    private final Object syncLock = new Object();
+    private final CRC32C crc = new CRC32C(); // guarded by appendLock
+
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024); // guarded by appendLock
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024); // guarded by syncLock
+    private long lastLsn; // guarded by appendLock
+    private volatile long writtenLsn;
+    private volatile long durableLsn;
+    private volatile boolean closed;
+
+    private WriteAheadLog(Path file, FileChannel channel, long lastLsn) {
+        this.file = file;
+        this.channel = channel;
+        this.lastLsn = lastLsn;
+        this.writtenLsn = lastLsn;
+        this.durableLsn = lastLsn;
+    }
+
+    /** Opens or creates the log, dropping any incomplete record at its end. */
+    public static WriteAheadLog open(Path file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("file must not be null");
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long lastLsn = 0;
+            if (channel.size() < HEADER_BYTES) {
+                channel.truncate(0);
+                writeFully(channel, header(0));
+                channel.force(true);
+            } else {
+                long[] end = scan(file, 0, null);
+                if (end[0] < channel.size()) {
+                    channel.truncate(end[0]);
+                    channel.force(true);
+                }
+                lastLsn = end[1];
+            }
+            channel.position(channel.size());
+            return new WriteAheadLog(file, channel, lastLsn);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    /**
+     * Buffers one record and returns its LSN. The record is durable only after a
+     * {@link #sync(long)} covering that LSN.
+     */
+    public long append(ByteBuffer payload) throws IOException {
+        long lsn;
+        boolean spill;
+        synchronized (appendLock) {
+            ensureOpen();
+            ensureCapacity(FRAME_BYTES + payload.remaining());
+            lsn = ++lastLsn;
+            putFrame(pending, lsn, payload, crc);
+            spill = pending.position() >= SPILL_BYTES;
+        }
+        if (spill) {
+            flush(lsn, false);
+        }
+        return lsn;
+    }
+
+    /** Writes and fsyncs every record up to {@code lsn}; returns at once if that is already done. */
+    public void sync(long lsn) throws IOException {
+        if (durableLsn < lsn) {
+            flush(lsn, true);
+        }
+    }
+
+    /** Writes and fsyncs everything appended so far. */
+    public void sync() throws IOException {
+        long target;
+        synchronized (appendLock) {
+            target = lastLsn;
+        }
+        sync(target);
+    }
+
+    public long lastLsn() {
+        synchronized (appendLock) {
+            return lastLsn;
+        }
+    }
+
+    public long durableLsn() {
+        return durableLsn;
+    }
+
+    /** LSN of the last record dropped by {@link #truncateBefore}; replay starts after it. */
+    public long baseLsn() throws IOException {
+        synchronized (syncLock) {
+            ensureOpen();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new EOFException("Write-ahead log " + file + " has no header");
+                }
+            }
+            return header.getLong(8);
+        }
+    }
+
+    /** Feeds every record with an LSN greater than {@code afterLsn} to {@code handler}, in order. */
+    public long replay(long afterLsn, RecordHandler handler) throws IOException {
+        if (handler == null) {
+            throw new IllegalArgumentException("handler must not be null");
+        }
+        sync();
+        return scan(file, afterLsn, handler)[1];
+    }
+
+    /**
+     * Drops every record up to and including {@code lsn}, e.g. once a snapshot covers them.
+     * Later records are copied into a fresh file that replaces this one; appends wait meanwhile.
+     */
+    public void truncateBefore(long lsn) throws IOException {
+        synchronized (syncLock) {
+            synchronized (appendLock) {
+                ensureOpen();
+                if (lsn < 0 || lsn > lastLsn) {
+                    throw new IllegalArgumentException("lsn must be between 0 and " + lastLsn);
+                }
+                pending.flip();
+                writeFully(channel, pending);
+                pending.clear();
+                Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+                try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    writeFully(out, header(lsn));
+                    ByteBuffer frame = ByteBuffer.allocate(64 * 1024);
+                    CRC32C check = new CRC32C();
+                    scan(file, lsn, (recordLsn, payload) -> {
+                        ByteBuffer target = frame.capacity() >= FRAME_BYTES + payload.remaining()
+                                ? frame.clear() : ByteBuffer.allocate(FRAME_BYTES + payload.remaining());
+                        putFrame(target, recordLsn, payload, check);
+                        writeFully(out, target.flip());
+                    });
+                    out.force(true);
+                }
+                channel.close();
+                Files.move(compacted, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                channel.position(channel.size());
+                writtenLsn = lastLsn;
+                durableLsn = lastLsn;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            if (closed) {
+                return;
+            }
+            try {
+                sync();
+            } finally {
+                closed = true;
+                channel.close();
+            }
+        }
+    }
+
+    private void flush(long lsn, boolean force) throws IOException {
+        synchronized (syncLock) {
+            if ((force ? durableLsn : writtenLsn) >= lsn) {
+                return; // another writer flushed our record together with its own
+            }
+            ensureOpen();
+            ByteBuffer full;
+            long upTo;
+            synchronized (appendLock) {
+                full = pending;
+                pending = spare.capacity() >= full.capacity() ? spare : ByteBuffer.allocate(full.capacity());
+                upTo = lastLsn;
+            }
+            writeFully(channel, full.flip());
+            spare = full.clear();
+            writtenLsn = upTo;
+            if (force) {
+                channel.force(false);
+                durableLsn = upTo;
+            }
+        }
+    }
+
+    private static ByteBuffer header(long baseLsn) {
+        return ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).putLong(baseLsn).flip();
+    }
+
+    private static void putFrame(ByteBuffer target, long lsn, ByteBuffer payload, CRC32C crc) {
+        int start = target.position();
+        target.putInt(payload.remaining()).putInt(0).putLong(lsn).put(payload);
+        crc.reset();
+        crc.update(target.duplicate().position(start + 8).limit(target.position()));
+        target.putInt(start + 4, (int) crc.getValue());
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (pending.remaining() < bytes) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            bigger.put(pending);
+            pending = bigger;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Write-ahead log " + file + " is closed");
+        }
+    }
+
+    /**
+     * Reads frames from the start of the file, passing those after {@code afterLsn} to the
+     * handler (if any). Returns the offset just past the last valid frame and its LSN.
+     */
+    private static long[] scan(Path file, long afterLsn, RecordHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16))) {
+            return scan(in, channel.size(), afterLsn, handler);
+        }
+    }
+
+    private static long[] scan(DataInputStream in, long size, long afterLsn, RecordHandler handler) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not a write-ahead log of a supported version");
+        }
+        long offset = HEADER_BYTES;
+        long lastLsn = in.readLong();
+        CRC32C check = new CRC32C();
+        byte[] body = new byte[256];
+        while (true) {
+            int length;
+            int expected;
+            try {
+                length = in.readInt();
+                expected = in.readInt();
+                if (length < 0 || offset + FRAME_BYTES + length > size) {
+                    break;
+                }
+                if (body.length < 8 + length) {
+                    body = new byte[Math.max(body.length * 2, 8 + length)];
+                }
+                in.readFully(body, 0, 8 + length);
+            } catch (EOFException e) {
+                break;
+            }
+            check.reset();
+            check.update(body, 0, 8 + length);
+            if ((int) check.getValue() != expected) {
+                break;
+            }
+            ByteBuffer frame = ByteBuffer.wrap(body, 0, 8 + length);
+            long lsn = frame.getLong();
+            if (lsn <= lastLsn) {
+                break;
+            }
+            if (handler != null && lsn > afterLsn) {
+                handler.accept(lsn, frame.slice());
+            }
+            lastLsn = lsn;
+            offset += FRAME_BYTES + length;
+        }
+        return new long[]{offset, lastLsn};
+    }
+}
@@ -0,0 +1,72 @@
+package rbac.report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Growable in-memory writer for one chunk of a parallel report. Unlike {@link java.io.StringWriter}
+ * and {@link java.io.CharArrayWriter} it does not lock on every write, and {@link #writeTo} hands
+ * the characters over without copying them into a string first.
+ */
+final class ChunkWriter extends Writer {
+
+    private char[] buffer;
+    private int length;
+
+    ChunkWriter(int initialCapacity) {
+        this.buffer = new char[Math.max(16, initialCapacity)];
+    }
+
+    @Override
+    public void write(int c) {
+        ensure(1);
+        buffer[length++] = (char) c;
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int count) {
+        ensure(count);
+        System.arraycopy(chars, offset, buffer, length, count);
+        length += count;
+    }
+
+    @Override
+    public void write(String s) {
+        write(s, 0, s.length());
+    }
+
+    @Override
+    public void write(String s, int offset, int count) {
+        ensure(count);
+        s.getChars(offset, offset + count, buffer, length);
+        length += count;
+    }
+
+    int length() {
+        return length;
+    }
+
+    /** Empties the buffer for reuse, keeping its capacity. */
+    void reset() {
+        length = 0;
+    }
+
+    void writeTo(Writer out) throws IOException {
+        out.write(buffer, 0, length);
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,117 @@
+package rbac.report;
+
+import rbac.assignment.AssignmentManager;
+import rbac.permission.PermissionRegistry;
+import rbac.role.Role;
+import rbac.user.User;
+import rbac.user.UserManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Users x permissions, built from one pass over the assignments. Each user's active roles are
+ * collected as a bitset over the roles seen; every distinct role combination is then turned into
+ * a row bitset over the permission columns once and shared by all users holding it.
+ */
+final class PermissionMatrix {
+
+    private static final BitSet EMPTY = new BitSet();
+
+    /** Users sorted by username. */
+    final List<User> users;
+    /** Column headers, {@code resource/action}, sorted by resource then action. */
+    final String[] headers;
+    private final Map<User, BitSet> rows;
+
+    private PermissionMatrix(List<User> users, String[] headers, Map<User, BitSet> rows) {
+        this.users = users;
+        this.headers = headers;
+        this.rows = rows;
+    }
+
+    static PermissionMatrix build(UserManager userManager, AssignmentManager assignmentManager) {
+        Map<Role, Integer> roleIndex = new HashMap<>();
+        List<Role> roles = new ArrayList<>();
+        Map<User, BitSet> rolesByUser = new HashMap<>();
+        assignmentManager.forEach(a -> {
+            if (a.getUser() == null || a.getRole() == null || !a.isActive()) {
+                return;
+            }
+            int role = roleIndex.computeIfAbsent(a.getRole(), r -> {
+                roles.add(r);
+                return roles.size() - 1;
+            });
+            rolesByUser.computeIfAbsent(a.getUser(), u -> new BitSet()).set(role);
+        });
+
+        // permission ids held by any assigned role become the columns
+        BitSet ids = new BitSet();
+        for (Role role : roles) {
+            role.orPermissionsInto(ids);
+        }
+        List<Integer> columns = new ArrayList<>(ids.cardinality());
+        ids.stream().forEach(columns::add);
+        columns.sort(Comparator.comparing(PermissionRegistry::resourceOf).thenComparing(PermissionRegistry::nameOf));
+        int[] columnOfId = new int[ids.length()];
+        String[] headers = new String[columns.size()];
+        for (int c = 0; c < headers.length; c++) {
+            int id = columns.get(c);
+            columnOfId[id] = c;
+            headers[c] = PermissionRegistry.resourceOf(id) + "/" + PermissionRegistry.nameOf(id);
+        }
+        BitSet[] roleColumns = new BitSet[roles.size()];
+        for (int r = 0; r < roleColumns.length; r++) {
+            BitSet bits = roles.get(r).getPermissionBits();
+            BitSet mapped = new BitSet(headers.length);
+            for (int id = bits.nextSetBit(0); id >= 0; id = bits.nextSetBit(id + 1)) {
+                mapped.set(columnOfId[id]);
+            }
+            roleColumns[r] = mapped;
+        }
+
+        Map<RoleSet, BitSet> rowOfRoles = new HashMap<>();
+        Map<User, BitSet> rows = new HashMap<>(rolesByUser.size() * 2);
+        rolesByUser.forEach((user, held) -> rows.put(user, rowOfRoles.computeIfAbsent(new RoleSet(held.toLongArray()), k -> {
+            BitSet row = new BitSet(headers.length);
+            for (int r = held.nextSetBit(0); r >= 0; r = held.nextSetBit(r + 1)) {
+                row.or(roleColumns[r]);
+            }
+            return row;
+        })));
+
+        List<User> users = new ArrayList<>(userManager.count());
+        userManager.forEach(users::add);
+        users.sort(Comparator.comparing(User::getUsername));
+        return new PermissionMatrix(users, headers, rows);
+    }
+
+    // BitSet.hashCode folds its words with XOR, which collides heavily for small role combinations
+    private record RoleSet(long[] words) {
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof RoleSet other && Arrays.equals(words, other.words);
+        }
+
+        @Override
+        public int hashCode() {
+            long h = words.length;
+            for (long word : words) {
+                h = (h ^ word) * 0x9E3779B97F4A7C15L;
+                h ^= h >>> 29;
+            }
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    /** Columns set for {@code user}; shared between users, do not modify. */
+    BitSet row(User user) {
+        return rows.getOrDefault(user, EMPTY);
+    }
+}
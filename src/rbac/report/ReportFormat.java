@@ -0,0 +1,26 @@
+package rbac.report;
+
+/** Output formats of the streaming {@link ReportGenerator} methods. */
+public enum ReportFormat {
+
+    /** The human-readable layout of the {@code generate*} methods. */
+    TEXT,
+
+    /** RFC 4180 CSV with a header row. */
+    CSV,
+
+    /** One JSON object per line. */
+    JSONL;
+
+    /** Parses a format name ignoring case, e.g. {@code "csv"}. */
+    public static ReportFormat parse(String name) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("format must be non-blank");
+        }
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("format must be one of text, csv, jsonl");
+        }
+    }
+}
@@ -1,88 +1,410 @@
 package rbac.report;
 
+import rbac.Repository;
 import rbac.assignment.AssignmentManager;
 import rbac.assignment.RoleAssignment;
-import rbac.role.Role;
 import rbac.role.RoleManager;
 import rbac.user.User;
 import rbac.user.UserManager;
 
+import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.*;
-import java.util.stream.Collectors;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
+/**
+ * Builds the user, role and permission-matrix reports. The {@code write*} methods stream rows to
+ * a {@link Writer} or channel as they are produced, so memory use does not grow with the report;
+ * the {@code generate*} methods return the {@link ReportFormat#TEXT} form as a string. A generator
+ * built with a {@link ForkJoinPool} formats the user and role reports in parallel.
+ */
 public class ReportGenerator {
 
+    private static final int BUFFER_CHARS = 64 * 1024;
+    // users or roles formatted per parallel task
+    private static final int CHUNK = 1024;
+
+    private final ForkJoinPool pool;
+
+    /** Formats every report on the calling thread while it streams. */
+    public ReportGenerator() {
+        this.pool = null;
+    }
+
+    /**
+     * Formats the user and role reports in chunks on {@code pool}. The rows are taken from a
+     * snapshot copied under the managers' locks, and the chunks are written in the order the
+     * sequential generator would write them, so the output is the same byte for byte. The pool is
+     * not shut down by the generator.
+     */
+    public ReportGenerator(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("pool must not be null");
+        }
+        this.pool = pool;
+    }
+
+    public boolean isParallel() {
+        return pool != null;
+    }
+
     public String generateUserReport(UserManager userManager, AssignmentManager assignmentManager) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("User report").append(System.lineSeparator());
-        sb.append("================").append(System.lineSeparator());
-        for (User user : userManager.getAll()) {
-            sb.append(String.format("User: %s (%s, %s)%n",
-                    user.getUsername(), user.getFullName(), user.getEmail()));
-            List<RoleAssignment> assignments = assignmentManager.findByUser(user);
-            if (assignments.isEmpty()) {
-                sb.append("  No roles").append(System.lineSeparator());
-            } else {
-                for (RoleAssignment a : assignments) {
-                    sb.append(String.format("  - %s (%s, %s)%n",
-                            a.getRoleName(), a.getType(), a.getStatus()));
+        StringWriter out = new StringWriter();
+        writeQuietly(() -> writeUserReport(userManager, assignmentManager, ReportFormat.TEXT, out));
+        return out.toString();
+    }
+
+    public String generateRoleReport(RoleManager roleManager, AssignmentManager assignmentManager) {
+        StringWriter out = new StringWriter();
+        writeQuietly(() -> writeRoleReport(roleManager, assignmentManager, ReportFormat.TEXT, out));
+        return out.toString();
+    }
+
+    public String generatePermissionMatrix(UserManager userManager, AssignmentManager assignmentManager) {
+        StringWriter out = new StringWriter();
+        writeQuietly(() -> writePermissionMatrix(userManager, assignmentManager, ReportFormat.TEXT, out));
+        return out.toString();
+    }
+
+    /**
+     * One entry per user with their role assignments. CSV has one row per assignment
+     * ({@code username,full_name,email,role,type,status}; users without roles get one row with
+     * the role columns empty); JSON Lines has one object per user.
+     */
+    public void writeUserReport(UserManager userManager, AssignmentManager assignmentManager,
+                                ReportFormat format, Writer writer) throws IOException {
+        RowWriter out = new RowWriter(requireWriter(writer));
+        switch (requireFormat(format)) {
+            case TEXT -> {
+                out.text("User report").newline();
+                out.text("================").newline();
+            }
+            case CSV -> {
+                out.csv("username").csv("full_name").csv("email").csv("role").csv("type").csv("status");
+                out.endRow();
+            }
+            case JSONL -> {
+            }
+        }
+        if (pool != null) {
+            UserRow[] rows = captureUsers(userManager, assignmentManager);
+            writeChunks(out.out(), rows.length, (chunk, from, to) -> {
+                for (int i = from; i < to; i++) {
+                    writeUserRow(chunk, format, rows[i].user(), rows[i].assignments(), rows[i].statuses());
+                }
+            });
+        } else {
+            forEachRow(userManager, user -> writeUserRow(out, format, user, assignmentManager.findByUser(user), null));
+        }
+        out.out().flush();
+    }
+
+    /** @param statuses status of each assignment as captured, or {@code null} to read the current one */
+    private static void writeUserRow(RowWriter out, ReportFormat format, User user,
+                                     List<RoleAssignment> assignments, String[] statuses) throws IOException {
+        switch (format) {
+            case TEXT -> {
+                out.text("User: ").text(user.getUsername()).text(" (").text(user.getFullName())
+                        .text(", ").text(user.getEmail()).text(")").newline();
+                if (assignments.isEmpty()) {
+                    out.text("  No roles").newline();
+                }
+                for (int i = 0; i < assignments.size(); i++) {
+                    RoleAssignment a = assignments.get(i);
+                    out.text("  - ").text(a.getRoleName()).text(" (").text(String.valueOf(a.getType()))
+                            .text(", ").text(status(a, statuses, i)).text(")").newline();
                 }
+                out.newline();
+            }
+            case CSV -> {
+                if (assignments.isEmpty()) {
+                    out.csv(user.getUsername()).csv(user.getFullName()).csv(user.getEmail())
+                            .csv("").csv("").csv("");
+                    out.endRow();
+                }
+                for (int i = 0; i < assignments.size(); i++) {
+                    RoleAssignment a = assignments.get(i);
+                    out.csv(user.getUsername()).csv(user.getFullName()).csv(user.getEmail())
+                            .csv(a.getRoleName()).csv(String.valueOf(a.getType())).csv(status(a, statuses, i));
+                    out.endRow();
+                }
+            }
+            case JSONL -> {
+                out.beginObject()
+                        .field("username", user.getUsername())
+                        .field("fullName", user.getFullName())
+                        .field("email", user.getEmail())
+                        .name("roles").beginArray();
+                for (int i = 0; i < assignments.size(); i++) {
+                    RoleAssignment a = assignments.get(i);
+                    out.element().beginObject()
+                            .field("role", a.getRoleName())
+                            .field("type", String.valueOf(a.getType()))
+                            .field("status", status(a, statuses, i))
+                            .endObject();
+                }
+                out.endArray().endObject().endLine();
             }
-            sb.append(System.lineSeparator());
         }
-        return sb.toString();
     }
 
-    public String generateRoleReport(RoleManager roleManager, AssignmentManager assignmentManager) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("Role report").append(System.lineSeparator());
-        sb.append("============").append(System.lineSeparator());
-        for (Role role : roleManager.getAll()) {
-            long userCount = assignmentManager.findByRole(role).stream()
-                    .map(RoleAssignment::getUsername)
-                    .distinct()
-                    .count();
-            sb.append(String.format("Role: %s (users=%d, permissions=%d)%n",
-                    role.getName(), userCount, role.getPermissions().size()));
+    private static String status(RoleAssignment assignment, String[] statuses, int index) {
+        return statuses != null ? statuses[index] : assignment.getStatus();
+    }
+
+    /** One entry per role: name, number of distinct users holding it and number of permissions. */
+    public void writeRoleReport(RoleManager roleManager, AssignmentManager assignmentManager,
+                                ReportFormat format, Writer writer) throws IOException {
+        RowWriter out = new RowWriter(requireWriter(writer));
+        switch (requireFormat(format)) {
+            case TEXT -> {
+                out.text("Role report").newline();
+                out.text("============").newline();
+            }
+            case CSV -> {
+                out.csv("role").csv("users").csv("permissions");
+                out.endRow();
+            }
+            case JSONL -> {
+            }
+        }
+        if (pool != null) {
+            RoleRow[] rows = captureRoles(roleManager, assignmentManager);
+            writeChunks(out.out(), rows.length, (chunk, from, to) -> {
+                for (int i = from; i < to; i++) {
+                    writeRoleRow(chunk, format, rows[i].name(), distinctUsers(rows[i].assignments()), rows[i].permissions());
+                }
+            });
+        } else {
+            forEachRow(roleManager, role -> writeRoleRow(out, format, role.getName(),
+                    distinctUsers(assignmentManager.findByRole(role)), role.getEffectivePermissions().size()));
         }
-        return sb.toString();
+        out.out().flush();
     }
 
-    public String generatePermissionMatrix(UserManager userManager, AssignmentManager assignmentManager) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("Permission matrix").append(System.lineSeparator());
-        sb.append("==================").append(System.lineSeparator());
+    private static void writeRoleRow(RowWriter out, ReportFormat format, String role, long userCount,
+                                     int permissions) throws IOException {
+        switch (format) {
+            case TEXT -> out.text("Role: ").text(role).text(" (users=").text(Long.toString(userCount))
+                    .text(", permissions=").text(Integer.toString(permissions)).text(")").newline();
+            case CSV -> {
+                out.csv(role).csv(userCount).csv(permissions);
+                out.endRow();
+            }
+            case JSONL -> out.beginObject()
+                    .field("role", role)
+                    .field("users", userCount)
+                    .field("permissions", permissions)
+                    .endObject().endLine();
+        }
+    }
+
+    private static long distinctUsers(List<RoleAssignment> assignments) {
+        return assignments.stream()
+                .map(RoleAssignment::getUsername)
+                .distinct()
+                .count();
+    }
 
-        Set<String> resources = new TreeSet<>();
-        for (RoleAssignment a : assignmentManager.findAll()) {
-            if (a.getRoleName() != null) resources.add(a.getRoleName());
+    private record UserRow(User user, List<RoleAssignment> assignments, String[] statuses) {
+    }
+
+    private record RoleRow(String name, List<RoleAssignment> assignments, int permissions) {
+    }
+
+    // Rows are copied under the writers' locks, in the managers' lock order (as the checkpoint
+    // does), so no mutation lands half-way through the snapshot. Readers never take these locks;
+    // writers wait only for the copy, not for the formatting.
+    private static UserRow[] captureUsers(UserManager userManager, AssignmentManager assignmentManager) {
+        List<UserRow> rows = new ArrayList<>(userManager.count());
+        synchronized (userManager) {
+            synchronized (assignmentManager) {
+                userManager.forEach(user -> {
+                    List<RoleAssignment> assignments = assignmentManager.findByUser(user);
+                    String[] statuses = new String[assignments.size()];
+                    for (int i = 0; i < statuses.length; i++) {
+                        statuses[i] = assignments.get(i).getStatus();
+                    }
+                    rows.add(new UserRow(user, assignments, statuses));
+                });
+            }
         }
-        List<String> usernames = userManager.getAll().stream()
-                .map(User::getUsername)
-                .sorted()
-                .collect(Collectors.toList());
+        return rows.toArray(new UserRow[0]);
+    }
 
-        sb.append("Users × Roles").append(System.lineSeparator());
-        sb.append(String.format("%-20s", "User"));
-        for (String role : resources) {
-            sb.append(String.format("%-15s", role));
+    private static RoleRow[] captureRoles(RoleManager roleManager, AssignmentManager assignmentManager) {
+        List<RoleRow> rows = new ArrayList<>(roleManager.count());
+        synchronized (roleManager) {
+            synchronized (assignmentManager) {
+                roleManager.forEach(role -> rows.add(new RoleRow(role.getName(),
+                        assignmentManager.findByRole(role), role.getEffectivePermissions().size())));
+            }
         }
-        sb.append(System.lineSeparator());
+        return rows.toArray(new RoleRow[0]);
+    }
+
+    @FunctionalInterface
+    private interface Chunk {
+        void write(RowWriter out, int from, int to) throws IOException;
+    }
 
-        for (String username : usernames) {
-            sb.append(String.format("%-20s", username));
-            User u = userManager.findByUsername(username).orElse(null);
-            List<RoleAssignment> userAssignments = assignmentManager.findByUser(u);
-            for (String role : resources) {
-                boolean hasRole = userAssignments.stream()
-                        .anyMatch(a -> role.equals(a.getRoleName()));
-                sb.append(String.format("%-15s", hasRole ? "X" : ""));
+    /**
+     * Formats rows {@code [0, count)} in chunks of {@link #CHUNK} on the pool and writes the
+     * chunks to {@code target} in order. At most twice the pool's parallelism chunks are formatted
+     * ahead of the one being written, so memory stays bounded however large the report is.
+     */
+    private void writeChunks(Writer target, int count, Chunk chunk) throws IOException {
+        int window = Math.max(2, pool.getParallelism() * 2);
+        ArrayDeque<ForkJoinTask<ChunkWriter>> pending = new ArrayDeque<>(window);
+        // written buffers are handed back to later chunks, so only about a window's worth exists
+        Queue<ChunkWriter> free = new ConcurrentLinkedQueue<>();
+        int next = 0;
+        try {
+            while (next < count || !pending.isEmpty()) {
+                while (next < count && pending.size() < window) {
+                    int from = next;
+                    int to = Math.min(count, from + CHUNK);
+                    pending.add(pool.submit(() -> {
+                        ChunkWriter buffer = free.poll();
+                        if (buffer == null) {
+                            buffer = new ChunkWriter(BUFFER_CHARS);
+                        }
+                        chunk.write(new RowWriter(buffer), from, to);
+                        return buffer;
+                    }));
+                    next = to;
+                }
+                ChunkWriter written = pending.poll().join();
+                written.writeTo(target);
+                written.reset();
+                free.add(written);
+            }
+        } finally {
+            for (ForkJoinTask<ChunkWriter> task : pending) {
+                task.cancel(false);
             }
-            sb.append(System.lineSeparator());
         }
-        return sb.toString();
+    }
+
+    /**
+     * Users (sorted) against every permission, {@code resource/action}, granted by one of their
+     * active roles. The matrix is built in one pass over the assignments (see
+     * {@link PermissionMatrix}). TEXT and CSV mark a granted cell with {@code X}; JSON Lines lists
+     * the granted permissions of each user.
+     */
+    public void writePermissionMatrix(UserManager userManager, AssignmentManager assignmentManager,
+                                      ReportFormat format, Writer writer) throws IOException {
+        RowWriter out = new RowWriter(requireWriter(writer));
+        requireFormat(format);
+        PermissionMatrix matrix = PermissionMatrix.build(userManager, assignmentManager);
+        String[] headers = matrix.headers;
+        switch (format) {
+            case TEXT -> writeTextMatrix(matrix, out);
+            case CSV -> {
+                out.csv("user");
+                for (String header : headers) {
+                    out.csv(header);
+                }
+                out.endRow();
+                // a row is the username, then one comma per column with X after granted ones
+                char[] commas = new char[headers.length];
+                Arrays.fill(commas, ',');
+                char[] line = new char[headers.length * 2];
+                for (User user : matrix.users) {
+                    BitSet row = matrix.row(user);
+                    int length = 0;
+                    int previous = -1;
+                    for (int c = row.nextSetBit(0); c >= 0; c = row.nextSetBit(c + 1)) {
+                        System.arraycopy(commas, 0, line, length, c - previous);
+                        length += c - previous;
+                        line[length++] = 'X';
+                        previous = c;
+                    }
+                    System.arraycopy(commas, 0, line, length, headers.length - 1 - previous);
+                    length += headers.length - 1 - previous;
+                    out.csv(user.getUsername()).raw(line, length);
+                    out.endRow();
+                }
+            }
+            case JSONL -> {
+                // every header is escaped once, not once per user holding it
+                String[] quoted = new String[headers.length];
+                for (int c = 0; c < headers.length; c++) {
+                    StringWriter header = new StringWriter();
+                    new RowWriter(header).string(headers[c]);
+                    quoted[c] = header.toString();
+                }
+                for (User user : matrix.users) {
+                    BitSet row = matrix.row(user);
+                    out.beginObject().field("user", user.getUsername()).name("permissions").beginArray();
+                    for (int c = row.nextSetBit(0); c >= 0; c = row.nextSetBit(c + 1)) {
+                        out.element().raw(quoted[c]);
+                    }
+                    out.endArray().endObject().endLine();
+                }
+            }
+        }
+        out.out().flush();
+    }
+
+    private static void writeTextMatrix(PermissionMatrix matrix, RowWriter out) throws IOException {
+        String[] headers = matrix.headers;
+        out.text("Permission matrix").newline();
+        out.text("==================").newline();
+        out.text("Users × Permissions").newline();
+        out.padded("User", 20);
+        // the cells of one row live in a blank line; only the X marks are set and cleared per user
+        int[] offsets = new int[headers.length];
+        int width = 0;
+        for (int c = 0; c < headers.length; c++) {
+            int cell = Math.max(15, headers[c].length() + 1);
+            out.padded(headers[c], cell);
+            offsets[c] = width;
+            width += cell;
+        }
+        out.newline();
+        char[] cells = new char[width];
+        Arrays.fill(cells, ' ');
+        for (User user : matrix.users) {
+            BitSet row = matrix.row(user);
+            for (int c = row.nextSetBit(0); c >= 0; c = row.nextSetBit(c + 1)) {
+                cells[offsets[c]] = 'X';
+            }
+            out.padded(user.getUsername(), 20).raw(cells, cells.length);
+            out.newline();
+            for (int c = row.nextSetBit(0); c >= 0; c = row.nextSetBit(c + 1)) {
+                cells[offsets[c]] = ' ';
+            }
+        }
+    }
+
+    public void writeUserReport(UserManager userManager, AssignmentManager assignmentManager,
+                                ReportFormat format, WritableByteChannel channel) throws IOException {
+        writeUserReport(userManager, assignmentManager, format, writerFor(channel));
+    }
+
+    public void writeRoleReport(RoleManager roleManager, AssignmentManager assignmentManager,
+                                ReportFormat format, WritableByteChannel channel) throws IOException {
+        writeRoleReport(roleManager, assignmentManager, format, writerFor(channel));
+    }
+
+    public void writePermissionMatrix(UserManager userManager, AssignmentManager assignmentManager,
+                                      ReportFormat format, WritableByteChannel channel) throws IOException {
+        writePermissionMatrix(userManager, assignmentManager, format, writerFor(channel));
     }
 
     public void exportToFile(String report, String filename) {
@@ -92,5 +414,63 @@ public class ReportGenerator {
             System.out.println("Failed to save report: " + e.getMessage());
         }
     }
-}
 
+    @FunctionalInterface
+    private interface Row<T> {
+        void write(T item) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Body {
+        void write() throws IOException;
+    }
+
+    // Repository.forEach takes a plain Consumer, so I/O errors are tunnelled through it
+    private static <T> void forEachRow(Repository<T> repository, Row<T> row) throws IOException {
+        try {
+            repository.forEach(item -> {
+                try {
+                    row.write(item);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void writeQuietly(Body body) {
+        try {
+            body.write();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter does not throw
+        }
+    }
+
+    /** UTF-8 writer over {@code channel}; flushed, but not closed, by the report methods. */
+    private static Writer writerFor(WritableByteChannel channel) {
+        if (channel == null) {
+            throw new IllegalArgumentException("channel must not be null");
+        }
+        return new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_CHARS);
+    }
+
+    // rows are written a field at a time, so unbuffered writers get a buffer in front
+    private static Writer requireWriter(Writer writer) {
+        if (writer == null) {
+            throw new IllegalArgumentException("writer must not be null");
+        }
+        if (writer instanceof BufferedWriter || writer instanceof StringWriter) {
+            return writer;
+        }
+        return new BufferedWriter(writer, BUFFER_CHARS);
+    }
+
+    private static ReportFormat requireFormat(ReportFormat format) {
+        if (format == null) {
+            throw new IllegalArgumentException("format must not be null");
+        }
+        return format;
+    }
+}
@@ -0,0 +1,191 @@
+package rbac.report;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes CSV fields and JSON values straight to a {@link Writer}, escaping as it goes, so rows
+ * never need to be assembled as strings first.
+ */
+final class RowWriter {
+
+    private static final String NEWLINE = System.lineSeparator();
+
+    private final Writer out;
+    private boolean firstField = true;
+
+    RowWriter(Writer out) {
+        this.out = out;
+    }
+
+    Writer out() {
+        return out;
+    }
+
+    // CSV
+
+    RowWriter csv(String value) throws IOException {
+        if (!firstField) {
+            out.write(',');
+        }
+        firstField = false;
+        if (value == null) {
+            return this;
+        }
+        if (!needsQuotes(value)) {
+            out.write(value);
+            return this;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.write('"');
+            }
+            out.write(c);
+        }
+        out.write('"');
+        return this;
+    }
+
+    RowWriter csv(long value) throws IOException {
+        return csv(Long.toString(value));
+    }
+
+    void endRow() throws IOException {
+        out.write("\r\n");
+        firstField = true;
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // JSON
+
+    RowWriter beginObject() throws IOException {
+        out.write('{');
+        firstField = true;
+        return this;
+    }
+
+    RowWriter name(String name) throws IOException {
+        if (!firstField) {
+            out.write(',');
+        }
+        firstField = false;
+        string(name);
+        out.write(':');
+        return this;
+    }
+
+    RowWriter field(String name, String value) throws IOException {
+        name(name);
+        return string(value);
+    }
+
+    RowWriter field(String name, long value) throws IOException {
+        name(name);
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    RowWriter endObject() throws IOException {
+        out.write('}');
+        firstField = false;
+        return this;
+    }
+
+    /** Starts an array value; elements are separated with {@link #element()}. */
+    RowWriter beginArray() throws IOException {
+        out.write('[');
+        firstField = true;
+        return this;
+    }
+
+    RowWriter element() throws IOException {
+        if (!firstField) {
+            out.write(',');
+        }
+        firstField = false;
+        return this;
+    }
+
+    RowWriter endArray() throws IOException {
+        out.write(']');
+        firstField = false;
+        return this;
+    }
+
+    void endLine() throws IOException {
+        out.write('\n');
+        firstField = true;
+    }
+
+    RowWriter string(String value) throws IOException {
+        if (value == null) {
+            out.write("null");
+            return this;
+        }
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            out.write(value, start, i - start);
+            switch (c) {
+                case '"' -> out.write("\\\"");
+                case '\\' -> out.write("\\\\");
+                case '\n' -> out.write("\\n");
+                case '\r' -> out.write("\\r");
+                case '\t' -> out.write("\\t");
+                default -> out.write(String.format("\\u%04x", (int) c));
+            }
+            start = i + 1;
+        }
+        out.write(value, start, value.length() - start);
+        out.write('"');
+        return this;
+    }
+
+    // TEXT
+
+    /** Writes {@code value} as is, without separators or escaping. */
+    RowWriter raw(String value) throws IOException {
+        out.write(value);
+        return this;
+    }
+
+    /** Writes the first {@code length} chars of {@code value} as is, without separators or escaping. */
+    RowWriter raw(char[] value, int length) throws IOException {
+        out.write(value, 0, length);
+        return this;
+    }
+
+    RowWriter text(String value) throws IOException {
+        out.write(String.valueOf(value));
+        return this;
+    }
+
+    /** Like {@code %-<width>s}: the value, then spaces up to {@code width} characters. */
+    RowWriter padded(String value, int width) throws IOException {
+        String s = String.valueOf(value);
+        out.write(s);
+        for (int i = s.length(); i < width; i++) {
+            out.write(' ');
+        }
+        return this;
+    }
+
+    void newline() throws IOException {
+        out.write(NEWLINE);
+    }
+}
@@ -4,6 +4,7 @@ import java.util.HashSet;
 import java.util.Set;
 
 import rbac.permission.Permission;
+import rbac.permission.PermissionRegistry;
 
 import java.util.*;
 
@@ -14,9 +15,28 @@ public class Role {
     private final String id;
     private final String name;
     private final String description;
-    private final Set<Permission> permissions = new HashSet<>();
+    // copy-on-write: writers publish a new immutable set and bitset, readers never lock
+    private volatile Set<Permission> permissions = Set.of();
+    // same permissions as ids from PermissionRegistry
+    private volatile BitSet permissionBits = new BitSet();
+    // everything held by the ancestors, maintained by the manager when the hierarchy changes
+    private volatile Set<Permission> inherited = Set.of();
+    private volatile BitSet inheritedBits = new BitSet();
+    // own plus inherited permissions; the same objects as the own ones while nothing is inherited
+    private volatile Set<Permission> effective = Set.of();
+    private volatile BitSet effectiveBits = permissionBits;
+    // manager this role is registered in; notified when the permission set changes
+    private volatile RoleManager manager;
 
     public Role(String name, String description) {
+        this("role_" + UUID.randomUUID(), name, description);
+    }
+
+    /** Restores a role under a known id, e.g. when loading persisted state. */
+    public Role(String id, String name, String description) {
+        if (id == null || id.isBlank()) {
+            throw new IllegalArgumentException("id must be non-blank");
+        }
         if (name == null || name.isBlank()) {
             throw new IllegalArgumentException("Роль не может быть пустым");
         }
@@ -26,38 +46,183 @@ public class Role {
             }
             USED_NAMES.add(name);
         }
-        this.id = "role_" + UUID.randomUUID();
+        this.id = id;
         this.name = name;
         this.description = description;
     }
 
     public void addPermission(Permission permission){
-    permissions.add(permission);
+        synchronized (this) {
+            if (permission == null || permissions.contains(permission)) {
+                return;
+            }
+            Set<Permission> next = new HashSet<>(permissions);
+            next.add(permission);
+            BitSet nextBits = (BitSet) permissionBits.clone();
+            nextBits.set(PermissionRegistry.intern(permission));
+            permissionBits = nextBits;
+            permissions = Set.copyOf(next);
+            refreshEffective();
+        }
+        notifyManager();
+    }
+
+    /** Adds every permission in {@code added} with one copy of the set and one notification. */
+    public void addPermissions(Collection<Permission> added){
+        synchronized (this) {
+            Set<Permission> next = new HashSet<>(permissions);
+            BitSet nextBits = (BitSet) permissionBits.clone();
+            for (Permission permission : added) {
+                if (permission != null && next.add(permission)) {
+                    nextBits.set(PermissionRegistry.intern(permission));
+                }
+            }
+            if (next.size() == permissions.size()) {
+                return;
+            }
+            permissionBits = nextBits;
+            permissions = Set.copyOf(next);
+            refreshEffective();
+        }
+        notifyManager();
     }
 
     public void removePermission(Permission permission){
-        permissions.remove(permission);
+        synchronized (this) {
+            if (permission == null || !permissions.contains(permission)) {
+                return;
+            }
+            Set<Permission> next = new HashSet<>(permissions);
+            next.remove(permission);
+            int id = PermissionRegistry.idOf(permission);
+            boolean stillHeld = false;
+            for (Permission p : next) {
+                if (PermissionRegistry.idOf(p) == id) {
+                    stillHeld = true;
+                    break;
+                }
+            }
+            if (!stillHeld) {
+                BitSet nextBits = (BitSet) permissionBits.clone();
+                nextBits.clear(id);
+                permissionBits = nextBits;
+            }
+            permissions = Set.copyOf(next);
+            refreshEffective();
+        }
+        notifyManager();
+    }
+
+    /**
+     * Replaces the inherited permissions; called by the manager with the union of the parents'
+     * effective permissions. Returns whether the effective set changed.
+     */
+    synchronized boolean setInherited(Set<Permission> permissions, BitSet bits) {
+        if (inherited.equals(permissions) && inheritedBits.equals(bits)) {
+            return false;
+        }
+        Set<Permission> before = effective;
+        inherited = Set.copyOf(permissions);
+        inheritedBits = (BitSet) bits.clone();
+        refreshEffective();
+        return !before.equals(effective);
+    }
+
+    // callers hold the lock on this role
+    private void refreshEffective() {
+        Set<Permission> own = permissions;
+        BitSet ownBits = permissionBits;
+        if (inherited.isEmpty()) {
+            effectiveBits = ownBits;
+            effective = own;
+            return;
+        }
+        Set<Permission> union = new HashSet<>(inherited);
+        union.addAll(own);
+        BitSet unionBits = (BitSet) inheritedBits.clone();
+        unionBits.or(ownBits);
+        effectiveBits = unionBits;
+        effective = Set.copyOf(union);
+    }
+
+    private void notifyManager() {
+        RoleManager current = manager;
+        if (current != null) {
+            current.permissionsChanged(this);
+        }
     }
 
+    /** Whether this role holds {@code permission} itself or inherits it from an ancestor. */
     public boolean hasPermission(Permission permission){
-        return permissions.contains(permission);
+        return effective.contains(permission);
     }
 
     public boolean hasPermission(String permissionName, String resouce){
-        return permissions.stream().anyMatch(p -> p.name().equalsIgnoreCase(permissionName) && p.resource().equalsIgnoreCase(resouce));
+        if (permissionName == null || resouce == null) {
+            return false;
+        }
+        return hasPermissionId(PermissionRegistry.idOf(permissionName.toUpperCase(), resouce.toUpperCase()));
+    }
+
+    public boolean hasPermissionId(int permissionId) {
+        return permissionId >= 0 && effectiveBits.get(permissionId);
     }
 
+    /** Returns a copy of this role's effective permission ids, inherited ones included. */
+    public BitSet getPermissionBits() {
+        return (BitSet) effectiveBits.clone();
+    }
+
+    /** ORs this role's effective permission ids into {@code target}. */
+    public void orPermissionsInto(BitSet target) {
+        target.or(effectiveBits);
+    }
+
+    /** The permissions granted to this role directly, without inherited ones. */
     public Set<Permission> getPermissions(){
-        return Set.copyOf(permissions);
+        return permissions;
+    }
+
+    /** Own and inherited permissions. */
+    public Set<Permission> getEffectivePermissions() {
+        return effective;
+    }
+
+    /** Permissions that come only from ancestors. */
+    public Set<Permission> getInheritedPermissions() {
+        Set<Permission> own = permissions;
+        Set<Permission> result = new HashSet<>(inherited);
+        result.removeAll(own);
+        return result;
     }
+
     public String format() {
+        Set<Permission> current = permissions;
+        Set<Permission> fromParents = getInheritedPermissions();
+        RoleManager owner = manager;
         StringBuilder sb = new StringBuilder();
         sb.append("Role: ").append(name).append(" [ID: ").append(id).append("]\n");
         sb.append("Description: ").append(description).append("\n");
-        sb.append("Permissions (").append(permissions.size()).append("):\n");
-        for (Permission p : permissions) {
+        if (owner != null) {
+            List<Role> parents = owner.getParents(this);
+            if (!parents.isEmpty()) {
+                sb.append("Inherits from: ");
+                for (int i = 0; i < parents.size(); i++) {
+                    sb.append(i > 0 ? ", " : "").append(parents.get(i).getName());
+                }
+                sb.append("\n");
+            }
+        }
+        sb.append("Permissions (").append(current.size()).append("):\n");
+        for (Permission p : current) {
             sb.append(" - ").append(p.format()).append("\n");
         }
+        if (!fromParents.isEmpty()) {
+            sb.append("Inherited permissions (").append(fromParents.size()).append("):\n");
+            for (Permission p : fromParents) {
+                sb.append(" - ").append(p.format()).append("\n");
+            }
+        }
         return sb.toString();
     }
 
@@ -90,8 +255,18 @@ public class Role {
         return description;
     }
 
+    void attach(RoleManager manager) {
+        this.manager = manager;
+    }
+
+    void detach() {
+        this.manager = null;
+    }
+
     /** Called when this role is removed from the manager so the name can be reused. */
     public void releaseName() {
-        USED_NAMES.remove(this.name);
+        synchronized (USED_NAMES) {
+            USED_NAMES.remove(this.name);
+        }
     }
 }
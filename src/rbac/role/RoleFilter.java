@@ -1,88 +1,41 @@
 package rbac.role;
 
-import rbac.permission.Permission;
-
-import java.util.Objects;
+import rbac.filter.FilterNode;
 
+/**
+ * Test applied by {@link RoleManager#findByFilter}. Filters from {@link RoleFilters} and their
+ * {@code and}/{@code or} combinations expose their structure through {@link #node()}; a lambda
+ * is opaque and always means a full scan.
+ */
 @FunctionalInterface
 public interface RoleFilter {
 
     boolean test(Role role);
 
+    /** This filter as a predicate tree; a lambda is a single condition the planner cannot index. */
+    default FilterNode<Role> node() {
+        return FilterNode.opaque(this::test);
+    }
+
     default RoleFilter and(RoleFilter other) {
         if (other == null) {
             throw new IllegalArgumentException("other filter must not be null");
         }
-        return role -> this.test(role) && other.test(role);
+        return of(FilterNode.all(node(), other.node()));
     }
 
     default RoleFilter or(RoleFilter other) {
         if (other == null) {
             throw new IllegalArgumentException("other filter must not be null");
         }
-        return role -> this.test(role) || other.test(role);
-    }
-}
-
-final class RoleFilters {
-
-    private RoleFilters() {
-    }
-
-    static RoleFilter byName(String name) {
-        String expected = nonNullTrim(name);
-        return role -> role != null && expected.equals(role.getName());
-    }
-
-    static RoleFilter byNameContains(String substring) {
-        String part = nonNullTrim(substring).toLowerCase();
-        return role -> {
-            if (role == null || role.getName() == null) {
-                return false;
-            }
-            return role.getName().toLowerCase().contains(part);
-        };
+        return of(FilterNode.any(node(), other.node()));
     }
 
-    static RoleFilter hasPermission(Permission permission) {
-        Objects.requireNonNull(permission, "permission");
-        return role -> role != null && role.getPermissions().contains(permission);
-    }
-
-    static RoleFilter hasPermission(String permissionName, String resource) {
-        String name = nonNullTrim(permissionName);
-        String res = nonNullTrim(resource);
-        return role -> {
-            if (role == null) {
-                return false;
-            }
-            for (Permission p : role.getPermissions()) {
-                if (name.equals(p.getName()) && res.equals(p.getResource())) {
-                    return true;
-                }
-            }
-            return false;
-        };
-    }
-
-    static RoleFilter hasAtLeastNPermissions(int n) {
-        if (n < 0) {
-            throw new IllegalArgumentException("n must be >= 0");
-        }
-        return role -> role != null && role.getPermissions().size() >= n;
-    }
-
-    static RoleFilter byPermissionName(String permissionName) {
-        String name = nonNullTrim(permissionName);
-        return role -> role != null && role.getPermissions().stream()
-                .anyMatch(p -> name.equals(p.getName()));
-    }
-
-    private static String nonNullTrim(String value) {
-        if (value == null) {
-            throw new IllegalArgumentException("value must not be null");
+    /** Wraps a predicate tree as a filter. */
+    static RoleFilter of(FilterNode<Role> node) {
+        if (node == null) {
+            throw new IllegalArgumentException("node must not be null");
         }
-        return value.trim();
+        return new RoleFilters.Tree(node);
     }
 }
-
@@ -0,0 +1,79 @@
+package rbac.role;
+
+import rbac.filter.FilterNode;
+import rbac.permission.Permission;
+import rbac.permission.PermissionRegistry;
+
+import java.util.Objects;
+
+/**
+ * Filters over roles. An exact name match uses the name index; permission conditions see
+ * inherited permissions too.
+ */
+public final class RoleFilters {
+
+    // index names understood by RoleManager
+    static final String NAME = "name";
+
+    private RoleFilters() {
+    }
+
+    record Tree(FilterNode<Role> node) implements RoleFilter {
+
+        @Override
+        public boolean test(Role role) {
+            return node.test(role);
+        }
+    }
+
+    public static RoleFilter byName(String name) {
+        String expected = nonNullTrim(name);
+        return RoleFilter.of(FilterNode.indexed(NAME, expected, "name = " + expected,
+                (Role role) -> role != null && expected.equals(role.getName())));
+    }
+
+    public static RoleFilter byNameContains(String substring) {
+        String part = nonNullTrim(substring).toLowerCase();
+        return RoleFilter.of(FilterNode.unindexed("name contains " + part, (Role role) -> {
+            if (role == null || role.getName() == null) {
+                return false;
+            }
+            return role.getName().toLowerCase().contains(part);
+        }));
+    }
+
+    public static RoleFilter hasPermission(Permission permission) {
+        Objects.requireNonNull(permission, "permission");
+        return RoleFilter.of(FilterNode.unindexed("has " + permission.name() + " on " + permission.resource(),
+                (Role role) -> role != null && role.hasPermission(permission)));
+    }
+
+    public static RoleFilter hasPermission(String permissionName, String resource) {
+        String name = nonNullTrim(permissionName);
+        String res = nonNullTrim(resource);
+        return RoleFilter.of(FilterNode.unindexed("has " + name + " on " + res,
+                (Role role) -> role != null && role.hasPermissionId(PermissionRegistry.idOf(name, res))));
+    }
+
+    public static RoleFilter hasAtLeastNPermissions(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must be >= 0");
+        }
+        return RoleFilter.of(FilterNode.unindexed("at least " + n + " permissions",
+                (Role role) -> role != null && role.getEffectivePermissions().size() >= n));
+    }
+
+    public static RoleFilter byPermissionName(String permissionName) {
+        String name = nonNullTrim(permissionName);
+        return RoleFilter.of(FilterNode.unindexed("has permission " + name,
+                (Role role) -> role != null && role.getEffectivePermissions().stream()
+                        .anyMatch(p -> name.equals(p.getName()))));
+    }
+
+    private static String nonNullTrim(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value must not be null");
+        }
+        return value.trim();
+    }
+}
@@ -0,0 +1,45 @@
+package rbac.role;
+
+/**
+ * Callback for changes made through {@link RoleManager}. All methods are no-ops by default,
+ * so implementations only override the events they care about.
+ */
+public interface RoleListener {
+
+    default void roleAdded(Role role) {
+    }
+
+    default void roleRemoved(Role role) {
+    }
+
+    /**
+     * Called when {@link RoleManager#update} replaces a role with a renamed or re-described copy.
+     */
+    default void roleUpdated(Role previous, Role current) {
+    }
+
+    /**
+     * Called after a permission is added to or removed from a role registered in the manager.
+     */
+    default void permissionsChanged(Role role) {
+    }
+
+    /** Called after {@code child} starts inheriting from {@code parent}. */
+    default void parentAdded(Role child, Role parent) {
+    }
+
+    /** Called after {@link RoleManager#removeParent} drops an edge; removing a role drops its edges silently. */
+    default void parentRemoved(Role child, Role parent) {
+    }
+
+    /**
+     * Called when a role's effective permissions change because of the hierarchy: an edge was
+     * added or removed, or an ancestor's permissions changed. The role's own permissions are
+     * unchanged.
+     */
+    default void inheritedPermissionsChanged(Role role) {
+    }
+
+    default void rolesCleared() {
+    }
+}
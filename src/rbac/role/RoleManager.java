@@ -1,23 +1,83 @@
 package rbac.role;
 
 import rbac.Repository;
+import rbac.filter.FilterNode;
+import rbac.filter.IndexSource;
+import rbac.filter.QueryPlan;
+import rbac.filter.QueryPlanner;
+import rbac.metrics.Histogram;
+import rbac.metrics.MetricsRegistry;
 import rbac.permission.Permission;
+import rbac.permission.PermissionRegistry;
+import rbac.sort.Page;
+import rbac.sort.RoleSorters;
+import rbac.sort.SortKey;
+import rbac.sort.SortedIndex;
+import rbac.sort.TopK;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
+/**
+ * Thread-safe: reads are lock-free over concurrent maps, writes are serialized on the manager
+ * so the id and name maps always change together.
+ * <p>
+ * Roles can inherit from other roles. The hierarchy is kept acyclic, and every role carries the
+ * union of its ancestors' permissions, recomputed top-down whenever an edge or an ancestor's
+ * permissions change, so a check never walks the hierarchy.
+ * <p>
+ * Roles are also kept sorted in each {@link RoleSorters} order for {@link #page}; a role is
+ * refiled whenever its effective permissions change.
+ */
 public final class RoleManager implements Repository<Role> {
 
-    private final Map<String, Role> rolesById = new HashMap<>();
-    private final Map<String, Role> rolesByName = new HashMap<>();
+    private final Map<String, Role> rolesById = new ConcurrentHashMap<>();
+    private final Map<String, Role> rolesByName = new ConcurrentHashMap<>();
+    // role id -> ids of its direct parents / children, as immutable lists in insertion order
+    private final Map<String, List<String>> parentIds = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> childIds = new ConcurrentHashMap<>();
+    private final List<RoleListener> listeners = new CopyOnWriteArrayList<>();
+    private final IndexSource<Role> indexes = new Indexes();
+    private final List<SortedIndex<Role>> sorted = List.of(
+            new SortedIndex<>(RoleSorters.byName(), Role::getId),
+            new SortedIndex<>(RoleSorters.byPermissionCount(), Role::getId));
+    private volatile Histogram addLatency;
+
+    public void addListener(RoleListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener must not be null");
+        }
+        listeners.add(listener);
+    }
+
+    public void removeListener(RoleListener listener) {
+        listeners.remove(listener);
+    }
+
+    /** Times {@link #add} into {@code metrics}; {@code null} turns the timing off. */
+    public void setMetrics(MetricsRegistry metrics) {
+        addLatency = metrics == null ? null
+                : metrics.histogram("rbac_repository_add_seconds", "Time to add one item to a repository", "repository", "roles");
+    }
 
     @Override
-    public void add(Role item) {
+    public synchronized void add(Role item) {
+        Histogram latency = addLatency;
+        long start = latency != null ? System.nanoTime() : 0L;
         if (item == null) {
             throw new IllegalArgumentException("role must not be null");
         }
@@ -31,10 +91,20 @@ public final class RoleManager implements Repository<Role> {
         }
         rolesById.put(id, item);
         rolesByName.put(name, item);
+        // a role removed earlier may still carry what it used to inherit
+        item.setInherited(Set.of(), new BitSet());
+        item.attach(this);
+        refile(item);
+        for (RoleListener listener : listeners) {
+            listener.roleAdded(item);
+        }
+        if (latency != null) {
+            latency.recordSince(start);
+        }
     }
 
     @Override
-    public boolean remove(Role item) {
+    public synchronized boolean remove(Role item) {
         if (item == null) {
             return false;
         }
@@ -45,6 +115,17 @@ public final class RoleManager implements Repository<Role> {
         rolesById.remove(existing.getId());
         rolesByName.remove(existing.getName());
         existing.releaseName();
+        existing.detach();
+        for (SortedIndex<Role> index : sorted) {
+            index.remove(existing);
+        }
+        List<String> orphans = dropEdges(existing.getId());
+        for (RoleListener listener : listeners) {
+            listener.roleRemoved(existing);
+        }
+        for (String childId : orphans) {
+            propagate(rolesById.get(childId), true);
+        }
         return true;
     }
 
@@ -61,15 +142,32 @@ public final class RoleManager implements Repository<Role> {
         return new ArrayList<>(rolesById.values());
     }
 
+    @Override
+    public void forEach(Consumer<? super Role> action) {
+        rolesById.values().forEach(action);
+    }
+
     @Override
     public int count() {
         return rolesById.size();
     }
 
     @Override
-    public void clear() {
+    public synchronized void clear() {
+        for (Role role : rolesById.values()) {
+            role.releaseName();
+            role.detach();
+        }
         rolesById.clear();
         rolesByName.clear();
+        parentIds.clear();
+        childIds.clear();
+        for (SortedIndex<Role> index : sorted) {
+            index.clear();
+        }
+        for (RoleListener listener : listeners) {
+            listener.rolesCleared();
+        }
     }
 
     public Optional<Role> findByName(String name) {
@@ -83,23 +181,66 @@ public final class RoleManager implements Repository<Role> {
         if (filter == null) {
             return Collections.emptyList();
         }
-        List<Role> result = new ArrayList<>();
-        for (Role role : rolesById.values()) {
-            if (filter.test(role)) {
-                result.add(role);
-            }
+        return plan(filter).execute(rolesById.values());
+    }
+
+    /** How {@link #findByFilter} answers {@code filter}: from the name index, or by scanning all roles. */
+    public QueryPlan<Role> plan(RoleFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("filter must not be null");
         }
-        return result;
+        return QueryPlanner.plan(filter.node(), indexes, rolesById.size());
     }
 
     public List<Role> findAll(RoleFilter filter, Comparator<Role> sorter) {
         List<Role> filtered = findByFilter(filter);
         if (sorter != null) {
-            filtered.sort(sorter);
+            SortKey.sort(filtered, sorter);
         }
         return filtered;
     }
 
+    /**
+     * Up to {@code size} roles matching {@code filter} (all when {@code null}) that come after
+     * {@code after} in {@code sorter} order, ties broken by id. Pass {@code null} as
+     * {@code after} for the first page and {@link Page#last()} of the previous page after that; a
+     * {@code null} sorter orders by id. {@link RoleSorters} orders are walked on a sorted index,
+     * others select the first {@code size} matches in one pass.
+     */
+    public Page<Role> page(RoleFilter filter, Comparator<Role> sorter, Role after, int size) {
+        QueryPlan<Role> plan = filter != null ? plan(filter) : null;
+        SortedIndex<Role> index = sortedIndex(sorter);
+        if (index != null && (plan == null || !plan.usesIndex())) {
+            return index.page(sorter, after, size, filter != null ? filter::test : null);
+        }
+        Comparator<Role> order = TopK.totalOrder(sorter, Role::getId);
+        if (plan != null && plan.usesIndex()) {
+            return TopK.select(plan.execute(List.of()), null, order, after, size);
+        }
+        return TopK.select(rolesById.values(), filter != null ? filter::test : null, order, after, size);
+    }
+
+    /** The first {@code k} roles matching {@code filter} in {@code sorter} order. */
+    public List<Role> top(RoleFilter filter, Comparator<Role> sorter, int k) {
+        return page(filter, sorter, null, k).items();
+    }
+
+    private SortedIndex<Role> sortedIndex(Comparator<Role> sorter) {
+        for (SortedIndex<Role> index : sorted) {
+            if (index.serves(sorter)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    // files the role under its current name and permission count
+    private void refile(Role role) {
+        for (SortedIndex<Role> index : sorted) {
+            index.add(role);
+        }
+    }
+
     public List<Role> searchByNameContains(String part) {
         return findByFilter(RoleFilters.byNameContains(part));
     }
@@ -112,7 +253,7 @@ public final class RoleManager implements Repository<Role> {
         return findByFilter(RoleFilters.hasAtLeastNPermissions(min));
     }
 
-    public void update(String roleName, String newName, String newDescription) {
+    public synchronized void update(String roleName, String newName, String newDescription) {
         Role existing = rolesByName.get(requireNonBlank(roleName, "roleName"));
         if (existing == null) {
             throw new IllegalArgumentException("Role with name '" + roleName + "' not found");
@@ -123,8 +264,60 @@ public final class RoleManager implements Repository<Role> {
         for (Permission p : existing.getPermissions()) {
             updated.addPermission(p);
         }
-        remove(existing);
-        add(updated);
+        replace(existing, updated);
+    }
+
+    /**
+     * Puts {@code replacement} in place of the role named {@code roleName}, keeping the
+     * replacement's own permissions and the previous role's place in the hierarchy. Listeners see
+     * a single {@code roleUpdated} event, followed by {@code inheritedPermissionsChanged} for
+     * descendants whose permissions changed with it.
+     */
+    public synchronized void replace(String roleName, Role replacement) {
+        Role existing = rolesByName.get(requireNonBlank(roleName, "roleName"));
+        if (existing == null) {
+            throw new IllegalArgumentException("Role with name '" + roleName + "' not found");
+        }
+        if (replacement == null) {
+            throw new IllegalArgumentException("replacement must not be null");
+        }
+        if (rolesById.containsKey(replacement.getId())) {
+            throw new IllegalArgumentException("Role with id '" + replacement.getId() + "' already exists");
+        }
+        replace(existing, replacement);
+    }
+
+    private void replace(Role existing, Role updated) {
+        rolesById.remove(existing.getId());
+        rolesByName.remove(existing.getName());
+        existing.releaseName();
+        existing.detach();
+        rolesById.put(updated.getId(), updated);
+        rolesByName.put(updated.getName(), updated);
+        List<String> parents = parentIds.remove(existing.getId());
+        List<String> children = childIds.remove(existing.getId());
+        if (parents != null) {
+            parentIds.put(updated.getId(), parents);
+            for (String parentId : parents) {
+                childIds.put(parentId, replaced(childIds.get(parentId), existing.getId(), updated.getId()));
+            }
+        }
+        if (children != null) {
+            childIds.put(updated.getId(), children);
+            for (String childId : children) {
+                parentIds.put(childId, replaced(parentIds.get(childId), existing.getId(), updated.getId()));
+            }
+        }
+        refreshInherited(updated);
+        updated.attach(this);
+        for (SortedIndex<Role> index : sorted) {
+            index.remove(existing);
+        }
+        refile(updated);
+        for (RoleListener listener : listeners) {
+            listener.roleUpdated(existing, updated);
+        }
+        propagate(updated, false);
     }
 
     public boolean exists(String name) {
@@ -160,21 +353,259 @@ public final class RoleManager implements Repository<Role> {
         role.removePermission(permission);
     }
 
+    public void addParent(Role child, Role parent) {
+        if (child == null || parent == null) {
+            throw new IllegalArgumentException("child and parent must not be null");
+        }
+        addParent(child.getName(), parent.getName());
+    }
+
+    /**
+     * Makes the role named {@code childName} inherit every permission of {@code parentName} and
+     * of its ancestors. Adding an existing edge does nothing.
+     *
+     * @throws IllegalStateException if {@code parentName} already inherits from {@code childName}
+     */
+    public synchronized void addParent(String childName, String parentName) {
+        Role child = require(childName, "childName");
+        Role parent = require(parentName, "parentName");
+        List<String> parents = parentIds.getOrDefault(child.getId(), List.of());
+        if (parents.contains(parent.getId())) {
+            return;
+        }
+        if (child.equals(parent) || isAncestor(child.getId(), parent.getId())) {
+            throw new IllegalStateException("Role '" + child.getName() + "' cannot inherit from '"
+                    + parent.getName() + "': that would create a cycle");
+        }
+        parentIds.put(child.getId(), appended(parents, parent.getId()));
+        childIds.put(parent.getId(), appended(childIds.getOrDefault(parent.getId(), List.of()), child.getId()));
+        for (RoleListener listener : listeners) {
+            listener.parentAdded(child, parent);
+        }
+        propagate(child, true);
+    }
+
+    public boolean removeParent(Role child, Role parent) {
+        if (child == null || parent == null) {
+            throw new IllegalArgumentException("child and parent must not be null");
+        }
+        return removeParent(child.getName(), parent.getName());
+    }
+
+    /** Removes the edge from {@code childName} to {@code parentName}; {@code false} if there was none. */
+    public synchronized boolean removeParent(String childName, String parentName) {
+        Role child = require(childName, "childName");
+        Role parent = require(parentName, "parentName");
+        List<String> parents = parentIds.getOrDefault(child.getId(), List.of());
+        if (!parents.contains(parent.getId())) {
+            return false;
+        }
+        putOrRemove(parentIds, child.getId(), removed(parents, parent.getId()));
+        putOrRemove(childIds, parent.getId(), removed(childIds.get(parent.getId()), child.getId()));
+        for (RoleListener listener : listeners) {
+            listener.parentRemoved(child, parent);
+        }
+        propagate(child, true);
+        return true;
+    }
+
+    /** Roles {@code role} inherits from directly, in the order the edges were added. */
+    public List<Role> getParents(Role role) {
+        return role == null ? List.of() : resolve(parentIds.get(role.getId()));
+    }
+
+    /** Roles inheriting from {@code role} directly. */
+    public List<Role> getChildren(Role role) {
+        return role == null ? List.of() : resolve(childIds.get(role.getId()));
+    }
+
     public List<Role> findRolesWithPermission(String permissionName, String resource) {
         String name = requireNonBlank(permissionName, "permissionName");
         String res = requireNonBlank(resource, "resource");
+        int permissionId = PermissionRegistry.idOf(name, res);
+        if (permissionId < 0) {
+            return Collections.emptyList();
+        }
         List<Role> result = new ArrayList<>();
         for (Role role : rolesById.values()) {
-            for (Permission p : role.getPermissions()) {
-                if (name.equals(p.getName()) && res.equals(p.getResource())) {
-                    result.add(role);
-                    break;
+            if (role.hasPermissionId(permissionId)) {
+                result.add(role);
+            }
+        }
+        return result;
+    }
+
+    void permissionsChanged(Role role) {
+        for (RoleListener listener : listeners) {
+            listener.permissionsChanged(role);
+        }
+        inheritanceChanged(role);
+    }
+
+    // the role's own permissions changed outside the manager lock; pass them down to its descendants
+    private synchronized void inheritanceChanged(Role role) {
+        if (rolesById.get(role.getId()) != role) {
+            return;
+        }
+        refile(role);
+        if (childIds.containsKey(role.getId())) {
+            propagate(role, false);
+        }
+    }
+
+    /**
+     * Recomputes the inherited permissions of everything below {@code root} (and of {@code root}
+     * itself when {@code includeRoot}), parents before children, and tells listeners about each
+     * role whose effective permissions changed.
+     */
+    private void propagate(Role root, boolean includeRoot) {
+        for (Role role : topDown(root)) {
+            if ((role != root || includeRoot) && refreshInherited(role)) {
+                refile(role);
+                for (RoleListener listener : listeners) {
+                    listener.inheritedPermissionsChanged(role);
+                }
+            }
+        }
+    }
+
+    // root and its descendants in topological order: reversed post-order of a depth-first walk
+    private List<Role> topDown(Role root) {
+        List<Role> order = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        Deque<String> path = new ArrayDeque<>();
+        Deque<Iterator<String>> pending = new ArrayDeque<>();
+        visited.add(root.getId());
+        path.push(root.getId());
+        pending.push(childIds.getOrDefault(root.getId(), List.of()).iterator());
+        while (!pending.isEmpty()) {
+            Iterator<String> children = pending.peek();
+            if (children.hasNext()) {
+                String next = children.next();
+                if (visited.add(next)) {
+                    path.push(next);
+                    pending.push(childIds.getOrDefault(next, List.of()).iterator());
                 }
+            } else {
+                pending.pop();
+                order.add(rolesById.get(path.pop()));
+            }
+        }
+        Collections.reverse(order);
+        return order;
+    }
+
+    private boolean refreshInherited(Role role) {
+        Set<Permission> permissions = new HashSet<>();
+        BitSet bits = new BitSet();
+        for (String parentId : parentIds.getOrDefault(role.getId(), List.of())) {
+            Role parent = rolesById.get(parentId);
+            permissions.addAll(parent.getEffectivePermissions());
+            parent.orPermissionsInto(bits);
+        }
+        return role.setInherited(permissions, bits);
+    }
+
+    private boolean isAncestor(String candidateId, String roleId) {
+        Set<String> visited = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        pending.push(roleId);
+        while (!pending.isEmpty()) {
+            for (String parentId : parentIds.getOrDefault(pending.pop(), List.of())) {
+                if (parentId.equals(candidateId)) {
+                    return true;
+                }
+                if (visited.add(parentId)) {
+                    pending.push(parentId);
+                }
+            }
+        }
+        return false;
+    }
+
+    // unlinks a removed role from its neighbours and returns its former children
+    private List<String> dropEdges(String id) {
+        List<String> parents = parentIds.remove(id);
+        List<String> children = childIds.remove(id);
+        if (parents != null) {
+            for (String parentId : parents) {
+                putOrRemove(childIds, parentId, removed(childIds.get(parentId), id));
+            }
+        }
+        if (children == null) {
+            return List.of();
+        }
+        for (String childId : children) {
+            putOrRemove(parentIds, childId, removed(parentIds.get(childId), id));
+        }
+        return children;
+    }
+
+    private List<Role> resolve(List<String> ids) {
+        if (ids == null) {
+            return List.of();
+        }
+        List<Role> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Role role = rolesById.get(id);
+            if (role != null) {
+                result.add(role);
             }
         }
         return result;
     }
 
+    private static List<String> appended(List<String> ids, String id) {
+        List<String> next = new ArrayList<>(ids);
+        next.add(id);
+        return List.copyOf(next);
+    }
+
+    private static List<String> removed(List<String> ids, String id) {
+        List<String> next = new ArrayList<>(ids);
+        next.remove(id);
+        return List.copyOf(next);
+    }
+
+    private static List<String> replaced(List<String> ids, String from, String to) {
+        List<String> next = new ArrayList<>(ids);
+        next.replaceAll(id -> id.equals(from) ? to : id);
+        return List.copyOf(next);
+    }
+
+    private static void putOrRemove(Map<String, List<String>> edges, String id, List<String> ids) {
+        if (ids.isEmpty()) {
+            edges.remove(id);
+        } else {
+            edges.put(id, ids);
+        }
+    }
+
+    private final class Indexes implements IndexSource<Role> {
+
+        @Override
+        public int estimate(FilterNode.Condition<Role> condition, int limit) {
+            if (!condition.index().equals(RoleFilters.NAME)) {
+                return -1;
+            }
+            return rolesByName.containsKey((String) condition.key()) ? 1 : 0;
+        }
+
+        @Override
+        public Collection<Role> lookup(FilterNode.Condition<Role> condition) {
+            Role role = rolesByName.get((String) condition.key());
+            return role != null ? List.of(role) : List.of();
+        }
+    }
+
+    private Role require(String roleName, String field) {
+        Role role = rolesByName.get(requireNonBlank(roleName, field));
+        if (role == null) {
+            throw new IllegalArgumentException("Role with name '" + roleName + "' not found");
+        }
+        return role;
+    }
+
     private static String requireNonBlank(String value, String field) {
         if (value == null || value.trim().isEmpty()) {
             throw new IllegalArgumentException(field + " must be non-blank");
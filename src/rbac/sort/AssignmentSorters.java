@@ -0,0 +1,31 @@
+package rbac.sort;
+
+import rbac.assignment.RoleAssignment;
+import rbac.role.Role;
+import rbac.user.User;
+
+/** Orders for assignments; {@link rbac.assignment.AssignmentManager} keeps a sorted index for each. */
+public final class AssignmentSorters {
+
+    private AssignmentSorters() {
+    }
+
+    public static SortKey<RoleAssignment, String> byUsername() {
+        return SortKey.of("username", assignment -> {
+            User user = assignment.user();
+            return user != null ? user.username() : null;
+        });
+    }
+
+    public static SortKey<RoleAssignment, String> byRoleName() {
+        return SortKey.of("role-name", assignment -> {
+            Role role = assignment.role();
+            return role != null ? role.getName() : null;
+        });
+    }
+
+    /** By assignment time, read as epoch milliseconds; assignments without a time first. */
+    public static SortKey<RoleAssignment, Long> byAssignmentDate() {
+        return SortKey.ofLong("assignment-date", RoleAssignment::getAssignedAtMillis);
+    }
+}
@@ -0,0 +1,20 @@
+package rbac.sort;
+
+import java.util.List;
+
+/**
+ * One page of a sorted listing. Pass {@link #last()} as the {@code after} cursor to get the next
+ * page; the cursor is a position in the order rather than an offset, so items added or removed
+ * before it do not shift later pages.
+ */
+public record Page<T>(List<T> items, boolean hasMore) {
+
+    public Page {
+        items = List.copyOf(items);
+    }
+
+    /** The cursor for the next page, {@code null} if this page is empty. */
+    public T last() {
+        return items.isEmpty() ? null : items.get(items.size() - 1);
+    }
+}
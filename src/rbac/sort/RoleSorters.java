@@ -0,0 +1,19 @@
+package rbac.sort;
+
+import rbac.role.Role;
+
+/** Orders for roles; {@link rbac.role.RoleManager} keeps a sorted index for each. */
+public final class RoleSorters {
+
+    private RoleSorters() {
+    }
+
+    public static SortKey<Role, String> byName() {
+        return SortKey.of("name", Role::getName);
+    }
+
+    /** By the number of effective permissions, inherited ones included; the count is not boxed. */
+    public static SortKey<Role, Long> byPermissionCount() {
+        return SortKey.ofLong("permission-count", role -> role.getEffectivePermissions().size());
+    }
+}
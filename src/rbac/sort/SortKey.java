@@ -0,0 +1,150 @@
+package rbac.sort;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A comparator that orders items by one extracted key. Because the key is known, a repository can
+ * keep a {@link SortedIndex} on it and page through that instead of sorting; the {@link #name()}
+ * tells it which index an order corresponds to, so two keys with the same name must order items
+ * the same way.
+ * <p>
+ * Keys that are numbers or dates should be given as primitive longs ({@link #ofLong}), which are
+ * compared without boxing. {@link #sort} extracts such keys once before sorting, so a key that is
+ * computed, like a parsed date, costs n computations rather than one per comparison; keys from
+ * {@link #of} are expected to be plain field reads and are compared in place.
+ */
+public final class SortKey<T, K> implements Comparator<T> {
+
+    private static final Comparator<Keyed> LONG_ASCENDING = (a, b) -> Long.compare(a.key, b.key);
+    private static final Comparator<Keyed> LONG_DESCENDING = (a, b) -> Long.compare(b.key, a.key);
+
+    private final String name;
+    private final Function<? super T, ? extends K> key;
+    private final Comparator<? super K> keyOrder;
+    // set instead of key and keyOrder for primitive keys
+    private final ToLongFunction<? super T> longKey;
+    private final boolean descending;
+
+    private SortKey(String name, Function<? super T, ? extends K> key, Comparator<? super K> keyOrder,
+                    ToLongFunction<? super T> longKey, boolean descending) {
+        this.name = name;
+        this.key = key;
+        this.keyOrder = keyOrder;
+        this.longKey = longKey;
+        this.descending = descending;
+    }
+
+    /** Orders by {@code key} in its natural order, {@code null} keys first. */
+    public static <T, K extends Comparable<? super K>> SortKey<T, K> of(String name, Function<? super T, ? extends K> key) {
+        return of(name, key, Comparator.nullsFirst(Comparator.<K>naturalOrder()));
+    }
+
+    public static <T, K> SortKey<T, K> of(String name, Function<? super T, ? extends K> key, Comparator<? super K> keyOrder) {
+        requireName(name);
+        if (key == null || keyOrder == null) {
+            throw new IllegalArgumentException("key and keyOrder must not be null");
+        }
+        return new SortKey<>(name, key, keyOrder, null, false);
+    }
+
+    /** Orders by a primitive key, e.g. a count or an epoch day, compared without boxing. */
+    public static <T> SortKey<T, Long> ofLong(String name, ToLongFunction<? super T> key) {
+        requireName(name);
+        if (key == null) {
+            throw new IllegalArgumentException("key must not be null");
+        }
+        return new SortKey<>(name, null, null, key, false);
+    }
+
+    /**
+     * Sorts {@code items} by {@code sorter}, stably, like {@link List#sort}; a {@link SortKey}
+     * with a primitive key has the keys extracted once up front.
+     */
+    public static <T> void sort(List<T> items, Comparator<? super T> sorter) {
+        if (sorter instanceof SortKey<?, ?> key) {
+            @SuppressWarnings("unchecked")
+            SortKey<T, ?> typed = (SortKey<T, ?>) key;
+            typed.sort(items);
+        } else {
+            items.sort(sorter);
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    @SuppressWarnings("unchecked")
+    public K keyOf(T item) {
+        return longKey != null ? (K) Long.valueOf(longKey.applyAsLong(item)) : key.apply(item);
+    }
+
+    /** Compares two extracted keys in ascending order, whatever the direction of this key. */
+    public int compareKeys(K a, K b) {
+        return longKey != null ? Long.compare((Long) a, (Long) b) : keyOrder.compare(a, b);
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    @Override
+    public int compare(T a, T b) {
+        if (longKey != null) {
+            long ka = longKey.applyAsLong(a);
+            long kb = longKey.applyAsLong(b);
+            return descending ? Long.compare(kb, ka) : Long.compare(ka, kb);
+        }
+        K ka = key.apply(a);
+        K kb = key.apply(b);
+        return descending ? keyOrder.compare(kb, ka) : keyOrder.compare(ka, kb);
+    }
+
+    /** The same key in the opposite direction, still recognised by its name. */
+    @Override
+    public SortKey<T, K> reversed() {
+        return new SortKey<>(name, key, keyOrder, longKey, !descending);
+    }
+
+    /** Sorts {@code items} in this order, stably, extracting primitive keys only once. */
+    public void sort(List<T> items) {
+        int n = items.size();
+        if (longKey == null || n < 2) {
+            items.sort(this);
+            return;
+        }
+        // decorate, sort the pairs, undecorate
+        Keyed[] keyed = new Keyed[n];
+        int i = 0;
+        for (T item : items) {
+            keyed[i++] = new Keyed(longKey.applyAsLong(item), item);
+        }
+        Arrays.sort(keyed, descending ? LONG_DESCENDING : LONG_ASCENDING);
+        ListIterator<T> it = items.listIterator();
+        for (Keyed k : keyed) {
+            it.next();
+            @SuppressWarnings("unchecked")
+            T item = (T) k.item;
+            it.set(item);
+        }
+    }
+
+    private record Keyed(long key, Object item) {
+    }
+
+    private static void requireName(String name) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("name must be non-blank");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + (descending ? " desc" : "");
+    }
+}
@@ -0,0 +1,80 @@
+package rbac.sort;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Selects the first items of an order without sorting all of them: one pass keeping the best
+ * {@code size + 1} in a bounded heap, O(n log size) instead of O(n log n). Used when no
+ * {@link SortedIndex} matches the order, or a filter's index already narrowed the candidates.
+ */
+public final class TopK {
+
+    private TopK() {
+    }
+
+    /**
+     * {@code sorter} made total by breaking ties on {@code id}, so a cursor names one position.
+     * Ties of a descending {@link SortKey} go by descending id, as when a {@link SortedIndex} is
+     * walked backwards. A {@code null} sorter orders by id alone.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Comparator<T> totalOrder(Comparator<? super T> sorter, Function<? super T, String> id) {
+        Comparator<T> ties = Comparator.comparing(id);
+        if (sorter == null) {
+            return ties;
+        }
+        if (sorter instanceof SortKey<?, ?> key && key.isDescending()) {
+            Comparator<T> ascending = (Comparator<T>) key.reversed();
+            return ascending.thenComparing(ties).reversed();
+        }
+        Comparator<T> order = sorter::compare;
+        return order.thenComparing(ties);
+    }
+
+    /**
+     * The first {@code size} items that pass {@code test} ({@code null} passes everything) and
+     * come strictly after {@code after} in {@code order} ({@code null} starts at the beginning).
+     * {@code order} should be total, see {@link #totalOrder}.
+     */
+    public static <T> Page<T> select(Iterable<? extends T> items, Predicate<? super T> test,
+                                     Comparator<? super T> order, T after, int size) {
+        if (items == null || order == null) {
+            throw new IllegalArgumentException("items and order must not be null");
+        }
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        // worst of the kept items at the head; one extra tells whether there is a next page
+        int keep = size == Integer.MAX_VALUE ? size : size + 1;
+        PriorityQueue<T> heap = new PriorityQueue<>(Math.min(keep, 1024), Collections.reverseOrder(order));
+        for (T item : items) {
+            if (after != null && order.compare(item, after) <= 0) {
+                continue;
+            }
+            boolean full = heap.size() == keep;
+            if (full && order.compare(item, heap.peek()) >= 0 || test != null && !test.test(item)) {
+                continue;
+            }
+            if (full) {
+                heap.poll();
+            }
+            heap.add(item);
+        }
+        boolean hasMore = heap.size() > size;
+        if (hasMore) {
+            heap.poll();
+        }
+        List<T> result = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            result.add(heap.poll());
+        }
+        Collections.reverse(result);
+        return new Page<>(result, hasMore);
+    }
+}
@@ -0,0 +1,22 @@
+package rbac.sort;
+
+import rbac.user.User;
+
+/** Orders for users; {@link rbac.user.UserManager} keeps a sorted index for each. */
+public final class UserSorters {
+
+    private UserSorters() {
+    }
+
+    public static SortKey<User, String> byUsername() {
+        return SortKey.of("username", User::getUsername);
+    }
+
+    public static SortKey<User, String> byFullName() {
+        return SortKey.of("full-name", User::getFullName);
+    }
+
+    public static SortKey<User, String> byEmail() {
+        return SortKey.of("email", User::getEmail);
+    }
+}
@@ -0,0 +1,205 @@
+package rbac.system;
+
+import rbac.assignment.AssignmentManager;
+import rbac.assignment.AssignmentType;
+import rbac.assignment.PermanentAssignment;
+import rbac.assignment.RoleAssignment;
+import rbac.assignment.TemporaryAssignment;
+import rbac.permission.Permission;
+import rbac.permission.PermissionRegistry;
+import rbac.permission.ResourceTrie;
+import rbac.role.Role;
+import rbac.role.RoleManager;
+import rbac.user.User;
+import rbac.user.UserManager;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Immutable, versioned view of users, roles and assignments. {@link RBACSystem} publishes a new
+ * instance after every write; readers grab the current one and never lock.
+ * <p>
+ * Temporary assignments keep their expiration moment, so a check made against an older
+ * snapshot still stops granting a role once it expires.
+ */
+public final class AuthorizationSnapshot {
+
+    /** {@code wildcards} is {@code null} unless the role holds wildcard permissions. */
+    public record RoleView(String id, String name, String description,
+                           Set<Permission> permissions, BitSet permissionBits, ResourceTrie wildcards) {
+
+        static RoleView of(Role role) {
+            BitSet bits = role.getPermissionBits();
+            return new RoleView(role.getId(), role.getName(), role.getDescription(),
+                    role.getEffectivePermissions(), bits, ResourceTrie.compile(bits));
+        }
+
+        boolean grants(int permissionId, String permissionName, String resource) {
+            if (permissionId >= 0 && permissionBits.get(permissionId)) {
+                return true;
+            }
+            return wildcards != null && wildcards.matches(permissionName, resource);
+        }
+    }
+
+    public record AssignmentView(String assignmentId, String username, String roleId,
+                                 AssignmentType type, boolean revoked, long expiresAtMillis) {
+
+        static AssignmentView of(RoleAssignment assignment) {
+            boolean revoked = assignment instanceof PermanentAssignment p ? p.isRevoked()
+                    : assignment instanceof TemporaryAssignment t && t.isRevoked();
+            long expiresAt = assignment instanceof TemporaryAssignment t ? t.getActiveUntilMillis() : Long.MAX_VALUE;
+            return new AssignmentView(assignment.getAssignmentId(), assignment.getUsername(),
+                    assignment.getRole().getId(), assignment.getType(), revoked, expiresAt);
+        }
+
+        public boolean isActive(long now) {
+            return !revoked && now <= expiresAtMillis;
+        }
+    }
+
+    private final long version;
+    private final ShardedMap<String, User> users;
+    private final ShardedMap<String, RoleView> rolesById;
+    private final ShardedMap<String, List<AssignmentView>> assignmentsByUser;
+
+    private AuthorizationSnapshot(long version,
+                                  ShardedMap<String, User> users,
+                                  ShardedMap<String, RoleView> rolesById,
+                                  ShardedMap<String, List<AssignmentView>> assignmentsByUser) {
+        this.version = version;
+        this.users = users;
+        this.rolesById = rolesById;
+        this.assignmentsByUser = assignmentsByUser;
+    }
+
+    static AuthorizationSnapshot empty() {
+        return new AuthorizationSnapshot(0, ShardedMap.empty(), ShardedMap.empty(), ShardedMap.empty());
+    }
+
+    static AuthorizationSnapshot capture(long version, UserManager userManager,
+                                         RoleManager roleManager, AssignmentManager assignmentManager) {
+        ShardedMap.Builder<String, User> users = new ShardedMap.Builder<>();
+        ShardedMap.Builder<String, List<AssignmentView>> assignments = new ShardedMap.Builder<>();
+        for (User user : userManager.findAll()) {
+            users.put(user.getUsername(), user);
+            List<RoleAssignment> owned = assignmentManager.findByUser(user);
+            if (!owned.isEmpty()) {
+                List<AssignmentView> views = new ArrayList<>(owned.size());
+                for (RoleAssignment assignment : owned) {
+                    views.add(AssignmentView.of(assignment));
+                }
+                assignments.put(user.getUsername(), List.copyOf(views));
+            }
+        }
+        ShardedMap.Builder<String, RoleView> roles = new ShardedMap.Builder<>();
+        for (Role role : roleManager.findAll()) {
+            roles.put(role.getId(), RoleView.of(role));
+        }
+        return new AuthorizationSnapshot(version, users.build(), roles.build(), assignments.build());
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public Optional<User> findUser(String username) {
+        return username == null ? Optional.empty() : Optional.ofNullable(users.get(username));
+    }
+
+    public Optional<RoleView> findRole(String roleId) {
+        return roleId == null ? Optional.empty() : Optional.ofNullable(rolesById.get(roleId));
+    }
+
+    public Collection<User> users() {
+        return users.values();
+    }
+
+    public Collection<RoleView> roles() {
+        return rolesById.values();
+    }
+
+    public List<AssignmentView> assignmentsOf(String username) {
+        List<AssignmentView> list = username == null ? null : assignmentsByUser.get(username);
+        return list != null ? list : List.of();
+    }
+
+    public int userCount() {
+        return users.size();
+    }
+
+    public int roleCount() {
+        return rolesById.size();
+    }
+
+    /**
+     * Same semantics as {@link AssignmentManager#userHasPermission}: exact name and resource match
+     * or a wildcard grant, over the user's active assignments.
+     */
+    public Decision check(String username, String permissionName, String resource) {
+        String name = requireNonBlank(permissionName, "permissionName");
+        String res = requireNonBlank(resource, "resource");
+        return new Decision(grants(username, PermissionRegistry.idOf(name, res), name, res), version);
+    }
+
+    boolean grants(String username, int permissionId, String permissionName, String resource) {
+        if (username == null || users.get(username) == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        for (AssignmentView assignment : assignmentsOf(username)) {
+            if (!assignment.isActive(now)) {
+                continue;
+            }
+            RoleView role = rolesById.get(assignment.roleId());
+            if (role != null && role.grants(permissionId, permissionName, resource)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    AuthorizationSnapshot withVersion(long nextVersion) {
+        return new AuthorizationSnapshot(nextVersion, users, rolesById, assignmentsByUser);
+    }
+
+    AuthorizationSnapshot withUser(User user) {
+        return new AuthorizationSnapshot(version, users.with(user.getUsername(), user), rolesById, assignmentsByUser);
+    }
+
+    AuthorizationSnapshot withoutUser(String username) {
+        return new AuthorizationSnapshot(version, users.without(username), rolesById, assignmentsByUser);
+    }
+
+    AuthorizationSnapshot withRole(Role role) {
+        return new AuthorizationSnapshot(version, users, rolesById.with(role.getId(), RoleView.of(role)), assignmentsByUser);
+    }
+
+    AuthorizationSnapshot withoutRole(String roleId) {
+        return new AuthorizationSnapshot(version, users, rolesById.without(roleId), assignmentsByUser);
+    }
+
+    AuthorizationSnapshot withAssignments(String username, Collection<? extends RoleAssignment> assignments) {
+        if (assignments.isEmpty()) {
+            return new AuthorizationSnapshot(version, users, rolesById, assignmentsByUser.without(username));
+        }
+        List<AssignmentView> views = new ArrayList<>(assignments.size());
+        for (RoleAssignment assignment : assignments) {
+            views.add(AssignmentView.of(assignment));
+        }
+        return new AuthorizationSnapshot(version, users, rolesById,
+                assignmentsByUser.with(username, List.copyOf(views)));
+    }
+
+    private static String requireNonBlank(String value, String field) {
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException(field + " must be non-blank");
+        }
+        return value.trim();
+    }
+}
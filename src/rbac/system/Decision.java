@@ -0,0 +1,11 @@
+package rbac.system;
+
+/**
+ * Result of an authorization check together with the snapshot version it was evaluated against.
+ */
+public record Decision(boolean granted, long version) {
+
+    public String format() {
+        return "%s (snapshot v%d)".formatted(granted ? "GRANTED" : "DENIED", version);
+    }
+}
@@ -1,26 +1,81 @@
 package rbac.system;
 
+import rbac.assignment.AssignmentListener;
 import rbac.assignment.AssignmentManager;
 import rbac.assignment.AssignmentMetadata;
+import rbac.assignment.AssignmentStats;
 import rbac.assignment.PermanentAssignment;
+import rbac.assignment.PermissionCache;
+import rbac.assignment.RoleAssignment;
+import rbac.audit.AuditLog;
+import rbac.audit.AuditStore;
+import rbac.audit.AuditWriter;
+import rbac.audit.Backpressure;
+import rbac.metrics.Histogram;
+import rbac.metrics.MetricsRegistry;
 import rbac.permission.Permission;
+import rbac.persistence.Durability;
+import rbac.persistence.MutationLog;
 import rbac.role.Role;
+import rbac.role.RoleListener;
 import rbac.role.RoleManager;
 import rbac.user.User;
+import rbac.user.UserListener;
 import rbac.user.UserManager;
+import rbac.util.DateUtils;
 
-import java.util.UUID;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
 public class RBACSystem {
+    private static final String MUTATION_LOG_FILE = "mutations.log";
+    private static final String SNAPSHOT_FILE = "state.snapshot";
+    private static final int AUDIT_BUFFER = 1 << 16;
+    private static final long AUDIT_FILE_BYTES = 64L << 20;
+    private static final long AUDIT_FILE_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
     private final UserManager userManager;
     private final RoleManager roleManager;
     private final AssignmentManager assignmentManager;
+    private final AuditLog auditLog = new AuditLog();
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    // snapshot-path check latency; null while metrics are off
+    private volatile Histogram checkLatency;
+    private volatile MutationLog mutationLog;
+    // current immutable view for lock-free readers; writers swap in the next version under publishLock
+    private final AtomicReference<AuthorizationSnapshot> snapshot =
+            new AtomicReference<>(AuthorizationSnapshot.empty());
+    private final Object publishLock = new Object();
+    // > 0 while runBatch is active; guarded by publishLock
+    private int batchDepth;
     private String currentUser;
+    // latest failure of a background task; null until one fails
+    private volatile BackgroundFailure lastBackgroundFailure;
+
+    /** A background task that failed: the expiry scheduler, a checkpoint, a log sync or the audit writer. */
+    public record BackgroundFailure(String task, String message, long atMillis) {
+
+        public String format() {
+            return task + " failed at " + DateUtils.formatMinutes(atMillis) + ": " + message;
+        }
+    }
 
     public RBACSystem() {
         this.userManager = new UserManager();
         this.roleManager = new RoleManager();
         this.assignmentManager = new AssignmentManager(userManager, roleManager);
+        registerSnapshotPublisher();
+        registerExpiryAudit();
+        assignmentManager.getExpiryScheduler().setFailureHandler(e -> backgroundFailed("expiry", e));
+        auditLog.setStore(new AuditStore());
+        registerGauges();
     }
 
     public UserManager getUserManager() {
@@ -35,6 +90,337 @@ public class RBACSystem {
         return assignmentManager;
     }
 
+    public AuditLog getAuditLog() {
+        return auditLog;
+    }
+
+    /**
+     * Restores the state stored in {@code directory} and logs every later change there. Call on
+     * a fresh system, before {@link #initialize()}. The directory holds the mutation log and the
+     * snapshot written by {@link MutationLog#checkpoint()}.
+     *
+     * @param syncIntervalMillis fsync period for {@link Durability#INTERVAL}, ignored otherwise
+     */
+    public synchronized void enablePersistence(Path directory, Durability durability, long syncIntervalMillis)
+            throws IOException {
+        if (mutationLog != null) {
+            throw new IllegalStateException("Persistence is already enabled");
+        }
+        Files.createDirectories(directory);
+        try {
+            runBatch(() -> {
+                try {
+                    mutationLog = MutationLog.open(directory.resolve(MUTATION_LOG_FILE),
+                            directory.resolve(SNAPSHOT_FILE), durability, syncIntervalMillis,
+                            userManager, roleManager, assignmentManager);
+                    mutationLog.setFailureHandler(e -> backgroundFailed("persistence", e));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public MutationLog getMutationLog() {
+        return mutationLog;
+    }
+
+    /** Flushes and closes the mutation log; later changes are no longer persisted. */
+    public synchronized void closePersistence() throws IOException {
+        MutationLog log = mutationLog;
+        if (log != null) {
+            mutationLog = null;
+            log.close();
+        }
+    }
+
+    /**
+     * Also writes every audit entry to {@code file} from a background thread. The file is rotated
+     * at 64 MB or once a day.
+     */
+    public synchronized void enableAuditFile(Path file, Backpressure backpressure) throws IOException {
+        if (auditLog.getWriter() != null) {
+            throw new IllegalStateException("Audit file is already enabled");
+        }
+        AuditWriter writer = AuditWriter.open(file, AUDIT_BUFFER, backpressure, AUDIT_FILE_BYTES, AUDIT_FILE_AGE_MILLIS);
+        writer.setFailureHandler(e -> backgroundFailed("audit", e));
+        auditLog.setWriter(writer);
+    }
+
+    /** Writes out the queued audit entries and closes the audit file. */
+    public synchronized void closeAuditFile() throws IOException {
+        AuditWriter writer = auditLog.getWriter();
+        if (writer != null) {
+            auditLog.setWriter(null);
+            writer.close();
+        }
+    }
+
+    /** Expires and renews temporary assignments in the background, checking once per second. */
+    public void startExpiryScheduler() {
+        assignmentManager.getExpiryScheduler().start(1, TimeUnit.SECONDS);
+    }
+
+    public void stopExpiryScheduler() {
+        assignmentManager.getExpiryScheduler().stop();
+    }
+
+    /**
+     * Returns the latest published snapshot. Never blocks; the result does not change afterwards.
+     */
+    public AuthorizationSnapshot snapshot() {
+        return snapshot.get();
+    }
+
+    public Decision checkPermission(String username, String permissionName, String resource) {
+        Histogram latency = checkLatency;
+        if (latency == null) {
+            return snapshot.get().check(username, permissionName, resource);
+        }
+        long start = System.nanoTime();
+        Decision decision = snapshot.get().check(username, permissionName, resource);
+        latency.recordSince(start);
+        return decision;
+    }
+
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Starts timing permission checks and repository adds. Sizes and cache counters are gauges
+     * read at dump time and are available even while timing is off.
+     */
+    public synchronized void enableMetrics() {
+        userManager.setMetrics(metrics);
+        roleManager.setMetrics(metrics);
+        assignmentManager.setMetrics(metrics);
+        checkLatency = metrics.histogram("rbac_permission_check_seconds", "Time to answer one permission check",
+                "path", "snapshot");
+    }
+
+    /** Stops timing; the histograms keep what they recorded so far. */
+    public synchronized void disableMetrics() {
+        userManager.setMetrics(null);
+        roleManager.setMetrics(null);
+        assignmentManager.setMetrics(null);
+        checkLatency = null;
+    }
+
+    public boolean isMetricsEnabled() {
+        return checkLatency != null;
+    }
+
+    private void registerGauges() {
+        metrics.gauge("rbac_users", "Users in the user repository", userManager::count);
+        metrics.gauge("rbac_roles", "Roles in the role repository", roleManager::count);
+        AssignmentStats stats = assignmentManager.getStats();
+        metrics.gauge("rbac_assignments", "Role assignments, by state", stats::active, "state", "active");
+        metrics.gauge("rbac_assignments", "Role assignments, by state", stats::inactive, "state", "inactive");
+        PermissionCache cache = assignmentManager.getPermissionCache();
+        metrics.gauge("rbac_permission_cache_entries", "Users with cached permissions", cache::size);
+        metrics.counter("rbac_permission_cache_hits_total", "Permission checks answered from the cache", cache::hits);
+        metrics.counter("rbac_permission_cache_misses_total", "Permission checks that rebuilt a cache entry", cache::misses);
+        metrics.gauge("rbac_permission_cache_hit_ratio", "Share of permission checks answered from the cache", () -> {
+            long hits = cache.hits();
+            long total = hits + cache.misses();
+            return total == 0 ? 0 : (double) hits / total;
+        });
+        metrics.counter("rbac_audit_entries_total", "Audit entries logged", auditLog::count);
+        // created up front so every series reads 0 until something fails
+        for (String task : new String[]{"expiry", "persistence", "audit"}) {
+            metrics.counter("rbac_background_failures_total", "Failures of background tasks", "task", task);
+        }
+    }
+
+    /** Rebuilds the snapshot from the managers in one pass, e.g. after bulk changes. */
+    public void republishSnapshot() {
+        publish(current -> AuthorizationSnapshot.capture(current.version(), userManager, roleManager, assignmentManager));
+    }
+
+    /**
+     * Runs bulk changes without publishing a snapshot per write, then publishes one rebuilt
+     * snapshot at the end. Readers keep seeing the previous version until then. With
+     * {@link Durability#PER_BATCH} persistence the batch is also fsynced once, at the end.
+     */
+    public void runBatch(Runnable changes) {
+        synchronized (publishLock) {
+            batchDepth++;
+        }
+        MutationLog log = mutationLog;
+        if (log != null) {
+            log.beginBatch();
+        }
+        try {
+            changes.run();
+        } finally {
+            boolean outermost;
+            synchronized (publishLock) {
+                outermost = --batchDepth == 0;
+            }
+            if (outermost) {
+                republishSnapshot();
+            }
+            if (log != null) {
+                log.endBatch();
+            }
+        }
+    }
+
+    private void publish(UnaryOperator<AuthorizationSnapshot> change) {
+        synchronized (publishLock) {
+            if (batchDepth > 0) {
+                return;
+            }
+            AuthorizationSnapshot current = snapshot.get();
+            snapshot.set(change.apply(current).withVersion(current.version() + 1));
+        }
+    }
+
+    private void publishAssignmentsOf(Set<String> usernames) {
+        publish(current -> {
+            AuthorizationSnapshot next = current;
+            for (String username : usernames) {
+                next = next.withAssignments(username, assignmentManager.getByUser(username));
+            }
+            return next;
+        });
+    }
+
+    private void registerSnapshotPublisher() {
+        userManager.addListener(new UserListener() {
+            @Override
+            public void userAdded(User user) {
+                publish(current -> current.withUser(user)
+                        .withAssignments(user.getUsername(), assignmentManager.getByUser(user.getUsername())));
+            }
+
+            @Override
+            public void userRemoved(User user) {
+                publish(current -> current.withoutUser(user.getUsername()));
+            }
+
+            @Override
+            public void userUpdated(User previous, User current) {
+                publish(snapshot -> snapshot.withUser(current));
+            }
+
+            @Override
+            public void usersCleared() {
+                republishSnapshot();
+            }
+        });
+        roleManager.addListener(new RoleListener() {
+            @Override
+            public void roleAdded(Role role) {
+                publish(current -> current.withRole(role));
+            }
+
+            @Override
+            public void roleRemoved(Role role) {
+                publish(current -> current.withoutRole(role.getId()));
+            }
+
+            @Override
+            public void roleUpdated(Role previous, Role current) {
+                Set<String> members = new LinkedHashSet<>();
+                for (RoleAssignment a : assignmentManager.findByRole(current)) {
+                    members.add(a.getUsername());
+                }
+                publish(snapshot -> {
+                    AuthorizationSnapshot next = snapshot.withoutRole(previous.getId()).withRole(current);
+                    for (String username : members) {
+                        next = next.withAssignments(username, assignmentManager.getByUser(username));
+                    }
+                    return next;
+                });
+            }
+
+            @Override
+            public void permissionsChanged(Role role) {
+                // role notifications arrive outside the manager lock; skip roles removed meanwhile
+                publish(current -> current.findRole(role.getId()).isPresent() ? current.withRole(role) : current);
+            }
+
+            @Override
+            public void inheritedPermissionsChanged(Role role) {
+                permissionsChanged(role);
+            }
+
+            @Override
+            public void rolesCleared() {
+                republishSnapshot();
+            }
+        });
+        assignmentManager.addListener(new AssignmentListener() {
+            @Override
+            public void assignmentAdded(RoleAssignment assignment) {
+                publishAssignmentsOf(Set.of(assignment.getUsername()));
+            }
+
+            @Override
+            public void assignmentRemoved(RoleAssignment assignment) {
+                publishAssignmentsOf(Set.of(assignment.getUsername()));
+            }
+
+            @Override
+            public void assignmentRevoked(RoleAssignment assignment) {
+                publishAssignmentsOf(Set.of(assignment.getUsername()));
+            }
+
+            @Override
+            public void assignmentExtended(RoleAssignment assignment) {
+                publishAssignmentsOf(Set.of(assignment.getUsername()));
+            }
+
+            @Override
+            public void assignmentExpired(RoleAssignment assignment) {
+                publishAssignmentsOf(Set.of(assignment.getUsername()));
+            }
+
+            @Override
+            public void assignmentRenewed(RoleAssignment assignment) {
+                publishAssignmentsOf(Set.of(assignment.getUsername()));
+            }
+
+            @Override
+            public void assignmentsCleared() {
+                republishSnapshot();
+            }
+        });
+    }
+
+    private void registerExpiryAudit() {
+        assignmentManager.addListener(new AssignmentListener() {
+            @Override
+            public void assignmentExpired(RoleAssignment assignment) {
+                auditLog.log("ASSIGNMENT_EXPIRED", "system", assignment.getUsername(),
+                        assignment.getRoleName() + " (" + assignment.getAssignmentId() + ")");
+            }
+
+            @Override
+            public void assignmentRenewed(RoleAssignment assignment) {
+                auditLog.log("ASSIGNMENT_RENEWED", "system", assignment.getUsername(),
+                        assignment.getRoleName() + " until " + assignment.getExpiresAt());
+            }
+        });
+    }
+
+    /** The latest failure of a background task, or {@code null} if none has failed. */
+    public BackgroundFailure getLastBackgroundFailure() {
+        return lastBackgroundFailure;
+    }
+
+    // background tasks have no caller to throw to: audit the failure, count it and keep the latest
+    private void backgroundFailed(String task, Exception e) {
+        String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        lastBackgroundFailure = new BackgroundFailure(task, message, System.currentTimeMillis());
+        metrics.counter("rbac_background_failures_total", "Failures of background tasks", "task", task).increment();
+        auditLog.log("BACKGROUND_FAILURE", "system", task, message);
+    }
+
     public void setCurrentUser(String username) {
         this.currentUser = username;
     }
@@ -44,6 +430,9 @@ public class RBACSystem {
     }
 
     public void initialize() {
+        if (userManager.count() > 0 || roleManager.count() > 0) {
+            return; // state restored from persistence, do not seed over it
+        }
         // permissions
         Permission readUsers = new Permission("READ", "USERS", "Read users");
         Permission writeUsers = new Permission("WRITE", "USERS", "Modify users");
@@ -53,19 +442,14 @@ public class RBACSystem {
         Permission writeRoles = new Permission("WRITE", "ROLES", "Modify roles");
         Permission deleteRoles = new Permission("DELETE", "ROLES", "Delete roles");
 
-        // roles
+        // roles: Admin inherits from Manager, which inherits from Viewer
         Role admin = new Role("Admin", "System administrator");
-        admin.addPermission(readUsers);
-        admin.addPermission(writeUsers);
         admin.addPermission(deleteUsers);
-        admin.addPermission(readRoles);
         admin.addPermission(writeRoles);
         admin.addPermission(deleteRoles);
 
         Role manager = new Role("Manager", "Manager role");
-        manager.addPermission(readUsers);
         manager.addPermission(writeUsers);
-        manager.addPermission(readRoles);
 
         Role viewer = new Role("Viewer", "Read-only user");
         viewer.addPermission(readUsers);
@@ -74,6 +458,8 @@ public class RBACSystem {
         roleManager.add(admin);
         roleManager.add(manager);
         roleManager.add(viewer);
+        roleManager.addParent(manager, viewer);
+        roleManager.addParent(admin, manager);
 
         // admin user
         User adminUser = new User("admin", "System Administrator", "admin@company.com");
@@ -89,16 +475,22 @@ public class RBACSystem {
         assignmentManager.add(assignment);
     }
 
+    /**
+     * Counts come from live counters (see {@link AssignmentStats}), corrected by the deadlines
+     * that are already due but not yet processed, so the active count matches
+     * {@link RoleAssignment#isActive()} between two expiry scheduler ticks. The correction visits
+     * only those due deadlines, none once the scheduler has caught up. Changes nothing; expiring
+     * is left to the scheduler.
+     */
     public String generateStatistics() {
-        int userCount = userManager.getAll().size();
-        int roleCount = roleManager.getAll().size();
-        int totalAssignments = assignmentManager.findAll().size();
-        long activeAssignments = assignmentManager.findAll().stream()
-                .filter(a -> a.isActive())
-                .count();
-        long expiredAssignments = assignmentManager.findAll().stream()
-                .filter(a -> !a.isActive())
-                .count();
+        AssignmentStats stats = assignmentManager.getStats();
+        // deadlines the scheduler has not reached yet count as expired, without expiring anything
+        int overdue = assignmentManager.getExpiryScheduler().overdue(System.currentTimeMillis());
+        int userCount = userManager.count();
+        int roleCount = roleManager.count();
+        int totalAssignments = stats.total();
+        int activeAssignments = stats.active() - overdue;
+        int expiredAssignments = stats.inactive() + overdue;
 
         double avgRolesPerUser = userCount == 0
                 ? 0.0
@@ -113,9 +505,19 @@ public class RBACSystem {
                 .append(" (active=").append(activeAssignments)
                 .append(", expired=").append(expiredAssignments)
                 .append(")\n");
+        sb.append("Assignment types: temporary=").append(stats.temporary())
+                .append(", permanent=").append(stats.permanent())
+                .append("\n");
         sb.append("Average roles per user: ")
                 .append(String.format("%.2f", avgRolesPerUser))
                 .append("\n");
+        sb.append("Permission cache: ")
+                .append(assignmentManager.getPermissionCache().format())
+                .append("\n");
+        BackgroundFailure failure = lastBackgroundFailure;
+        if (failure != null) {
+            sb.append("Last background failure: ").append(failure.format()).append("\n");
+        }
         return sb.toString();
     }
 }
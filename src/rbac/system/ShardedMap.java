@@ -0,0 +1,116 @@
+package rbac.system;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable map split into fixed hash shards. {@link #with} and {@link #without} copy only the
+ * shard that changes and share the rest, so publishing a new snapshot after a single write costs
+ * O(n / shards) instead of O(n).
+ */
+final class ShardedMap<K, V> {
+
+    private static final int SHARD_BITS = 8;
+    private static final int SHARDS = 1 << SHARD_BITS;
+
+    private final Map<K, V>[] shards;
+    private final int size;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static <K, V> ShardedMap<K, V> empty() {
+        Map<K, V>[] shards = new Map[SHARDS];
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = Collections.emptyMap();
+        }
+        return new ShardedMap<>(shards, 0);
+    }
+
+    static <K, V> ShardedMap<K, V> of(Map<K, V> source) {
+        Builder<K, V> builder = new Builder<>();
+        for (Map.Entry<K, V> e : source.entrySet()) {
+            builder.put(e.getKey(), e.getValue());
+        }
+        return builder.build();
+    }
+
+    /** Fills the shards directly, for building a large map without an intermediate copy. */
+    static final class Builder<K, V> {
+
+        private final List<Map<K, V>> buckets = new ArrayList<>(SHARDS);
+        private int size;
+
+        Builder() {
+            for (int i = 0; i < SHARDS; i++) {
+                buckets.add(new HashMap<>());
+            }
+        }
+
+        Builder<K, V> put(K key, V value) {
+            if (buckets.get(shardOf(key)).put(key, value) == null) {
+                size++;
+            }
+            return this;
+        }
+
+        ShardedMap<K, V> build() {
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Map<K, V>[] shards = new Map[SHARDS];
+            for (int i = 0; i < SHARDS; i++) {
+                shards[i] = Collections.unmodifiableMap(buckets.get(i));
+            }
+            return new ShardedMap<>(shards, size);
+        }
+    }
+
+    private ShardedMap(Map<K, V>[] shards, int size) {
+        this.shards = shards;
+        this.size = size;
+    }
+
+    V get(K key) {
+        return shards[shardOf(key)].get(key);
+    }
+
+    int size() {
+        return size;
+    }
+
+    ShardedMap<K, V> with(K key, V value) {
+        int index = shardOf(key);
+        Map<K, V> shard = new HashMap<>(shards[index]);
+        boolean added = shard.put(key, value) == null;
+        Map<K, V>[] next = shards.clone();
+        next[index] = Collections.unmodifiableMap(shard);
+        return new ShardedMap<>(next, added ? size + 1 : size);
+    }
+
+    ShardedMap<K, V> without(K key) {
+        int index = shardOf(key);
+        if (!shards[index].containsKey(key)) {
+            return this;
+        }
+        Map<K, V> shard = new HashMap<>(shards[index]);
+        shard.remove(key);
+        Map<K, V>[] next = shards.clone();
+        next[index] = Collections.unmodifiableMap(shard);
+        return new ShardedMap<>(next, size - 1);
+    }
+
+    Collection<V> values() {
+        List<V> result = new ArrayList<>(size);
+        for (Map<K, V> shard : shards) {
+            result.addAll(shard.values());
+        }
+        return result;
+    }
+
+    // top bits of a multiplicative hash: HashMap indexes by the low bits, so sharding on those
+    // would leave each shard's table using 1/SHARDS of its buckets
+    private static int shardOf(Object key) {
+        return (key.hashCode() * 0x9E3779B9) >>> (32 - SHARD_BITS);
+    }
+}
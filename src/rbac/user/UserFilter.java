@@ -1,83 +1,41 @@
 package rbac.user;
 
+import rbac.filter.FilterNode;
+
+/**
+ * Test applied by {@link UserManager#findByFilter}. Filters from {@link UserFilters} and their
+ * {@code and}/{@code or} combinations expose their structure through {@link #node()}, which lets
+ * the manager answer them from an index; a lambda is opaque and always means a full scan.
+ */
 @FunctionalInterface
 public interface UserFilter {
 
     boolean test(User user);
 
+    /** This filter as a predicate tree; a lambda is a single condition the planner cannot index. */
+    default FilterNode<User> node() {
+        return FilterNode.opaque(this::test);
+    }
+
     default UserFilter and(UserFilter other) {
         if (other == null) {
             throw new IllegalArgumentException("other filter must not be null");
         }
-        return user -> this.test(user) && other.test(user);
+        return of(FilterNode.all(node(), other.node()));
     }
 
     default UserFilter or(UserFilter other) {
         if (other == null) {
             throw new IllegalArgumentException("other filter must not be null");
         }
-        return user -> this.test(user) || other.test(user);
-    }
-}
-
-final class UserFilters {
-
-    private UserFilters() {
-    }
-
-    static UserFilter byUsername(String username) {
-        String expected = nonNullTrim(username);
-        return user -> user != null && expected.equals(user.getUsername());
-    }
-
-    static UserFilter byUsernameContains(String substring) {
-        String part = nonNullTrim(substring).toLowerCase();
-        return user -> {
-            if (user == null || user.getUsername() == null) {
-                return false;
-            }
-            return user.getUsername().toLowerCase().contains(part);
-        };
-    }
-
-    static UserFilter byEmail(String email) {
-        String expected = nonNullTrim(email);
-        return user -> user != null && expected.equals(user.getEmail());
-    }
-
-    static UserFilter byEmailContains(String substring) {
-        String part = nonNullTrim(substring).toLowerCase();
-        return user -> {
-            if (user == null || user.getEmail() == null) return false;
-            return user.getEmail().toLowerCase().contains(part);
-        };
+        return of(FilterNode.any(node(), other.node()));
     }
 
-    static UserFilter byEmailDomain(String domain) {
-        String expected = nonNullTrim(domain);
-        return user -> {
-            if (user == null || user.getEmail() == null) {
-                return false;
-            }
-            return user.getEmail().endsWith(expected);
-        };
-    }
-
-    static UserFilter byFullNameContains(String substring) {
-        String part = nonNullTrim(substring).toLowerCase();
-        return user -> {
-            if (user == null || user.getFullName() == null) {
-                return false;
-            }
-            return user.getFullName().toLowerCase().contains(part);
-        };
-    }
-
-    private static String nonNullTrim(String value) {
-        if (value == null) {
-            throw new IllegalArgumentException("value must not be null");
+    /** Wraps a predicate tree as a filter. */
+    static UserFilter of(FilterNode<User> node) {
+        if (node == null) {
+            throw new IllegalArgumentException("node must not be null");
         }
-        return value.trim();
+        return new UserFilters.Tree(node);
     }
 }
-
@@ -0,0 +1,81 @@
+package rbac.user;
+
+import rbac.filter.FilterNode;
+
+/** Filters over users. Exact username and e-mail matches and e-mail suffixes can use an index. */
+public final class UserFilters {
+
+    // index names understood by UserManager
+    static final String USERNAME = "username";
+    static final String EMAIL = "email";
+    static final String EMAIL_SUFFIX = "email-suffix";
+
+    private UserFilters() {
+    }
+
+    record Tree(FilterNode<User> node) implements UserFilter {
+
+        @Override
+        public boolean test(User user) {
+            return node.test(user);
+        }
+    }
+
+    public static UserFilter byUsername(String username) {
+        String expected = nonNullTrim(username);
+        return UserFilter.of(FilterNode.indexed(USERNAME, expected, "username = " + expected,
+                (User user) -> user != null && expected.equals(user.getUsername())));
+    }
+
+    public static UserFilter byUsernameContains(String substring) {
+        String part = nonNullTrim(substring).toLowerCase();
+        return UserFilter.of(FilterNode.unindexed("username contains " + part, (User user) -> {
+            if (user == null || user.getUsername() == null) {
+                return false;
+            }
+            return user.getUsername().toLowerCase().contains(part);
+        }));
+    }
+
+    public static UserFilter byEmail(String email) {
+        String expected = nonNullTrim(email);
+        return UserFilter.of(FilterNode.indexed(EMAIL, expected, "email = " + expected,
+                (User user) -> user != null && expected.equals(user.getEmail())));
+    }
+
+    public static UserFilter byEmailContains(String substring) {
+        String part = nonNullTrim(substring).toLowerCase();
+        return UserFilter.of(FilterNode.unindexed("email contains " + part, (User user) -> {
+            if (user == null || user.getEmail() == null) return false;
+            return user.getEmail().toLowerCase().contains(part);
+        }));
+    }
+
+    /** E-mail ends with {@code domain}, e.g. {@code @acme.com} or {@code acme.com}. */
+    public static UserFilter byEmailDomain(String domain) {
+        String expected = nonNullTrim(domain);
+        return UserFilter.of(FilterNode.indexed(EMAIL_SUFFIX, expected, "email ends with " + expected, (User user) -> {
+            if (user == null || user.getEmail() == null) {
+                return false;
+            }
+            return user.getEmail().endsWith(expected);
+        }));
+    }
+
+    public static UserFilter byFullNameContains(String substring) {
+        String part = nonNullTrim(substring).toLowerCase();
+        return UserFilter.of(FilterNode.unindexed("full name contains " + part, (User user) -> {
+            if (user == null || user.getFullName() == null) {
+                return false;
+            }
+            return user.getFullName().toLowerCase().contains(part);
+        }));
+    }
+
+    private static String nonNullTrim(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value must not be null");
+        }
+        return value.trim();
+    }
+}
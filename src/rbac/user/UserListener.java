@@ -0,0 +1,20 @@
+package rbac.user;
+
+/**
+ * Callback for changes made through {@link UserManager}. All methods are no-ops by default,
+ * so implementations only override the events they care about.
+ */
+public interface UserListener {
+
+    default void userAdded(User user) {
+    }
+
+    default void userRemoved(User user) {
+    }
+
+    default void userUpdated(User previous, User current) {
+    }
+
+    default void usersCleared() {
+    }
+}
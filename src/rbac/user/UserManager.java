@@ -1,21 +1,78 @@
 package rbac.user;
 
 import rbac.Repository;
+import rbac.filter.FilterNode;
+import rbac.filter.IndexSource;
+import rbac.filter.QueryPlan;
+import rbac.filter.QueryPlanner;
+import rbac.metrics.Histogram;
+import rbac.metrics.MetricsRegistry;
+import rbac.sort.Page;
+import rbac.sort.SortKey;
+import rbac.sort.SortedIndex;
+import rbac.sort.TopK;
+import rbac.sort.UserSorters;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
+/**
+ * Thread-safe: reads are lock-free over a concurrent map, writes are serialized on the manager
+ * so check-then-act operations such as {@link #add} stay atomic.
+ * <p>
+ * Besides the username key, users are indexed by reversed e-mail, which answers both exact
+ * e-mail lookups and e-mail suffix (domain) searches as range scans; {@link #findByFilter} uses
+ * these through the {@link QueryPlanner}. Users are also kept sorted in each {@link UserSorters}
+ * order, so {@link #page} reads a page of a sorted listing without sorting everyone.
+ */
 public final class UserManager implements Repository<User> {
 
-    private final Map<String, User> users = new HashMap<>();
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+    // reversed e-mail + '\0' + username -> user
+    private final NavigableMap<String, User> byReversedEmail = new ConcurrentSkipListMap<>();
+    private final IndexSource<User> indexes = new Indexes();
+    private final List<SortedIndex<User>> sorted = List.of(
+            new SortedIndex<>(UserSorters.byUsername(), User::getUsername),
+            new SortedIndex<>(UserSorters.byFullName(), User::getUsername),
+            new SortedIndex<>(UserSorters.byEmail(), User::getUsername));
+    private final List<UserListener> listeners = new CopyOnWriteArrayList<>();
+    // > 0 while runBulkLoad is active; guarded by this
+    private int bulkDepth;
+    private volatile Histogram addLatency;
+
+    public void addListener(UserListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener must not be null");
+        }
+        listeners.add(listener);
+    }
+
+    public void removeListener(UserListener listener) {
+        listeners.remove(listener);
+    }
+
+    /** Times {@link #add} into {@code metrics}; {@code null} turns the timing off. */
+    public void setMetrics(MetricsRegistry metrics) {
+        addLatency = metrics == null ? null
+                : metrics.histogram("rbac_repository_add_seconds", "Time to add one item to a repository", "repository", "users");
+    }
 
     @Override
-    public void add(User item) {
+    public synchronized void add(User item) {
+        Histogram latency = addLatency;
+        long start = latency != null ? System.nanoTime() : 0L;
         if (item == null) {
             throw new IllegalArgumentException("user must not be null");
         }
@@ -24,14 +81,93 @@ public final class UserManager implements Repository<User> {
             throw new IllegalArgumentException("User with username '" + username + "' already exists");
         }
         users.put(username, item);
+        indexEmail(item);
+        for (SortedIndex<User> index : sorted) {
+            index.add(item);
+        }
+        for (UserListener listener : listeners) {
+            listener.userAdded(item);
+        }
+        if (latency != null) {
+            latency.recordSince(start);
+        }
+    }
+
+    /**
+     * Adds many users under one lock. Everything is validated first, so either all users are
+     * added or none. Listeners still see one {@code userAdded} per user.
+     */
+    public synchronized void addAll(Collection<User> items) {
+        if (items == null) {
+            throw new IllegalArgumentException("users must not be null");
+        }
+        Set<String> pending = new HashSet<>(items.size() * 2);
+        for (User item : items) {
+            if (item == null) {
+                throw new IllegalArgumentException("user must not be null");
+            }
+            String username = requireNonBlank(item.getUsername(), "username");
+            if (users.containsKey(username) || !pending.add(username)) {
+                throw new IllegalArgumentException("User with username '" + username + "' already exists");
+            }
+        }
+        for (User item : items) {
+            users.put(item.getUsername(), item);
+            indexEmail(item);
+            for (SortedIndex<User> index : sorted) {
+                index.add(item);
+            }
+        }
+        for (User item : items) {
+            for (UserListener listener : listeners) {
+                listener.userAdded(item);
+            }
+        }
+    }
+
+    /**
+     * Runs a bulk load, typically many {@link #addAll} calls, without keeping the sorted indexes
+     * current, then rebuilds each of them in one pass at the end. Until then sorted pages
+     * ({@link #page}, {@link #top}) may miss users changed meanwhile; everything else stays
+     * current. Calls may nest; the outermost one rebuilds.
+     */
+    public void runBulkLoad(Runnable changes) {
+        synchronized (this) {
+            if (bulkDepth++ == 0) {
+                for (SortedIndex<User> index : sorted) {
+                    index.suspend();
+                }
+            }
+        }
+        try {
+            changes.run();
+        } finally {
+            synchronized (this) {
+                if (--bulkDepth == 0) {
+                    for (SortedIndex<User> index : sorted) {
+                        index.rebuild(users.values());
+                    }
+                }
+            }
+        }
     }
 
     @Override
-    public boolean remove(User item) {
+    public synchronized boolean remove(User item) {
         if (item == null) {
             return false;
         }
-        return users.remove(item.getUsername(), item);
+        if (!users.remove(item.getUsername(), item)) {
+            return false;
+        }
+        unindexEmail(item);
+        for (SortedIndex<User> index : sorted) {
+            index.remove(item);
+        }
+        for (UserListener listener : listeners) {
+            listener.userRemoved(item);
+        }
+        return true;
     }
 
     @Override
@@ -47,14 +183,26 @@ public final class UserManager implements Repository<User> {
         return new ArrayList<>(users.values());
     }
 
+    @Override
+    public void forEach(Consumer<? super User> action) {
+        users.values().forEach(action);
+    }
+
     @Override
     public int count() {
         return users.size();
     }
 
     @Override
-    public void clear() {
+    public synchronized void clear() {
         users.clear();
+        byReversedEmail.clear();
+        for (SortedIndex<User> index : sorted) {
+            index.clear();
+        }
+        for (UserListener listener : listeners) {
+            listener.usersCleared();
+        }
     }
 
     public Optional<User> findByUsername(String username) {
@@ -68,35 +216,74 @@ public final class UserManager implements Repository<User> {
         if (email == null) {
             return Optional.empty();
         }
-        for (User user : users.values()) {
-            if (email.equals(user.getEmail())) {
-                return Optional.of(user);
-            }
-        }
-        return Optional.empty();
+        String prefix = reversedEmailKey(email, "");
+        Map.Entry<String, User> first = byReversedEmail.ceilingEntry(prefix);
+        return first != null && first.getKey().startsWith(prefix) ? Optional.of(first.getValue()) : Optional.empty();
     }
 
     public List<User> findByFilter(UserFilter filter) {
         if (filter == null) {
             return Collections.emptyList();
         }
-        List<User> result = new ArrayList<>();
-        for (User user : users.values()) {
-            if (filter.test(user)) {
-                result.add(user);
-            }
+        return plan(filter).execute(users.values());
+    }
+
+    /** How {@link #findByFilter} answers {@code filter}: from an index, or by scanning all users. */
+    public QueryPlan<User> plan(UserFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("filter must not be null");
         }
-        return result;
+        return QueryPlanner.plan(filter.node(), indexes, users.size());
     }
 
     public List<User> findAll(UserFilter filter, Comparator<User> sorter) {
         List<User> filtered = findByFilter(filter);
         if (sorter != null) {
-            filtered.sort(sorter);
+            SortKey.sort(filtered, sorter);
         }
         return filtered;
     }
 
+    /**
+     * Up to {@code size} users matching {@code filter} (everyone when {@code null}) that come after
+     * {@code after} in {@code sorter} order, ties broken by username. Pass {@code null} as
+     * {@code after} for the first page and {@link Page#last()} of the previous page after that; a
+     * {@code null} sorter orders by username.
+     * <p>
+     * An order from {@link UserSorters} is walked on its sorted index, unless an index can answer
+     * the filter, in which case its matches are ranked instead. Any other order selects the first
+     * {@code size} matches in one pass; nothing is fully sorted.
+     */
+    public Page<User> page(UserFilter filter, Comparator<User> sorter, User after, int size) {
+        QueryPlan<User> plan = filter != null ? plan(filter) : null;
+        SortedIndex<User> index = sortedIndex(sorter);
+        if (index != null && (plan == null || !plan.usesIndex())) {
+            return index.page(sorter, after, size, filter != null ? filter::test : null);
+        }
+        Comparator<User> order = TopK.totalOrder(sorter, User::getUsername);
+        if (plan != null && plan.usesIndex()) {
+            return TopK.select(plan.execute(List.of()), null, order, after, size);
+        }
+        return TopK.select(users.values(), filter != null ? filter::test : null, order, after, size);
+    }
+
+    /** The first {@code k} users matching {@code filter} in {@code sorter} order. */
+    public List<User> top(UserFilter filter, Comparator<User> sorter, int k) {
+        return page(filter, sorter, null, k).items();
+    }
+
+    private SortedIndex<User> sortedIndex(Comparator<User> sorter) {
+        if (sorter == null) {
+            return sorted.get(0);
+        }
+        for (SortedIndex<User> index : sorted) {
+            if (index.serves(sorter)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
     public boolean exists(String username) {
         if (username == null) {
             return false;
@@ -125,13 +312,79 @@ public final class UserManager implements Repository<User> {
         return findByFilter(UserFilters.byEmailContains(part));
     }
 
-    public void update(String username, String newFullName, String newEmail) {
+    public synchronized void update(String username, String newFullName, String newEmail) {
         String key = requireNonBlank(username, "username");
         User user = users.get(key);
         if (user == null) {
             throw new IllegalArgumentException("User with username '" + username + "' not found");
         }
-        users.put(key, new User(user.getUsername(), requireNonBlank(newFullName, "newFullName"), requireNonBlank(newEmail, "newEmail")));
+        User updated = new User(user.getUsername(), requireNonBlank(newFullName, "newFullName"), requireNonBlank(newEmail, "newEmail"));
+        users.put(key, updated);
+        unindexEmail(user);
+        indexEmail(updated);
+        for (SortedIndex<User> index : sorted) {
+            index.add(updated);
+        }
+        for (UserListener listener : listeners) {
+            listener.userUpdated(user, updated);
+        }
+    }
+
+    private void indexEmail(User user) {
+        if (user.getEmail() != null) {
+            byReversedEmail.put(reversedEmailKey(user.getEmail(), user.getUsername()), user);
+        }
+    }
+
+    private void unindexEmail(User user) {
+        if (user.getEmail() != null) {
+            byReversedEmail.remove(reversedEmailKey(user.getEmail(), user.getUsername()), user);
+        }
+    }
+
+    private static String reversedEmailKey(String email, String username) {
+        return new StringBuilder(email).reverse().append('\0').append(username).toString();
+    }
+
+    // entries whose key starts with prefix
+    private Collection<User> withPrefix(String prefix) {
+        return byReversedEmail.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values();
+    }
+
+    private final class Indexes implements IndexSource<User> {
+
+        @Override
+        public int estimate(FilterNode.Condition<User> condition, int limit) {
+            return switch (condition.index()) {
+                case UserFilters.USERNAME -> users.containsKey((String) condition.key()) ? 1 : 0;
+                case UserFilters.EMAIL, UserFilters.EMAIL_SUFFIX -> count(lookup(condition), limit);
+                default -> -1;
+            };
+        }
+
+        @Override
+        public Collection<User> lookup(FilterNode.Condition<User> condition) {
+            String key = (String) condition.key();
+            return switch (condition.index()) {
+                case UserFilters.USERNAME -> {
+                    User user = users.get(key);
+                    yield user != null ? List.of(user) : List.of();
+                }
+                case UserFilters.EMAIL -> withPrefix(reversedEmailKey(key, ""));
+                case UserFilters.EMAIL_SUFFIX -> withPrefix(new StringBuilder(key).reverse().toString());
+                default -> throw new IllegalArgumentException("Unknown index " + condition.index());
+            };
+        }
+
+        private static int count(Collection<User> matches, int limit) {
+            int count = 0;
+            for (User ignored : matches) {
+                if (++count >= limit) {
+                    break;
+                }
+            }
+            return count;
+        }
     }
 
     private static String requireNonBlank(String value, String field) {
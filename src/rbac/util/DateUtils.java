@@ -1,13 +1,17 @@
 package rbac.util;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoUnit;
 
 public final class DateUtils {
     private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd");
     private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter DATE_MINUTES = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
 
     private DateUtils() {
     }
@@ -20,6 +24,43 @@ public final class DateUtils {
         return LocalDateTime.now().format(DATE_TIME);
     }
 
+    public static String formatDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault()).format(DATE_TIME);
+    }
+
+    /** "yyyy-MM-dd HH:mm" in the system time zone, the format assignment times are shown in. */
+    public static String formatMinutes(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault()).format(DATE_MINUTES);
+    }
+
+    /**
+     * Parses "yyyy-MM-dd HH:mm" (seconds allowed) or a bare "yyyy-MM-dd", meaning the start of
+     * that day, in the system time zone. {@code field} names the value in error messages.
+     */
+    public static long parseMillis(String value, String field) {
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException(field + " must be non-blank");
+        }
+        String trimmed = value.trim();
+        try {
+            LocalDateTime at = trimmed.length() <= 10
+                    ? LocalDate.parse(trimmed).atStartOfDay()
+                    : LocalDateTime.parse(trimmed.replace(' ', 'T'));
+            return at.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(field + " must be yyyy-MM-dd or yyyy-MM-dd HH:mm", e);
+        }
+    }
+
+    /** First millisecond of {@code day} in the system time zone. */
+    public static long startOfDayMillis(LocalDate day) {
+        return day.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    public static LocalDate toLocalDate(long epochMillis) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
     public static boolean isBefore(String date1, String date2) {
         return LocalDate.parse(date1, DATE).isBefore(LocalDate.parse(date2, DATE));
     }
@@ -0,0 +1,150 @@
+package rbac.assignment;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rbac.permission.Permission;
+import rbac.permission.PermissionRegistry;
+import rbac.role.Role;
+import rbac.role.RoleManager;
+import rbac.user.User;
+import rbac.user.UserManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Both forms of {@link AssignmentManager#checkAll} answer exactly what one check at a time would. */
+class BatchCheckTest {
+
+    private static final String[] ACTIONS = {"READ", "WRITE", "DELETE"};
+    private static final int RESOURCES = 12;
+
+    private final String prefix = "batch_" + System.nanoTime() + "_";
+    private UserManager userManager;
+    private RoleManager roleManager;
+    private AssignmentManager assignmentManager;
+    private User[] users;
+
+    @BeforeEach
+    void setUp() {
+        userManager = new UserManager();
+        roleManager = new RoleManager();
+        assignmentManager = new AssignmentManager(userManager, roleManager);
+        Role reader = role("reader", new Permission("READ", "DOC_1", "read"), new Permission("READ", "DOC_2", "read"));
+        Role writer = role("writer", new Permission("WRITE", "DOC_3/*", "write any part"));
+        Role admin = role("admin", new Permission("*", "DOC_4", "everything"));
+        Role child = role("child", new Permission("DELETE", "DOC_5", "delete"));
+        roleManager.addParent(child, reader);
+        Role lapsed = role("lapsed", new Permission("DELETE", "DOC_6", "delete"));
+
+        users = new User[6];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = new User("batch_user_" + i, "User " + i, "user" + i + "@example.com");
+            userManager.add(users[i]);
+        }
+        AssignmentMetadata metadata = AssignmentMetadata.now("admin", null);
+        assignmentManager.add(new PermanentAssignment(users[0], reader, metadata));
+        assignmentManager.add(new PermanentAssignment(users[1], writer, metadata));
+        assignmentManager.add(new TemporaryAssignment(users[1], admin, metadata, "2099-01-01", false));
+        assignmentManager.add(new PermanentAssignment(users[2], child, metadata));
+        RoleAssignment revoked = new PermanentAssignment(users[3], lapsed, metadata);
+        assignmentManager.add(revoked);
+        assignmentManager.revoke(revoked);
+        assignmentManager.add(new TemporaryAssignment("assign_batch_past", users[4], lapsed, metadata,
+                System.currentTimeMillis() - 60_000, false));
+        // users[5] holds nothing
+    }
+
+    @AfterEach
+    void tearDown() {
+        // role names are unique per JVM
+        roleManager.clear();
+    }
+
+    @Test
+    void listFormMatchesSingleChecks() {
+        Random random = new Random(17);
+        List<PermissionCheck> checks = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            // a few null users, which are denied
+            User user = i % 97 == 0 ? null : users[random.nextInt(users.length)];
+            checks.add(new PermissionCheck(user, ACTIONS[random.nextInt(ACTIONS.length)], resource(random)));
+        }
+        BitSet granted = assignmentManager.checkAll(checks);
+        int grants = 0;
+        for (int i = 0; i < checks.size(); i++) {
+            PermissionCheck check = checks.get(i);
+            assertEquals(assignmentManager.userHasPermission(check.user(), check.permissionName(), check.resource()),
+                    granted.get(i), "check " + i + ": " + check);
+            grants += granted.get(i) ? 1 : 0;
+        }
+        assertTrue(grants > 0);
+        assertTrue(assignmentManager.checkAll(List.of()).isEmpty());
+    }
+
+    @Test
+    void arrayFormMatchesSingleChecks() {
+        // only pairs some role has held have ids; the wildcard roles cover some of them too
+        List<int[]> pairs = new ArrayList<>();
+        for (int a = 0; a < ACTIONS.length; a++) {
+            for (int r = 1; r <= RESOURCES; r++) {
+                int id = PermissionRegistry.idOf(ACTIONS[a], "DOC_" + r);
+                if (id >= 0) {
+                    pairs.add(new int[]{a, r, id});
+                }
+            }
+        }
+        assertFalse(pairs.isEmpty());
+        Random random = new Random(29);
+        int count = 1_000;
+        int[] userIndexes = new int[count];
+        int[] permissionIds = new int[count];
+        for (int i = 0; i < count; i++) {
+            // runs of the same user, as a gateway would group them
+            userIndexes[i] = (i / 7) % users.length;
+            permissionIds[i] = pairs.get(random.nextInt(pairs.size()))[2];
+        }
+        permissionIds[count - 1] = -1;
+        long[] granted = new long[(count + 63) / 64];
+        // stale bits must be overwritten
+        Arrays.fill(granted, -1L);
+        assignmentManager.checkAll(users, userIndexes, permissionIds, count, granted);
+        int grants = 0;
+        for (int i = 0; i < count; i++) {
+            boolean bit = (granted[i >>> 6] & (1L << i)) != 0;
+            boolean expected = permissionIds[i] >= 0 && assignmentManager.userHasPermission(users[userIndexes[i]],
+                    PermissionRegistry.nameOf(permissionIds[i]), PermissionRegistry.resourceOf(permissionIds[i]));
+            assertEquals(expected, bit, "check " + i);
+            grants += bit ? 1 : 0;
+        }
+        assertTrue(grants > 0);
+    }
+
+    @Test
+    void arrayFormRejectsShortBitmap() {
+        assertThrows(IllegalArgumentException.class, () -> assignmentManager.checkAll(users, new int[65],
+                new int[65], 65, new long[1]));
+    }
+
+    private Role role(String name, Permission... permissions) {
+        Role role = new Role(prefix + name, name);
+        for (Permission permission : permissions) {
+            role.addPermission(permission);
+        }
+        roleManager.add(role);
+        return role;
+    }
+
+    private static String resource(Random random) {
+        String resource = "DOC_" + (1 + random.nextInt(RESOURCES));
+        return random.nextInt(4) == 0 ? resource + "/PART_" + random.nextInt(3) : resource;
+    }
+}
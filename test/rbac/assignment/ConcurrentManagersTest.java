@@ -0,0 +1,239 @@
+package rbac.assignment;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rbac.permission.Permission;
+import rbac.role.Role;
+import rbac.role.RoleManager;
+import rbac.sort.AssignmentSorters;
+import rbac.user.User;
+import rbac.user.UserManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Writers add and remove users and assignments, an editor churns role permissions and whole
+ * roles, and readers check permissions throughout. Afterwards every count and index must match
+ * what the writers did, and no reader may have seen a grant flicker.
+ */
+class ConcurrentManagersTest {
+
+    private static final int ROLES = 16;
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int USERS_PER_WRITER = 2_000;
+    private static final int ROLE_EDITS = 500;
+
+    private final String prefix = "stress_" + System.nanoTime() + "_";
+    private UserManager userManager;
+    private RoleManager roleManager;
+    private AssignmentManager assignmentManager;
+    private Role[] roles;
+    private User anchor;
+    private User nobody;
+
+    @BeforeEach
+    void setUp() {
+        userManager = new UserManager();
+        roleManager = new RoleManager();
+        assignmentManager = new AssignmentManager(userManager, roleManager);
+        roles = new Role[ROLES];
+        for (int r = 0; r < ROLES; r++) {
+            roles[r] = new Role(prefix + r, "Stress role " + r);
+            roles[r].addPermission(new Permission("READ", "DOC_" + r, "read"));
+            roleManager.add(roles[r]);
+        }
+        anchor = new User("anchor", "Anchor", "anchor@example.com");
+        nobody = new User("nobody", "Nobody", "nobody@example.com");
+        userManager.add(anchor);
+        userManager.add(nobody);
+        assignmentManager.add(new PermanentAssignment(anchor, roles[0], AssignmentMetadata.now("test", null)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        // role names are unique per JVM
+        roleManager.clear();
+    }
+
+    @Test
+    void concurrentWritesKeepCountsAndIndexesConsistent() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + READERS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicLong reads = new AtomicLong();
+        List<Future<?>> writers = new ArrayList<>();
+        List<Future<?>> readers = new ArrayList<>();
+        try {
+            for (int w = 0; w < WRITERS; w++) {
+                // built up front: generating ids would otherwise serialize the writers
+                RoleAssignment[][] plan = plan(w);
+                writers.add(pool.submit(gated(start, () -> write(plan))));
+            }
+            writers.add(pool.submit(gated(start, this::editRoles)));
+            for (int r = 0; r < READERS; r++) {
+                readers.add(pool.submit(gated(start, () -> read(writing, reads))));
+            }
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(2, TimeUnit.MINUTES);
+            }
+            writing.set(false);
+            for (Future<?> reader : readers) {
+                reader.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertTrue(reads.get() > 0);
+
+        int expectedUsers = 2;
+        int expectedAssignments = 1;
+        int[] members = new int[ROLES];
+        members[0] = 1;
+        for (int w = 0; w < WRITERS; w++) {
+            for (int i = 0; i < USERS_PER_WRITER; i++) {
+                User user = userManager.findByUsername(username(w, i)).orElse(null);
+                if (i % 4 == 3) {
+                    assertTrue(user == null, "removed user " + username(w, i) + " is still present");
+                    continue;
+                }
+                assertTrue(user != null, "user " + username(w, i) + " was lost");
+                expectedUsers++;
+                Set<String> held = new HashSet<>();
+                for (RoleAssignment assignment : assignmentManager.findByUser(user)) {
+                    held.add(assignment.getRoleName());
+                }
+                Set<String> expected = new HashSet<>();
+                expected.add(roles[(i + 1) % ROLES].getName());
+                if (i % 2 == 1) {
+                    expected.add(roles[i % ROLES].getName());
+                }
+                assertEquals(expected, held, "assignments of " + user.getUsername());
+                for (int r = 0; r < ROLES; r++) {
+                    boolean granted = expected.contains(roles[r].getName());
+                    assertEquals(granted, assignmentManager.userHasPermission(user, "READ", "DOC_" + r),
+                            user.getUsername() + " on DOC_" + r);
+                }
+                for (int r = 0; r < ROLES; r++) {
+                    if (expected.contains(roles[r].getName())) {
+                        members[r]++;
+                    }
+                }
+                expectedAssignments += expected.size();
+            }
+        }
+
+        assertEquals(expectedUsers, userManager.count());
+        assertEquals(expectedUsers, userManager.findAll().size());
+        assertEquals(ROLES, roleManager.count());
+        assertEquals(expectedAssignments, assignmentManager.count());
+        assertEquals(expectedAssignments, assignmentManager.findAll().size());
+        AssignmentStats stats = assignmentManager.getStats();
+        assertEquals(expectedAssignments, stats.total());
+        assertEquals(expectedAssignments, stats.active());
+        assertEquals(0, stats.inactive());
+        assertEquals(expectedAssignments, stats.permanent());
+        for (int r = 0; r < ROLES; r++) {
+            assertEquals(members[r], assignmentManager.findByRole(roles[r]).size(), "members of role " + r);
+            assertEquals(members[r], stats.members(roles[r]), "counted members of role " + r);
+            assertEquals(Set.of(new Permission("READ", "DOC_" + r, "read")), roles[r].getPermissions());
+        }
+        // the secondary indexes hold exactly the live assignments too
+        assertEquals(expectedAssignments, assignmentManager.findByFilter(AssignmentFilters.assignedBy("test")).size());
+        assertEquals(expectedAssignments, assignmentManager.findByFilter(AssignmentFilters.activeOnly()).size());
+        assertEquals(expectedAssignments,
+                assignmentManager.page(null, AssignmentSorters.byUsername(), null, Integer.MAX_VALUE).items().size());
+        assertEquals(expectedAssignments,
+                assignmentManager.page(null, AssignmentSorters.byRoleName(), null, Integer.MAX_VALUE).items().size());
+        assertEquals(1, assignmentManager.findByUser(anchor).size());
+        assertFalse(assignmentManager.userHasPermission(anchor, "WRITE", "DOC_0"));
+    }
+
+    // user i of this writer gets role i and role i + 1; every other user drops role i again and
+    // every fourth user is removed again before getting any
+    private RoleAssignment[][] plan(int writer) {
+        AssignmentMetadata metadata = AssignmentMetadata.now("test", null);
+        RoleAssignment[][] plan = new RoleAssignment[USERS_PER_WRITER][];
+        for (int i = 0; i < USERS_PER_WRITER; i++) {
+            User user = new User(username(writer, i), "User " + i, username(writer, i) + "@example.com");
+            plan[i] = new RoleAssignment[]{
+                    new PermanentAssignment(user, roles[i % ROLES], metadata),
+                    new PermanentAssignment(user, roles[(i + 1) % ROLES], metadata)
+            };
+        }
+        return plan;
+    }
+
+    private void write(RoleAssignment[][] plan) {
+        for (int i = 0; i < plan.length; i++) {
+            RoleAssignment first = plan[i][0];
+            userManager.add(first.getUser());
+            if (i % 4 == 3) {
+                assertTrue(userManager.remove(first.getUser()));
+                continue;
+            }
+            assignmentManager.add(first);
+            assignmentManager.add(plan[i][1]);
+            if (i % 2 == 0) {
+                assertTrue(assignmentManager.remove(first));
+            }
+        }
+    }
+
+    // toggles a permission on the stable roles and adds, assigns and removes throwaway roles
+    private void editRoles() {
+        Permission churn = new Permission("WRITE", "DOC_0", "write");
+        for (int k = 0; k < ROLE_EDITS; k++) {
+            Role role = roles[k % ROLES];
+            roleManager.addPermissionToRole(role.getName(), churn);
+            Role temporary = new Role(prefix + "tmp_" + k, "Throwaway role");
+            temporary.addPermission(new Permission("READ", "TMP", "read"));
+            roleManager.add(temporary);
+            assignmentManager.add(new PermanentAssignment(anchor, temporary, AssignmentMetadata.now("test", null)));
+            roleManager.removePermissionFromRole(role.getName(), churn);
+            assertTrue(roleManager.remove(temporary));
+        }
+    }
+
+    // the anchor's own role and the nobody's lack of roles never change, whatever else does
+    private void read(AtomicBoolean writing, AtomicLong reads) {
+        long n = 0;
+        while (writing.get()) {
+            assertTrue(assignmentManager.userHasPermission(anchor, "READ", "DOC_0"), "anchor lost its grant");
+            assertFalse(assignmentManager.userHasPermission(nobody, "READ", "DOC_0"), "nobody gained a grant");
+            assignmentManager.userHasPermission(anchor, "WRITE", "DOC_0");
+            assignmentManager.userHasPermission(anchor, "READ", "TMP");
+            n++;
+        }
+        reads.addAndGet(n);
+    }
+
+    private static String username(int writer, int i) {
+        return "w" + writer + "_u" + i;
+    }
+
+    private static Callable<Void> gated(CountDownLatch start, Runnable task) {
+        return () -> {
+            start.await();
+            task.run();
+            return null;
+        };
+    }
+}
@@ -0,0 +1,140 @@
+package rbac.assignment;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rbac.permission.Permission;
+import rbac.role.Role;
+import rbac.role.RoleManager;
+import rbac.user.User;
+import rbac.user.UserManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** The deadline heap: ticks process deadlines in order, and overdue counts what a tick would expire. */
+class ExpirySchedulerTest {
+
+    private static final long BASE = 4_000_000_000_000L;
+
+    private final String prefix = "expiry_" + System.nanoTime() + "_";
+    private RoleManager roleManager;
+    private AssignmentManager assignmentManager;
+    private ExpiryScheduler scheduler;
+    private final List<TemporaryAssignment> temporaries = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        UserManager userManager = new UserManager();
+        roleManager = new RoleManager();
+        assignmentManager = new AssignmentManager(userManager, roleManager);
+        scheduler = assignmentManager.getExpiryScheduler();
+        Role[] roles = new Role[20];
+        for (int r = 0; r < roles.length; r++) {
+            roles[r] = new Role(prefix + r, "Role " + r);
+            roleManager.add(roles[r]);
+        }
+        Random random = new Random(5);
+        AssignmentMetadata metadata = new AssignmentMetadata("admin", BASE - 86_400_000L, null);
+        for (int u = 0; u < 50; u++) {
+            User user = new User("expiry_user_" + u, "User " + u, "user" + u + "@example.com");
+            userManager.add(user);
+            for (Role role : roles) {
+                TemporaryAssignment temporary = new TemporaryAssignment("assign_" + u + "_" + role.getName(), user,
+                        role, metadata, BASE + random.nextInt(100_000), random.nextInt(10) == 0);
+                assignmentManager.add(temporary);
+                temporaries.add(temporary);
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        // role names are unique per JVM
+        roleManager.clear();
+    }
+
+    @Test
+    void overdueCountsWhatATickWouldExpire() {
+        Random random = new Random(11);
+        // leave stale entries behind, enough to trigger compaction
+        for (int i = 0; i < 300; i++) {
+            TemporaryAssignment temporary = temporaries.get(random.nextInt(temporaries.size()));
+            if (assignmentManager.findById(temporary.getAssignmentId()).isEmpty()) {
+                continue;
+            }
+            switch (i % 3) {
+                case 0 -> assignmentManager.extendTemporaryAssignment(temporary.getAssignmentId(),
+                        BASE + random.nextInt(100_000));
+                case 1 -> assignmentManager.revoke(temporary);
+                default -> assignmentManager.remove(temporary);
+            }
+        }
+        for (long now = BASE; now <= BASE + 100_000; now += 7_919) {
+            assertEquals(bruteForceOverdue(now), scheduler.overdue(now), "overdue at " + now);
+        }
+        assertTrue(scheduler.overdue(BASE + 50_001) > 0);
+        scheduler.tick(BASE + 50_000);
+        assertEquals(0, scheduler.overdue(BASE + 50_001));
+    }
+
+    @Test
+    void tickProcessesEveryDueDeadlineOnce() {
+        List<RoleAssignment> expired = new ArrayList<>();
+        assignmentManager.addListener(new AssignmentListener() {
+            @Override
+            public void assignmentExpired(RoleAssignment assignment) {
+                expired.add(assignment);
+            }
+        });
+        for (long now = BASE; now <= BASE + 100_000; now += 1_000) {
+            int before = expired.size();
+            scheduler.tick(now);
+            for (RoleAssignment assignment : expired.subList(before, expired.size())) {
+                assertTrue(assignment.getExpiresAtMillis() <= now);
+            }
+        }
+        long oneShot = temporaries.stream().filter(t -> !t.isAutoRenew()).count();
+        assertEquals(oneShot, expired.size());
+        assertEquals(oneShot, expired.stream().distinct().count());
+    }
+
+    @Test
+    void shorteningThroughTheManagerReschedulesAndInvalidates() {
+        Role role = new Role(prefix + "docs", "Docs");
+        role.addPermission(new Permission("READ", "DOCS", "read"));
+        roleManager.add(role);
+        TemporaryAssignment temporary = temporaries.get(0);
+        TemporaryAssignment docs = new TemporaryAssignment("assign_docs", temporary.getUser(), role,
+                AssignmentMetadata.now("admin", null), "2099-01-01", false);
+        assignmentManager.add(docs);
+        assertTrue(assignmentManager.userHasPermission(docs.getUser(), "READ", "DOCS"));
+
+        long now = System.currentTimeMillis();
+        assignmentManager.extendTemporaryAssignment("assign_docs", now - 1_000);
+        assertFalse(assignmentManager.userHasPermission(docs.getUser(), "READ", "DOCS"));
+        assertEquals(List.of(docs), assignmentManager.findByFilter(AssignmentFilters.expiringBefore("2099-01-01")
+                .and(AssignmentFilters.byRole(role))));
+        // the others fall due in 2096
+        assertEquals(1, scheduler.overdue(now));
+        scheduler.tick(now);
+        assertEquals(0, scheduler.overdue(now));
+        assertEquals(0, assignmentManager.getStats().members(role));
+    }
+
+    private int bruteForceOverdue(long now) {
+        int count = 0;
+        for (TemporaryAssignment temporary : temporaries) {
+            if (assignmentManager.findById(temporary.getAssignmentId()).isPresent() && !temporary.isAutoRenew()
+                    && !temporary.isRevoked() && temporary.getExpiresAtMillis() < now) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,58 @@
+package rbac.audit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Saving the retained window: every entry once, and a marked gap for the ones it lost. */
+class AuditLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void saveWritesEachEntryOnce() throws IOException {
+        AuditLog log = new AuditLog(8);
+        Path file = dir.resolve("audit.log");
+        for (int i = 0; i < 5; i++) {
+            log.log("ACTION", "admin", "user_" + i, "first");
+        }
+        assertEquals(0, log.saveToFile(file.toString()));
+        assertEquals(0, log.saveToFile(file.toString()));
+        log.log("ACTION", "admin", "user_5", "second");
+        assertEquals(0, log.saveToFile(file.toString()));
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(6, lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            assertTrue(lines.get(i).contains(";ACTION;admin;user_" + i + ";"), lines.get(i));
+        }
+    }
+
+    @Test
+    void saveMarksEntriesThatFellOutOfTheWindow() throws IOException {
+        AuditLog log = new AuditLog(8);
+        Path file = dir.resolve("audit.log");
+        log.log("ACTION", "admin", "user_0", "saved");
+        assertEquals(0, log.saveToFile(file.toString()));
+        for (int i = 1; i <= 20; i++) {
+            log.log("ACTION", "admin", "user_" + i, "later");
+        }
+        // 20 logged since the save, 8 still retained
+        assertEquals(12, log.saveToFile(file.toString()));
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(1 + 1 + 8, lines.size());
+        assertTrue(lines.get(1).contains(";AUDIT_GAP;system;"), lines.get(1));
+        assertTrue(lines.get(1).contains("12 entries"), lines.get(1));
+        assertTrue(lines.get(2).contains(";user_13;"), lines.get(2));
+        assertTrue(lines.get(9).contains(";user_20;"), lines.get(9));
+    }
+}
@@ -0,0 +1,52 @@
+package rbac.audit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rbac.audit.AuditLog.AuditEntry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AuditWriterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writesEveryOfferedEntry() throws IOException {
+        Path file = dir.resolve("audit.log");
+        try (AuditWriter writer = AuditWriter.open(file, 64, Backpressure.BLOCK, 1 << 20, 0)) {
+            for (int i = 0; i < 1_000; i++) {
+                writer.offer(new AuditEntry(0L, "ACTION", "admin", "user_" + i, "details"));
+            }
+            writer.flush();
+            assertEquals(1_000, writer.written());
+            assertEquals(0, writer.dropped());
+        }
+        assertEquals(1_000, Files.readAllLines(file).size());
+    }
+
+    @Test
+    void failureGoesToTheHandler() throws Exception {
+        Path file = dir.resolve("audit.log");
+        CompletableFuture<Exception> reported = new CompletableFuture<>();
+        // a one-byte limit rotates after every batch, and rotating a deleted file fails
+        AuditWriter writer = AuditWriter.open(file, 64, Backpressure.BLOCK, 1, 0);
+        writer.setFailureHandler(reported::complete);
+        Files.delete(file);
+        writer.offer(new AuditEntry(0L, "ACTION", "admin", "user", "details"));
+
+        Exception failure = reported.get(10, TimeUnit.SECONDS);
+        IOException thrown = assertThrows(IOException.class, writer::close);
+        assertSame(failure, thrown);
+        assertFalse(writer.offer(new AuditEntry(0L, "ACTION", "admin", "user", "late")));
+    }
+}
@@ -0,0 +1,77 @@
+package rbac.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rbac.assignment.RoleAssignment;
+import rbac.assignment.TemporaryAssignment;
+import rbac.role.Role;
+import rbac.system.RBACSystem;
+import rbac.user.User;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Scanner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** A line typed at the prompt runs inline, and a command that throws fails that line only. */
+class CommandParserTest {
+
+    private final String role = "parser_" + System.nanoTime() + "_Manager";
+    private final Scanner noInput = new Scanner("");
+    private CommandParser parser;
+    private RBACSystem system;
+    private PrintStream stdout;
+    private ByteArrayOutputStream out;
+
+    @BeforeEach
+    void setUp() {
+        parser = new CommandParser();
+        CommandRegistry.registerAll(parser);
+        system = new RBACSystem();
+        system.getUserManager().add(new User("alice", "Alice A", "alice@example.com"));
+        system.getRoleManager().add(new Role(role, "Managers"));
+        stdout = System.out;
+        out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.setOut(stdout);
+        // role names are unique per JVM
+        system.getRoleManager().clear();
+    }
+
+    @Test
+    void argumentsOnTheLineAreUsed() {
+        parser.parseAndExecute("assign-role alice " + role + " --temporary 2099-12-31", noInput, system);
+        List<RoleAssignment> held = system.getAssignmentManager().getByUser("alice");
+        assertEquals(1, held.size(), output());
+        assertInstanceOf(TemporaryAssignment.class, held.get(0));
+        assertTrue(output().contains("Role assigned."), output());
+    }
+
+    @Test
+    void failuresAreReportedAndThePromptGoesOn() {
+        parser.parseAndExecute("assign-role alice", noInput, system);
+        assertTrue(output().contains("Error: role must be given"), output());
+
+        parser.parseAndExecute("assign-role alice " + role, noInput, system);
+        parser.parseAndExecute("assign-role alice " + role, noInput, system);
+        assertEquals(1, system.getAssignmentManager().getByUser("alice").size());
+        assertEquals(2, output().lines().filter(l -> l.startsWith("Error: ")).count(), output());
+
+        parser.parseAndExecute("assign-role alice \"" + role, noInput, system);
+        assertEquals(3, output().lines().filter(l -> l.startsWith("Error: ")).count(), output());
+    }
+
+    private String output() {
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,218 @@
+package rbac.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rbac.assignment.AssignmentManager;
+import rbac.assignment.AssignmentMetadata;
+import rbac.assignment.PermanentAssignment;
+import rbac.assignment.RoleAssignment;
+import rbac.assignment.TemporaryAssignment;
+import rbac.permission.Permission;
+import rbac.role.Role;
+import rbac.role.RoleManager;
+import rbac.user.User;
+import rbac.user.UserManager;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Managers rebuilt from the log alone, from a snapshot plus the log after it, and from a log
+ * whose last record a crash tore, must hold what the managers held when the log was closed.
+ */
+class MutationLogTest {
+
+    private static final long FAR = 4_102_444_800_000L; // 2100-01-01
+
+    private final String prefix = "wal_" + System.nanoTime() + "_";
+    @TempDir
+    Path dir;
+    private Path logFile;
+    private Path snapshotFile;
+    private UserManager userManager;
+    private RoleManager roleManager;
+    private AssignmentManager assignmentManager;
+    private MutationLog log;
+
+    @BeforeEach
+    void setUp() {
+        logFile = dir.resolve("mutations.log");
+        snapshotFile = dir.resolve("state.snapshot");
+        fresh();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (log != null) {
+            log.close();
+        }
+        // role names are unique per JVM
+        roleManager.clear();
+    }
+
+    @Test
+    void logAloneRestoresTheManagers() throws IOException {
+        open();
+        change("first");
+        List<String> before = state();
+        long lastLsn = log.lastLsn();
+        assertEquals(lastLsn, log.durableLsn());
+
+        restart();
+        assertEquals(before, state());
+        assertEquals(lastLsn, log.lastLsn());
+        // and the restored managers go on logging from there
+        userManager.add(new User(prefix + "late", "Late L", "late@example.com"));
+        assertEquals(lastLsn + 1, log.lastLsn());
+        List<String> after = state();
+        restart();
+        assertEquals(after, state());
+    }
+
+    @Test
+    void checkpointPlusTailRestoresTheManagers() throws IOException {
+        open();
+        change("first");
+        long checkpointLsn = log.checkpoint();
+        assertEquals(log.lastLsn(), checkpointLsn);
+        assertTrue(Files.exists(snapshotFile));
+        // the tail works on what only the snapshot still holds
+        change("second");
+        Role first = roleManager.findByName(prefix + "first_base").orElseThrow();
+        roleManager.removePermissionFromRole(first.getName(), new Permission("READ", "DOC_first", "read"));
+        for (RoleAssignment assignment : assignmentManager.findAll()) {
+            if (assignment.getRoleName().equals(prefix + "first_extra")) {
+                assignmentManager.remove(assignment);
+            }
+        }
+        userManager.update(prefix + "first_0", "Renamed R", "renamed@example.com");
+        List<String> before = state();
+        long lastLsn = log.lastLsn();
+        log.close();
+        log = null;
+
+        try (WriteAheadLog wal = WriteAheadLog.open(logFile)) {
+            assertEquals(checkpointLsn, wal.baseLsn());
+            assertEquals(lastLsn, wal.lastLsn());
+        }
+        restart();
+        assertEquals(before, state());
+        assertEquals(lastLsn, log.lastLsn());
+
+        // a second checkpoint leaves nothing to replay
+        assertEquals(lastLsn, log.checkpoint());
+        restart();
+        assertEquals(before, state());
+    }
+
+    @Test
+    void tornLastRecordLosesOnlyTheLastChange() throws IOException {
+        open();
+        change("first");
+        List<String> before = state();
+        long lastLsn = log.lastLsn();
+        userManager.add(new User(prefix + "torn", "Torn T", "torn@example.com"));
+        log.close();
+        log = null;
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        restart();
+        assertEquals(before, state());
+        assertFalse(userManager.findByUsername(prefix + "torn").isPresent());
+        assertEquals(lastLsn, log.lastLsn());
+        userManager.add(new User(prefix + "torn", "Torn T", "torn@example.com"));
+        assertEquals(lastLsn + 1, log.lastLsn());
+    }
+
+    // users, roles with permissions and a parent, and permanent, temporary, revoked and
+    // extended assignments, all named after tag
+    private void change(String tag) {
+        Role base = new Role(prefix + tag + "_base", "Base " + tag);
+        base.addPermission(new Permission("READ", "DOC_" + tag, "read"));
+        roleManager.add(base);
+        Role extra = new Role(prefix + tag + "_extra", "Extra " + tag);
+        roleManager.add(extra);
+        roleManager.addPermissionToRole(extra.getName(), new Permission("WRITE", "DOC_" + tag + "/*", "write"));
+        roleManager.addParent(extra, base);
+        AssignmentMetadata metadata = new AssignmentMetadata("admin", 1_760_000_000_000L, tag);
+        for (int i = 0; i < 4; i++) {
+            User user = new User(prefix + tag + "_" + i, "User " + i, tag + i + "@example.com");
+            userManager.add(user);
+            assignmentManager.add(new PermanentAssignment(user, base, metadata));
+            TemporaryAssignment temporary = new TemporaryAssignment(prefix + tag + "_tmp_" + i, user, extra, metadata,
+                    FAR + i, i == 0);
+            assignmentManager.add(temporary);
+            if (i == 1) {
+                assignmentManager.revoke(temporary);
+            } else if (i == 2) {
+                assignmentManager.extendTemporaryAssignment(temporary.getAssignmentId(), FAR + 86_400_000L);
+            }
+        }
+    }
+
+    // everything a restore must bring back, in a fixed order
+    private List<String> state() {
+        List<String> state = new ArrayList<>();
+        for (User user : sorted(userManager.findAll(), Comparator.comparing(User::getUsername))) {
+            state.add("user " + user.getUsername() + " " + user.getFullName() + " " + user.getEmail());
+        }
+        for (Role role : sorted(roleManager.findAll(), Comparator.comparing(Role::getId))) {
+            TreeSet<String> permissions = new TreeSet<>();
+            role.getPermissions().forEach(p -> permissions.add(p.name() + ":" + p.resource()));
+            TreeSet<String> parents = new TreeSet<>();
+            roleManager.getParents(role).forEach(p -> parents.add(p.getId()));
+            state.add("role " + role.getId() + " " + role.getName() + " " + permissions + " parents " + parents);
+        }
+        for (RoleAssignment a : sorted(assignmentManager.findAll(), Comparator.comparing(RoleAssignment::getAssignmentId))) {
+            state.add("assignment " + a.getAssignmentId() + " " + a.getUsername() + " " + a.getRole().getId()
+                    + " " + a.assignmentType() + " until " + a.getExpiresAtMillis() + " " + a.getStatus()
+                    + " by " + a.getAssignedBy() + " at " + a.getAssignedAtMillis()
+                    + (a instanceof TemporaryAssignment t ? " renew " + t.isAutoRenew() : ""));
+        }
+        assertFalse(state.isEmpty());
+        return state;
+    }
+
+    private static <T> List<T> sorted(List<T> items, Comparator<T> order) {
+        List<T> copy = new ArrayList<>(items);
+        copy.sort(order);
+        return copy;
+    }
+
+    private void open() throws IOException {
+        log = MutationLog.open(logFile, snapshotFile, Durability.PER_OPERATION, 0,
+                userManager, roleManager, assignmentManager);
+    }
+
+    // a process that stops without a word and a new one that opens the same files
+    private void restart() throws IOException {
+        if (log != null) {
+            log.close();
+        }
+        // not logged any more; frees the role names for the restored roles
+        roleManager.clear();
+        fresh();
+        open();
+    }
+
+    private void fresh() {
+        userManager = new UserManager();
+        roleManager = new RoleManager();
+        assignmentManager = new AssignmentManager(userManager, roleManager);
+    }
+}
@@ -0,0 +1,209 @@
+package rbac.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** What survives a crash: numbering, torn and corrupt tails, compaction and group commit. */
+class WriteAheadLogTest {
+
+    // magic, version and base LSN; each frame adds length, checksum and LSN to its payload
+    private static final int HEADER_BYTES = 16;
+    private static final int FRAME_BYTES = 16;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void tornTailIsCutOffOnOpen() throws IOException {
+        Path file = dir.resolve("torn.log");
+        write(file, 5);
+        // a crash in the middle of writing the last frame
+        truncate(file, Files.size(file) - 3);
+
+        try (WriteAheadLog wal = WriteAheadLog.open(file)) {
+            assertEquals(4, wal.lastLsn());
+            assertEquals(List.of("record 1", "record 2", "record 3", "record 4"), records(wal, 0));
+            assertEquals(HEADER_BYTES + 4 * frame("record 1"), Files.size(file));
+            // the next record takes the LSN the torn one had
+            assertEquals(5, wal.append(payload("again 5")));
+        }
+        try (WriteAheadLog wal = WriteAheadLog.open(file)) {
+            assertEquals(5, wal.lastLsn());
+            assertEquals(List.of("record 4", "again 5"), records(wal, 3));
+        }
+    }
+
+    @Test
+    void corruptFrameIsCutOffWithEverythingAfterIt() throws IOException {
+        Path file = dir.resolve("corrupt.log");
+        write(file, 5);
+        // a flipped bit in the payload of record 4: its checksum no longer matches
+        flipByte(file, HEADER_BYTES + 3L * frame("record 1") + FRAME_BYTES);
+
+        try (WriteAheadLog wal = WriteAheadLog.open(file)) {
+            assertEquals(3, wal.lastLsn());
+            assertEquals(List.of("record 1", "record 2", "record 3"), records(wal, 0));
+        }
+        // a header that is not even complete starts the log over
+        truncate(file, HEADER_BYTES - 1);
+        try (WriteAheadLog wal = WriteAheadLog.open(file)) {
+            assertEquals(0, wal.lastLsn());
+            assertEquals(0, wal.baseLsn());
+            assertEquals(1, wal.append(payload("fresh")));
+        }
+    }
+
+    @Test
+    void truncateBeforeKeepsNumbering() throws IOException {
+        Path file = dir.resolve("compacted.log");
+        write(file, 10);
+        try (WriteAheadLog wal = WriteAheadLog.open(file)) {
+            wal.truncateBefore(6);
+            assertEquals(6, wal.baseLsn());
+            assertEquals(10, wal.lastLsn());
+            assertEquals(List.of("record 7", "record 8", "record 9", "record 10"), records(wal, 0));
+            assertEquals(11, wal.append(payload("record 11")));
+            assertThrows(IllegalArgumentException.class, () -> wal.truncateBefore(12));
+        }
+        try (WriteAheadLog wal = WriteAheadLog.open(file)) {
+            assertEquals(6, wal.baseLsn());
+            assertEquals(11, wal.lastLsn());
+            assertEquals(List.of("record 10", "record 11"), records(wal, 9));
+            // dropping every record leaves only the base to number from
+            wal.truncateBefore(11);
+        }
+        try (WriteAheadLog wal = WriteAheadLog.open(file)) {
+            assertEquals(11, wal.baseLsn());
+            assertEquals(11, wal.lastLsn());
+            assertEquals(List.of(), records(wal, 0));
+            assertEquals(12, wal.append(payload("record 12")));
+        }
+    }
+
+    @Test
+    void syncFlushesEverythingAppendedBeforeIt() throws IOException {
+        Path file = dir.resolve("group.log");
+        try (WriteAheadLog wal = WriteAheadLog.open(file)) {
+            for (int i = 1; i <= 3; i++) {
+                wal.append(payload("record " + i));
+            }
+            // appends only buffer
+            assertEquals(0, wal.durableLsn());
+            assertEquals(HEADER_BYTES, Files.size(file));
+
+            // one sync for the first record carries the two after it along
+            wal.sync(1);
+            assertEquals(3, wal.durableLsn());
+            assertEquals(HEADER_BYTES + 3 * frame("record 1"), Files.size(file));
+            wal.sync(2);
+            assertEquals(3, wal.durableLsn());
+        }
+    }
+
+    @Test
+    void concurrentWritersAreAllDurable() throws Exception {
+        Path file = dir.resolve("writers.log");
+        int writers = 4;
+        int each = 250;
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        try (WriteAheadLog wal = WriteAheadLog.open(file)) {
+            List<Future<Void>> done = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                done.add(pool.submit((Callable<Void>) () -> {
+                    start.await();
+                    for (int i = 0; i < each; i++) {
+                        long lsn = wal.append(payload("w" + writer + " " + i));
+                        wal.sync(lsn);
+                        assertTrue(wal.durableLsn() >= lsn);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<Void> writer : done) {
+                writer.get(1, TimeUnit.MINUTES);
+            }
+            assertEquals(writers * each, wal.durableLsn());
+        } finally {
+            pool.shutdownNow();
+        }
+        try (WriteAheadLog wal = WriteAheadLog.open(file)) {
+            assertEquals(writers * each, wal.lastLsn());
+            Set<String> expected = new HashSet<>();
+            for (int w = 0; w < writers; w++) {
+                for (int i = 0; i < each; i++) {
+                    expected.add("w" + w + " " + i);
+                }
+            }
+            assertEquals(expected, new HashSet<>(records(wal, 0)));
+        }
+    }
+
+    // records "record 1" to "record n", synced and closed
+    private static void write(Path file, int n) throws IOException {
+        try (WriteAheadLog wal = WriteAheadLog.open(file)) {
+            for (int i = 1; i <= n; i++) {
+                assertEquals(i, wal.append(payload("record " + i)));
+            }
+        }
+    }
+
+    // payloads after afterLsn, checking that LSNs run without gaps
+    private static List<String> records(WriteAheadLog wal, long afterLsn) throws IOException {
+        List<String> records = new ArrayList<>();
+        long[] previous = {Math.max(afterLsn, wal.baseLsn())};
+        wal.replay(afterLsn, (lsn, payload) -> {
+            assertEquals(previous[0] + 1, lsn);
+            previous[0] = lsn;
+            records.add(StandardCharsets.UTF_8.decode(payload).toString());
+        });
+        return records;
+    }
+
+    private static ByteBuffer payload(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int frame(String text) {
+        return FRAME_BYTES + text.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private static void flipByte(Path file, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, position);
+            b.put(0, (byte) (b.get(0) ^ 0x01));
+            channel.write(b.rewind(), position);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package rbac.report;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rbac.assignment.AssignmentManager;
+import rbac.assignment.AssignmentMetadata;
+import rbac.assignment.PermanentAssignment;
+import rbac.assignment.RoleAssignment;
+import rbac.assignment.TemporaryAssignment;
+import rbac.permission.Permission;
+import rbac.role.Role;
+import rbac.role.RoleManager;
+import rbac.user.User;
+import rbac.user.UserManager;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** The parallel generator must write exactly what the sequential one writes, in every format. */
+class ReportGeneratorTest {
+
+    // several chunks of users and roles, plus a partial one
+    private static final int USERS = 3_000;
+    private static final int ROLES = 2_100;
+
+    private final String prefix = "report_" + System.nanoTime() + "_";
+    private UserManager userManager;
+    private RoleManager roleManager;
+    private AssignmentManager assignmentManager;
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    void setUp() {
+        userManager = new UserManager();
+        roleManager = new RoleManager();
+        assignmentManager = new AssignmentManager(userManager, roleManager);
+        Role[] roles = new Role[ROLES];
+        for (int r = 0; r < ROLES; r++) {
+            roles[r] = new Role(prefix + r, "Role " + r + ", with \"quotes\"");
+            roles[r].addPermission(new Permission("READ", "DOC_" + (r % 50), "read"));
+            if (r % 3 == 0) {
+                roles[r].addPermission(new Permission("WRITE", "DOC_" + (r % 50) + "/*", "write"));
+            }
+            roleManager.add(roles[r]);
+        }
+        for (int i = 0; i < USERS; i++) {
+            User user = new User("user_" + i, "User " + i, "user_" + i + "@example.com");
+            userManager.add(user);
+            // every seventh user has no roles
+            if (i % 7 == 0) {
+                continue;
+            }
+            AssignmentMetadata metadata = new AssignmentMetadata("admin", "2026-01-0" + (1 + i % 9) + " 10:00",
+                    i % 2 == 0 ? "onboarding" : null);
+            assignmentManager.add(new PermanentAssignment(user, roles[i % ROLES], metadata));
+            RoleAssignment temporary = new TemporaryAssignment(user, roles[(i * 31 + 1) % ROLES], metadata,
+                    "2099-06-30", i % 5 == 0);
+            assignmentManager.add(temporary);
+            if (i % 11 == 0) {
+                assignmentManager.revoke(temporary);
+            }
+        }
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+        // role names are unique per JVM
+        roleManager.clear();
+    }
+
+    @Test
+    void parallelUserReportMatchesSequential() throws IOException {
+        for (ReportFormat format : ReportFormat.values()) {
+            assertEquals(userReport(new ReportGenerator(), format), userReport(new ReportGenerator(pool), format),
+                    format + " user report");
+        }
+    }
+
+    @Test
+    void parallelRoleReportMatchesSequential() throws IOException {
+        for (ReportFormat format : ReportFormat.values()) {
+            assertEquals(roleReport(new ReportGenerator(), format), roleReport(new ReportGenerator(pool), format),
+                    format + " role report");
+        }
+    }
+
+    @Test
+    void textReportsMatchSequential() {
+        ReportGenerator sequential = new ReportGenerator();
+        ReportGenerator parallel = new ReportGenerator(pool);
+        assertEquals(sequential.generateUserReport(userManager, assignmentManager),
+                parallel.generateUserReport(userManager, assignmentManager));
+        assertEquals(sequential.generateRoleReport(roleManager, assignmentManager),
+                parallel.generateRoleReport(roleManager, assignmentManager));
+    }
+
+    private String userReport(ReportGenerator generator, ReportFormat format) throws IOException {
+        StringWriter out = new StringWriter();
+        generator.writeUserReport(userManager, assignmentManager, format, out);
+        return out.toString();
+    }
+
+    private String roleReport(ReportGenerator generator, ReportFormat format) throws IOException {
+        StringWriter out = new StringWriter();
+        generator.writeRoleReport(roleManager, assignmentManager, format, out);
+        return out.toString();
+    }
+}
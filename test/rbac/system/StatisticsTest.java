@@ -0,0 +1,119 @@
+package rbac.system;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rbac.assignment.AssignmentListener;
+import rbac.assignment.AssignmentManager;
+import rbac.assignment.AssignmentMetadata;
+import rbac.assignment.AssignmentStats;
+import rbac.assignment.PermanentAssignment;
+import rbac.assignment.RoleAssignment;
+import rbac.assignment.TemporaryAssignment;
+import rbac.role.Role;
+import rbac.user.User;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** The live counters behind {@link RBACSystem#generateStatistics()}, and that it changes nothing. */
+class StatisticsTest {
+
+    private final String prefix = "stats_" + System.nanoTime() + "_";
+    private RBACSystem system;
+    private AssignmentManager assignments;
+    private User alice;
+    private Role[] roles;
+
+    @BeforeEach
+    void setUp() {
+        system = new RBACSystem();
+        assignments = system.getAssignmentManager();
+        alice = new User("alice", "Alice A", "alice@example.com");
+        system.getUserManager().add(alice);
+        roles = new Role[4];
+        for (int r = 0; r < roles.length; r++) {
+            roles[r] = new Role(prefix + r, "Role " + r);
+            system.getRoleManager().add(roles[r]);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        // role names are unique per JVM
+        system.getRoleManager().clear();
+    }
+
+    @Test
+    void countersFollowEveryChange() {
+        AssignmentMetadata metadata = AssignmentMetadata.now("admin", null);
+        RoleAssignment permanent = new PermanentAssignment(alice, roles[0], metadata);
+        TemporaryAssignment temporary = new TemporaryAssignment(alice, roles[1], metadata, "2099-01-01", false);
+        RoleAssignment revoked = new PermanentAssignment(alice, roles[2], metadata);
+        assignments.add(permanent);
+        assignments.add(temporary);
+        assignments.add(revoked);
+        assignments.revoke(revoked);
+        assignments.extendTemporaryAssignment(temporary.getAssignmentId(), "2099-06-01");
+        assertRecount();
+
+        assignments.remove(permanent);
+        assertRecount();
+        assertEquals(0, assignments.getStats().members(roles[0]));
+        assertEquals(1, assignments.getStats().members(roles[1]));
+
+        system.getRoleManager().remove(roles[1]);
+        assertRecount();
+        assertEquals(1, assignments.getStats().total());
+    }
+
+    @Test
+    void statisticsDoNotExpireAnything() {
+        AssignmentMetadata metadata = AssignmentMetadata.now("admin", null);
+        long past = System.currentTimeMillis() - 120_000;
+        assignments.add(new TemporaryAssignment("assign_overdue", alice, roles[0], metadata, past, false));
+        assignments.add(new PermanentAssignment(alice, roles[1], metadata));
+        AtomicInteger expired = new AtomicInteger();
+        assignments.addListener(new AssignmentListener() {
+            @Override
+            public void assignmentExpired(RoleAssignment assignment) {
+                expired.incrementAndGet();
+            }
+        });
+
+        String before = system.generateStatistics();
+        assertTrue(before.contains("Assignments total: 2 (active=1, expired=1)"), before);
+        assertEquals(0, expired.get());
+        assertEquals(2, assignments.getStats().active());
+
+        assignments.getExpiryScheduler().tick(System.currentTimeMillis());
+        assertEquals(1, expired.get());
+        String after = system.generateStatistics();
+        assertTrue(after.contains("Assignments total: 2 (active=1, expired=1)"), after);
+        assertRecount();
+    }
+
+    // the live counters against a count of every assignment
+    private void assertRecount() {
+        AssignmentStats stats = assignments.getStats();
+        int active = 0;
+        int temporary = 0;
+        for (RoleAssignment assignment : assignments.findAll()) {
+            if (assignment.isActive()) {
+                active++;
+            }
+            if (assignment instanceof TemporaryAssignment) {
+                temporary++;
+            }
+        }
+        assertEquals(assignments.count(), stats.total());
+        assertEquals(active, stats.active());
+        assertEquals(temporary, stats.temporary());
+        for (Role role : system.getRoleManager().findAll()) {
+            long members = assignments.findByRole(role).stream().filter(RoleAssignment::isActive).count();
+            assertEquals(members, stats.members(role), "members of " + role.getName());
+        }
+    }
+}